@@ -0,0 +1,25 @@
+#!/bin/sh
+# Builds the benchmark jar and runs the suite with the GC profiler.
+#
+#   ./run.sh                 run everything, write results/current.csv
+#   ./run.sh --baseline      run everything, write baseline/baseline.csv
+#   ./run.sh -- <jmh args>   pass extra arguments to JMH (e.g. -p files=10000 MusicFinder)
+#
+# After a normal run the results are compared against baseline/baseline.csv when it exists.
+set -e
+cd "$(dirname "$0")"
+
+OUT=results/current.csv
+if [ "$1" = "--baseline" ]; then
+    OUT=baseline/baseline.csv
+    shift
+fi
+[ "$1" = "--" ] && shift
+
+mvn -B -q package -DskipTests
+mkdir -p "$(dirname "$OUT")"
+java -jar target/benchmarks.jar -prof gc -rf csv -rff "$OUT" "$@"
+
+if [ "$OUT" != baseline/baseline.csv ] && [ -f baseline/baseline.csv ]; then
+    java -cp target/benchmarks.jar application.bench.BaselineCompare baseline/baseline.csv "$OUT"
+fi
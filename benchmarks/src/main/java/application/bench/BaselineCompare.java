@@ -0,0 +1,126 @@
+package application.bench;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares two JMH result files written with -rf csv and reports regressions.
+ *
+ * Throughput scores (ops/time) regress when they go down; normalized allocation
+ * (gc.alloc.rate.norm, B/op) regresses when it goes up. Other secondary metrics are
+ * listed but never fail the comparison.
+ *
+ * Usage: java -cp target/benchmarks.jar application.bench.BaselineCompare baseline.csv current.csv [thresholdPercent]
+ * Exits with status 1 when any benchmark regressed by more than the threshold (default 10%).
+ */
+public final class BaselineCompare {
+
+    private BaselineCompare() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: BaselineCompare <baseline.csv> <current.csv> [thresholdPercent]");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 10.0;
+        Map<String, Result> baseline = read(Paths.get(args[0]));
+        Map<String, Result> current = read(Paths.get(args[1]));
+
+        int regressions = 0;
+        for (Map.Entry<String, Result> e : current.entrySet()) {
+            Result now = e.getValue();
+            Result before = baseline.get(e.getKey());
+            if (before == null) {
+                System.out.printf("NEW        %-90s %14.3f %s%n", e.getKey(), now.score, now.unit);
+                continue;
+            }
+            double change = before.score == 0 ? 0 : (now.score - before.score) * 100.0 / before.score;
+            String verdict = "";
+            if (now.isThroughput() && change < -threshold) {
+                verdict = "REGRESSION";
+            } else if (now.isNormalizedAllocation() && change > threshold) {
+                verdict = "REGRESSION";
+            }
+            if (!verdict.isEmpty()) regressions++;
+            System.out.printf("%-10s %-90s %14.3f -> %14.3f %s (%+.1f%%)%n",
+                    verdict, e.getKey(), before.score, now.score, now.unit, change);
+        }
+        for (String key : baseline.keySet()) {
+            if (!current.containsKey(key)) {
+                System.out.printf("MISSING    %s%n", key);
+            }
+        }
+        System.out.println(regressions + " regression(s) above " + threshold + "%");
+        System.exit(regressions > 0 ? 1 : 0);
+    }
+
+    private static Map<String, Result> read(Path csv) throws IOException {
+        List<String> lines = Files.readAllLines(csv, StandardCharsets.UTF_8);
+        Map<String, Result> results = new LinkedHashMap<>();
+        if (lines.isEmpty()) return results;
+
+        List<String> header = parseLine(lines.get(0));
+        int benchCol = header.indexOf("Benchmark");
+        int modeCol = header.indexOf("Mode");
+        int scoreCol = header.indexOf("Score");
+        int unitCol = header.indexOf("Unit");
+        for (int i = 1; i < lines.size(); i++) {
+            if (lines.get(i).isBlank()) continue;
+            List<String> row = parseLine(lines.get(i));
+            StringBuilder key = new StringBuilder(row.get(benchCol)).append(" [").append(row.get(modeCol));
+            // Every "Param: x" column becomes part of the key
+            for (int c = 0; c < header.size() && c < row.size(); c++) {
+                if (header.get(c).startsWith("Param: ") && !row.get(c).isEmpty()) {
+                    key.append(' ').append(header.get(c).substring(7)).append('=').append(row.get(c));
+                }
+            }
+            key.append(']');
+            results.put(key.toString(), new Result(row.get(benchCol),
+                    Double.parseDouble(row.get(scoreCol)), row.get(unitCol)));
+        }
+        return results;
+    }
+
+    // JMH quotes every field, so a small quoted-CSV reader is enough
+    private static List<String> parseLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                if (quoted && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = !quoted;
+                }
+            } else if (c == ',' && !quoted) {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private record Result(String benchmark, double score, String unit) {
+        boolean isThroughput() {
+            return !benchmark.contains(":") && unit.startsWith("ops/");
+        }
+
+        boolean isNormalizedAllocation() {
+            return benchmark.endsWith("gc.alloc.rate.norm");
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package application.bench;
+
+import application.MusicFinder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Extension matching on its own, over a fixed mix of hits, misses, upper case
+ * and names without an extension.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExtensionMatchBenchmark {
+
+    private static final int NAMES = 1024;
+
+    private final String[] names = new String[NAMES];
+    private Set<String> extensions;
+
+    @Setup
+    public void setup() {
+        extensions = MusicFinder.defaultExtensions();
+        for (int i = 0; i < NAMES; i++) {
+            names[i] = (i % 16 == 0) ? "README" : SyntheticLibrary.fileName(i);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NAMES)
+    public int hasExtension() {
+        int matches = 0;
+        for (String name : names) {
+            if (MusicFinder.hasExtension(name, extensions)) matches++;
+        }
+        return matches;
+    }
+}
@@ -0,0 +1,61 @@
+package application.bench;
+
+import application.MusicFinder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full scans of generated trees with {@link MusicFinder#findMusic}.
+ *
+ * The OS directory cache is warm after the first iteration, so this measures the
+ * walker and matching cost rather than disk seeks. The 1M-file trees take several
+ * minutes to generate the first time; pass -p files=10000 for a quick run.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class MusicFinderBenchmark {
+
+    @Param({"FLAT", "DEEP", "WIDE"})
+    public SyntheticLibrary.Shape shape;
+
+    @Param({"10000", "100000", "1000000"})
+    public int files;
+
+    private Path root;
+
+    @Setup(Level.Trial)
+    public void createTree() throws IOException {
+        root = SyntheticLibrary.get(shape, files);
+        // Fail fast if the scanner and the generator disagree
+        int found = MusicFinder.findMusic(root).size();
+        int expected = SyntheticLibrary.expectedMatches(files);
+        if (found != expected) {
+            throw new IllegalStateException("Expected " + expected + " matches but found " + found);
+        }
+    }
+
+    @Benchmark
+    public List<Path> findMusic() throws IOException {
+        return MusicFinder.findMusic(root, MusicFinder.defaultExtensions(), Integer.MAX_VALUE, Integer.MAX_VALUE);
+    }
+}
@@ -0,0 +1,50 @@
+package application.bench;
+
+import application.Controller;
+import application.MusicFinder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building the table rows from scan results, as done by Controller.loadMusicAsync
+ * (one Files.size call and three JavaFX properties per track).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class MusicItemBenchmark {
+
+    @Param({"10000", "100000"})
+    public int files;
+
+    private List<Path> paths;
+
+    @Setup(Level.Trial)
+    public void scan() throws IOException {
+        paths = MusicFinder.findMusic(SyntheticLibrary.get(SyntheticLibrary.Shape.WIDE, files));
+    }
+
+    @Benchmark
+    public List<Controller.MusicItem> buildMusicItems() {
+        return Controller.buildMusicItems(paths);
+    }
+}
@@ -0,0 +1,77 @@
+package application.bench;
+
+import application.Controller;
+import application.Controller.MusicItem;
+import application.MusicFinder;
+import application.library.TrackSorter;
+import application.library.TrackSorter.Key;
+import application.library.TrackSorter.Order;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sorting the table rows by name: the comparator TableView uses by default (cell values,
+ * compared one pair at a time) against TrackSorter with and without its rank cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class SortBenchmark {
+
+    private static final Key<MusicItem> NAME = TrackSorter.text("name", MusicItem::getName);
+    private static final List<Order<MusicItem>> BY_NAME = List.of(new Order<>(NAME, false));
+
+    @Param({"10000", "100000"})
+    public int files;
+
+    private List<MusicItem> items;
+    private TrackSorter<MusicItem> sorter;
+
+    @Setup(Level.Trial)
+    public void scan() throws IOException {
+        items = Controller.buildMusicItems(
+                MusicFinder.findMusic(SyntheticLibrary.get(SyntheticLibrary.Shape.WIDE, files)));
+        sorter = new TrackSorter<>(Collator.getInstance());
+        sorter.setItems(items);
+    }
+
+    @Benchmark
+    public List<MusicItem> comparatorSort() {
+        Collator collator = Collator.getInstance();
+        List<MusicItem> copy = new ArrayList<>(items);
+        copy.sort(Comparator.comparing(m -> m.nameProperty().get(), collator));
+        return copy;
+    }
+
+    @Benchmark
+    public int[] rankedSortCold() {
+        sorter.invalidate(NAME);
+        return sorter.permutation(BY_NAME);
+    }
+
+    @Benchmark
+    public List<MusicItem> rankedSortCached() {
+        return sorter.sorted(BY_NAME);
+    }
+}
@@ -0,0 +1,49 @@
+package application.bench;
+
+import application.playback.SpectrumAnalyzer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Spectrum analysis of the PCM backend: one 1024-frame stereo chunk per call, which
+ * completes one FFT frame. Should report zero allocation (gc.alloc.rate.norm).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class SpectrumAnalyzerBenchmark {
+
+    private static final int FRAMES = 1024;
+
+    private SpectrumAnalyzer analyzer;
+    private byte[] pcm;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        analyzer = new SpectrumAnalyzer(1024, 32, 2);
+        pcm = new byte[FRAMES * 4];
+        new Random(42).nextBytes(pcm);
+    }
+
+    @Benchmark
+    public float[] analyzeChunk() {
+        analyzer.add(pcm, 0, pcm.length);
+        return analyzer.magnitudes();
+    }
+}
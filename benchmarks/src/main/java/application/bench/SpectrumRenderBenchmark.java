@@ -0,0 +1,86 @@
+package application.bench;
+
+import application.SpectrumRenderer;
+
+import javafx.scene.paint.Color;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One visualizer frame (the work AudioVisualizer.render does on every pulse) drawn
+ * into a stub surface, so it runs without a JavaFX toolkit.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SpectrumRenderBenchmark {
+
+    /** quiet: bars near the floor; loud: bars near full height (most gradient steps) */
+    @Param({"quiet", "loud"})
+    public String level;
+
+    private final float[] source = new float[32];
+    private final float[] magnitudes = new float[32];
+    private final Random random = new Random(42);
+    private BlackholeSurface surface;
+
+    @Setup
+    public void setup(Blackhole blackhole) {
+        surface = new BlackholeSurface(blackhole);
+        Random r = new Random(7);
+        for (int i = 0; i < source.length; i++) {
+            source[i] = "loud".equals(level) ? -r.nextFloat() * 10f : -50f - r.nextFloat() * 10f;
+        }
+    }
+
+    @Benchmark
+    public int renderFrame() {
+        // The renderer decays magnitudes in place, so feed a fresh spectrum each frame
+        System.arraycopy(source, 0, magnitudes, 0, source.length);
+        return SpectrumRenderer.render(surface, magnitudes, true, 400, 80, random);
+    }
+
+    /** Consumes every call so the JIT cannot drop the drawing work */
+    static final class BlackholeSurface implements SpectrumRenderer.Surface {
+        private final Blackhole bh;
+
+        BlackholeSurface(Blackhole bh) {
+            this.bh = bh;
+        }
+
+        @Override
+        public void setFill(Color color) {
+            bh.consume(color);
+        }
+
+        @Override
+        public void setGlobalAlpha(double alpha) {
+            bh.consume(alpha);
+        }
+
+        @Override
+        public void fillRect(double x, double y, double w, double h) {
+            bh.consume(x);
+            bh.consume(y);
+            bh.consume(w);
+            bh.consume(h);
+        }
+    }
+}
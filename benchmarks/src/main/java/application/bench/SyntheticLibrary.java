@@ -0,0 +1,118 @@
+package application.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Generates empty directory trees that look like a music library, so scanner benchmarks
+ * run against a known number of files and a known layout.
+ *
+ * Trees are cached under java.io.tmpdir/reproductor-bench and reused across runs,
+ * since creating a million files takes much longer than scanning them.
+ */
+public final class SyntheticLibrary {
+
+    /** Layout of the generated tree */
+    public enum Shape {
+        /** Every file in a single directory */
+        FLAT,
+        /** Chains of 32 nested directories with a few files on each level */
+        DEEP,
+        /** Many sibling directories ("albums") with a dozen files each */
+        WIDE
+    }
+
+    // One in four files is not music (covers, playlists, notes) so extension matching has misses
+    private static final String[] EXTENSIONS = {"mp3", "flac", "jpg", "wav", "MP3", "m4a", "txt", "ogg"};
+    private static final int DEEP_LEVELS = 32;
+    private static final int DEEP_FILES_PER_LEVEL = 8;
+    private static final int WIDE_FILES_PER_DIR = 12;
+
+    private SyntheticLibrary() {
+    }
+
+    /**
+     * Return the root of a generated tree, creating it on first use.
+     */
+    public static Path get(Shape shape, int files) throws IOException {
+        Path base = Paths.get(System.getProperty("java.io.tmpdir"), "reproductor-bench");
+        Path root = base.resolve(shape.name().toLowerCase() + "-" + files);
+        Path marker = root.resolve(".complete");
+        if (Files.exists(marker)) {
+            return root;
+        }
+        deleteRecursively(root);
+        Files.createDirectories(root);
+        switch (shape) {
+            case FLAT -> createFiles(root, 0, files);
+            case DEEP -> createDeep(root, files);
+            case WIDE -> createWide(root, files);
+        }
+        Files.createFile(marker);
+        return root;
+    }
+
+    /**
+     * Number of files in a generated tree that the default extension set matches.
+     */
+    public static int expectedMatches(int files) {
+        int perCycle = 0;
+        for (String ext : EXTENSIONS) {
+            if (application.MusicFinder.defaultExtensions().contains(ext.toLowerCase())) perCycle++;
+        }
+        int full = files / EXTENSIONS.length;
+        int matches = full * perCycle;
+        for (int i = 0; i < files % EXTENSIONS.length; i++) {
+            if (application.MusicFinder.defaultExtensions().contains(EXTENSIONS[i].toLowerCase())) matches++;
+        }
+        return matches;
+    }
+
+    /**
+     * A file name using the same extension mix as the generated trees.
+     */
+    public static String fileName(int index) {
+        return "Track " + index + " - Artist " + (index % 97) + "." + EXTENSIONS[index % EXTENSIONS.length];
+    }
+
+    private static int createFiles(Path dir, int firstIndex, int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            Files.createFile(dir.resolve(fileName(firstIndex + i)));
+        }
+        return firstIndex + count;
+    }
+
+    private static void createDeep(Path root, int files) throws IOException {
+        int next = 0;
+        int chain = 0;
+        while (next < files) {
+            Path dir = root.resolve("chain" + chain++);
+            for (int level = 0; level < DEEP_LEVELS && next < files; level++) {
+                dir = dir.resolve("level" + level);
+                Files.createDirectories(dir);
+                next = createFiles(dir, next, Math.min(DEEP_FILES_PER_LEVEL, files - next));
+            }
+        }
+    }
+
+    private static void createWide(Path root, int files) throws IOException {
+        int next = 0;
+        int album = 0;
+        while (next < files) {
+            Path dir = root.resolve("Artist " + (album % 500)).resolve("Album " + album++);
+            Files.createDirectories(dir);
+            next = createFiles(dir, next, Math.min(WIDE_FILES_PER_DIR, files - next));
+        }
+    }
+
+    private static void deleteRecursively(Path root) throws IOException {
+        if (!Files.exists(root)) return;
+        try (var paths = Files.walk(root)) {
+            for (Path p : (Iterable<Path>) paths.sorted(java.util.Comparator.reverseOrder())::iterator) {
+                Files.delete(p);
+            }
+        }
+    }
+}
@@ -0,0 +1,31 @@
+#!/bin/sh
+# Records a class-data-sharing (AppCDS) archive for the player and prints how to use it.
+#
+#   JAVAFX_LIB=/ruta/javafx-sdk-25.0.1/lib ./scripts/appcds.sh
+#
+# The compiled classes in bin/ (Eclipse output) are packed into build/reproductor.jar,
+# because CDS only archives classes loaded from JAR files. The player is then started
+# once with -Dreproductor.trainingRun=true: it shows the window, restores the saved
+# library, runs one scan and exits, and the JVM dumps every class it loaded to
+# build/reproductor.jsa. Re-run after changing the code or the JDK; a stale archive is
+# ignored by the JVM (with a warning), never used wrongly.
+set -e
+cd "$(dirname "$0")/.."
+
+if [ -z "$JAVAFX_LIB" ]; then
+    echo "Set JAVAFX_LIB to the lib directory of the JavaFX SDK" >&2
+    exit 2
+fi
+
+FX_OPTS="--module-path $JAVAFX_LIB --add-modules javafx.controls,javafx.fxml,javafx.media --enable-native-access=javafx.graphics,javafx.media"
+
+mkdir -p build
+rm -f build/reproductor.jar build/reproductor.jsa
+jar --create --file build/reproductor.jar -C bin .
+
+java -XX:ArchiveClassesAtExit=build/reproductor.jsa -Dreproductor.trainingRun=true \
+    $FX_OPTS -cp build/reproductor.jar application.Main
+
+echo
+echo "Archive written to build/reproductor.jsa. Start the player with:"
+echo "  java -XX:SharedArchiveFile=build/reproductor.jsa $FX_OPTS -cp build/reproductor.jar application.Main"
@@ -4,11 +4,16 @@ import javafx.animation.AnimationTimer;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.paint.Color;
-import javafx.scene.media.MediaPlayer;
-import javafx.scene.media.AudioSpectrumListener;
 
 import java.util.Random;
 
+import application.jfr.FlightEvents;
+import application.jfr.VisualizerFrameEvent;
+import application.metrics.Counter;
+import application.metrics.LatencyHistogram;
+import application.metrics.Metrics;
+import application.playback.Player;
+
 /**
  * Audio visualizer that displays animated bars similar to classic music players.
  * Shows frequency spectrum analysis of the playing audio.
@@ -16,20 +21,25 @@ import java.util.Random;
 public class AudioVisualizer extends Canvas {
     
     private static final int NUM_BARS = 32;
-    private static final double BAR_WIDTH_RATIO = 0.8;
-    private static final Color BAR_COLOR = Color.rgb(0, 120, 212, 0.95); // Windows 11 blue
-    private static final Color BAR_GRADIENT_COLOR = Color.rgb(102, 178, 255, 0.7); // Light blue
-    private static final Color BACKGROUND_COLOR = Color.rgb(230, 242, 255, 0.15); // Soft blue tint
+    private static final long FRAME_INTERVAL_NANOS = 1_000_000_000L / 60; // JavaFX pulse target
+    
+    private static final LatencyHistogram FRAME_TIME = Metrics.histogram("visualizer.frame_time");
+    private static final Counter FRAMES = Metrics.counter("visualizer.frames");
+    private static final Counter DROPPED_FRAMES = Metrics.counter("visualizer.dropped_frames");
+    private static final Counter DRAW_CALLS = Metrics.counter("visualizer.draw_calls");
     
     private final float[] magnitudes;
-    private MediaPlayer mediaPlayer;
+    private final SpectrumRenderer.Surface surface;
+    private Player player;
     private AnimationTimer animationTimer;
     private final Random random = new Random();
-    private boolean isPlaying = false;
+    private volatile boolean isPlaying = false;
+    private long lastFrameNanos = 0;
     
     public AudioVisualizer(double width, double height) {
         super(width, height);
         this.magnitudes = new float[NUM_BARS];
+        this.surface = new GraphicsSurface(getGraphicsContext2D());
         
         // Initialize with zeros
         for (int i = 0; i < NUM_BARS; i++) {
@@ -40,6 +50,14 @@ public class AudioVisualizer extends Canvas {
         animationTimer = new AnimationTimer() {
             @Override
             public void handle(long now) {
+                // Pulses that arrive more than 1.5 frames apart mean frames were skipped
+                if (lastFrameNanos != 0) {
+                    long gap = now - lastFrameNanos;
+                    if (gap > FRAME_INTERVAL_NANOS * 3 / 2) {
+                        DROPPED_FRAMES.add(Math.max(1, gap / FRAME_INTERVAL_NANOS - 1));
+                    }
+                }
+                lastFrameNanos = now;
                 render();
             }
         };
@@ -50,41 +68,35 @@ public class AudioVisualizer extends Canvas {
     }
     
     /**
-     * Attach this visualizer to a MediaPlayer to display its audio spectrum
+     * Attach this visualizer to a player to display its audio spectrum.
+     * Updates may arrive on the player's audio thread (PCM backend); the bars only read
+     * the latest values on the next frame.
      */
-    public void attachMediaPlayer(MediaPlayer player) {
+    public void attach(Player newPlayer) {
         // Detach from previous player if exists
-        if (mediaPlayer != null) {
-            mediaPlayer.setAudioSpectrumListener(null);
+        if (player != null) {
+            player.setSpectrumListener(NUM_BARS, null);
         }
         
-        this.mediaPlayer = player;
+        this.player = newPlayer;
         
-        if (player != null) {
-            // Configure spectrum listener
-            player.setAudioSpectrumNumBands(NUM_BARS);
-            player.setAudioSpectrumInterval(0.05); // Update every 50ms
-            
-            player.setAudioSpectrumListener(new AudioSpectrumListener() {
-                @Override
-                public void spectrumDataUpdate(double timestamp, double duration,
-                                               float[] newMagnitudes, float[] newPhases) {
-                    // Copy the spectrum data
-                    System.arraycopy(newMagnitudes, 0, magnitudes, 0, 
-                                   Math.min(newMagnitudes.length, NUM_BARS));
-                    isPlaying = true;
-                }
+        if (newPlayer != null) {
+            newPlayer.setSpectrumListener(NUM_BARS, newMagnitudes -> {
+                // Copy the spectrum data
+                System.arraycopy(newMagnitudes, 0, magnitudes, 0, 
+                               Math.min(newMagnitudes.length, NUM_BARS));
+                isPlaying = true;
             });
         }
     }
     
     /**
-     * Detach from current MediaPlayer
+     * Detach from current player
      */
     public void detach() {
-        if (mediaPlayer != null) {
-            mediaPlayer.setAudioSpectrumListener(null);
-            mediaPlayer = null;
+        if (player != null) {
+            player.setSpectrumListener(NUM_BARS, null);
+            player = null;
         }
         isPlaying = false;
         // Reset magnitudes
@@ -110,75 +122,18 @@ public class AudioVisualizer extends Canvas {
      * Render the visualization
      */
     private void render() {
-        GraphicsContext gc = getGraphicsContext2D();
-        double width = getWidth();
-        double height = getHeight();
-        
-        // Clear background with glassmorphism color
-        gc.setFill(BACKGROUND_COLOR);
-        gc.fillRect(0, 0, width, height);
-        
-        // Calculate bar dimensions
-        double barWidth = (width / NUM_BARS) * BAR_WIDTH_RATIO;
-        double spacing = (width / NUM_BARS) * (1 - BAR_WIDTH_RATIO);
-        
-        // Draw bars
-        for (int i = 0; i < NUM_BARS; i++) {
-            double x = i * (barWidth + spacing) + spacing / 2;
-            
-            // Convert magnitude (in dB, typically -60 to 0) to height
-            // magnitudes are in dB, typically ranging from -60 to 0
-            float magnitude = magnitudes[i];
-            
-            // Normalize magnitude: -60dB = 0, 0dB = 1
-            double normalizedMagnitude = (magnitude + 60) / 60.0;
-            normalizedMagnitude = Math.max(0, Math.min(1, normalizedMagnitude));
-            
-            // Add some smoothing and minimum height
-            if (!isPlaying) {
-                normalizedMagnitude *= 0.95; // Decay when not playing
-                magnitudes[i] *= 0.9f;
-            }
-            
-            double barHeight = normalizedMagnitude * height * 0.9;
-            
-            // Add minimum visible height when playing
-            if (isPlaying && barHeight < 2) {
-                barHeight = 2 + random.nextDouble() * 5;
-            }
-            
-            double y = height - barHeight;
-            
-            // Draw gradient bar with blue colors
-            Color topColor = BAR_COLOR; // Darker blue at top
-            Color bottomColor = BAR_GRADIENT_COLOR; // Lighter blue at bottom
-            
-            // Create gradient effect manually
-            int steps = (int) Math.max(1, barHeight / 2);
-            for (int s = 0; s < steps; s++) {
-                double ratio = (double) s / steps;
-                Color color = topColor.interpolate(bottomColor, ratio);
-                gc.setFill(color);
-                
-                double segmentHeight = barHeight / steps;
-                gc.fillRect(x, y + s * segmentHeight, barWidth, segmentHeight + 1);
-            }
-            
-            // Add a subtle glow effect on top of bars
-            if (barHeight > 5) {
-                gc.setGlobalAlpha(0.4);
-                gc.setFill(Color.rgb(153, 204, 255, 0.6)); // Light blue glow
-                gc.fillRect(x - 1, y - 2, barWidth + 2, 4);
-                gc.setGlobalAlpha(1.0);
-            }
-            
-            // Draw reflection (subtle)
-            gc.setGlobalAlpha(0.15);
-            gc.setFill(Color.rgb(102, 178, 255, 0.5));
-            double reflectionHeight = Math.min(barHeight * 0.3, height - barHeight - y);
-            gc.fillRect(x, height - barHeight + barHeight, barWidth, reflectionHeight);
-            gc.setGlobalAlpha(1.0);
+        VisualizerFrameEvent frameEvent = FlightEvents.active() ? new VisualizerFrameEvent() : null;
+        if (frameEvent != null) frameEvent.begin();
+        long start = System.nanoTime();
+        int drawCalls = SpectrumRenderer.render(surface, magnitudes, isPlaying, getWidth(), getHeight(), random);
+        FRAME_TIME.recordSince(start);
+        if (frameEvent != null && frameEvent.shouldCommit()) {
+            frameEvent.drawCalls = drawCalls;
+            frameEvent.playing = isPlaying;
+            frameEvent.commit();
         }
+        FRAMES.increment();
+        DRAW_CALLS.add(drawCalls);
     }
     
     /**
@@ -190,4 +145,30 @@ public class AudioVisualizer extends Canvas {
         }
         detach();
     }
+    
+    /**
+     * Adapts the Canvas GraphicsContext to the renderer surface
+     */
+    private static final class GraphicsSurface implements SpectrumRenderer.Surface {
+        private final GraphicsContext gc;
+        
+        GraphicsSurface(GraphicsContext gc) {
+            this.gc = gc;
+        }
+        
+        @Override
+        public void setFill(Color color) {
+            gc.setFill(color);
+        }
+        
+        @Override
+        public void setGlobalAlpha(double alpha) {
+            gc.setGlobalAlpha(alpha);
+        }
+        
+        @Override
+        public void fillRect(double x, double y, double w, double h) {
+            gc.fillRect(x, y, w, h);
+        }
+    }
 }
@@ -2,41 +2,97 @@ package application;
 
 import javafx.application.Platform;
 import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
 import javafx.concurrent.Task;
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
 import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableColumn.SortType;
 import javafx.scene.control.TableView;
-import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.scene.control.Button;
+import javafx.scene.control.IndexedCell;
 import javafx.scene.control.Label;
 import javafx.scene.control.ProgressBar;
 import javafx.scene.control.Slider;
+import javafx.scene.control.ToggleButton;
+import javafx.scene.control.skin.VirtualFlow;
 import javafx.scene.canvas.Canvas;
+import javafx.scene.control.TableCell;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.Cursor;
+import javafx.scene.Scene;
 import javafx.stage.Stage;
 import javafx.beans.property.LongProperty;
+import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.SimpleObjectProperty;
 import javafx.beans.property.SimpleLongProperty;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.beans.property.StringProperty;
-import javafx.scene.media.Media;
-import javafx.scene.media.MediaPlayer;
 import javafx.util.Duration;
 
-import java.io.File;
 import java.io.IOException;
 import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.text.Collator;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.ResourceBundle;
 import java.util.stream.Collectors;
 
+import application.analysis.LibraryAnalyzer;
+import application.artwork.ArtworkService;
+import application.jfr.FlightEvents;
+import application.jfr.LibraryPublishEvent;
+import application.jfr.MediaEndEvent;
+import application.jfr.MediaErrorEvent;
+import application.jfr.MediaOpenEvent;
+import application.jfr.MediaPlayEvent;
+import application.jfr.MediaReadyEvent;
+import application.history.PlayEvent;
+import application.history.PlayHistory;
+import application.library.LibraryIndex;
+import application.library.LibrarySnapshot;
+import application.library.TrackId;
+import application.library.TrackSorter;
+import application.library.TrackSorter.Key;
+import application.library.TrackSorter.Order;
+import application.metrics.Counter;
+import application.metrics.LatencyHistogram;
+import application.metrics.Metrics;
+import application.playback.Player;
+import application.playback.Players;
+import application.prefetch.Prefetcher;
+import application.playlist.Playlist;
+import application.playlist.PlaylistFile;
+import application.radio.Radio;
+import application.server.LibraryServer;
+import application.smart.SmartPlaylistDefinitions;
+import application.smart.SmartPlaylists;
+import application.smart.TrackStore;
+import application.tags.TrackTags;
+
 public class Controller implements Initializable {
 
+    private static final LatencyHistogram OPEN_TO_READY = Metrics.histogram("playback.open_to_ready");
+    private static final LatencyHistogram TRACK_SWITCH_GAP = Metrics.histogram("playback.track_switch_gap");
+    private static final Counter TRACKS_STARTED = Metrics.counter("playback.tracks_started");
+    private static final Counter MEDIA_ERRORS = Metrics.counter("playback.errors");
+
+    private static final int METADATA_THREADS = 2;
+    private static final int METADATA_QUEUE_CAPACITY = 256;
+    private static final int METADATA_PREFETCH_ROWS = 40;
+    // Upcoming tracks handed to the prefetcher; it reads as many as it is configured for
+    private static final int PREFETCH_TRACKS = 8;
+
     @FXML
     private TableView<MusicItem> musicTable;
 
@@ -47,11 +103,23 @@ public class Controller implements Initializable {
     private TableColumn<MusicItem, String> colPath;
 
     @FXML
-    private TableColumn<MusicItem, Long> colSize;
+    private TableColumn<MusicItem, Number> colSize;
+
+    @FXML
+    private TableColumn<MusicItem, Image> colArtwork;
+
+    @FXML
+    private TableColumn<MusicItem, String> colArtist;
+
+    @FXML
+    private TableColumn<MusicItem, String> colDuration;
 
     @FXML
     private Label lblCurrentSong;
 
+    @FXML
+    private ImageView imgCover;
+
     @FXML
     private Button btnPrevious;
 
@@ -67,6 +135,9 @@ public class Controller implements Initializable {
     @FXML
     private Button btnNext;
 
+    @FXML
+    private ToggleButton btnRadio;
+
     @FXML
     private ProgressBar progressBar;
 
@@ -97,20 +168,82 @@ public class Controller implements Initializable {
     @FXML
     private Button btnClose;
 
+    // Sort keys; the tag based ones are re-ranked when more tags have been read
+    private static final Key<MusicItem> SORT_NAME = TrackSorter.text("name", MusicItem::getName);
+    private static final Key<MusicItem> SORT_PATH = TrackSorter.text("path", MusicItem::getPath);
+    private static final Key<MusicItem> SORT_SIZE = TrackSorter.number("size", MusicItem::getSize);
+    private static final Key<MusicItem> SORT_ARTIST = TrackSorter.text("artist", m -> m.getTags().artist());
+    private static final Key<MusicItem> SORT_ALBUM = TrackSorter.text("album", m -> m.getTags().album());
+    private static final Key<MusicItem> SORT_TRACK = TrackSorter.number("track", m -> m.getTags().track());
+    private static final Key<MusicItem> SORT_DURATION = TrackSorter.number("duration", m -> m.getTags().durationMillis());
+    private static final List<Key<MusicItem>> TAG_SORT_KEYS = List.of(SORT_ARTIST, SORT_ALBUM, SORT_TRACK, SORT_DURATION);
+
+    // Responsive style classes, smallest first
+    private static final String[] WIDTH_MODES = {"compact-mode", "standard-mode", "comfortable-mode"};
+    private static final String[] HEIGHT_MODES = {"compact-height", "standard-height", "comfortable-height"};
+
     private final ObservableList<MusicItem> data = FXCollections.observableArrayList();
+    private final TrackSorter<MusicItem> trackSorter = new TrackSorter<>(Collator.getInstance());
+    private final Map<TableColumn<MusicItem, ?>, List<Key<MusicItem>>> columnSortKeys = new HashMap<>();
+    private int sortedMetadataGeneration = 0;
+    private boolean resorting = false;
     private MusicItem selectedSong = null;
-    private MediaPlayer mediaPlayer = null;
+    private Player player = null;
+    private MusicItem playerSong = null; // the song player was opened for
     private boolean isPlaying = false;
+    private long switchStartNanos = 0; // set when one track hands over to another while playing
+    private RowMetadataLoader metadataLoader = null;
+    private ArtworkService artworkService = null;
+    private Image defaultCover = null;
+    private VirtualFlow<?> tableFlow = null;
+    private boolean tableItemsChanged = false;
     private AudioVisualizer audioVisualizer = null;
+    private StageResizer stageResizer = null;
+    private Prefetcher prefetcher = null;
+    private LibraryServer libraryServer = null;
+    private SmartPlaylists smartPlaylists = null;
+    private PlayHistory playHistory = null;
+    private LibraryAnalyzer analyzer = null;
+    private Radio radio = null;
+    private MusicItem radioFrom = null; // song the radio chose radioPick to follow
+    private String radioPick = null;
+    private LibraryIndex<Integer> rowIndex = null; // rows of data by path, built on first use after a change
+    private List<MusicItem> libraryItems = List.of(); // as last published, in library order
+    private boolean fillRequested = false; // tags of the whole published library are being read
+    private boolean allTagsRead = false;
+    private final ArrayDeque<String> queue = new ArrayDeque<>();    // paths played before the next row
+    private final List<MusicItem> openedItems = new ArrayList<>();  // opened files the library doesn't have
+    private final List<Runnable> pendingOpens = new ArrayList<>();  // files opened before the services started
+    private boolean servicesStarted = false;
+    private boolean libraryPublished = false;
+    private MusicItem historySong = null; // song whose play is being timed for the history
+    private long historyStart = 0;        // epoch millis
+    private long historyPosition = 0;
+    private long historyDuration = -1;
+    private int widthMode = -1;  // index into WIDTH_MODES currently applied to root
+    private int heightMode = -1; // index into HEIGHT_MODES currently applied to root
 
     @Override
     public void initialize(URL location, ResourceBundle resources) {
-        // Configure columns
-        colName.setCellValueFactory(new PropertyValueFactory<>("name"));
-        colPath.setCellValueFactory(new PropertyValueFactory<>("path"));
-        colSize.setCellValueFactory(new PropertyValueFactory<>("size"));
+        // Configure columns (direct accessors, no reflection per cell)
+        colName.setCellValueFactory(cd -> cd.getValue().nameProperty());
+        colPath.setCellValueFactory(cd -> cd.getValue().pathProperty());
+        colSize.setCellValueFactory(cd -> cd.getValue().sizeProperty());
+        if (colArtwork != null) {
+            colArtwork.setCellValueFactory(cd -> cd.getValue().artworkProperty());
+            colArtwork.setCellFactory(column -> new ArtworkCell());
+        }
+        if (colArtist != null) {
+            colArtist.setCellValueFactory(cd -> cd.getValue().artistProperty());
+        }
+        if (colDuration != null) {
+            colDuration.setCellValueFactory(cd -> cd.getValue().durationTextProperty());
+        }
 
         musicTable.setItems(data);
+        // Any change (publishLibrary, applySort, opened files) moves rows
+        data.addListener((ListChangeListener<MusicItem>) _ -> rowIndex = null);
+        setupSorting();
 
         // Set up window controls (minimize, maximize, close)
         setupWindowControls();
@@ -123,20 +256,9 @@ public class Controller implements Initializable {
 
         // Listen for selection changes
         musicTable.getSelectionModel().selectedItemProperty().addListener((_, oldSelection, newSelection) -> {
-            if (newSelection != null) {
-                boolean wasPlaying = isPlaying;
-                selectedSong = newSelection;
-                lblCurrentSong.setText(newSelection.getName());
-                enablePlaybackControls(true);
-                
-                // Auto-play new song if music was already playing
-                if (wasPlaying) {
-                    handlePlay();
-                }
-            } else {
-                selectedSong = null;
-                lblCurrentSong.setText("Selecciona una canción");
-                enablePlaybackControls(false);
+            // While rows are being reordered the selected song stays the same
+            if (!resorting) {
+                selectionChanged(newSelection);
             }
         });
 
@@ -146,14 +268,20 @@ public class Controller implements Initializable {
         btnStop.setOnAction(_ -> handleStop());
         btnPrevious.setOnAction(_ -> handlePrevious());
         btnNext.setOnAction(_ -> handleNext());
+        if (btnRadio != null) {
+            btnRadio.selectedProperty().addListener((_, _, _) -> {
+                radioPick = null;
+                if (isPlaying) schedulePrefetch();
+            });
+        }
 
         // Set up volume slider
         if (volumeSlider != null && lblVolume != null) {
             volumeSlider.valueProperty().addListener((_, oldVal, newVal) -> {
                 double volume = newVal.doubleValue();
                 lblVolume.setText(String.format("%.0f%%", volume * 100));
-                if (mediaPlayer != null) {
-                    mediaPlayer.setVolume(volume);
+                if (player != null) {
+                    player.setVolume(volume);
                 }
             });
             // Initialize volume label
@@ -163,7 +291,7 @@ public class Controller implements Initializable {
         // Set up interactive progress bar (click to seek)
         if (progressBar != null) {
             progressBar.setOnMouseClicked(event -> {
-                if (mediaPlayer != null && selectedSong != null) {
+                if (player != null && selectedSong != null) {
                     // Calculate the percentage clicked
                     double mouseX = event.getX();
                     double width = progressBar.getWidth();
@@ -173,17 +301,190 @@ public class Controller implements Initializable {
                     percentage = Math.max(0, Math.min(1, percentage));
                     
                     // Seek to that position
-                    Duration totalDuration = mediaPlayer.getTotalDuration();
-                    if (totalDuration != null && !totalDuration.isUnknown()) {
+                    long totalMillis = player.getDurationMillis();
+                    if (totalMillis > 0) {
+                        Duration totalDuration = Duration.millis(totalMillis);
                         Duration seekTime = totalDuration.multiply(percentage);
-                        mediaPlayer.seek(seekTime);
+                        player.seek((long) seekTime.toMillis());
                         System.out.println("Seeking to: " + formatDuration(seekTime) + " / " + formatDuration(totalDuration));
                     }
                 }
             });
         }
 
-        // Initialize audio visualizer
+        // Everything else starts once the window has been painted
+        Platform.runLater(() -> {
+            Scene scene = musicTable.getScene();
+            if (scene != null) {
+                Startup.afterFirstPaint(scene, this::startServices);
+            } else {
+                startServices();
+            }
+        });
+    }
+
+    /**
+     * Second startup stage, run after the first frame: background workers, the visualizer,
+     * the saved library and then a fresh scan.
+     */
+    private void startServices() {
+        // Tags and durations are only read for rows in view
+        setupLazyMetadata();
+
+        setupVisualizer();
+
+        // Read the next tracks ahead of playback (slow disks, network shares)
+        prefetcher = Prefetcher.createDefault();
+
+        // Share the library over HTTP when -Dreproductor.server.port is set
+        try {
+            libraryServer = LibraryServer.startFromConfig();
+        } catch (IOException e) {
+            System.err.println("Library server not started: " + e.getMessage());
+        }
+
+        // Durations, tempo and key of the whole library, a few tracks at a time
+        analyzer = LibraryAnalyzer.createDefault();
+        if (analyzer != null && metadataLoader != null) {
+            metadataLoader.setDurationSource(analyzer::durationMillis);
+        }
+        if (analyzer != null && libraryServer != null) {
+            // Served durations the tags lack come from the analysis, known once a run ends
+            analyzer.setProgressListener(progress -> {
+                System.out.println("Analysis: " + progress);
+                if (progress.finished()) {
+                    Platform.runLater(() -> libraryServer.publish(servedTracks(libraryItems)));
+                }
+            });
+        }
+
+        // Radio mode: similar tracks by their analysis results, placed as the results come in
+        radio = new Radio(analyzer != null ? analyzer.store()::get : _ -> null);
+
+        // Plays are logged in the background; smart playlists read the last play times
+        playHistory = PlayHistory.createDefault();
+        setupSmartPlaylists();
+
+        // Analysis results place tracks on the radio and give smart playlists the durations
+        // the tags don't state
+        if (analyzer != null) {
+            Radio r = radio;
+            SmartPlaylists smart = smartPlaylists;
+            analyzer.setResultListener((track, features) -> {
+                r.update(track.toString(), features);
+                if (smart != null) smart.durationKnown(track.toString(), features.durationMillis());
+            });
+        }
+
+        // Show the last library right away, then look for changes in the background
+        restoreLibraryAsync();
+
+        servicesStarted = true;
+        pendingOpens.forEach(Runnable::run);
+        pendingOpens.clear();
+    }
+
+    /**
+     * Play files from the command line or handed over by a later launch. The first of
+     * {@code open} starts now and the rest play next, ahead of the queue; {@code enqueue}
+     * goes to the end of the queue. Files the library doesn't have are added to the table.
+     */
+    public void openFiles(List<Path> open, List<Path> enqueue) {
+        if (!servicesStarted) {
+            pendingOpens.add(() -> openFiles(open, enqueue));
+            return;
+        }
+        List<MusicItem> opened = tableItems(open);
+        List<MusicItem> queued = tableItems(enqueue);
+        for (int i = opened.size() - 1; i >= 1; i--) {
+            queue.addFirst(opened.get(i).getPath());
+        }
+        for (MusicItem item : queued) {
+            queue.addLast(item.getPath());
+        }
+        if (!opened.isEmpty()) {
+            MusicItem first = opened.get(0);
+            musicTable.getSelectionModel().select(first);
+            musicTable.scrollTo(first);
+            // Selecting only switches tracks while something is playing
+            if (!isPlaying || playerSong != first) handlePlay();
+        } else if (isPlaying) {
+            schedulePrefetch();
+        }
+        System.out.println("Opened " + opened.size() + ", queued " + queue.size() + " track(s)");
+    }
+
+    // The table row of each file, adding rows for the ones outside the library
+    private List<MusicItem> tableItems(List<Path> files) {
+        List<MusicItem> result = new ArrayList<>(files.size());
+        if (files.isEmpty()) return result;
+        Map<String, MusicItem> byPath = new HashMap<>();
+        for (MusicItem item : trackSorter.getItems()) {
+            byPath.put(item.getPath(), item);
+        }
+        List<MusicItem> added = new ArrayList<>();
+        for (Path file : files) {
+            MusicItem item = byPath.get(file.toString());
+            if (item == null) {
+                if (!Files.isRegularFile(file)) {
+                    System.err.println("Not a file: " + file);
+                    continue;
+                }
+                item = buildMusicItems(List.of(file)).get(0);
+                byPath.put(item.getPath(), item);
+                added.add(item);
+            }
+            result.add(item);
+        }
+        if (!added.isEmpty()) {
+            openedItems.addAll(added);
+            List<MusicItem> items = new ArrayList<>(trackSorter.getItems());
+            items.addAll(added);
+            trackSorter.setItems(items);
+            applySort();
+        }
+        return result;
+    }
+
+    /**
+     * Smart playlists from ~/.reproductor/smart-playlists.txt, kept current as the library
+     * and its tags change. Each one is written as a playlist file whenever its tracks change.
+     */
+    private void setupSmartPlaylists() {
+        Map<String, String> definitions = SmartPlaylistDefinitions.load(SmartPlaylistDefinitions.defaultFile());
+        if (definitions.isEmpty()) return;
+        Path directory = PlaylistFile.defaultDirectory();
+        PlayHistory history = playHistory;
+        smartPlaylists = new SmartPlaylists((name, query, ids) -> {
+            try {
+                PlaylistFile.save(directory.resolve(name + PlaylistFile.EXTENSION), new Playlist(name, ids));
+            } catch (IOException e) {
+                System.err.println("Could not save smart playlist " + name + ": " + e.getMessage());
+            }
+        }, id -> history.stats().lastPlayed(id));
+        definitions.forEach((name, query) -> {
+            try {
+                smartPlaylists.define(name, query);
+            } catch (IllegalArgumentException e) {
+                System.err.println("Smart playlist " + name + " ignored: " + e.getMessage());
+            }
+        });
+        if (metadataLoader != null) {
+            metadataLoader.setLoadedListener(loaded -> smartPlaylists.update(smartTracks(loaded)));
+        }
+    }
+
+    // Tags only for rows that have been read; the fill reports the rest when a playlist needs them
+    private static List<TrackStore.Track> smartTracks(List<MusicItem> items) {
+        List<TrackStore.Track> tracks = new ArrayList<>(items.size());
+        for (MusicItem item : items) {
+            TrackTags tags = item.tagsRead ? item.getTags() : null;
+            tracks.add(new TrackStore.Track(item.getPath(), item.getSize(), tags));
+        }
+        return tracks;
+    }
+
+    private void setupVisualizer() {
         if (visualizerCanvas != null) {
             audioVisualizer = new AudioVisualizer(
                 visualizerCanvas.getWidth(), 
@@ -197,9 +498,6 @@ public class Controller implements Initializable {
                 parent.getChildren().add(index, audioVisualizer);
             }
         }
-
-        // Load music in background
-        loadMusicAsync();
     }
 
     private void enablePlaybackControls(boolean enable) {
@@ -212,92 +510,158 @@ public class Controller implements Initializable {
 
     private void handlePlay() {
         if (selectedSong != null) {
-            if (mediaPlayer != null && isPlaying) {
+            boolean sameSong = playerSong == selectedSong;
+            if (player != null && isPlaying && sameSong) {
                 // Already playing, restart from beginning
-                mediaPlayer.stop();
-                mediaPlayer.play();
+                endHistory(false);
+                player.stop();
+                player.play();
                 return;
             }
             
-            if (mediaPlayer != null && !isPlaying) {
+            if (player != null && !isPlaying && sameSong) {
                 // Resume if paused
-                mediaPlayer.play();
+                player.play();
                 isPlaying = true;
                 lblCurrentSong.setText("▶ " + selectedSong.getName());
                 return;
             }
             
-            // Create new MediaPlayer
+            // Open the track with the configured backend
+            final MusicItem song = selectedSong;
             try {
-                File musicFile = new File(selectedSong.getPath());
-                Media media = new Media(musicFile.toURI().toString());
+                MediaOpenEvent openEvent = FlightEvents.active() ? new MediaOpenEvent() : null;
+                if (openEvent != null) openEvent.begin();
                 
                 // Dispose old player if exists
-                if (mediaPlayer != null) {
-                    mediaPlayer.dispose();
+                if (player != null) {
+                    endHistory(false);
+                    player.dispose();
+                    player = null;
                 }
                 
-                mediaPlayer = new MediaPlayer(media);
+                final long openNanos = System.nanoTime();
+                final MediaReadyEvent readyEvent = FlightEvents.active() ? new MediaReadyEvent() : null;
+                if (readyEvent != null) readyEvent.begin();
+                Path file = Path.of(song.getPath());
+                if (prefetcher != null) {
+                    file = prefetcher.resolve(file);
+                }
+                player = Players.open(file, new Player.Listener() {
+                    @Override
+                    public void onReady(long durationMillis) {
+                        OPEN_TO_READY.recordSince(openNanos);
+                        if (readyEvent != null && readyEvent.shouldCommit()) {
+                            readyEvent.path = song.getPath();
+                            readyEvent.mediaDuration = durationMillis;
+                            readyEvent.commit();
+                        }
+                        updateTimeLabel(Duration.ZERO, Duration.millis(Math.max(0, durationMillis)));
+                    }
+                    
+                    @Override
+                    public void onPlaying() {
+                        if (switchStartNanos != 0) {
+                            TRACK_SWITCH_GAP.recordSince(switchStartNanos);
+                            switchStartNanos = 0;
+                        }
+                        if (FlightEvents.active()) {
+                            MediaPlayEvent playEvent = new MediaPlayEvent();
+                            if (playEvent.isEnabled()) {
+                                playEvent.path = song.getPath();
+                                playEvent.commit();
+                            }
+                        }
+                        isPlaying = true;
+                        lblCurrentSong.setText("▶ " + selectedSong.getName());
+                        // Resuming after a pause continues the same play
+                        if (historySong == null) beginHistory(song);
+                        if (analyzer != null) analyzer.setPlaybackActive(true);
+                    }
+                    
+                    @Override
+                    public void onPaused() {
+                        isPlaying = false;
+                        if (analyzer != null) analyzer.setPlaybackActive(false);
+                        lblCurrentSong.setText("⏸ " + selectedSong.getName());
+                    }
+                    
+                    @Override
+                    public void onStopped() {
+                        isPlaying = false;
+                        if (analyzer != null) analyzer.setPlaybackActive(false);
+                        lblCurrentSong.setText(selectedSong.getName());
+                        progressBar.setProgress(0);
+                    }
+                    
+                    // Update progress bar and time label
+                    @Override
+                    public void onTime(long positionMillis, long durationMillis) {
+                        if (historySong == song) {
+                            historyPosition = positionMillis;
+                            historyDuration = durationMillis;
+                        }
+                        if (durationMillis > 0) {
+                            progressBar.setProgress((double) positionMillis / durationMillis);
+                            updateTimeLabel(Duration.millis(positionMillis), Duration.millis(durationMillis));
+                        }
+                    }
+                    
+                    @Override
+                    public void onEndOfMedia() {
+                        if (FlightEvents.active()) {
+                            MediaEndEvent endEvent = new MediaEndEvent();
+                            if (endEvent.isEnabled()) {
+                                endEvent.path = song.getPath();
+                                endEvent.mediaDuration = player.getDurationMillis();
+                                endEvent.commit();
+                            }
+                        }
+                        endHistory(true);
+                        if (analyzer != null) analyzer.setPlaybackActive(false);
+                        // Auto play next song
+                        switchStartNanos = System.nanoTime();
+                        handleNext();
+                    }
+                    
+                    @Override
+                    public void onError(String message) {
+                        MEDIA_ERRORS.increment();
+                        switchStartNanos = 0;
+                        commitMediaError(song, message);
+                        endHistory(false);
+                        if (analyzer != null) analyzer.setPlaybackActive(false);
+                        System.err.println("Media error: " + message);
+                        lblCurrentSong.setText("Error: " + selectedSong.getName());
+                    }
+                }, Platform::runLater);
+                playerSong = song;
+                if (openEvent != null && openEvent.shouldCommit()) {
+                    openEvent.path = song.getPath();
+                    openEvent.size = song.getSize();
+                    openEvent.commit();
+                }
                 
                 // Set initial volume from slider
                 if (volumeSlider != null) {
-                    mediaPlayer.setVolume(volumeSlider.getValue());
+                    player.setVolume(volumeSlider.getValue());
                 }
                 
                 // Connect audio visualizer
                 if (audioVisualizer != null) {
-                    audioVisualizer.attachMediaPlayer(mediaPlayer);
+                    audioVisualizer.attach(player);
                 }
                 
-                // Set up event handlers
-                mediaPlayer.setOnReady(() -> {
-                    Duration total = mediaPlayer.getTotalDuration();
-                    updateTimeLabel(Duration.ZERO, total);
-                });
-                
-                mediaPlayer.setOnPlaying(() -> {
-                    isPlaying = true;
-                    lblCurrentSong.setText("▶ " + selectedSong.getName());
-                });
-                
-                mediaPlayer.setOnPaused(() -> {
-                    isPlaying = false;
-                    lblCurrentSong.setText("⏸ " + selectedSong.getName());
-                });
-                
-                mediaPlayer.setOnStopped(() -> {
-                    isPlaying = false;
-                    lblCurrentSong.setText(selectedSong.getName());
-                    progressBar.setProgress(0);
-                });
-                
-                mediaPlayer.setOnEndOfMedia(() -> {
-                    // Auto play next song
-                    handleNext();
-                });
-                
-                mediaPlayer.setOnError(() -> {
-                    System.err.println("Media error: " + mediaPlayer.getError().getMessage());
-                    lblCurrentSong.setText("Error: " + selectedSong.getName());
-                });
-                
-                // Update progress bar and time label
-                mediaPlayer.currentTimeProperty().addListener((_, oldTime, newTime) -> {
-                    if (!mediaPlayer.getStatus().equals(MediaPlayer.Status.UNKNOWN)) {
-                        Duration total = mediaPlayer.getTotalDuration();
-                        if (total != null && total.greaterThan(Duration.ZERO)) {
-                            progressBar.setProgress(newTime.toMillis() / total.toMillis());
-                            updateTimeLabel(newTime, total);
-                        }
-                    }
-                });
-                
                 // Start playback
-                mediaPlayer.play();
+                player.play();
                 isPlaying = true;
+                TRACKS_STARTED.increment();
                 System.out.println("Playing: " + selectedSong.getName());
+                schedulePrefetch();
                 
             } catch (Exception e) {
+                MEDIA_ERRORS.increment();
+                commitMediaError(song, e.getMessage());
                 System.err.println("Error playing file: " + e.getMessage());
                 e.printStackTrace();
                 lblCurrentSong.setText("Error al reproducir: " + selectedSong.getName());
@@ -305,9 +669,75 @@ public class Controller implements Initializable {
         }
     }
 
+    // The tracks handleNext() will play after the selected one
+    private void schedulePrefetch() {
+        if (!queue.isEmpty()) {
+            if (prefetcher == null) return;
+            List<Path> next = new ArrayList<>();
+            for (String path : queue) {
+                if (next.size() == PREFETCH_TRACKS) break;
+                next.add(Path.of(path));
+            }
+            prefetcher.schedule(next);
+            return;
+        }
+        if (radioOn() && selectedSong != null) {
+            // The radio chooses now, so the track read ahead is the one that will play
+            radioFrom = selectedSong;
+            radioPick = radio.next(selectedSong.getPath());
+            if (prefetcher != null && radioPick != null) prefetcher.schedule(List.of(Path.of(radioPick)));
+            return;
+        }
+        if (prefetcher == null) return;
+        int index = musicTable.getSelectionModel().getSelectedIndex();
+        if (index < 0) return;
+        List<Path> next = new ArrayList<>();
+        for (int i = index + 1; i < data.size() && next.size() < PREFETCH_TRACKS; i++) {
+            next.add(Path.of(data.get(i).getPath()));
+        }
+        prefetcher.schedule(next);
+    }
+
+    private void beginHistory(MusicItem song) {
+        historySong = song;
+        historyStart = System.currentTimeMillis();
+        historyPosition = 0;
+        historyDuration = -1;
+    }
+
+    /**
+     * Log the play being timed, if any.
+     *
+     * @param reachedEnd the track played to its end
+     */
+    private void endHistory(boolean reachedEnd) {
+        MusicItem song = historySong;
+        if (song == null) return;
+        historySong = null;
+        long end = System.currentTimeMillis();
+        long id = TrackId.of(song.getPath());
+        boolean skipped = !reachedEnd && PlayEvent.isSkip(historyPosition, historyDuration);
+        if (playHistory != null) {
+            playHistory.record(new PlayEvent(id, historyStart, end, skipped));
+        }
+        if (smartPlaylists != null) {
+            smartPlaylists.played(id, end);
+        }
+    }
+
+    private static void commitMediaError(MusicItem song, String message) {
+        if (!FlightEvents.active()) return;
+        MediaErrorEvent errorEvent = new MediaErrorEvent();
+        if (errorEvent.isEnabled()) {
+            errorEvent.path = song.getPath();
+            errorEvent.message = message;
+            errorEvent.commit();
+        }
+    }
+
     private void handlePause() {
-        if (mediaPlayer != null && isPlaying) {
-            mediaPlayer.pause();
+        if (player != null && isPlaying) {
+            player.pause();
             isPlaying = false;
             if (audioVisualizer != null) {
                 audioVisualizer.setPlaying(false);
@@ -317,8 +747,9 @@ public class Controller implements Initializable {
     }
 
     private void handleStop() {
-        if (mediaPlayer != null) {
-            mediaPlayer.stop();
+        if (player != null) {
+            endHistory(false);
+            player.stop();
             isPlaying = false;
             System.out.println("Stopped: " + selectedSong.getName());
         }
@@ -334,6 +765,29 @@ public class Controller implements Initializable {
     }
 
     private void handleNext() {
+        // Queued tracks first; ones that left the table are skipped
+        while (!queue.isEmpty()) {
+            int index = indexOf(queue.pollFirst());
+            if (index >= 0) {
+                musicTable.getSelectionModel().select(index);
+                musicTable.scrollTo(index);
+                System.out.println("Queued: " + data.get(index).getName());
+                return;
+            }
+        }
+        if (radioOn() && selectedSong != null) {
+            // Normally chosen when the song started, see schedulePrefetch()
+            String pick = radioFrom == selectedSong && radioPick != null
+                    ? radioPick : radio.next(selectedSong.getPath());
+            radioPick = null;
+            int index = pick != null ? indexOf(pick) : -1;
+            if (index >= 0) {
+                musicTable.getSelectionModel().select(index);
+                musicTable.scrollTo(index);
+                System.out.println("Radio: " + data.get(index).getName());
+                return;
+            }
+        }
         int currentIndex = musicTable.getSelectionModel().getSelectedIndex();
         if (currentIndex < data.size() - 1) {
             musicTable.getSelectionModel().select(currentIndex + 1);
@@ -342,6 +796,21 @@ public class Controller implements Initializable {
         }
     }
 
+    private boolean radioOn() {
+        return radio != null && btnRadio != null && btnRadio.isSelected();
+    }
+
+    // The row of a track the queue or the radio names, or -1 when it left the table
+    private int indexOf(String path) {
+        if (rowIndex == null) {
+            List<Integer> rows = new ArrayList<>(data.size());
+            for (int i = 0; i < data.size(); i++) rows.add(i);
+            rowIndex = new LibraryIndex<>(rows, row -> data.get(row).getPath());
+        }
+        Integer row = rowIndex.get(TrackId.of(path));
+        return row != null && data.get(row).getPath().equals(path) ? row : -1;
+    }
+
     private void updateTimeLabel(Duration current, Duration total) {
         if (current != null && total != null && lblTime != null) {
             String currentStr = formatDuration(current);
@@ -352,37 +821,319 @@ public class Controller implements Initializable {
 
     private String formatDuration(Duration duration) {
         if (duration == null) return "00:00";
-        int seconds = (int) duration.toSeconds();
+        return formatMillis((long) duration.toMillis());
+    }
+
+    static String formatMillis(long millis) {
+        int seconds = (int) (millis / 1000);
         int minutes = seconds / 60;
         seconds = seconds % 60;
         return String.format("%02d:%02d", minutes, seconds);
     }
 
+    /**
+     * Read tags and durations in the background for the visible rows plus a prefetch window.
+     * The viewport is checked after every layout pulse, so scrolling never waits on disk.
+     */
+    private void setupLazyMetadata() {
+        artworkService = ArtworkService.createDefault();
+        if (imgCover != null) {
+            defaultCover = imgCover.getImage();
+        }
+        metadataLoader = new RowMetadataLoader(METADATA_THREADS, METADATA_QUEUE_CAPACITY,
+                METADATA_PREFETCH_ROWS, Platform::runLater, artworkService);
+        data.addListener((ListChangeListener<MusicItem>) _ -> tableItemsChanged = true);
+        tableItemsChanged = true;
+
+        Scene scene = musicTable.getScene();
+        if (scene != null) {
+            scene.addPostLayoutPulseListener(this::reportTableViewport);
+        }
+    }
+
+    /**
+     * Show the album cover of a song in the center panel, or the default image
+     */
+    private void showCover(MusicItem song) {
+        if (imgCover == null || artworkService == null) return;
+        if (song == null) {
+            imgCover.setImage(defaultCover);
+            return;
+        }
+        TrackTags tags = song.tagsRead ? song.getTags() : null;
+        artworkService.loadAsync(Path.of(song.getPath()), tags, ArtworkService.COVER_SIZE, image -> {
+            // Ignore covers that arrive after the selection moved on
+            if (selectedSong == song) {
+                imgCover.setImage(image != null ? image : defaultCover);
+            }
+        });
+    }
+
+    private void selectionChanged(MusicItem newSelection) {
+        if (newSelection != null) {
+            boolean wasPlaying = isPlaying;
+            selectedSong = newSelection;
+            lblCurrentSong.setText(newSelection.getName());
+            showCover(newSelection);
+            enablePlaybackControls(true);
+
+            // Auto-play new song if music was already playing
+            if (wasPlaying) {
+                if (switchStartNanos == 0) {
+                    switchStartNanos = System.nanoTime();
+                }
+                handlePlay();
+            }
+        } else {
+            selectedSong = null;
+            lblCurrentSong.setText("Selecciona una canción");
+            showCover(null);
+            enablePlaybackControls(false);
+        }
+    }
+
+    /**
+     * Sort the table through the TrackSorter instead of comparing cell values.
+     * Clicking the artist column orders by artist, then album, then track number.
+     */
+    private void setupSorting() {
+        columnSortKeys.put(colName, List.of(SORT_NAME));
+        columnSortKeys.put(colPath, List.of(SORT_PATH));
+        columnSortKeys.put(colSize, List.of(SORT_SIZE));
+        if (colArtist != null) {
+            columnSortKeys.put(colArtist, List.of(SORT_ARTIST, SORT_ALBUM, SORT_TRACK));
+        }
+        if (colDuration != null) {
+            columnSortKeys.put(colDuration, List.of(SORT_DURATION));
+        }
+        musicTable.setSortPolicy(_ -> {
+            applySort();
+            return true;
+        });
+    }
+
+    /**
+     * Reorder the rows for the table's current sort order (library order when unsorted),
+     * keeping the selection on the same song.
+     *
+     * Tag columns rank on the tags read so far, so sorting by one also starts reading the
+     * tags of the whole library, and the rows are sorted again once they are all read.
+     */
+    private void applySort() {
+        if (resorting) return;
+        if (sortedByTags() && !allTagsRead) readAllTags();
+        if (metadataLoader != null && metadataLoader.generation() != sortedMetadataGeneration) {
+            sortedMetadataGeneration = metadataLoader.generation();
+            TAG_SORT_KEYS.forEach(trackSorter::invalidate);
+        }
+
+        List<Order<MusicItem>> orders = new ArrayList<>();
+        for (TableColumn<MusicItem, ?> column : musicTable.getSortOrder()) {
+            List<Key<MusicItem>> keys = columnSortKeys.get(column);
+            if (keys == null) continue;
+            boolean descending = column.getSortType() == SortType.DESCENDING;
+            for (int i = 0; i < keys.size(); i++) {
+                // The direction applies to the clicked key; tie breakers stay ascending
+                orders.add(new Order<>(keys.get(i), i == 0 && descending));
+            }
+        }
+
+        List<MusicItem> sorted = trackSorter.sorted(orders);
+        MusicItem keep = selectedSong;
+        resorting = true;
+        try {
+            data.setAll(sorted);
+            if (keep != null) {
+                musicTable.getSelectionModel().select(keep);
+            }
+        } finally {
+            resorting = false;
+        }
+        MusicItem now = musicTable.getSelectionModel().getSelectedItem();
+        if (now != keep) {
+            // The selected song is gone (new scan)
+            selectionChanged(now);
+        }
+    }
+
+    private boolean sortedByTags() {
+        for (TableColumn<MusicItem, ?> column : musicTable.getSortOrder()) {
+            List<Key<MusicItem>> keys = columnSortKeys.get(column);
+            if (keys != null && !Collections.disjoint(keys, TAG_SORT_KEYS)) return true;
+        }
+        return false;
+    }
+
+    private void reportTableViewport() {
+        if (tableFlow == null || tableFlow.getScene() == null) {
+            // The flow only exists once the table skin is created; it is looked up once
+            tableFlow = (VirtualFlow<?>) musicTable.lookup(".virtual-flow");
+            if (tableFlow == null) return;
+        }
+        IndexedCell<?> first = tableFlow.getFirstVisibleCell();
+        IndexedCell<?> last = tableFlow.getLastVisibleCell();
+        int firstIndex = first != null ? first.getIndex() : -1;
+        int lastIndex = last != null ? last.getIndex() : -1;
+        metadataLoader.viewportChanged(musicTable.getItems(), firstIndex, lastIndex, tableItemsChanged);
+        tableItemsChanged = false;
+    }
+
+    private void restoreLibraryAsync() {
+        Task<List<MusicItem>> task = new Task<List<MusicItem>>() {
+            @Override
+            protected List<MusicItem> call() throws Exception {
+                List<LibrarySnapshot.Entry> entries = LibrarySnapshot.load(LibrarySnapshot.defaultFile());
+                List<MusicItem> items = new ArrayList<>(entries.size());
+                for (LibrarySnapshot.Entry e : entries) {
+                    items.add(new MusicItem(Path.of(e.path()).getFileName().toString(), e.path(), e.size()));
+                }
+                return items;
+            }
+        };
+
+        task.setOnSucceeded(_ -> {
+            List<MusicItem> items = task.getValue();
+            // A scan that already finished wins over the snapshot
+            if (!items.isEmpty() && !libraryPublished) {
+                publishLibrary(items);
+            }
+            loadMusicAsync();
+        });
+
+        task.setOnFailed(_ -> {
+            task.getException().printStackTrace();
+            loadMusicAsync();
+        });
+
+        Thread th = new Thread(task, "library-restore");
+        th.setDaemon(true);
+        th.start();
+    }
+
+    /**
+     * Replace the table contents with a new library, keeping the selected and playing
+     * song when it is still part of it.
+     */
+    private void publishLibrary(List<MusicItem> items) {
+        libraryPublished = true;
+        if (!openedItems.isEmpty()) {
+            // Opened files stay in the table until the player closes
+            Map<String, MusicItem> byPath = new HashMap<>();
+            for (MusicItem item : items) byPath.put(item.getPath(), item);
+            List<MusicItem> merged = new ArrayList<>(items);
+            openedItems.removeIf(item -> byPath.containsKey(item.getPath()));
+            merged.addAll(openedItems);
+            items = merged;
+        }
+        MusicItem keep = selectedSong;
+        if (keep != null) {
+            for (MusicItem item : items) {
+                if (item.getPath().equals(keep.getPath())) {
+                    if (playerSong == keep) playerSong = item;
+                    selectedSong = item;
+                    break;
+                }
+            }
+        }
+        libraryItems = items;
+        fillRequested = false;
+        allTagsRead = false;
+        trackSorter.setItems(items);
+        applySort();
+        Startup.libraryShown();
+        if (libraryServer != null) {
+            // Names and sizes now; tags once the fill has read them
+            libraryServer.publish(servedTracks(items));
+            readAllTags();
+        }
+        if (smartPlaylists != null) {
+            smartPlaylists.sync(smartTracks(items));
+            if (smartPlaylists.needsTags()) readAllTags();
+        }
+        if (analyzer != null) {
+            List<Path> paths = new ArrayList<>(items.size());
+            for (MusicItem item : items) paths.add(Path.of(item.getPath()));
+            analyzer.submit(paths);
+        }
+        if (radio != null) {
+            List<String> paths = new ArrayList<>(items.size());
+            for (MusicItem item : items) paths.add(item.getPath());
+            radio.sync(paths);
+        }
+    }
+
+    private List<LibraryServer.Track> servedTracks(List<MusicItem> items) {
+        List<LibraryServer.Track> tracks = new ArrayList<>(items.size());
+        for (MusicItem item : items) {
+            TrackTags tags = item.getTags();
+            long duration = tags.durationMillis();
+            if (duration == 0 && analyzer != null) duration = analyzer.durationMillis(item.getPath());
+            tracks.add(new LibraryServer.Track(TrackId.of(item.getPath()), Path.of(item.getPath()), item.getName(),
+                    tags.title(), tags.artist(), tags.album(), duration, item.getSize()));
+        }
+        return tracks;
+    }
+
+    /**
+     * Read the tags of every track of the published library in the background, for the
+     * consumers that need them all; the table itself only reads the rows it shows.
+     */
+    private void readAllTags() {
+        if (metadataLoader == null || fillRequested) return;
+        fillRequested = true;
+        metadataLoader.fill(libraryItems, this::allTagsRead);
+    }
+
+    private void allTagsRead() {
+        allTagsRead = true;
+        if (sortedByTags()) applySort();
+        if (libraryServer != null) {
+            libraryServer.publish(servedTracks(libraryItems));
+        }
+    }
+
+    private static void saveSnapshotAsync(List<MusicItem> items) {
+        List<LibrarySnapshot.Entry> entries = new ArrayList<>(items.size());
+        for (MusicItem item : items) {
+            entries.add(new LibrarySnapshot.Entry(item.getPath(), item.getSize()));
+        }
+        Thread th = new Thread(() -> LibrarySnapshot.save(LibrarySnapshot.defaultFile(), entries), "library-snapshot");
+        th.setDaemon(false); // let the write finish if the window closes meanwhile
+        th.start();
+    }
+
     private void loadMusicAsync() {
+        final long[] scanNanos = {0};
         Task<List<MusicItem>> task = new Task<List<MusicItem>>() {
             @Override
             protected List<MusicItem> call() throws Exception {
+                long start = System.nanoTime();
                 List<Path> paths = MusicFinder.findMusicInCommonDirs();
-                return paths.stream().map(p -> {
-                    long size = 0L;
-                    try {
-                        size = Files.size(p);
-                    } catch (IOException ignored) {
-                    }
-                    return new MusicItem(p.getFileName().toString(), p.toString(), size);
-                }).collect(Collectors.toList());
+                List<MusicItem> items = buildMusicItems(paths);
+                scanNanos[0] = System.nanoTime() - start;
+                return items;
             }
         };
 
         task.setOnSucceeded(_ -> {
+            LibraryPublishEvent publishEvent = FlightEvents.active() ? new LibraryPublishEvent() : null;
+            if (publishEvent != null) publishEvent.begin();
             List<MusicItem> items = task.getValue();
-            data.clear();
-            data.addAll(items);
+            publishLibrary(items);
+            if (publishEvent != null && publishEvent.shouldCommit()) {
+                publishEvent.tracks = items.size();
+                publishEvent.totalBytes = items.stream().mapToLong(MusicItem::getSize).sum();
+                publishEvent.scanDuration = scanNanos[0];
+                publishEvent.commit();
+            }
+            saveSnapshotAsync(items);
+            Startup.scanFinished();
         });
 
         task.setOnFailed(_ -> {
             Throwable ex = task.getException();
             ex.printStackTrace();
+            Startup.scanFinished();
         });
 
         Thread th = new Thread(task, "music-finder");
@@ -390,6 +1141,20 @@ public class Controller implements Initializable {
         th.start();
     }
 
+    /**
+     * Build the table rows for the given files, reading each file size from disk.
+     */
+    public static List<MusicItem> buildMusicItems(List<Path> paths) {
+        return paths.stream().map(p -> {
+            long size = 0L;
+            try {
+                size = Files.size(p);
+            } catch (IOException ignored) {
+            }
+            return new MusicItem(p.getFileName().toString(), p.toString(), size);
+        }).collect(Collectors.toList());
+    }
+
     /**
      * Set up responsive behavior based on window size
      */
@@ -416,34 +1181,49 @@ public class Controller implements Initializable {
     }
     
     /**
-     * Update CSS classes based on window dimensions
+     * Update CSS classes based on window dimensions. Style classes are only touched when a
+     * breakpoint is crossed, since every change re-applies CSS to the whole scene.
      */
     private void updateResponsiveStyles(double width, double height) {
         if (root == null) return;
         
-        // Remove all size-mode classes
-        root.getStyleClass().removeAll("compact-mode", "standard-mode", "comfortable-mode");
-        root.getStyleClass().removeAll("compact-height", "standard-height", "comfortable-height");
-        
-        // Apply width-based classes
-        if (width < 800) {
-            root.getStyleClass().add("compact-mode");
-        } else if (width < 1100) {
-            root.getStyleClass().add("standard-mode");
-        } else {
-            root.getStyleClass().add("comfortable-mode");
+        // Width breakpoints: 800, 1100
+        int newWidthMode = width < 800 ? 0 : width < 1100 ? 1 : 2;
+        if (newWidthMode != widthMode) {
+            switchStyleClass(WIDTH_MODES, widthMode, newWidthMode);
+            widthMode = newWidthMode;
         }
         
-        // Apply height-based classes
-        if (height < 600) {
-            root.getStyleClass().add("compact-height");
-        } else if (height < 750) {
-            root.getStyleClass().add("standard-height");
+        // Height breakpoints: 600, 750
+        int newHeightMode = height < 600 ? 0 : height < 750 ? 1 : 2;
+        if (newHeightMode != heightMode) {
+            switchStyleClass(HEIGHT_MODES, heightMode, newHeightMode);
+            heightMode = newHeightMode;
+        }
+    }
+
+    private void switchStyleClass(String[] modes, int oldMode, int newMode) {
+        if (oldMode < 0) {
+            root.getStyleClass().removeAll(modes);
+            root.getStyleClass().add(modes[newMode]);
         } else {
-            root.getStyleClass().add("comfortable-height");
+            // Single replace: one change notification, one CSS pass
+            int index = root.getStyleClass().indexOf(modes[oldMode]);
+            if (index >= 0) {
+                root.getStyleClass().set(index, modes[newMode]);
+            } else {
+                root.getStyleClass().add(modes[newMode]);
+            }
         }
     }
 
+    private StageResizer stageResizer(Stage stage) {
+        if (stageResizer == null) {
+            stageResizer = new StageResizer(stage);
+        }
+        return stageResizer;
+    }
+
     /**
      * Set up custom window controls for undecorated window
      */
@@ -458,12 +1238,18 @@ public class Controller implements Initializable {
         titleBar.setOnMousePressed(event -> {
             xOffset[0] = event.getSceneX();
             yOffset[0] = event.getSceneY();
+            stageResizer((Stage) titleBar.getScene().getWindow()).begin();
         });
         
+        // Moves are applied once per pulse, however many drag events arrive
         titleBar.setOnMouseDragged(event -> {
             Stage stage = (Stage) titleBar.getScene().getWindow();
-            stage.setX(event.getScreenX() - xOffset[0]);
-            stage.setY(event.getScreenY() - yOffset[0]);
+            stageResizer(stage).request(event.getScreenX() - xOffset[0], event.getScreenY() - yOffset[0],
+                    stage.getWidth(), stage.getHeight());
+        });
+        
+        titleBar.setOnMouseReleased(event -> {
+            stageResizer((Stage) titleBar.getScene().getWindow()).end();
         });
         
         // Minimize button
@@ -490,27 +1276,56 @@ public class Controller implements Initializable {
         
         // Close button
         if (btnClose != null) {
-            btnClose.setOnAction(_ -> {
-                // Clean up resources
-                if (mediaPlayer != null) {
-                    mediaPlayer.dispose();
-                }
-                if (audioVisualizer != null) {
-                    audioVisualizer.dispose();
-                }
-                Stage stage = (Stage) btnClose.getScene().getWindow();
-                stage.close();
-                Platform.exit();
-            });
+            // Main.stop() releases the services, whichever way the application exits
+            btnClose.setOnAction(_ -> Platform.exit());
         }
     }
     
+    /**
+     * Release the player and the background services. Called once from Main.stop(), on
+     * every way out: the close button, the window manager, and the training run's exit.
+     */
+    public void shutdown() {
+        endHistory(false);
+        if (player != null) {
+            player.dispose();
+        }
+        if (metadataLoader != null) {
+            metadataLoader.shutdown();
+        }
+        if (artworkService != null) {
+            artworkService.shutdown();
+        }
+        if (prefetcher != null) {
+            prefetcher.shutdown();
+        }
+        if (libraryServer != null) {
+            libraryServer.shutdown();
+        }
+        if (smartPlaylists != null) {
+            smartPlaylists.shutdown();
+        }
+        if (playHistory != null) {
+            playHistory.shutdown();
+        }
+        if (analyzer != null) {
+            analyzer.shutdown();
+        }
+        if (radio != null) {
+            radio.shutdown();
+        }
+        if (audioVisualizer != null) {
+            audioVisualizer.dispose();
+        }
+    }
+
     private void setupWindowResize() {
         if (root == null) return;
         
         final double RESIZE_BORDER = 8.0;
         final double[] xOffset = {0};
         final double[] yOffset = {0};
+        final double[] startBounds = new double[4]; // stage x, y, width, height when the drag started
         final boolean[] isResizing = {false};
         final String[] resizeDirection = {""};
         
@@ -586,71 +1401,160 @@ public class Controller implements Initializable {
             }
             
             if (isResizing[0]) {
+                Stage stage = (Stage) root.getScene().getWindow();
                 xOffset[0] = event.getScreenX();
                 yOffset[0] = event.getScreenY();
+                startBounds[0] = stage.getX();
+                startBounds[1] = stage.getY();
+                startBounds[2] = stage.getWidth();
+                startBounds[3] = stage.getHeight();
+                stageResizer(stage).begin();
             }
         });
         
+        // Geometry is computed from the drag start, so coalesced events lose nothing,
+        // and applied at most once per pulse
         root.setOnMouseDragged(event -> {
             if (!isResizing[0]) return;
             
             Stage stage = (Stage) root.getScene().getWindow();
             double deltaX = event.getScreenX() - xOffset[0];
             double deltaY = event.getScreenY() - yOffset[0];
+            double x = startBounds[0];
+            double y = startBounds[1];
+            double width = startBounds[2];
+            double height = startBounds[3];
             
             String direction = resizeDirection[0];
             
             if (direction.contains("E")) {
-                stage.setWidth(Math.max(stage.getMinWidth(), stage.getWidth() + deltaX));
+                width = Math.max(stage.getMinWidth(), startBounds[2] + deltaX);
             }
             if (direction.contains("W")) {
-                double newWidth = Math.max(stage.getMinWidth(), stage.getWidth() - deltaX);
-                if (newWidth >= stage.getMinWidth()) {
-                    stage.setX(stage.getX() + deltaX);
-                    stage.setWidth(newWidth);
-                }
+                width = Math.max(stage.getMinWidth(), startBounds[2] - deltaX);
+                x = startBounds[0] + startBounds[2] - width;
             }
             if (direction.contains("S")) {
-                stage.setHeight(Math.max(stage.getMinHeight(), stage.getHeight() + deltaY));
+                height = Math.max(stage.getMinHeight(), startBounds[3] + deltaY);
             }
             if (direction.contains("N")) {
-                double newHeight = Math.max(stage.getMinHeight(), stage.getHeight() - deltaY);
-                if (newHeight >= stage.getMinHeight()) {
-                    stage.setY(stage.getY() + deltaY);
-                    stage.setHeight(newHeight);
-                }
+                height = Math.max(stage.getMinHeight(), startBounds[3] - deltaY);
+                y = startBounds[1] + startBounds[3] - height;
             }
             
-            xOffset[0] = event.getScreenX();
-            yOffset[0] = event.getScreenY();
+            stageResizer(stage).request(x, y, width, height);
         });
         
         root.setOnMouseReleased(event -> {
+            if (isResizing[0]) {
+                stageResizer((Stage) root.getScene().getWindow()).end();
+            }
             isResizing[0] = false;
             resizeDirection[0] = "";
             root.setCursor(Cursor.DEFAULT);
         });
     }
 
-    // Simple model for table rows
+    // Table cell showing an album thumbnail; the ImageView is reused as the cell scrolls
+    private static final class ArtworkCell extends TableCell<MusicItem, Image> {
+        private final ImageView view = new ImageView();
+
+        ArtworkCell() {
+            view.setFitWidth(32);
+            view.setFitHeight(32);
+            view.setPreserveRatio(true);
+            view.setSmooth(true);
+        }
+
+        @Override
+        protected void updateItem(Image image, boolean empty) {
+            super.updateItem(image, empty);
+            view.setImage(empty ? null : image);
+            setGraphic(empty || image == null ? null : view);
+        }
+    }
+
+    // Simple model for table rows. Properties are only created when a cell asks for them,
+    // so rows that are never displayed stay three plain fields.
     public static class MusicItem {
-        private final StringProperty name = new SimpleStringProperty();
-        private final StringProperty path = new SimpleStringProperty();
-        private final LongProperty size = new SimpleLongProperty();
+        static final int METADATA_NONE = 0;
+        static final int METADATA_QUEUED = 1;
+        static final int METADATA_LOADED = 2;
+
+        private final String name;
+        private final String path;
+        private final long size;
+        private StringProperty nameProperty;
+        private StringProperty pathProperty;
+        private LongProperty sizeProperty;
+
+        // Loaded on demand by RowMetadataLoader, FX thread only
+        int metadataState = METADATA_NONE;
+        boolean tagsRead = false; // also set by a fill, which leaves metadataState alone
+        private TrackTags tags = TrackTags.EMPTY;
+        private StringProperty artist;
+        private StringProperty durationText;
+        private ObjectProperty<Image> artwork;
+        private Image artworkImage;
 
         public MusicItem(String name, String path, long size) {
-            this.name.set(name);
-            this.path.set(path);
-            this.size.set(size);
+            this.name = name;
+            this.path = path;
+            this.size = size;
+        }
+
+        public String getName() { return name; }
+        public StringProperty nameProperty() {
+            if (nameProperty == null) nameProperty = new SimpleStringProperty(this, "name", name);
+            return nameProperty;
+        }
+
+        public String getPath() { return path; }
+        public StringProperty pathProperty() {
+            if (pathProperty == null) pathProperty = new SimpleStringProperty(this, "path", path);
+            return pathProperty;
+        }
+
+        public long getSize() { return size; }
+        public LongProperty sizeProperty() {
+            if (sizeProperty == null) sizeProperty = new SimpleLongProperty(this, "size", size);
+            return sizeProperty;
+        }
+
+        /** Tags read so far; {@link TrackTags#EMPTY} until the row has been shown or filled */
+        public TrackTags getTags() { return tags; }
+
+        public StringProperty artistProperty() {
+            if (artist == null) artist = new SimpleStringProperty(this, "artist", tags.artist());
+            return artist;
         }
 
-        public String getName() { return name.get(); }
-        public StringProperty nameProperty() { return name; }
+        public StringProperty durationTextProperty() {
+            if (durationText == null) durationText = new SimpleStringProperty(this, "durationText", durationText(tags));
+            return durationText;
+        }
 
-        public String getPath() { return path.get(); }
-        public StringProperty pathProperty() { return path; }
+        public ObjectProperty<Image> artworkProperty() {
+            if (artwork == null) artwork = new SimpleObjectProperty<>(this, "artwork", artworkImage);
+            return artwork;
+        }
 
-        public long getSize() { return size.get(); }
-        public LongProperty sizeProperty() { return size; }
+        void applyMetadata(TrackTags loaded, Image thumbnail) {
+            applyTags(loaded);
+            artworkImage = thumbnail;
+            metadataState = METADATA_LOADED;
+            if (artwork != null) artwork.set(thumbnail);
+        }
+
+        void applyTags(TrackTags loaded) {
+            tags = loaded;
+            tagsRead = true;
+            if (artist != null) artist.set(loaded.artist());
+            if (durationText != null) durationText.set(durationText(loaded));
+        }
+
+        private static String durationText(TrackTags t) {
+            return t.durationMillis() > 0 ? formatMillis(t.durationMillis()) : "";
+        }
     }
-}
\ No newline at end of file
+}
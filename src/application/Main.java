@@ -1,6 +1,7 @@
 package application;
 	
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
@@ -9,12 +10,21 @@ import javafx.scene.image.Image;
 
 import java.net.URL;
 
+import application.instance.SingleInstance;
+import application.metrics.MetricsReporter;
+
 
 public class Main extends Application {
+	// Set by main(); null when the application is launched some other way
+	private static SingleInstance instance = null;
+	private Controller controller = null;
+	
 	@Override
 	public void start(Stage primaryStage) {
 		try {
-			Parent root = FXMLLoader.load(getClass().getResource("Main.fxml"));
+			FXMLLoader loader = new FXMLLoader(getClass().getResource("Main.fxml"));
+			Parent root = loader.load();
+			controller = loader.getController();
 			Scene scene = new Scene(root);
 			
 			// Add CSS stylesheet
@@ -50,12 +60,50 @@ public class Main extends Application {
 			primaryStage.setScene(scene);
 			primaryStage.setTitle("Reproductor de Música - Glassmorphism");
 			primaryStage.show();
+			
+			// JMX registration and the snapshot file wait until the window is on screen
+			Startup.afterFirstPaint(scene, () -> {
+				Startup.firstPaint();
+				MetricsReporter.start();
+			});
+			
+			// Files from the command line and from later launches
+			if (instance != null) {
+				instance.setHandler(request -> Platform.runLater(() -> {
+					primaryStage.setIconified(false);
+					primaryStage.toFront();
+					if (controller != null) {
+						controller.openFiles(request.open(), request.enqueue());
+					}
+				}));
+			}
 		} catch(Exception e) {
 			e.printStackTrace();
 		}
 	}
 	
+	@Override
+	public void stop() {
+		// Every exit path ends here; the history writer is not a daemon and would keep the JVM alive
+		if (controller != null) {
+			controller.shutdown();
+		}
+		// Leave a final snapshot behind for this session
+		MetricsReporter.stop();
+		if (instance != null) {
+			instance.close();
+		}
+	}
+	
 	public static void main(String[] args) {
+		// When a player is already running it gets the files and this launch ends here;
+		// the AppCDS training run always starts its own
+		if (!Startup.TRAINING_RUN) {
+			instance = SingleInstance.claim(SingleInstance.Request.parse(args));
+			if (instance == null) {
+				return;
+			}
+		}
 		launch(args);
 	}
 }
\ No newline at end of file
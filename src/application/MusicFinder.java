@@ -1,18 +1,40 @@
 package application;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.PathMatcher;
 import java.nio.file.Paths;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.file.FileSystems;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Deque;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import application.cli.LibraryCli;
+import application.jfr.DirectoryVisitEvent;
+import application.jfr.FlightEvents;
+import application.jfr.ScanCompletedEvent;
+import application.metrics.Counter;
+import application.metrics.Gauge;
+import application.metrics.LatencyHistogram;
+import application.metrics.Metrics;
 
 /**
  * Utility to find music files on the user's PC.
@@ -25,6 +47,17 @@ import java.util.Set;
  */
 public class MusicFinder {
 
+    private static final Counter DIRECTORIES_VISITED = Metrics.counter("scan.directories");
+    private static final Counter FILES_VISITED = Metrics.counter("scan.files");
+    private static final Counter FILES_MATCHED = Metrics.counter("scan.matches");
+    private static final LatencyHistogram TIME_TO_FIRST_RESULT = Metrics.histogram("scan.time_to_first_result");
+    private static final LatencyHistogram SCAN_DURATION = Metrics.histogram("scan.duration");
+    private static final Gauge FILES_PER_SECOND = Metrics.gauge("scan.files_per_second");
+
+    /** Limits used per start folder by findMusicInCommonDirs */
+    public static final int COMMON_DIRS_MAX_DEPTH = 6;
+    public static final int COMMON_DIRS_MAX_FILES = 200;
+
     private static final Set<String> DEFAULT_EXTENSIONS = new HashSet<String>(Arrays.asList(
             "mp3", "wav", "m4a", "flac", "aac", "ogg", "wma", "alac"
     ));
@@ -34,6 +67,24 @@ public class MusicFinder {
      * Returns a list of matched Paths. This uses a default maxDepth of 10 and maxFiles of 1000.
      */
     public static List<Path> findMusicInCommonDirs() {
+        Set<String> ext = DEFAULT_EXTENSIONS;
+        List<Path> result = new ArrayList<>();
+        for (Path start : commonStartDirs()) {
+            try {
+                result.addAll(findMusic(start, ext, COMMON_DIRS_MAX_DEPTH, COMMON_DIRS_MAX_FILES)); // limit depth and files for roots
+            } catch (Exception e) {
+                // keep going with other starts
+                System.err.println("Error scanning " + start + ": " + e.getMessage());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The existing folders searched by {@link #findMusicInCommonDirs()}: the user's
+     * Music, Downloads, Desktop and Documents folders followed by every root drive.
+     */
+    public static List<Path> commonStartDirs() {
         String userHome = System.getProperty("user.home");
         List<Path> starts = new ArrayList<>();
         if (userHome != null) {
@@ -50,20 +101,34 @@ public class MusicFinder {
         } catch (Exception e) {
             // ignore
         }
+        starts.removeIf(start -> start == null || !Files.exists(start));
+        return starts;
+    }
 
-        Set<String> ext = DEFAULT_EXTENSIONS;
-        List<Path> result = new ArrayList<>();
-        for (Path start : starts) {
-            if (start == null) continue;
-            if (!Files.exists(start)) continue;
-            try {
-                result.addAll(findMusic(start, ext, 6, 200)); // limit depth and files for roots
-            } catch (Exception e) {
-                // keep going with other starts
-                System.err.println("Error scanning " + start + ": " + e.getMessage());
-            }
-        }
-        return result;
+    /**
+     * Receives matches while a scan is running.
+     */
+    public interface Listener {
+        /**
+         * Called once per matching file. With parallelism above 1 this is called from
+         * several threads at once, so implementations must be thread-safe.
+         *
+         * Throwing stops the scan: an {@link UncheckedIOException} comes out of
+         * {@link #scan} as its cause, any other exception as is.
+         */
+        void onMusicFile(Path file, BasicFileAttributes attrs);
+    }
+
+    /**
+     * Totals of one {@link #scan} call.
+     *
+     * @param directories directories entered
+     * @param files directory entries visited (music or not)
+     * @param matches music files reported to the listener
+     * @param timeToFirstResultNanos time until the first match, or -1 when nothing matched
+     * @param elapsedNanos wall-clock duration of the scan
+     */
+    public record ScanSummary(long directories, long files, int matches, long timeToFirstResultNanos, long elapsedNanos) {
     }
 
     /**
@@ -79,54 +144,294 @@ public class MusicFinder {
     public static List<Path> findMusic(Path start, Set<String> extensions, int maxDepth, int maxFiles) throws IOException {
         List<Path> found = new ArrayList<>();
         if (start == null || !Files.exists(start)) return found;
+        scan(start, extensions, maxDepth, maxFiles, List.of(), 1, (file, attrs) -> found.add(file));
+        return found;
+    }
 
-        SimpleFileVisitor<Path> visitor = new SimpleFileVisitor<Path>() {
-            private int filesCollected = 0;
+    /**
+     * Scan a starting path and report each music file as soon as it is found.
+     *
+     * @param start the root path to start scanning
+     * @param extensions set of lowercase extensions without dot (e.g. "mp3")
+     * @param maxDepth maximum directory depth to traverse (use Integer.MAX_VALUE for no limit)
+     * @param maxFiles maximum number of files to report before stopping
+     * @param excludes directories and files to skip; a path is skipped when a matcher accepts
+     *                 either its full path or its file name
+     * @param parallelism number of threads listing directories; 1 walks the tree on the calling thread
+     * @param listener receives every match
+     * @return totals for the scan
+     * @throws NoSuchFileException if the starting path doesn't exist
+     * @throws IOException if the starting path can't be read, or the listener failed
+     */
+    public static ScanSummary scan(Path start, Set<String> extensions, int maxDepth, int maxFiles,
+                                   List<PathMatcher> excludes, int parallelism, Listener listener) throws IOException {
+        if (!Files.exists(start)) {
+            throw new NoSuchFileException(start.toString());
+        }
+
+        final ScanState state = new ScanState(extensions, maxDepth, maxFiles, excludes, listener);
+        final ScanCompletedEvent scanEvent = FlightEvents.active() ? new ScanCompletedEvent() : null;
+        if (scanEvent != null) scanEvent.begin();
+        try {
+            if (parallelism <= 1) {
+                walkSequential(start, state);
+            } else {
+                walkParallel(start, state, parallelism);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            long elapsed = System.nanoTime() - state.startNanos;
+            long directories = state.directoriesVisited.sum();
+            long files = state.filesVisited.sum();
+            int matches = state.matches.get();
+            SCAN_DURATION.record(elapsed);
+            DIRECTORIES_VISITED.add(directories);
+            FILES_VISITED.add(files);
+            FILES_MATCHED.add(matches);
+            if (elapsed > 0) {
+                FILES_PER_SECOND.set(files * 1_000_000_000L / elapsed);
+            }
+            if (scanEvent != null && scanEvent.shouldCommit()) {
+                scanEvent.start = start.toString();
+                scanEvent.directories = directories;
+                scanEvent.files = files;
+                scanEvent.matches = matches;
+                scanEvent.truncated = state.stopped;
+                scanEvent.commit();
+            }
+        }
+        long elapsed = System.nanoTime() - state.startNanos;
+        return new ScanSummary(state.directoriesVisited.sum(), state.filesVisited.sum(), state.matches.get(),
+                state.firstResultNanos.get(), elapsed);
+    }
 
+    private static void walkSequential(Path start, ScanState state) throws IOException {
+        // Per-directory JFR events are only tracked while a recording has them enabled
+        final Deque<DirectoryVisitEvent> openDirectories = FlightEvents.active() && new DirectoryVisitEvent().isEnabled()
+                ? new ArrayDeque<>() : null;
+        SimpleFileVisitor<Path> visitor = new SimpleFileVisitor<Path>() {
             @Override
             public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
-                if (attrs != null && attrs.isRegularFile()) {
-                    String name = file.getFileName().toString();
-                    int dot = name.lastIndexOf('.');
-                    if (dot >= 0 && dot < name.length() - 1) {
-                        String ext = name.substring(dot + 1).toLowerCase();
-                        if (extensions.contains(ext)) {
-                            found.add(file);
-                            filesCollected++;
-                            if (filesCollected >= maxFiles) {
-                                return FileVisitResult.TERMINATE;
-                            }
-                        }
-                    }
+                DirectoryVisitEvent dirEvent = openDirectories != null ? openDirectories.peek() : null;
+                if (dirEvent != null) dirEvent.files++;
+                int result = state.visitFile(file, attrs);
+                if (result != ScanState.MISS && dirEvent != null) dirEvent.matches++;
+                return result == ScanState.LIMIT_REACHED ? FileVisitResult.TERMINATE : FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                if (!state.enterDirectory(dir)) return FileVisitResult.SKIP_SUBTREE;
+                if (openDirectories != null) {
+                    DirectoryVisitEvent dirEvent = new DirectoryVisitEvent();
+                    dirEvent.path = dir.toString();
+                    dirEvent.begin();
+                    openDirectories.push(dirEvent);
                 }
                 return FileVisitResult.CONTINUE;
             }
 
             @Override
-            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
-                // skip system or hidden directories to speed up
-                try {
-                    if (Files.isHidden(dir)) return FileVisitResult.SKIP_SUBTREE;
-                } catch (IOException ignored) {
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) {
+                if (openDirectories != null && !openDirectories.isEmpty()) {
+                    openDirectories.pop().commit();
                 }
                 return FileVisitResult.CONTINUE;
             }
 
             @Override
-            public FileVisitResult visitFileFailed(Path file, IOException exc) {
-                // skip files we can't read
+            public FileVisitResult visitFileFailed(Path file, IOException exc) throws IOException {
+                // an unreadable start fails the scan; anything below it is skipped
+                if (file.equals(start)) throw exc;
                 return FileVisitResult.CONTINUE;
             }
         };
 
         try {
-            Files.walkFileTree(start, java.util.EnumSet.noneOf(java.nio.file.FileVisitOption.class), maxDepth, visitor);
+            Files.walkFileTree(start, java.util.EnumSet.noneOf(java.nio.file.FileVisitOption.class), state.maxDepth, visitor);
         } catch (IOException e) {
             // rethrow so caller may handle or log
             throw e;
         }
+    }
+
+    private static void walkParallel(Path start, ScanState state, int parallelism) throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(start, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        if (!attrs.isDirectory() || state.maxDepth == 0) {
+            state.visitFile(start, attrs);
+            return;
+        }
+        if (!state.enterDirectory(start)) return;
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.invoke(new DirectoryTask(start, 0, state));
+        } finally {
+            pool.shutdown();
+        }
+    }
 
-        return found;
+    /**
+     * Lists one directory in the parallel walk and forks a task per subdirectory.
+     * Mirrors Files.walkFileTree semantics: no symlink following, and entries at
+     * maxDepth are visited but never entered.
+     */
+    private static final class DirectoryTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        // Tasks only live inside one scan's pool and are never serialized
+        private final transient Path dir;
+        private final int depth;
+        private final transient ScanState state;
+
+        DirectoryTask(Path dir, int depth, ScanState state) {
+            this.dir = dir;
+            this.depth = depth;
+            this.state = state;
+        }
+
+        @Override
+        protected void compute() {
+            if (state.stopped) return;
+            DirectoryVisitEvent dirEvent = FlightEvents.active() ? new DirectoryVisitEvent() : null;
+            if (dirEvent != null) dirEvent.begin();
+            List<DirectoryTask> subdirectories = new ArrayList<>();
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+                for (Path entry : entries) {
+                    if (state.stopped) break;
+                    BasicFileAttributes attrs;
+                    try {
+                        attrs = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    } catch (IOException e) {
+                        continue; // skip files we can't read
+                    }
+                    if (attrs.isDirectory() && depth + 1 < state.maxDepth) {
+                        if (state.enterDirectory(entry)) {
+                            subdirectories.add(new DirectoryTask(entry, depth + 1, state));
+                        }
+                        continue;
+                    }
+                    int result = state.visitFile(entry, attrs);
+                    if (dirEvent != null) {
+                        dirEvent.files++;
+                        if (result != ScanState.MISS) dirEvent.matches++;
+                    }
+                }
+            } catch (IOException e) {
+                // skip directories we can't list, except the start
+                if (depth == 0) throw new UncheckedIOException(e);
+            } catch (DirectoryIteratorException e) {
+                // skip directories we can't list
+            }
+            invokeAll(subdirectories);
+            if (dirEvent != null && dirEvent.shouldCommit()) {
+                dirEvent.path = dir.toString();
+                dirEvent.commit();
+            }
+        }
+    }
+
+    /**
+     * Counters and limits shared by every thread of one scan.
+     */
+    private static final class ScanState {
+        static final int MISS = 0;
+        static final int MATCH = 1;
+        static final int LIMIT_REACHED = 2;
+
+        final Set<String> extensions;
+        final int maxDepth;
+        final int maxFiles;
+        final List<PathMatcher> excludes;
+        final Listener listener;
+        final long startNanos = System.nanoTime();
+        final LongAdder directoriesVisited = new LongAdder();
+        final LongAdder filesVisited = new LongAdder();
+        final AtomicInteger matches = new AtomicInteger();
+        final AtomicLong firstResultNanos = new AtomicLong(-1);
+        volatile boolean stopped = false;
+
+        ScanState(Set<String> extensions, int maxDepth, int maxFiles, List<PathMatcher> excludes, Listener listener) {
+            this.extensions = extensions;
+            this.maxDepth = maxDepth;
+            this.maxFiles = maxFiles;
+            this.excludes = excludes;
+            this.listener = listener;
+        }
+
+        // Returns false when the directory must be skipped; only entered ones are counted
+        boolean enterDirectory(Path dir) {
+            // skip system or hidden directories to speed up
+            try {
+                if (Files.isHidden(dir)) return false;
+            } catch (IOException ignored) {
+            }
+            if (isExcluded(dir)) return false;
+            directoriesVisited.increment();
+            return true;
+        }
+
+        int visitFile(Path file, BasicFileAttributes attrs) {
+            filesVisited.increment();
+            if (attrs == null || !attrs.isRegularFile()) return MISS;
+            if (!hasExtension(file.getFileName().toString(), extensions) || isExcluded(file)) return MISS;
+
+            int count = matches.incrementAndGet();
+            if (count > maxFiles) {
+                // another thread already reported the last allowed file
+                matches.decrementAndGet();
+                stopped = true;
+                return LIMIT_REACHED;
+            }
+            if (count == 1) {
+                long elapsed = System.nanoTime() - startNanos;
+                firstResultNanos.set(elapsed);
+                TIME_TO_FIRST_RESULT.record(elapsed);
+            }
+            try {
+                listener.onMusicFile(file, attrs);
+            } catch (RuntimeException e) {
+                stopped = true; // the other threads stop at their next entry
+                throw e;
+            }
+            if (count == maxFiles) {
+                stopped = true;
+                return LIMIT_REACHED;
+            }
+            return MATCH;
+        }
+
+        private boolean isExcluded(Path path) {
+            if (excludes.isEmpty()) return false;
+            Path name = path.getFileName();
+            for (PathMatcher matcher : excludes) {
+                if (matcher.matches(path) || (name != null && matcher.matches(name))) return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Check whether a file name ends with one of the given extensions.
+     *
+     * @param name file name (not a full path)
+     * @param extensions set of lowercase extensions without dot (e.g. "mp3")
+     * @return true when the extension after the last dot is in the set
+     */
+    public static boolean hasExtension(String name, Set<String> extensions) {
+        int dot = name.lastIndexOf('.');
+        if (dot >= 0 && dot < name.length() - 1) {
+            String ext = name.substring(dot + 1).toLowerCase();
+            return extensions.contains(ext);
+        }
+        return false;
+    }
+
+    /**
+     * The extensions used when none are given explicitly.
+     */
+    public static Set<String> defaultExtensions() {
+        return DEFAULT_EXTENSIONS;
     }
 
     // Convenience overload
@@ -134,24 +439,8 @@ public class MusicFinder {
         return findMusic(start, DEFAULT_EXTENSIONS, Integer.MAX_VALUE, Integer.MAX_VALUE);
     }
 
-    // Small CLI for quick tests
+    // Headless command line entry point, see LibraryCli for the options
     public static void main(String[] args) {
-        System.out.println("Starting music search (this may take a while)...");
-        List<Path> found = new ArrayList<>();
-        try {
-            if (args.length > 0) {
-                Path p = Paths.get(args[0]);
-                found = findMusic(p, DEFAULT_EXTENSIONS, 10, 1000);
-            } else {
-                found = findMusicInCommonDirs();
-            }
-        } catch (Exception e) {
-            System.err.println("Search failed: " + e.getMessage());
-            e.printStackTrace();
-        }
-        System.out.println("Found " + found.size() + " music files:");
-        for (Path p : found) {
-            System.out.println(p.toString());
-        }
+        System.exit(LibraryCli.run(args));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,269 @@
+package application;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+
+import javafx.scene.image.Image;
+
+import application.Controller.MusicItem;
+import application.artwork.ArtworkService;
+import application.metrics.Counter;
+import application.metrics.Metrics;
+import application.tags.TagReader;
+import application.tags.TrackTags;
+
+/**
+ * Loads per-row metadata (tags, duration, artwork thumbnail) in the background, only for the rows the
+ * table is showing plus a prefetch window around them.
+ *
+ * The table reports its viewport after every layout pulse. Each change rebuilds the bounded
+ * request queue in priority order (visible rows, then rows below, then rows above),
+ * which also cancels queued requests for rows that scrolled out of view. Requests a
+ * worker already took are finished. Results are handed back to the FX thread in batches,
+ * at most one pending runLater at a time.
+ *
+ * Consumers that need the tags of every track (the library server, tag sorts, smart
+ * playlists) ask for a {@link #fill}: one more low priority thread reads the tags, without
+ * artwork, of the rows not read yet, through the same result batches.
+ *
+ * All methods except the worker loop must be called on the FX thread.
+ */
+final class RowMetadataLoader {
+
+    private static final Counter LOADED = Metrics.counter("table.metadata_loaded");
+    private static final Counter CANCELLED = Metrics.counter("table.metadata_cancelled");
+    private static final Counter FILLED = Metrics.counter("table.metadata_filled");
+
+    private final BlockingDeque<MusicItem> queue;
+    private final ConcurrentLinkedQueue<Result> results = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+    private final Executor fxExecutor;
+    private final ArtworkService artwork;
+    private final int prefetch;
+    private final List<Thread> workers = new ArrayList<>();
+    private final ExecutorService filler;
+    private final AtomicInteger fillPass = new AtomicInteger(); // a newer fill stops older ones
+    private int firstVisible = -1;
+    private int lastVisible = -1;
+    private int generation = 0;
+    private Consumer<List<MusicItem>> loadedListener = null;
+    private volatile ToLongFunction<String> durationSource = null;
+    private volatile boolean running = true;
+
+    // tagsOnly: from a fill, the row's artwork is left as it is
+    private record Result(MusicItem item, TrackTags tags, Image artwork, boolean tagsOnly) {
+    }
+
+    /**
+     * @param threads number of background readers
+     * @param capacity maximum queued requests
+     * @param prefetch rows to prefetch above and below the viewport
+     * @param fxExecutor runs result batches on the FX thread (Platform::runLater)
+     * @param artwork thumbnail source, or null to skip artwork
+     */
+    RowMetadataLoader(int threads, int capacity, int prefetch, Executor fxExecutor, ArtworkService artwork) {
+        this.queue = new LinkedBlockingDeque<>(capacity);
+        this.prefetch = prefetch;
+        this.fxExecutor = fxExecutor;
+        this.artwork = artwork;
+        for (int i = 0; i < threads; i++) {
+            Thread t = new Thread(this::work, "metadata-loader-" + i);
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            t.start();
+            workers.add(t);
+        }
+        this.filler = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "metadata-fill");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+    }
+
+    /**
+     * Read the tags of every row given that hasn't got them yet, in the background, and
+     * run onDone on the FX thread once they are all applied. Replaces an earlier fill,
+     * whose onDone then never runs.
+     */
+    void fill(List<MusicItem> items, Runnable onDone) {
+        int pass = fillPass.incrementAndGet();
+        List<MusicItem> missing = new ArrayList<>();
+        for (MusicItem item : items) {
+            if (!item.tagsRead) missing.add(item);
+        }
+        filler.execute(() -> {
+            for (MusicItem item : missing) {
+                if (!running || fillPass.get() != pass) return;
+                results.add(new Result(item, readTags(item.getPath()), null, true));
+                FILLED.increment();
+                scheduleFlush();
+            }
+            fxExecutor.execute(() -> {
+                if (fillPass.get() != pass) return;
+                flush(); // the last results may still be waiting for their batch
+                onDone.run();
+            });
+        });
+    }
+
+    /**
+     * Report the visible row range of the table. Cheap when nothing changed.
+     *
+     * @param items current table items
+     * @param first index of the first visible row, or -1 when the table is empty
+     * @param last index of the last visible row
+     * @param force re-queue even if the range is unchanged (e.g. the items changed)
+     */
+    void viewportChanged(List<MusicItem> items, int first, int last, boolean force) {
+        if (!force && first == firstVisible && last == lastVisible) return;
+        firstVisible = first;
+        lastVisible = last;
+
+        // Drop every queued request; the ones still in range are queued again below
+        List<MusicItem> dropped = new ArrayList<>(queue.size());
+        queue.drainTo(dropped);
+        Set<MusicItem> drained = identitySet();
+        drained.addAll(dropped);
+        Set<MusicItem> window = identitySet();
+        if (first >= 0 && !items.isEmpty()) {
+            int size = items.size();
+            // Cells can briefly report stale indices right after the items shrink
+            first = Math.min(first, size - 1);
+            last = Math.max(first, Math.min(last, size - 1));
+            int lo = Math.max(0, first - prefetch);
+            int hi = Math.min(size - 1, last + prefetch);
+            for (int i = first; i <= last; i++) enqueue(items.get(i), window, drained);
+            for (int i = last + 1; i <= hi; i++) enqueue(items.get(i), window, drained);
+            for (int i = first - 1; i >= lo; i--) enqueue(items.get(i), window, drained);
+        }
+        for (MusicItem item : dropped) {
+            if (!window.contains(item)) {
+                item.metadataState = MusicItem.METADATA_NONE;
+                CANCELLED.increment();
+            }
+        }
+    }
+
+    private void enqueue(MusicItem item, Set<MusicItem> window, Set<MusicItem> drained) {
+        window.add(item);
+        if (item.metadataState == MusicItem.METADATA_LOADED) return;
+        // Queued but not drained means a worker is reading it right now
+        if (item.metadataState == MusicItem.METADATA_QUEUED && !drained.contains(item)) return;
+        // When the queue is full the row is simply retried on the next viewport change
+        item.metadataState = queue.offerLast(item) ? MusicItem.METADATA_QUEUED : MusicItem.METADATA_NONE;
+    }
+
+    private static Set<MusicItem> identitySet() {
+        return Collections.newSetFromMap(new IdentityHashMap<>());
+    }
+
+    /**
+     * Number of result batches applied so far; changes whenever some rows got new tags.
+     */
+    int generation() {
+        return generation;
+    }
+
+    /**
+     * Called on the FX thread with the rows of each applied batch, after their tags are set.
+     */
+    void setLoadedListener(Consumer<List<MusicItem>> listener) {
+        this.loadedListener = listener;
+    }
+
+    /**
+     * Fallback for files whose tags don't state the duration: path to millis, 0 if unknown.
+     * Called on the worker and fill threads.
+     */
+    void setDurationSource(ToLongFunction<String> source) {
+        this.durationSource = source;
+    }
+
+    /**
+     * Stop the workers. Pending requests are discarded.
+     */
+    void shutdown() {
+        running = false;
+        queue.clear();
+        filler.shutdownNow();
+        for (Thread t : workers) t.interrupt();
+    }
+
+    private void work() {
+        while (running) {
+            MusicItem item;
+            try {
+                item = queue.takeFirst();
+            } catch (InterruptedException e) {
+                return;
+            }
+            TrackTags tags = readTags(item.getPath());
+            Image thumbnail = null;
+            if (artwork != null) {
+                try {
+                    thumbnail = artwork.thumbnail(Paths.get(item.getPath()), tags, ArtworkService.ROW_SIZE);
+                } catch (RuntimeException ignored) {
+                }
+            }
+            results.add(new Result(item, tags, thumbnail, false));
+            scheduleFlush();
+        }
+    }
+
+    private TrackTags readTags(String path) {
+        TrackTags tags;
+        try {
+            tags = TagReader.read(Paths.get(path));
+        } catch (IOException | RuntimeException e) {
+            tags = TrackTags.EMPTY;
+        }
+        ToLongFunction<String> durations = durationSource;
+        if (tags.durationMillis() == 0 && durations != null) {
+            long millis = durations.applyAsLong(path);
+            if (millis > 0) tags = tags.orElse(new TrackTags("", "", "", 0, millis));
+        }
+        return tags;
+    }
+
+    private void scheduleFlush() {
+        if (flushScheduled.compareAndSet(false, true)) {
+            fxExecutor.execute(this::flush);
+        }
+    }
+
+    // FX thread: apply every result that arrived since the last flush
+    private void flush() {
+        flushScheduled.set(false);
+        Result r;
+        int n = 0;
+        List<MusicItem> loaded = loadedListener != null ? new ArrayList<>() : null;
+        while ((r = results.poll()) != null) {
+            if (r.tagsOnly()) {
+                r.item().applyTags(r.tags());
+            } else {
+                r.item().applyMetadata(r.tags(), r.artwork());
+            }
+            if (loaded != null) loaded.add(r.item());
+            n++;
+        }
+        LOADED.add(n);
+        if (n > 0) generation++;
+        if (loaded != null && !loaded.isEmpty()) loadedListener.accept(loaded);
+    }
+}
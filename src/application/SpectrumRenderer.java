@@ -0,0 +1,120 @@
+package application;
+
+import javafx.scene.paint.Color;
+
+import java.util.Random;
+
+/**
+ * Per-frame drawing logic of the {@link AudioVisualizer}, kept apart from the Canvas
+ * so it can run against any drawing surface (including a headless stub in benchmarks).
+ */
+public final class SpectrumRenderer {
+
+    public static final double BAR_WIDTH_RATIO = 0.8;
+    private static final Color BAR_COLOR = Color.rgb(0, 120, 212, 0.95); // Windows 11 blue
+    private static final Color BAR_GRADIENT_COLOR = Color.rgb(102, 178, 255, 0.7); // Light blue
+    private static final Color BACKGROUND_COLOR = Color.rgb(230, 242, 255, 0.15); // Soft blue tint
+    private static final Color GLOW_COLOR = Color.rgb(153, 204, 255, 0.6); // Light blue glow
+    private static final Color REFLECTION_COLOR = Color.rgb(102, 178, 255, 0.5);
+
+    /**
+     * Minimal drawing surface used by the renderer. AudioVisualizer backs it with its
+     * GraphicsContext.
+     */
+    public interface Surface {
+        void setFill(Color color);
+        void setGlobalAlpha(double alpha);
+        void fillRect(double x, double y, double w, double h);
+    }
+
+    private SpectrumRenderer() {
+    }
+
+    /**
+     * Draw one frame of bars.
+     *
+     * @param surface where to draw
+     * @param magnitudes spectrum magnitudes in dB (typically -60 to 0); decayed in place when not playing
+     * @param playing whether audio is currently playing
+     * @param width surface width
+     * @param height surface height
+     * @param random source for the idle "wiggle" of very low bars
+     * @return number of fillRect calls issued
+     */
+    public static int render(Surface surface, float[] magnitudes, boolean playing,
+                             double width, double height, Random random) {
+        int numBars = magnitudes.length;
+        int drawCalls = 0;
+
+        // Clear background with glassmorphism color
+        surface.setFill(BACKGROUND_COLOR);
+        surface.fillRect(0, 0, width, height);
+        drawCalls++;
+
+        // Calculate bar dimensions
+        double barWidth = (width / numBars) * BAR_WIDTH_RATIO;
+        double spacing = (width / numBars) * (1 - BAR_WIDTH_RATIO);
+
+        // Draw bars
+        for (int i = 0; i < numBars; i++) {
+            double x = i * (barWidth + spacing) + spacing / 2;
+
+            // Convert magnitude (in dB, typically -60 to 0) to height
+            // magnitudes are in dB, typically ranging from -60 to 0
+            float magnitude = magnitudes[i];
+
+            // Normalize magnitude: -60dB = 0, 0dB = 1
+            double normalizedMagnitude = (magnitude + 60) / 60.0;
+            normalizedMagnitude = Math.max(0, Math.min(1, normalizedMagnitude));
+
+            // Add some smoothing and minimum height
+            if (!playing) {
+                normalizedMagnitude *= 0.95; // Decay when not playing
+                magnitudes[i] *= 0.9f;
+            }
+
+            double barHeight = normalizedMagnitude * height * 0.9;
+
+            // Add minimum visible height when playing
+            if (playing && barHeight < 2) {
+                barHeight = 2 + random.nextDouble() * 5;
+            }
+
+            double y = height - barHeight;
+
+            // Draw gradient bar with blue colors
+            Color topColor = BAR_COLOR; // Darker blue at top
+            Color bottomColor = BAR_GRADIENT_COLOR; // Lighter blue at bottom
+
+            // Create gradient effect manually
+            int steps = (int) Math.max(1, barHeight / 2);
+            for (int s = 0; s < steps; s++) {
+                double ratio = (double) s / steps;
+                Color color = topColor.interpolate(bottomColor, ratio);
+                surface.setFill(color);
+
+                double segmentHeight = barHeight / steps;
+                surface.fillRect(x, y + s * segmentHeight, barWidth, segmentHeight + 1);
+                drawCalls++;
+            }
+
+            // Add a subtle glow effect on top of bars
+            if (barHeight > 5) {
+                surface.setGlobalAlpha(0.4);
+                surface.setFill(GLOW_COLOR);
+                surface.fillRect(x - 1, y - 2, barWidth + 2, 4);
+                surface.setGlobalAlpha(1.0);
+                drawCalls++;
+            }
+
+            // Draw reflection (subtle)
+            surface.setGlobalAlpha(0.15);
+            surface.setFill(REFLECTION_COLOR);
+            double reflectionHeight = Math.min(barHeight * 0.3, height - barHeight - y);
+            surface.fillRect(x, height - barHeight + barHeight, barWidth, reflectionHeight);
+            surface.setGlobalAlpha(1.0);
+            drawCalls++;
+        }
+        return drawCalls;
+    }
+}
@@ -0,0 +1,70 @@
+package application;
+
+import javafx.animation.AnimationTimer;
+import javafx.stage.Stage;
+
+import application.metrics.Counter;
+import application.metrics.Metrics;
+
+/**
+ * Applies window moves and resizes of the undecorated stage at most once per pulse.
+ *
+ * Mouse handlers only record the latest requested geometry; while a drag is active an
+ * AnimationTimer (called once per pulse) pushes it to the stage, touching only the values
+ * that changed. A burst of mouse events within one frame therefore costs a single
+ * stage update and a single layout of the scene.
+ */
+final class StageResizer {
+
+    private static final Counter REQUESTS = Metrics.counter("window.geometry_requests");
+    private static final Counter UPDATES = Metrics.counter("window.geometry_updates");
+
+    private final Stage stage;
+    private double x;
+    private double y;
+    private double width;
+    private double height;
+    private boolean pending = false;
+
+    private final AnimationTimer pulse = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            flush();
+        }
+    };
+
+    StageResizer(Stage stage) {
+        this.stage = stage;
+    }
+
+    /** A drag started; geometry requests are applied on each following pulse. */
+    void begin() {
+        pulse.start();
+    }
+
+    /** Ask for a new geometry; replaces any request not yet applied. */
+    void request(double x, double y, double width, double height) {
+        this.x = x;
+        this.y = y;
+        this.width = width;
+        this.height = height;
+        pending = true;
+        REQUESTS.increment();
+    }
+
+    /** The drag ended: apply what is left and stop listening to pulses. */
+    void end() {
+        flush();
+        pulse.stop();
+    }
+
+    private void flush() {
+        if (!pending) return;
+        pending = false;
+        if (stage.getX() != x) stage.setX(x);
+        if (stage.getY() != y) stage.setY(y);
+        if (stage.getWidth() != width) stage.setWidth(width);
+        if (stage.getHeight() != height) stage.setHeight(height);
+        UPDATES.increment();
+    }
+}
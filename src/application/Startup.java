@@ -0,0 +1,77 @@
+package application;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import javafx.application.Platform;
+import javafx.scene.Scene;
+
+import application.metrics.Gauge;
+import application.metrics.Metrics;
+
+/**
+ * Staged startup helpers. The window is shown with only its controls wired; everything
+ * else (metrics publishing, visualizer, metadata workers, library restore and scan) starts
+ * once the first frame has been painted.
+ *
+ * A class-data-sharing training run (see scripts/appcds.sh) starts the player with
+ * -Dreproductor.trainingRun=true, which exits as soon as the first scan has been shown,
+ * so the archive covers the window, the restore path and the scanner.
+ */
+final class Startup {
+
+    /** Quit after the first scan; used to record an AppCDS archive. */
+    static final boolean TRAINING_RUN = Boolean.getBoolean("reproductor.trainingRun");
+
+    private static final Gauge FIRST_PAINT = Metrics.gauge("startup.first_paint_millis");
+    private static final Gauge LIBRARY_SHOWN = Metrics.gauge("startup.library_shown_millis");
+
+    private static boolean libraryShown = false;
+
+    private Startup() {
+    }
+
+    /**
+     * Run a task on the FX thread after the scene's next pulse has been rendered.
+     * Post-layout listeners run just before the scene is synced for rendering, so the
+     * task is queued from there and runs after that frame.
+     */
+    static void afterFirstPaint(Scene scene, Runnable task) {
+        Runnable[] listener = new Runnable[1];
+        listener[0] = () -> {
+            scene.removePostLayoutPulseListener(listener[0]);
+            Platform.runLater(task);
+        };
+        scene.addPostLayoutPulseListener(listener[0]);
+    }
+
+    static void firstPaint() {
+        FIRST_PAINT.set(millisSinceLaunch());
+    }
+
+    /**
+     * Record the first time a track list is on screen (from the snapshot or a scan).
+     */
+    static void libraryShown() {
+        if (libraryShown) return;
+        libraryShown = true;
+        LIBRARY_SHOWN.set(millisSinceLaunch());
+    }
+
+    /**
+     * The first scan was published (or failed); ends a training run.
+     */
+    static void scanFinished() {
+        if (TRAINING_RUN) {
+            System.out.println("Training run finished after " + millisSinceLaunch() + " ms");
+            Platform.exit();
+        }
+    }
+
+    // Milliseconds since the JVM process started, or -1 when the OS does not tell
+    private static long millisSinceLaunch() {
+        return ProcessHandle.current().info().startInstant()
+                .map(start -> Duration.between(start, Instant.now()).toMillis())
+                .orElse(-1L);
+    }
+}
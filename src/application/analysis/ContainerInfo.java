@@ -0,0 +1,296 @@
+package application.analysis;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+
+/**
+ * Exact duration and bitrate from the container, without decoding:
+ * - MP3 (MPEG audio layer I-III): frame count from the Xing/Info header (minus the LAME
+ *   encoder delay and padding), else from walking every frame header
+ * - FLAC: total samples from STREAMINFO
+ * - Ogg Vorbis / Opus: granule position of the last page
+ * Other formats return null; their duration comes from decoding, when a decoder exists.
+ */
+final class ContainerInfo {
+
+    /**
+     * @param bitrate average bits per second of the audio data
+     */
+    record Info(long durationMillis, int bitrate, int sampleRate, int channels) {
+    }
+
+    private static final int WALK_BUFFER = 1024 * 1024;
+    private static final int OGG_TAIL = 64 * 1024;
+
+    // [version][layer] -> bitrate in kbps by index; version 0 = MPEG1, 1 = MPEG2/2.5
+    private static final int[][][] BITRATES = {
+        {
+            { 0, 32, 64, 96, 128, 160, 192, 224, 256, 288, 320, 352, 384, 416, 448 },  // layer I
+            { 0, 32, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320, 384 },     // layer II
+            { 0, 32, 40, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320 },      // layer III
+        },
+        {
+            { 0, 32, 48, 56, 64, 80, 96, 112, 128, 144, 160, 176, 192, 224, 256 },
+            { 0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160 },
+            { 0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160 },
+        },
+    };
+    private static final int[] SAMPLE_RATES = { 44100, 48000, 32000 };
+
+    private ContainerInfo() {
+    }
+
+    /**
+     * @return the container's figures, or null when the format isn't one of the above
+     * @throws IOException when the file can't be read or is not what its extension says
+     */
+    static Info read(Path file) throws IOException {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        String ext = name.substring(name.lastIndexOf('.') + 1);
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            return switch (ext) {
+                case "mp3", "mp2", "mpga" -> mpeg(ch);
+                case "flac" -> flac(ch);
+                case "ogg", "oga", "opus" -> ogg(ch);
+                default -> null;
+            };
+        }
+    }
+
+    // ---- MPEG audio
+
+    // Frame header fields, or null when the 32 bits are not a valid header
+    private record Frame(int version, int layer, int sampleRate, int channels, int length, int samples) {
+    }
+
+    private static Frame frame(int h) {
+        if ((h & 0xFFE00000) != 0xFFE00000) return null;
+        int versionBits = (h >>> 19) & 3;  // 0 = 2.5, 2 = 2, 3 = 1
+        int layerBits = (h >>> 17) & 3;    // 1 = III, 2 = II, 3 = I
+        int bitrateIndex = (h >>> 12) & 15;
+        int rateIndex = (h >>> 10) & 3;
+        if (versionBits == 1 || layerBits == 0 || bitrateIndex == 0 || bitrateIndex == 15 || rateIndex == 3) {
+            return null;
+        }
+        int layer = 4 - layerBits;
+        boolean mpeg1 = versionBits == 3;
+        int kbps = BITRATES[mpeg1 ? 0 : 1][layer - 1][bitrateIndex];
+        int sampleRate = SAMPLE_RATES[rateIndex] >> (mpeg1 ? 0 : versionBits == 2 ? 1 : 2);
+        int padding = (h >>> 9) & 1;
+        int channels = ((h >>> 6) & 3) == 3 ? 1 : 2;
+        int samples;
+        int length;
+        if (layer == 1) {
+            samples = 384;
+            length = (12 * kbps * 1000 / sampleRate + padding) * 4;
+        } else {
+            samples = layer == 3 && !mpeg1 ? 576 : 1152;
+            length = samples / 8 * kbps * 1000 / sampleRate + padding;
+        }
+        return new Frame(versionBits, layer, sampleRate, channels, length, samples);
+    }
+
+    private static Info mpeg(FileChannel ch) throws IOException {
+        long size = ch.size();
+        long offset = id3v2Size(ch, 0);
+        ByteBuffer buf = ByteBuffer.allocate(WALK_BUFFER); // big endian, as the headers
+        long bufStart = offset;
+        buf.limit(0);
+        Frame first = null;
+        long samples = 0;
+        long audioBytes = 0;
+        long pos = offset;
+        boolean synced = false;
+        while (true) {
+            // Keep the current position plus a header and a Xing block in the window
+            if (pos + 4 > size) break;
+            if (pos - bufStart + 512 > buf.limit() && bufStart + buf.limit() < size) {
+                int keep = (int) (pos - bufStart);
+                if (keep < buf.limit()) {
+                    buf.position(keep);
+                    buf.compact();
+                } else {
+                    buf.clear();
+                }
+                bufStart = pos;
+                while (buf.hasRemaining() && ch.read(buf, bufStart + buf.position()) > 0) {
+                    // fill
+                }
+                buf.flip();
+            }
+            int at = (int) (pos - bufStart);
+            if (at + 4 > buf.limit()) break;
+            Frame f = frame(buf.getInt(at));
+            // Frames after the first must match it; a different format means a false sync
+            if (f != null && first != null && (f.version() != first.version() || f.layer() != first.layer()
+                    || f.sampleRate() != first.sampleRate())) {
+                f = null;
+            }
+            if (f != null && !synced) {
+                // Only trust a header found by scanning when the next one follows it
+                long next = pos + f.length();
+                Frame following = next - bufStart + 4 <= buf.limit() ? frame(buf.getInt((int) (next - bufStart))) : null;
+                if (next + 4 <= size && following == null) f = null;
+            }
+            if (f == null) {
+                synced = false;
+                pos++;
+                continue;
+            }
+            synced = true;
+            if (pos + f.length() > size) break; // truncated last frame
+            if (first == null) {
+                first = f;
+                Info xing = xing(buf, at, f, size - offset);
+                if (xing != null) return xing;
+            }
+            samples += f.samples();
+            audioBytes += f.length();
+            pos += f.length();
+        }
+        if (first == null) throw new IOException("No MPEG audio frames");
+        long millis = samples * 1000 / first.sampleRate();
+        int bitrate = millis > 0 ? (int) (audioBytes * 8000 / millis) : 0;
+        return new Info(millis, bitrate, first.sampleRate(), first.channels());
+    }
+
+    // Xing (VBR) or Info (CBR) header in the first frame, with the LAME tag when present
+    private static Info xing(ByteBuffer buf, int frameAt, Frame f, long audioBytes) {
+        int sideInfo = f.version() == 3 ? (f.channels() == 1 ? 17 : 32) : (f.channels() == 1 ? 9 : 17);
+        int at = frameAt + 4 + sideInfo;
+        if (at + 120 + 24 > buf.limit()) return null;
+        String id = ascii(buf, at, 4);
+        if (!id.equals("Xing") && !id.equals("Info")) return null;
+        int flags = buf.getInt(at + 4);
+        if ((flags & 1) == 0) return null;
+        long frames = buf.getInt(at + 8) & 0xFFFFFFFFL;
+        int p = at + 12;
+        if ((flags & 2) != 0) {
+            audioBytes = buf.getInt(p) & 0xFFFFFFFFL;
+            p += 4;
+        }
+        if ((flags & 4) != 0) p += 100;
+        if ((flags & 8) != 0) p += 4;
+        long samples = frames * f.samples();
+        if (ascii(buf, p, 4).equals("LAME") && p + 24 <= buf.limit()) {
+            int delays = ((buf.get(p + 21) & 0xFF) << 16) | ((buf.get(p + 22) & 0xFF) << 8) | (buf.get(p + 23) & 0xFF);
+            long trimmed = samples - (delays >>> 12) - (delays & 0xFFF);
+            if (trimmed > 0) samples = trimmed;
+        }
+        long millis = samples * 1000 / f.sampleRate();
+        int bitrate = millis > 0 ? (int) (audioBytes * 8000 / millis) : 0;
+        return new Info(millis, bitrate, f.sampleRate(), f.channels());
+    }
+
+    // Length of the ID3v2 tags at the offset (there can be more than one), else 0
+    private static long id3v2Size(FileChannel ch, long offset) throws IOException {
+        long total = 0;
+        while (true) {
+            ByteBuffer h = readAt(ch, offset + total, 10);
+            if (h.remaining() < 10 || !ascii(h, 0, 3).equals("ID3")) return total;
+            int size = (h.get(6) & 0x7F) << 21 | (h.get(7) & 0x7F) << 14 | (h.get(8) & 0x7F) << 7 | (h.get(9) & 0x7F);
+            boolean footer = (h.get(5) & 0x10) != 0;
+            total += 10 + size + (footer ? 10 : 0);
+        }
+    }
+
+    // ---- FLAC
+
+    private static Info flac(FileChannel ch) throws IOException {
+        long pos = id3v2Size(ch, 0);
+        ByteBuffer magic = readAt(ch, pos, 4);
+        if (magic.remaining() < 4 || !ascii(magic, 0, 4).equals("fLaC")) throw new IOException("Not a FLAC file");
+        pos += 4;
+        Info info = null;
+        boolean last = false;
+        while (!last) {
+            ByteBuffer header = readAt(ch, pos, 4).order(ByteOrder.BIG_ENDIAN);
+            if (header.remaining() < 4) throw new IOException("Truncated FLAC metadata");
+            int type = header.get(0) & 0x7F;
+            last = (header.get(0) & 0x80) != 0;
+            int length = header.getInt(0) & 0xFFFFFF;
+            if (type == 0) {
+                ByteBuffer si = readAt(ch, pos + 4, 18).order(ByteOrder.BIG_ENDIAN);
+                if (si.remaining() < 18) throw new IOException("Truncated STREAMINFO");
+                long v = si.getLong(10);
+                int sampleRate = (int) (v >>> 44) & 0xFFFFF;
+                int channels = (int) ((v >>> 41) & 7) + 1;
+                long total = v & 0xFFFFFFFFFL;
+                if (sampleRate == 0) throw new IOException("Invalid STREAMINFO");
+                info = new Info(total * 1000 / sampleRate, 0, sampleRate, channels);
+            }
+            pos += 4 + length;
+        }
+        if (info == null) throw new IOException("No STREAMINFO");
+        long audio = ch.size() - pos;
+        int bitrate = info.durationMillis() > 0 ? (int) (audio * 8000 / info.durationMillis()) : 0;
+        return new Info(info.durationMillis(), bitrate, info.sampleRate(), info.channels());
+    }
+
+    // ---- Ogg
+
+    private static Info ogg(FileChannel ch) throws IOException {
+        ByteBuffer page = readAt(ch, 0, 27 + 255 + 64);
+        if (page.remaining() < 28 + 19 || !ascii(page, 0, 4).equals("OggS")) throw new IOException("Not an Ogg file");
+        int serial = page.getInt(14);
+        int packet = 27 + (page.get(26) & 0xFF);
+        long preSkip;
+        int sampleRate;
+        int channels;
+        int granuleRate;
+        if (ascii(page, packet, 7).equals("\u0001vorbis")) {
+            channels = page.get(packet + 11) & 0xFF;
+            sampleRate = page.getInt(packet + 12);
+            granuleRate = sampleRate;
+            preSkip = 0;
+        } else if (ascii(page, packet, 8).equals("OpusHead")) {
+            channels = page.get(packet + 9) & 0xFF;
+            preSkip = page.getShort(packet + 10) & 0xFFFF;
+            sampleRate = 48000;
+            granuleRate = 48000;
+        } else {
+            throw new IOException("Unsupported Ogg codec");
+        }
+        if (granuleRate <= 0) throw new IOException("Invalid Ogg header");
+
+        // Last page of the stream: scan the tail backwards for its capture pattern
+        long size = ch.size();
+        long tailStart = Math.max(0, size - OGG_TAIL);
+        ByteBuffer tail = readAt(ch, tailStart, (int) (size - tailStart));
+        long granule = -1;
+        for (int i = tail.limit() - 27; i >= 0 && granule < 0; i--) {
+            if (tail.get(i) == 'O' && ascii(tail, i, 4).equals("OggS") && tail.getInt(i + 14) == serial) {
+                granule = tail.getLong(i + 6);
+            }
+        }
+        if (granule < 0) throw new IOException("No final Ogg page");
+        long millis = Math.max(0, granule - preSkip) * 1000 / granuleRate;
+        int bitrate = millis > 0 ? (int) (size * 8000 / millis) : 0;
+        return new Info(millis, bitrate, sampleRate, channels);
+    }
+
+    // ---- helpers
+
+    // Up to n bytes at a position, little endian; fewer at the end of the file
+    private static ByteBuffer readAt(FileChannel ch, long position, int n) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(n);
+        while (buf.hasRemaining()) {
+            if (ch.read(buf, position + buf.position()) < 0) break;
+        }
+        buf.flip();
+        return buf.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static String ascii(ByteBuffer buf, int at, int n) {
+        if (at < 0 || at + n > buf.limit()) return "";
+        byte[] b = new byte[n];
+        buf.get(at, b);
+        return new String(b, StandardCharsets.ISO_8859_1);
+    }
+}
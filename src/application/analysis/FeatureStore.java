@@ -0,0 +1,201 @@
+package application.analysis;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Analysis results, one fixed-size record per analysed track appended to features.log in
+ * the analysis directory. Every result is written as soon as it is known and the file is
+ * synced every few tracks, so an interrupted run loses at most those and the next run
+ * starts after the last one saved.
+ *
+ * A record remembers the size and modification time of the file it was computed from:
+ * a track is analysed again only when the file changed. Failed tracks are recorded too,
+ * so unreadable files aren't retried on every run. On open, a torn last record is cut off
+ * and a log holding far more records than tracks (re-analysed files) is rewritten.
+ *
+ * Records are 60 bytes, little endian: id, size, modified, duration, bitrate, sample rate,
+ * bpm, loudness and centroid (floats), key, channels, flags (2 bytes) and a CRC32 of the
+ * rest. Appends use O_APPEND, so a tool and the player can both add results.
+ *
+ * Thread-safe.
+ */
+public final class FeatureStore implements Closeable {
+
+    private static final String FILE = "features.log";
+    private static final int RECORD_SIZE = 60;
+    private static final int FLAG_FAILED = 1;
+
+    // What is known about one file
+    private record Stored(long size, long modified, TrackFeatures features) {
+    }
+
+    private final Path file;
+    private final Map<Long, Stored> byId = new HashMap<>();
+    private final ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private final CRC32 crc = new CRC32();
+    private FileChannel channel;
+
+    private FeatureStore(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Directory for the results: -Dreproductor.analysis or ~/.reproductor/analysis
+     */
+    public static Path defaultDirectory() {
+        String configured = System.getProperty("reproductor.analysis");
+        if (configured != null && !configured.isBlank()) {
+            return Paths.get(configured);
+        }
+        return Paths.get(System.getProperty("user.home"), ".reproductor", "analysis");
+    }
+
+    /**
+     * Load the results saved in a directory and open it for more.
+     */
+    public static FeatureStore open(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        FeatureStore store = new FeatureStore(directory.resolve(FILE));
+        long records = store.load();
+        if (records > 2L * store.byId.size() + 1024) {
+            store.rewrite();
+        } else if (Files.exists(store.file) && Files.size(store.file) > records * RECORD_SIZE) {
+            // Cut a torn or damaged tail, or the next results would follow it
+            try (FileChannel ch = FileChannel.open(store.file, StandardOpenOption.WRITE)) {
+                ch.truncate(records * RECORD_SIZE);
+            }
+        }
+        store.channel = FileChannel.open(store.file,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        return store;
+    }
+
+    /**
+     * @return the features of a track, or null when it has not been analysed (or failed)
+     */
+    public synchronized TrackFeatures get(long trackId) {
+        Stored s = byId.get(trackId);
+        return s == null ? null : s.features();
+    }
+
+    /** Tracks with a saved result, failures included. */
+    public synchronized int size() {
+        return byId.size();
+    }
+
+    /** Whether there is a result for this version of the file. */
+    synchronized boolean isCurrent(long trackId, long size, long modified) {
+        Stored s = byId.get(trackId);
+        return s != null && s.size() == size && s.modified() == modified;
+    }
+
+    /**
+     * Save the result for a track; the record reaches the disk at the next
+     * {@link #checkpoint}.
+     *
+     * @param features null when the track could not be analysed
+     */
+    synchronized void put(long trackId, long size, long modified, TrackFeatures features) throws IOException {
+        byId.put(trackId, new Stored(size, modified, features));
+        encode(trackId, new Stored(size, modified, features));
+        while (record.hasRemaining()) {
+            channel.write(record);
+        }
+    }
+
+    /** Sync the saved results to the disk. */
+    public synchronized void checkpoint() throws IOException {
+        channel.force(false);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.force(false);
+        channel.close();
+    }
+
+    private void encode(long id, Stored s) {
+        TrackFeatures f = s.features() != null ? s.features() : new TrackFeatures(0, 0, 0, 0, 0, -1, 0, 0);
+        record.clear();
+        record.putLong(id).putLong(s.size()).putLong(s.modified()).putLong(f.durationMillis())
+                .putInt(f.bitrate()).putInt(f.sampleRate()).putFloat(f.bpm())
+                .putFloat(f.loudnessDb()).putFloat(f.centroidHz())
+                .put((byte) f.key()).put((byte) f.channels())
+                .putShort((short) (s.features() == null ? FLAG_FAILED : 0));
+        crc.reset();
+        crc.update(record.array(), 0, RECORD_SIZE - 4);
+        record.putInt((int) crc.getValue());
+        record.flip();
+    }
+
+    // Later records replace earlier ones; reading stops at the first damaged record
+    private long load() throws IOException {
+        if (!Files.exists(file)) return 0;
+        long records = 0;
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer in = ByteBuffer.allocate(RECORD_SIZE * 4096).order(ByteOrder.LITTLE_ENDIAN);
+            while (ch.read(in) > 0) {
+                in.flip();
+                while (in.remaining() >= RECORD_SIZE) {
+                    int start = in.position();
+                    crc.reset();
+                    crc.update(in.array(), start, RECORD_SIZE - 4);
+                    if (in.getInt(start + RECORD_SIZE - 4) != (int) crc.getValue()) {
+                        System.err.println(file.getFileName() + ": damaged record, ignoring the rest");
+                        return records;
+                    }
+                    long id = in.getLong();
+                    long size = in.getLong();
+                    long modified = in.getLong();
+                    long duration = in.getLong();
+                    int bitrate = in.getInt();
+                    int sampleRate = in.getInt();
+                    float bpm = in.getFloat();
+                    float loudness = in.getFloat();
+                    float centroid = in.getFloat();
+                    int key = in.get();
+                    int channels = in.get() & 0xFF;
+                    int flags = in.getShort();
+                    in.getInt();
+                    TrackFeatures f = (flags & FLAG_FAILED) != 0 ? null
+                            : new TrackFeatures(duration, bitrate, sampleRate, channels, bpm, key, loudness, centroid);
+                    byId.put(id, new Stored(size, modified, f));
+                    records++;
+                }
+                in.compact();
+            }
+        }
+        return records;
+    }
+
+    // Only the latest record per track, written next to the log and renamed over it
+    private void rewrite() throws IOException {
+        Path tmp = Files.createTempFile(file.getParent(), "features", ".tmp");
+        try {
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                for (Map.Entry<Long, Stored> e : byId.entrySet()) {
+                    encode(e.getKey(), e.getValue());
+                    while (record.hasRemaining()) {
+                        ch.write(record);
+                    }
+                }
+                ch.force(true);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package application.analysis;
+
+import application.playback.Fft;
+
+/**
+ * Key from a chromagram: the spectrum of long frames (for enough resolution in the low
+ * notes) is folded onto the 12 pitch classes between C2 and C7, summed over the track, and
+ * correlated with the Krumhansl-Kessler major and minor key profiles in all 12
+ * transpositions. The best of the 24 wins.
+ *
+ * Fed mono samples in order; one instance per track.
+ */
+final class KeyEstimator {
+
+    private static final int FRAME = 8192;
+    private static final double LOWEST_HZ = 65.4;   // C2
+    private static final double HIGHEST_HZ = 2093;  // C7
+
+    private static final double[] MAJOR = { 6.35, 2.23, 3.48, 2.33, 4.38, 4.09, 2.52, 5.19, 2.39, 3.66, 2.29, 2.88 };
+    private static final double[] MINOR = { 6.33, 2.68, 3.52, 5.38, 2.60, 3.53, 2.54, 4.75, 3.98, 2.69, 3.34, 3.17 };
+
+    private final Fft fft = new Fft(FRAME);
+    private final float[] window = new float[FRAME];
+    private final float[] re = new float[FRAME];
+    private final float[] im = new float[FRAME];
+    private final int[] pitchClass = new int[FRAME / 2]; // -1 outside the analysed range
+    private final double[] chroma = new double[12];
+    private int filled = 0;
+
+    KeyEstimator(int sampleRate) {
+        for (int i = 0; i < FRAME; i++) {
+            window[i] = (float) (0.5 - 0.5 * Math.cos(2 * Math.PI * i / (FRAME - 1)));
+        }
+        for (int k = 0; k < FRAME / 2; k++) {
+            double hz = (double) k * sampleRate / FRAME;
+            if (hz < LOWEST_HZ || hz > HIGHEST_HZ) {
+                pitchClass[k] = -1;
+            } else {
+                // MIDI note 60 is C4; classes count up from C
+                long note = Math.round(69 + 12 * Math.log(hz / 440) / Math.log(2));
+                pitchClass[k] = (int) Math.floorMod(note, 12L);
+            }
+        }
+    }
+
+    void feed(float[] samples, int count) {
+        int i = 0;
+        while (i < count) {
+            int n = Math.min(count - i, FRAME - filled);
+            System.arraycopy(samples, i, re, filled, n);
+            filled += n;
+            i += n;
+            if (filled == FRAME) {
+                accumulate();
+                filled = 0;
+            }
+        }
+    }
+
+    private void accumulate() {
+        for (int k = 0; k < FRAME; k++) {
+            re[k] *= window[k];
+            im[k] = 0;
+        }
+        fft.transform(re, im);
+        for (int k = 0; k < FRAME / 2; k++) {
+            int pc = pitchClass[k];
+            if (pc >= 0) chroma[pc] += Math.sqrt(re[k] * re[k] + im[k] * im[k]);
+        }
+    }
+
+    /**
+     * @return 0-11 major from C, 12-23 minor from C, or -1 for silence
+     */
+    int key() {
+        double total = 0;
+        for (double c : chroma) total += c;
+        if (total <= 0) return -1;
+        int best = -1;
+        double bestCorrelation = Double.NEGATIVE_INFINITY;
+        for (int tonic = 0; tonic < 12; tonic++) {
+            double major = correlation(MAJOR, tonic);
+            double minor = correlation(MINOR, tonic);
+            if (major > bestCorrelation) {
+                bestCorrelation = major;
+                best = tonic;
+            }
+            if (minor > bestCorrelation) {
+                bestCorrelation = minor;
+                best = 12 + tonic;
+            }
+        }
+        return best;
+    }
+
+    // Pearson correlation of the chroma with a profile rotated to the tonic
+    private double correlation(double[] profile, int tonic) {
+        double meanChroma = 0;
+        double meanProfile = 0;
+        for (int i = 0; i < 12; i++) {
+            meanChroma += chroma[i];
+            meanProfile += profile[i];
+        }
+        meanChroma /= 12;
+        meanProfile /= 12;
+        double cov = 0;
+        double varChroma = 0;
+        double varProfile = 0;
+        for (int i = 0; i < 12; i++) {
+            double x = chroma[(tonic + i) % 12] - meanChroma;
+            double y = profile[i] - meanProfile;
+            cov += x * y;
+            varChroma += x * x;
+            varProfile += y * y;
+        }
+        if (varChroma == 0) return 0;
+        return cov / Math.sqrt(varChroma * varProfile);
+    }
+}
@@ -0,0 +1,450 @@
+package application.analysis;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import application.library.TrackId;
+import application.metrics.Counter;
+import application.metrics.Gauge;
+import application.metrics.LatencyHistogram;
+import application.metrics.Metrics;
+import application.playback.AudioDecoder;
+import application.playback.AudioDecoders;
+
+/**
+ * Analyses the library in the background: exact duration and bitrate for every track,
+ * plus tempo, key, loudness and brightness for the formats that can be decoded to PCM.
+ *
+ * A fixed set of low-priority "analysis" threads works through the submitted tracks,
+ * skipping the ones whose result is already saved for the same file size and date, so a
+ * new scan or an interrupted run only analyses what is missing. Each track is:
+ * - read from disk while holding one of {@code ioConcurrency} permits: the container
+ *   headers (the whole file for MP3 frame counting) and, for decodable formats, one
+ *   sequential pass that leaves the file in the OS cache
+ * - decoded and analysed without the permit, so slow or seeking disks see a few large
+ *   sequential readers while the cores decode what is already cached
+ * Results go to the {@link FeatureStore} right away and are synced every few tracks.
+ *
+ * With {@code pauseWhilePlaying} the workers stop between blocks while the player is
+ * playing and continue when it pauses or stops.
+ */
+public final class LibraryAnalyzer {
+
+    private static final Counter ANALYSED = Metrics.counter("analysis.tracks");
+    private static final Counter FAILED = Metrics.counter("analysis.failed");
+    private static final Counter BYTES = Metrics.counter("analysis.bytes");
+    private static final LatencyHistogram TRACK_TIME = Metrics.histogram("analysis.track_time");
+    private static final LatencyHistogram IO_WAIT = Metrics.histogram("analysis.io_wait");
+    private static final Gauge PENDING = Metrics.gauge("analysis.pending");
+    private static final Gauge PAUSED = Metrics.gauge("analysis.paused");
+
+    private static final int DECODE_BYTES = 64 * 1024;
+    private static final int WARM_BUFFER = 1024 * 1024;
+    private static final long WARM_MAX_BYTES = 512L * 1024 * 1024;
+    private static final int CHECKPOINT_TRACKS = 32;
+    private static final long REPORT_NANOS = TimeUnit.SECONDS.toNanos(10);
+    private static final long POLL_MILLIS = 500;
+    private static final long SHUTDOWN_WAIT_MILLIS = 2000;
+
+    /**
+     * Progress of the latest {@link #submit}.
+     *
+     * @param processed tracks done, including the ones already analysed before
+     * @param analysed tracks analysed in this run
+     * @param bytes size of the files analysed in this run
+     */
+    public record Progress(int processed, int total, int analysed, int failed, long bytes, long elapsedNanos) {
+
+        public boolean finished() {
+            return processed >= total;
+        }
+
+        public double tracksPerSecond() {
+            return elapsedNanos > 0 ? analysed * 1e9 / elapsedNanos : 0;
+        }
+
+        public double megabytesPerSecond() {
+            return elapsedNanos > 0 ? bytes * 1e9 / elapsedNanos / (1024 * 1024) : 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%d/%d tracks (%d analysed, %d failed), %.1f tracks/s, %.1f MB/s",
+                    processed, total, analysed, failed, tracksPerSecond(), megabytesPerSecond());
+        }
+    }
+
+    // One submitted library; its counters survive a newer submit for the jobs in flight
+    private static final class Run {
+        final int total;
+        final long startNanos = System.nanoTime();
+        final AtomicInteger processed = new AtomicInteger();
+        final AtomicInteger analysed = new AtomicInteger();
+        final AtomicInteger failed = new AtomicInteger();
+        final AtomicLong bytes = new AtomicLong();
+        final AtomicLong lastReport = new AtomicLong(System.nanoTime());
+        final CountDownLatch finished;
+
+        Run(int total) {
+            this.total = total;
+            this.finished = new CountDownLatch(total == 0 ? 0 : 1);
+        }
+
+        Progress progress() {
+            return new Progress(processed.get(), total, analysed.get(), failed.get(), bytes.get(),
+                    System.nanoTime() - startNanos);
+        }
+    }
+
+    private record Job(Path track, Run run) {
+    }
+
+    private final FeatureStore store;
+    private final Semaphore io;
+    private final boolean pauseWhilePlaying;
+    private final LinkedBlockingDeque<Job> queue = new LinkedBlockingDeque<>();
+    private final List<Thread> workers = new ArrayList<>();
+    private final AtomicInteger sinceCheckpoint = new AtomicInteger();
+    private final Object pauseLock = new Object();
+    private boolean paused = false; // guarded by pauseLock
+    private volatile Run run = new Run(0);
+    private volatile Consumer<Progress> progressListener = p -> System.out.println("Analysis: " + p);
+    private volatile BiConsumer<Path, TrackFeatures> resultListener = null;
+    private volatile boolean running = true;
+
+    /**
+     * @param threads analysis threads (decoding is CPU bound: up to the core count)
+     * @param ioConcurrency tracks read from disk at the same time
+     * @param pauseWhilePlaying stop while the player plays
+     */
+    public LibraryAnalyzer(FeatureStore store, int threads, int ioConcurrency, boolean pauseWhilePlaying) {
+        this.store = store;
+        this.io = new Semaphore(Math.max(1, ioConcurrency));
+        this.pauseWhilePlaying = pauseWhilePlaying;
+        for (int i = 0; i < Math.max(1, threads); i++) {
+            Thread t = new Thread(this::work, "analysis-" + i);
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            t.start();
+            workers.add(t);
+        }
+    }
+
+    /**
+     * Analyser configured from system properties (all optional):
+     * reproductor.analysis.threads (half the cores; 0 disables the analysis),
+     * reproductor.analysis.io (2), reproductor.analysis.pauseWhilePlaying (true when the
+     * threads leave fewer than two cores to the player). Results are kept in
+     * {@link FeatureStore#defaultDirectory()}.
+     *
+     * @return null when disabled or the results can't be opened
+     */
+    public static LibraryAnalyzer createDefault() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        int threads = Integer.getInteger("reproductor.analysis.threads", Math.max(1, cores / 2));
+        if (threads <= 0) return null;
+        String pause = System.getProperty("reproductor.analysis.pauseWhilePlaying");
+        boolean pauseWhilePlaying = pause != null ? Boolean.parseBoolean(pause) : cores - threads < 2;
+        try {
+            return new LibraryAnalyzer(FeatureStore.open(FeatureStore.defaultDirectory()), threads,
+                    Integer.getInteger("reproductor.analysis.io", 2), pauseWhilePlaying);
+        } catch (IOException e) {
+            System.err.println("Audio analysis disabled: " + e.getMessage());
+            return null;
+        }
+    }
+
+    public FeatureStore store() {
+        return store;
+    }
+
+    /**
+     * @return the analysed duration of a track, 0 when not known (yet)
+     */
+    public long durationMillis(String path) {
+        TrackFeatures f = store.get(TrackId.of(path));
+        return f == null ? 0 : f.durationMillis();
+    }
+
+    /**
+     * Analyse these tracks, replacing the tracks still waiting from an earlier call.
+     */
+    public void submit(List<Path> tracks) {
+        Run next = new Run(tracks.size());
+        queue.clear();
+        Run replaced = run;
+        run = next;
+        // Its dropped jobs never count as processed; waiters move on to the new run
+        replaced.finished.countDown();
+        for (Path track : tracks) {
+            queue.add(new Job(track, next));
+        }
+        PENDING.set(queue.size());
+    }
+
+    /**
+     * Called with the progress every few seconds and once at the end of a run, on an
+     * analysis thread. Defaults to a line on standard output.
+     */
+    public void setProgressListener(Consumer<Progress> listener) {
+        this.progressListener = listener;
+    }
+
+    /**
+     * Called with each track analysed successfully, on an analysis thread.
+     */
+    public void setResultListener(BiConsumer<Path, TrackFeatures> listener) {
+        this.resultListener = listener;
+    }
+
+    public Progress progress() {
+        return run.progress();
+    }
+
+    /** Wait until the latest submitted run is done, following newer submits, or until shutdown. */
+    public void awaitRun() throws InterruptedException {
+        Run r;
+        do {
+            r = run;
+            r.finished.await();
+        } while (r != run && running);
+    }
+
+    /**
+     * Tell the analyser whether the player is playing; it pauses meanwhile when configured to.
+     */
+    public void setPlaybackActive(boolean active) {
+        if (!pauseWhilePlaying) return;
+        synchronized (pauseLock) {
+            paused = active;
+            PAUSED.set(active ? 1 : 0);
+            if (!active) pauseLock.notifyAll();
+        }
+    }
+
+    /**
+     * Stop the workers (the tracks they are on are dropped) and save the results.
+     */
+    public void shutdown() {
+        running = false;
+        queue.clear();
+        run.finished.countDown();
+        synchronized (pauseLock) {
+            pauseLock.notifyAll();
+        }
+        // Not interrupted: an interrupt would close the store's channel mid-write
+        for (Thread t : workers) {
+            try {
+                t.join(SHUTDOWN_WAIT_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        try {
+            store.close();
+        } catch (IOException e) {
+            System.err.println("Could not save analysis results: " + e.getMessage());
+        }
+    }
+
+    // ---- workers
+
+    private void work() {
+        while (running) {
+            Job job;
+            try {
+                job = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (job == null) continue;
+            PENDING.set(queue.size());
+            try {
+                analyse(job);
+            } catch (CancellationException e) {
+                return;
+            }
+            Run r = job.run();
+            int processed = r.processed.incrementAndGet();
+            long now = System.nanoTime();
+            long last = r.lastReport.get();
+            boolean finished = processed == r.total;
+            if (finished || (now - last >= REPORT_NANOS && r.lastReport.compareAndSet(last, now))) {
+                report(r.progress());
+            }
+            if (finished) {
+                checkpoint();
+                r.finished.countDown();
+            }
+        }
+    }
+
+    private void analyse(Job job) {
+        Path track = job.track();
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(track, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            return; // removed since the scan
+        } catch (IOException e) {
+            return;
+        }
+        long id = TrackId.of(track.toString());
+        long size = attrs.size();
+        long modified = attrs.lastModifiedTime().toMillis();
+        if (store.isCurrent(id, size, modified)) return;
+
+        awaitResume();
+        long start = System.nanoTime();
+        TrackFeatures features;
+        try {
+            features = extract(track, size);
+        } catch (IOException | RuntimeException e) {
+            if (e instanceof CancellationException c) throw c;
+            features = null;
+        }
+        if (features == null) {
+            FAILED.increment();
+            job.run().failed.incrementAndGet();
+        } else {
+            ANALYSED.increment();
+            BYTES.add(size);
+            job.run().analysed.incrementAndGet();
+            job.run().bytes.addAndGet(size);
+        }
+        TRACK_TIME.recordSince(start);
+        try {
+            store.put(id, size, modified, features);
+        } catch (IOException e) {
+            System.err.println("Could not save analysis of " + track.getFileName() + ": " + e.getMessage());
+        }
+        if (sinceCheckpoint.incrementAndGet() >= CHECKPOINT_TRACKS) {
+            checkpoint();
+        }
+        BiConsumer<Path, TrackFeatures> listener = resultListener;
+        if (features != null && listener != null) {
+            try {
+                listener.accept(track, features);
+            } catch (RuntimeException e) {
+                System.err.println("Analysis result listener failed: " + e);
+            }
+        }
+    }
+
+    /**
+     * @throws IOException when the format is not supported or the file is damaged
+     */
+    private TrackFeatures extract(Path track, long size) throws IOException {
+        boolean decodable = AudioDecoders.supports(track);
+        ContainerInfo.Info info;
+        long waitStart = System.nanoTime();
+        io.acquireUninterruptibly();
+        IO_WAIT.recordSince(waitStart);
+        try {
+            info = ContainerInfo.read(track);
+            if (decodable && size <= WARM_MAX_BYTES) warm(track);
+        } finally {
+            io.release();
+        }
+        if (!decodable) {
+            if (info == null) throw new IOException("Unsupported format: " + track.getFileName());
+            return new TrackFeatures(info.durationMillis(), info.bitrate(), info.sampleRate(), info.channels(),
+                    0, -1, 0, 0);
+        }
+
+        try (AudioDecoder decoder = AudioDecoders.open(track)) {
+            int sampleRate = decoder.sampleRate();
+            int channels = decoder.channels();
+            int frameSize = decoder.frameSize();
+            TempoEstimator tempo = new TempoEstimator(sampleRate);
+            KeyEstimator key = new KeyEstimator(sampleRate);
+            SpectralStats spectrum = new SpectralStats(sampleRate);
+            byte[] pcm = new byte[DECODE_BYTES - DECODE_BYTES % frameSize];
+            float[] mono = new float[pcm.length / frameSize];
+            long frames = 0;
+            int n;
+            while ((n = decoder.read(pcm, 0, pcm.length)) > 0) {
+                awaitResume();
+                int count = n / frameSize;
+                // 16-bit little-endian interleaved to mono in [-1, 1]
+                float scale = 1f / (32768f * channels);
+                for (int i = 0, b = 0; i < count; i++) {
+                    int sum = 0;
+                    for (int c = 0; c < channels; c++, b += 2) {
+                        sum += (short) ((pcm[b] & 0xFF) | (pcm[b + 1] << 8));
+                    }
+                    mono[i] = sum * scale;
+                }
+                tempo.feed(mono, count);
+                key.feed(mono, count);
+                spectrum.feed(mono, count);
+                frames += count;
+            }
+            long millis = info != null ? info.durationMillis() : frames * 1000 / sampleRate;
+            int bitrate = info != null ? info.bitrate() : millis > 0 ? (int) (size * 8000 / millis) : 0;
+            return new TrackFeatures(millis, bitrate, sampleRate, channels, tempo.bpm(), key.key(),
+                    spectrum.loudnessDb(), spectrum.centroidHz());
+        }
+    }
+
+    // One large sequential read, so decoding finds the file in the OS cache
+    private void warm(Path track) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(WARM_BUFFER);
+        try (FileChannel ch = FileChannel.open(track, StandardOpenOption.READ)) {
+            while (ch.read(buffer) > 0) {
+                if (!running) throw new CancellationException();
+                buffer.clear();
+            }
+        }
+    }
+
+    private void awaitResume() {
+        synchronized (pauseLock) {
+            while (paused && running) {
+                try {
+                    pauseLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new CancellationException();
+                }
+            }
+        }
+        if (!running) throw new CancellationException();
+    }
+
+    private void checkpoint() {
+        sinceCheckpoint.set(0);
+        try {
+            store.checkpoint();
+        } catch (IOException e) {
+            System.err.println("Could not save analysis results: " + e.getMessage());
+        }
+    }
+
+    private void report(Progress p) {
+        try {
+            progressListener.accept(p);
+        } catch (RuntimeException e) {
+            System.err.println("Analysis progress listener failed: " + e);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package application.analysis;
+
+import application.playback.Fft;
+
+/**
+ * Loudness and brightness of a track: the RMS level over all samples, and the spectral
+ * centroid (magnitude-weighted mean frequency) of non-overlapping frames, averaged with
+ * each frame weighted by its energy so quiet passages count less.
+ *
+ * Fed mono samples in order; one instance per track.
+ */
+final class SpectralStats {
+
+    private static final int FRAME = 2048;
+    private static final double SILENCE_DB = -90;
+
+    private final int sampleRate;
+    private final Fft fft = new Fft(FRAME);
+    private final float[] window = new float[FRAME];
+    private final float[] re = new float[FRAME];
+    private final float[] im = new float[FRAME];
+    private int filled = 0;
+    private double sumSquares = 0;
+    private long samples = 0;
+    private double centroidSum = 0;
+    private double weightSum = 0;
+
+    SpectralStats(int sampleRate) {
+        this.sampleRate = sampleRate;
+        for (int i = 0; i < FRAME; i++) {
+            window[i] = (float) (0.5 - 0.5 * Math.cos(2 * Math.PI * i / (FRAME - 1)));
+        }
+    }
+
+    void feed(float[] mono, int count) {
+        for (int i = 0; i < count; i++) {
+            sumSquares += mono[i] * mono[i];
+        }
+        samples += count;
+        int i = 0;
+        while (i < count) {
+            int n = Math.min(count - i, FRAME - filled);
+            System.arraycopy(mono, i, re, filled, n);
+            filled += n;
+            i += n;
+            if (filled == FRAME) {
+                frame();
+                filled = 0;
+            }
+        }
+    }
+
+    private void frame() {
+        for (int k = 0; k < FRAME; k++) {
+            re[k] *= window[k];
+            im[k] = 0;
+        }
+        fft.transform(re, im);
+        double weighted = 0;
+        double total = 0;
+        double energy = 0;
+        for (int k = 1; k < FRAME / 2; k++) {
+            double power = re[k] * re[k] + im[k] * im[k];
+            double magnitude = Math.sqrt(power);
+            weighted += magnitude * k;
+            total += magnitude;
+            energy += power;
+        }
+        if (total <= 0) return;
+        centroidSum += energy * (weighted / total) * sampleRate / FRAME;
+        weightSum += energy;
+    }
+
+    /** RMS level in dBFS, -90 for silence. */
+    float loudnessDb() {
+        if (samples == 0 || sumSquares == 0) return (float) SILENCE_DB;
+        return (float) Math.max(SILENCE_DB, 10 * Math.log10(sumSquares / samples));
+    }
+
+    /** Energy-weighted mean spectral centroid in Hz, 0 for silence. */
+    float centroidHz() {
+        return weightSum > 0 ? (float) (centroidSum / weightSum) : 0;
+    }
+}
@@ -0,0 +1,135 @@
+package application.analysis;
+
+import java.util.Arrays;
+
+import application.playback.Fft;
+
+/**
+ * Tempo from an onset envelope: spectral flux of short overlapping frames (how much the
+ * log spectrum rises from one frame to the next), then the autocorrelation of that
+ * envelope over the lags of 50-220 BPM. Lags are weighted towards 120 BPM on a log scale,
+ * which settles the usual half/double tempo ambiguity on the common choice, and the best
+ * peak is refined by parabolic interpolation.
+ *
+ * Fed mono samples in order; one instance per track.
+ */
+final class TempoEstimator {
+
+    private static final int FRAME = 1024;
+    private static final int HOP = 512;
+    private static final double MIN_BPM = 50;
+    private static final double MAX_BPM = 220;
+    private static final double PREFERRED_BPM = 120;
+    private static final double OCTAVE_WIDTH = 1.0; // std deviation of the weighting, octaves
+    private static final double MIN_SECONDS = 10;
+
+    private final int sampleRate;
+    private final Fft fft = new Fft(FRAME);
+    private final float[] window = new float[FRAME];
+    private final float[] frame = new float[FRAME];
+    private final float[] re = new float[FRAME];
+    private final float[] im = new float[FRAME];
+    private final float[] previous = new float[FRAME / 2];
+    private int filled = 0;
+    private boolean first = true;
+    private float[] envelope = new float[4096];
+    private int frames = 0;
+
+    TempoEstimator(int sampleRate) {
+        this.sampleRate = sampleRate;
+        for (int i = 0; i < FRAME; i++) {
+            window[i] = (float) (0.5 - 0.5 * Math.cos(2 * Math.PI * i / (FRAME - 1)));
+        }
+    }
+
+    void feed(float[] samples, int count) {
+        int i = 0;
+        while (i < count) {
+            int n = Math.min(count - i, FRAME - filled);
+            System.arraycopy(samples, i, frame, filled, n);
+            filled += n;
+            i += n;
+            if (filled == FRAME) {
+                onset();
+                // Keep the second half as the start of the next frame
+                System.arraycopy(frame, HOP, frame, 0, FRAME - HOP);
+                filled = FRAME - HOP;
+            }
+        }
+    }
+
+    private void onset() {
+        for (int k = 0; k < FRAME; k++) {
+            re[k] = frame[k] * window[k];
+            im[k] = 0;
+        }
+        fft.transform(re, im);
+        float flux = 0;
+        for (int k = 1; k < FRAME / 2; k++) {
+            float magnitude = (float) Math.log1p(100 * Math.sqrt(re[k] * re[k] + im[k] * im[k]));
+            float rise = magnitude - previous[k];
+            if (rise > 0) flux += rise;
+            previous[k] = magnitude;
+        }
+        if (first) {
+            first = false; // no previous spectrum yet
+            return;
+        }
+        if (frames == envelope.length) envelope = Arrays.copyOf(envelope, frames * 2);
+        envelope[frames++] = flux;
+    }
+
+    /**
+     * @return beats per minute, or 0 when the track is too short or has no steady pulse
+     */
+    float bpm() {
+        double framesPerSecond = (double) sampleRate / HOP;
+        if (frames < MIN_SECONDS * framesPerSecond) return 0;
+
+        // Remove the local average so only the peaks above it correlate
+        int n = frames;
+        double[] e = new double[n];
+        int half = (int) (framesPerSecond / 4);
+        double sum = 0;
+        for (int t = 0; t < Math.min(n, half); t++) sum += envelope[t];
+        for (int t = 0; t < n; t++) {
+            int lo = t - half - 1;
+            int hi = t + half;
+            if (hi < n) sum += envelope[hi];
+            if (lo >= 0) sum -= envelope[lo];
+            int width = Math.min(n - 1, hi) - Math.max(0, lo + 1) + 1;
+            e[t] = Math.max(0, envelope[t] - sum / width);
+        }
+
+        int minLag = (int) Math.floor(60 * framesPerSecond / MAX_BPM);
+        int maxLag = (int) Math.ceil(60 * framesPerSecond / MIN_BPM);
+        if (maxLag + 2 >= n) return 0;
+        double[] r = new double[maxLag + 2];
+        for (int lag = Math.max(1, minLag - 1); lag <= maxLag + 1; lag++) {
+            double acc = 0;
+            for (int t = 0; t + lag < n; t++) acc += e[t] * e[t + lag];
+            r[lag] = acc / (n - lag);
+        }
+
+        int best = -1;
+        double bestScore = 0;
+        for (int lag = minLag; lag <= maxLag; lag++) {
+            // Local maxima only, weighted towards the preferred tempo
+            if (r[lag] <= r[lag - 1] || r[lag] < r[lag + 1]) continue;
+            double octaves = Math.log(60 * framesPerSecond / lag / PREFERRED_BPM) / Math.log(2);
+            double score = r[lag] * Math.exp(-0.5 * (octaves / OCTAVE_WIDTH) * (octaves / OCTAVE_WIDTH));
+            if (score > bestScore) {
+                bestScore = score;
+                best = lag;
+            }
+        }
+        if (best < 0) return 0;
+        double a = r[best - 1];
+        double b = r[best];
+        double c = r[best + 1];
+        double denominator = a - 2 * b + c;
+        double shift = denominator != 0 ? 0.5 * (a - c) / denominator : 0;
+        double lag = best + Math.max(-0.5, Math.min(0.5, shift));
+        return (float) (60 * framesPerSecond / lag);
+    }
+}
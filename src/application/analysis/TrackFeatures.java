@@ -0,0 +1,35 @@
+package application.analysis;
+
+/**
+ * Audio features of one track. Unknown values are 0 (key: -1).
+ *
+ * @param durationMillis exact duration: counted frames or samples, not estimated from the bitrate
+ * @param bitrate average bits per second of audio data
+ * @param bpm tempo in beats per minute; needs a PCM decoder for the format
+ * @param key estimated key, 0-11 major from C, 12-23 minor from C; needs a PCM decoder
+ * @param loudnessDb RMS level in dB relative to full scale (negative); needs a PCM decoder
+ * @param centroidHz spectral centroid, the "brightness" of the sound; needs a PCM decoder
+ */
+public record TrackFeatures(long durationMillis, int bitrate, int sampleRate, int channels, float bpm, int key,
+                            float loudnessDb, float centroidHz) {
+
+    private static final String[] NOTES = { "C", "C#", "D", "D#", "E", "F", "F#", "G", "G#", "A", "A#", "B" };
+
+    public boolean hasTempo() {
+        return bpm > 0;
+    }
+
+    public boolean hasTimbre() {
+        return loudnessDb < 0 && centroidHz > 0;
+    }
+
+    public boolean hasKey() {
+        return key >= 0 && key < 24;
+    }
+
+    /** e.g. "A minor", or "" when unknown. */
+    public String keyName() {
+        if (!hasKey()) return "";
+        return NOTES[key % 12] + (key < 12 ? " major" : " minor");
+    }
+}
@@ -0,0 +1,271 @@
+package application.artwork;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import application.tags.Id3v2Frames;
+import application.tags.TagReader;
+
+/**
+ * Locates album artwork for a track without reading the picture itself.
+ *
+ * Looks for an embedded picture first (ID3v2 APIC/PIC, FLAC PICTURE block, MP4 covr atom)
+ * and falls back to a cover image in the track's folder. Only headers are read, with
+ * positioned FileChannel reads; the image bytes are streamed later by {@link #open(Picture)}.
+ */
+public final class ArtworkExtractor {
+
+    // Picked in this order when a folder has several
+    private static final String[] FOLDER_IMAGES = {
+            "cover.jpg", "folder.jpg", "front.jpg", "albumart.jpg", "cover.png", "folder.png", "front.png"
+    };
+    private static final int ID3_PICTURE_FRONT_COVER = 3;
+    private static final int MAX_MP4_ATOMS = 4096;
+
+    /**
+     * Where the picture bytes are: a region of a file (the whole file for folder images).
+     *
+     * @param file the file holding the picture
+     * @param offset first byte of the encoded image
+     * @param length encoded image size in bytes
+     * @param embedded true when the picture lives inside the audio file
+     */
+    public record Picture(Path file, long offset, long length, boolean embedded) {
+    }
+
+    private ArtworkExtractor() {
+    }
+
+    /**
+     * Find the artwork for a track.
+     *
+     * @return the picture location, or null when the track has none
+     */
+    public static Picture find(Path track) {
+        try {
+            Picture embedded = findEmbedded(track);
+            if (embedded != null) return embedded;
+        } catch (IOException | RuntimeException e) {
+            // damaged tags: fall back to the folder image
+        }
+        return findInFolder(track.getParent());
+    }
+
+    /**
+     * Look for a cover image file in a folder.
+     *
+     * @return the picture location, or null when there is none
+     */
+    public static Picture findInFolder(Path folder) {
+        if (folder == null) return null;
+        for (String name : FOLDER_IMAGES) {
+            Path candidate = folder.resolve(name);
+            try {
+                if (Files.isRegularFile(candidate)) {
+                    return new Picture(candidate, 0, Files.size(candidate), false);
+                }
+            } catch (IOException ignored) {
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Stream the encoded bytes of a picture. Reads are positioned, so the stream never
+     * moves a shared channel position.
+     */
+    public static InputStream open(Picture picture) throws IOException {
+        FileChannel ch = FileChannel.open(picture.file(), StandardOpenOption.READ);
+        return new RegionInputStream(ch, picture.offset(), picture.length());
+    }
+
+    static Picture findEmbedded(Path track) throws IOException {
+        try (FileChannel ch = FileChannel.open(track, StandardOpenOption.READ)) {
+            ByteBuffer magic = TagReader.readAt(ch, 0, 8);
+            if (magic.remaining() < 8) return null;
+            if (magic.get(0) == 'I' && magic.get(1) == 'D' && magic.get(2) == '3') {
+                return findId3(track, ch);
+            }
+            if (magic.get(0) == 'f' && magic.get(1) == 'L' && magic.get(2) == 'a' && magic.get(3) == 'C') {
+                return findFlac(track, ch);
+            }
+            if (magic.get(4) == 'f' && magic.get(5) == 't' && magic.get(6) == 'y' && magic.get(7) == 'p') {
+                return findMp4(track, ch);
+            }
+            return null;
+        }
+    }
+
+    private static Picture findId3(Path track, FileChannel ch) throws IOException {
+        Id3v2Frames frames = Id3v2Frames.open(ch);
+        if (frames == null) return null;
+        int version = frames.version();
+        Picture best = null;
+        while (frames.next()) {
+            if (!frames.id().equals("APIC") && !frames.id().equals("PIC")) continue;
+            long body = frames.body();
+            long size = frames.size();
+            // encoding, mime (or 3-char format in v2.2), picture type, description, data
+            ByteBuffer head = TagReader.readAt(ch, body, (int) Math.min(size, 512));
+            if (head.remaining() < 2) continue;
+            int encoding = head.get(0);
+            int p = 1;
+            if (version == 2) {
+                p += 3;
+            } else {
+                while (p < head.limit() && head.get(p) != 0) p++;
+                p++;
+            }
+            int type = p < head.limit() ? head.get(p) & 0xFF : 0;
+            p++;
+            p = skipTerminatedString(head, p, encoding == 1 || encoding == 2);
+            if (p > 0 && p < size) {
+                Picture picture = new Picture(track, body + p, size - p, true);
+                if (type == ID3_PICTURE_FRONT_COVER) return picture;
+                if (best == null) best = picture;
+            }
+        }
+        return best;
+    }
+
+    // Returns the index after the terminator, or -1 when it is not within the buffer
+    private static int skipTerminatedString(ByteBuffer buf, int p, boolean wide) {
+        if (wide) {
+            while (p + 1 < buf.limit()) {
+                if (buf.get(p) == 0 && buf.get(p + 1) == 0) return p + 2;
+                p += 2;
+            }
+        } else {
+            while (p < buf.limit()) {
+                if (buf.get(p) == 0) return p + 1;
+                p++;
+            }
+        }
+        return -1;
+    }
+
+    private static Picture findFlac(Path track, FileChannel ch) throws IOException {
+        long pos = 4;
+        boolean last = false;
+        Picture best = null;
+        while (!last) {
+            ByteBuffer bh = TagReader.readAt(ch, pos, 4);
+            if (bh.remaining() < 4) break;
+            last = (bh.get(0) & 0x80) != 0;
+            int type = bh.get(0) & 0x7F;
+            int length = ((bh.get(1) & 0xFF) << 16) | ((bh.get(2) & 0xFF) << 8) | (bh.get(3) & 0xFF);
+            long body = pos + 4;
+            if (type == 6) {
+                // picture type, mime, description, width, height, depth, colors, data length, data
+                // every length is checked against the block: a bad one skips the picture
+                ByteBuffer head = TagReader.readAt(ch, body, Math.min(length, 1024));
+                if (head.limit() >= 8) {
+                    int pictureType = head.getInt(0);
+                    long p = 8 + (head.getInt(4) & 0xFFFFFFFFL);
+                    if (p + 4 <= head.limit()) {
+                        p += 4 + (head.getInt((int) p) & 0xFFFFFFFFL);
+                        p += 16;
+                        if (p + 4 <= head.limit()) {
+                            long dataLength = head.getInt((int) p) & 0xFFFFFFFFL;
+                            p += 4;
+                            if (dataLength > 0 && dataLength <= length - p) {
+                                Picture picture = new Picture(track, body + p, dataLength, true);
+                                if (pictureType == ID3_PICTURE_FRONT_COVER) return picture;
+                                if (best == null) best = picture;
+                            }
+                        }
+                    }
+                }
+            }
+            pos = body + length;
+        }
+        return best;
+    }
+
+    private static Picture findMp4(Path track, FileChannel ch) throws IOException {
+        long[] moov = findAtom(ch, 0, ch.size(), "moov");
+        if (moov == null) return null;
+        long[] udta = findAtom(ch, moov[0], moov[1], "udta");
+        if (udta == null) return null;
+        long[] meta = findAtom(ch, udta[0], udta[1], "meta");
+        if (meta == null) return null;
+        // iTunes writes meta as a full box (4 bytes of version/flags before the children)
+        long metaStart = meta[0];
+        ByteBuffer versionFlags = TagReader.readAt(ch, metaStart, 4);
+        if (versionFlags.remaining() == 4 && versionFlags.getInt(0) == 0) metaStart += 4;
+        long[] ilst = findAtom(ch, metaStart, meta[1], "ilst");
+        if (ilst == null) return null;
+        long[] covr = findAtom(ch, ilst[0], ilst[1], "covr");
+        if (covr == null) return null;
+        long[] data = findAtom(ch, covr[0], covr[1], "data");
+        if (data == null || data[1] - data[0] <= 8) return null;
+        // data payload: 4 bytes type (13 JPEG, 14 PNG), 4 bytes locale, image
+        return new Picture(track, data[0] + 8, data[1] - data[0] - 8, true);
+    }
+
+    // Returns {bodyStart, bodyEnd} of the first child atom with the given type in [start, end)
+    private static long[] findAtom(FileChannel ch, long start, long end, String type) throws IOException {
+        long pos = start;
+        for (int i = 0; i < MAX_MP4_ATOMS && pos + 8 <= end; i++) {
+            ByteBuffer h = TagReader.readAt(ch, pos, 16);
+            if (h.remaining() < 8) return null;
+            long size = h.getInt(0) & 0xFFFFFFFFL;
+            String name = new String(new byte[]{h.get(4), h.get(5), h.get(6), h.get(7)}, StandardCharsets.ISO_8859_1);
+            long headerSize = 8;
+            if (size == 1) {
+                if (h.remaining() < 16) return null;
+                size = h.getLong(8);
+                headerSize = 16;
+            } else if (size == 0) {
+                size = end - pos;
+            }
+            if (size < headerSize) return null;
+            if (name.equals(type)) {
+                return new long[]{pos + headerSize, Math.min(end, pos + size)};
+            }
+            pos += size;
+        }
+        return null;
+    }
+
+    /**
+     * Reads a byte range of a channel with positioned reads; closes the channel on close.
+     */
+    private static final class RegionInputStream extends InputStream {
+        private final FileChannel ch;
+        private final long end;
+        private long position;
+
+        RegionInputStream(FileChannel ch, long offset, long length) {
+            this.ch = ch;
+            this.position = offset;
+            this.end = offset + length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (position >= end) return -1;
+            int n = ch.read(ByteBuffer.wrap(b, off, (int) Math.min(len, end - position)), position);
+            if (n < 0) return -1;
+            position += n;
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            ch.close();
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package application.artwork;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import javafx.application.Platform;
+import javafx.scene.image.Image;
+
+import application.metrics.Counter;
+import application.metrics.Metrics;
+import application.tags.TagReader;
+import application.tags.TrackTags;
+
+/**
+ * Album artwork at thumbnail size, shared by every track of an album.
+ *
+ * Lookups go memory LRU, then the on-disk thumbnail store, then extraction and decoding.
+ * Decoding happens directly at the requested size (JavaFX scales while decoding), and
+ * concurrent requests for the same album and size wait for a single decode.
+ *
+ * Configuration (system properties):
+ * - reproductor.artwork.memoryMb: memory cache budget in decoded pixels (default 32)
+ * - reproductor.artwork.diskMb: thumbnail store budget (default 128)
+ */
+public final class ArtworkService {
+
+    /** Decoded size of table thumbnails (shown at 32 px, sharp on HiDPI screens) */
+    public static final int ROW_SIZE = 64;
+    /** Decoded size of the "now playing" cover */
+    public static final int COVER_SIZE = 256;
+
+    private static final Counter MEMORY_HITS = Metrics.counter("artwork.memory_hits");
+    private static final Counter DISK_HITS = Metrics.counter("artwork.disk_hits");
+    private static final Counter DECODES = Metrics.counter("artwork.decodes");
+    // Albums remembered as having no artwork; the oldest are forgotten past this
+    private static final int MAX_MISSING = 4096;
+
+    private final ThumbnailCache memory;
+    private final ThumbnailStore disk;
+    private final ConcurrentMap<String, CompletableFuture<Image>> inFlight = new ConcurrentHashMap<>();
+    // Albums known to have no artwork, so they are not searched again on every scroll
+    private final Set<String> missing = Collections.newSetFromMap(Collections.synchronizedMap(new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > MAX_MISSING;
+        }
+    }));
+    private final ExecutorService executor;
+
+    public ArtworkService(Path storeDirectory, long memoryBytes, long diskBytes) {
+        this.memory = new ThumbnailCache(memoryBytes);
+        this.disk = new ThumbnailStore(storeDirectory, diskBytes);
+        // One thread for on-demand covers; newer requests wait behind at most a few older ones
+        this.executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS, new LinkedBlockingQueue<>(8), r -> {
+            Thread t = new Thread(r, "artwork-loader");
+            t.setDaemon(true);
+            return t;
+        }, new ThreadPoolExecutor.DiscardOldestPolicy());
+        executor.execute(disk::trim);
+    }
+
+    /**
+     * Service with the default store location (~/.reproductor/thumbs) and budgets.
+     */
+    public static ArtworkService createDefault() {
+        Path dir = Paths.get(System.getProperty("user.home"), ".reproductor", "thumbs");
+        long memoryMb = Long.getLong("reproductor.artwork.memoryMb", 32L);
+        long diskMb = Long.getLong("reproductor.artwork.diskMb", 128L);
+        return new ArtworkService(dir, memoryMb << 20, diskMb << 20);
+    }
+
+    /**
+     * Get the artwork of a track at the given size, blocking while it is extracted or
+     * decoded. Call from background threads only.
+     *
+     * @param tags the track's tags, or null to read them here (they decide the album)
+     * @return the image, or null when the track has no artwork
+     */
+    public Image thumbnail(Path track, TrackTags tags, int size) {
+        if (tags == null) {
+            try {
+                tags = TagReader.read(track);
+            } catch (IOException | RuntimeException e) {
+                tags = TrackTags.EMPTY;
+            }
+        }
+        String key = albumKey(track, tags) + "@" + size;
+        Image cached = memory.get(key);
+        if (cached != null) {
+            MEMORY_HITS.increment();
+            return cached;
+        }
+        if (missing.contains(key)) return null;
+
+        CompletableFuture<Image> mine = new CompletableFuture<>();
+        CompletableFuture<Image> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            return running.join();
+        }
+        Image image = null;
+        try {
+            image = disk.load(key);
+            if (image != null) {
+                DISK_HITS.increment();
+            } else {
+                image = decode(track, size);
+                if (image != null) {
+                    DECODES.increment();
+                    disk.save(key, image);
+                }
+            }
+            if (image != null) {
+                memory.put(key, image);
+            } else {
+                missing.add(key);
+            }
+            return image;
+        } finally {
+            mine.complete(image);
+            inFlight.remove(key, mine);
+        }
+    }
+
+    /**
+     * Load artwork in the background and hand it to the FX thread (null when there is none).
+     * When requests pile up, the oldest ones are dropped.
+     */
+    public void loadAsync(Path track, TrackTags tags, int size, Consumer<Image> onFxThread) {
+        executor.execute(() -> {
+            Image found;
+            try {
+                found = thumbnail(track, tags, size);
+            } catch (RuntimeException e) {
+                found = null; // the callback still runs, showing the default cover
+            }
+            Image image = found;
+            Platform.runLater(() -> onFxThread.accept(image));
+        });
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Tracks in the same folder with the same album tag share one picture.
+     */
+    static String albumKey(Path track, TrackTags tags) {
+        Path folder = track.toAbsolutePath().getParent();
+        return (folder != null ? folder.toString() : "") + "|" + tags.album().toLowerCase(Locale.ROOT);
+    }
+
+    private static Image decode(Path track, int size) {
+        ArtworkExtractor.Picture picture = ArtworkExtractor.find(track);
+        if (picture == null) return null;
+        try (InputStream in = ArtworkExtractor.open(picture)) {
+            Image image = new Image(in, size, size, true, true);
+            return image.isError() ? null : image;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
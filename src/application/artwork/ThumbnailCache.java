@@ -0,0 +1,52 @@
+package application.artwork;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javafx.scene.image.Image;
+
+/**
+ * In-memory LRU of decoded thumbnails, bounded by pixel memory rather than entry count
+ * (a decoded image costs width * height * 4 bytes however small its file was).
+ */
+final class ThumbnailCache {
+
+    private final long maxBytes;
+    private final LinkedHashMap<String, Image> images = new LinkedHashMap<>(64, 0.75f, true);
+    private long bytes = 0;
+
+    ThumbnailCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    synchronized Image get(String key) {
+        return images.get(key);
+    }
+
+    synchronized void put(String key, Image image) {
+        Image previous = images.put(key, image);
+        if (previous != null) bytes -= cost(previous);
+        bytes += cost(image);
+        // Evict least recently used entries, but always keep the newest one
+        Iterator<Map.Entry<String, Image>> it = images.entrySet().iterator();
+        while (bytes > maxBytes && images.size() > 1 && it.hasNext()) {
+            Map.Entry<String, Image> eldest = it.next();
+            if (eldest.getKey().equals(key)) continue;
+            bytes -= cost(eldest.getValue());
+            it.remove();
+        }
+    }
+
+    synchronized long sizeInBytes() {
+        return bytes;
+    }
+
+    synchronized int size() {
+        return images.size();
+    }
+
+    static long cost(Image image) {
+        return (long) image.getWidth() * (long) image.getHeight() * 4L;
+    }
+}
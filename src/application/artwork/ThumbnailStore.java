@@ -0,0 +1,151 @@
+package application.artwork;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.PixelReader;
+import javafx.scene.image.WritableImage;
+
+/**
+ * On-disk thumbnail store. Thumbnails are kept as raw ARGB pixels (small header plus
+ * width * height ints) so loading one is a single read with no image codec involved.
+ *
+ * The directory is trimmed to a byte budget, dropping the least recently used files
+ * (file modification time is refreshed on every hit): at startup, and again each time
+ * another sixteenth of the budget has been written, so a long session scrolling a large
+ * library overshoots the budget by that much at most.
+ */
+final class ThumbnailStore {
+
+    private static final int MAGIC = 0x54484D42; // "THMB"
+    private static final int HEADER_BYTES = 12;
+    private static final String SUFFIX = ".argb";
+
+    private final Path directory;
+    private final long maxBytes;
+    private final AtomicLong writtenSinceTrim = new AtomicLong();
+
+    ThumbnailStore(Path directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @return the stored thumbnail, or null when it is missing or unreadable
+     */
+    Image load(String key) {
+        Path file = fileFor(key);
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size < HEADER_BYTES || size > Integer.MAX_VALUE) return null;
+            ByteBuffer buf = ByteBuffer.allocate((int) size);
+            while (buf.hasRemaining() && ch.read(buf) >= 0) {
+                // keep reading
+            }
+            buf.flip();
+            if (buf.remaining() < HEADER_BYTES || buf.getInt() != MAGIC) return null;
+            int width = buf.getInt();
+            int height = buf.getInt();
+            if (width <= 0 || height <= 0 || buf.remaining() != width * height * 4) return null;
+            IntBuffer pixels = buf.asIntBuffer();
+            WritableImage image = new WritableImage(width, height);
+            image.getPixelWriter().setPixels(0, 0, width, height, PixelFormat.getIntArgbInstance(), pixels, width);
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return image;
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    void save(String key, Image image) {
+        PixelReader reader = image.getPixelReader();
+        if (reader == null) return;
+        int width = (int) image.getWidth();
+        int height = (int) image.getHeight();
+        int[] pixels = new int[width * height];
+        reader.getPixels(0, 0, width, height, PixelFormat.getIntArgbInstance(), pixels, 0, width);
+
+        ByteBuffer buf = ByteBuffer.allocate(HEADER_BYTES + pixels.length * 4);
+        buf.putInt(MAGIC).putInt(width).putInt(height);
+        buf.asIntBuffer().put(pixels);
+        buf.rewind();
+        Path file = fileFor(key);
+        try {
+            Files.createDirectories(directory);
+            // Write then rename, so a crash never leaves a truncated thumbnail behind
+            Path tmp = Files.createTempFile(directory, "thumb", ".tmp");
+            try {
+                try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                    while (buf.hasRemaining()) ch.write(buf);
+                }
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+        } catch (IOException e) {
+            System.err.println("Could not store thumbnail: " + e.getMessage());
+            return;
+        }
+        long written = writtenSinceTrim.addAndGet(buf.capacity());
+        if (written >= maxBytes / 16 && writtenSinceTrim.compareAndSet(written, 0)) {
+            trim();
+        }
+    }
+
+    /**
+     * Delete the least recently used thumbnails until the store fits its byte budget.
+     */
+    synchronized void trim() {
+        if (!Files.isDirectory(directory)) return;
+        record Entry(Path path, long size, long lastUsed) {
+        }
+        List<Entry> entries = new ArrayList<>();
+        long total = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path p : files) {
+                BasicFileAttributes attrs = Files.readAttributes(p, BasicFileAttributes.class);
+                entries.add(new Entry(p, attrs.size(), attrs.lastModifiedTime().toMillis()));
+                total += attrs.size();
+            }
+        } catch (IOException e) {
+            return;
+        }
+        if (total <= maxBytes) return;
+        entries.sort((a, b) -> Long.compare(a.lastUsed(), b.lastUsed()));
+        for (Entry e : entries) {
+            if (total <= maxBytes) break;
+            try {
+                Files.deleteIfExists(e.path());
+                total -= e.size();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private Path fileFor(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes(StandardCharsets.UTF_8));
+            return directory.resolve(HexFormat.of().formatHex(digest) + SUFFIX);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
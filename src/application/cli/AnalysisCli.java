@@ -0,0 +1,156 @@
+package application.cli;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import application.analysis.FeatureStore;
+import application.analysis.LibraryAnalyzer;
+import application.analysis.TrackFeatures;
+import application.library.LibrarySnapshot;
+import application.library.TrackId;
+
+/**
+ * Audio analysis from the command line: analyses the player's library (or the given
+ * files) with the same pipeline and result store as the player, so a batch run here
+ * saves the player the work, and a run stopped with Ctrl+C continues where it was.
+ *
+ * <pre>
+ * java -cp bin application.cli.AnalysisCli [FILE...] [-j N] [--io N]
+ *
+ *   FILE                  analyse and list these files instead of the library
+ *   -j, --threads N       analysis threads (default: the number of cores)
+ *   --io N                files read from disk at the same time (default 2)
+ *   -l, --library FILE    library snapshot (default: the player's)
+ * </pre>
+ *
+ * Exit status: 0 on success, 1 when the library or the results could not be read, 2 on bad arguments.
+ */
+public final class AnalysisCli {
+
+    private final List<Path> files = new ArrayList<>();
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int ioConcurrency = 2;
+    private Path library = LibrarySnapshot.defaultFile();
+
+    private AnalysisCli() {
+    }
+
+    public static void main(String[] args) {
+        System.exit(run(args));
+    }
+
+    /**
+     * @return process exit status
+     */
+    public static int run(String[] args) {
+        AnalysisCli cli = new AnalysisCli();
+        try {
+            if (!cli.parse(args)) {
+                usage();
+                return 0;
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            usage();
+            return 2;
+        }
+        try {
+            return cli.analyse();
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            return 1;
+        } catch (InterruptedException e) {
+            return 1;
+        }
+    }
+
+    // Returns false when help was requested
+    private boolean parse(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+                case "-h", "--help" -> {
+                    return false;
+                }
+                case "-j", "--threads" -> threads = positive(value(args, ++i, arg), arg);
+                case "--io" -> ioConcurrency = positive(value(args, ++i, arg), arg);
+                case "-l", "--library" -> library = Paths.get(value(args, ++i, arg));
+                default -> {
+                    if (arg.startsWith("-") && arg.length() > 1) {
+                        throw new IllegalArgumentException("Unknown option: " + arg);
+                    }
+                    files.add(Paths.get(arg).toAbsolutePath());
+                }
+            }
+        }
+        return true;
+    }
+
+    private int analyse() throws IOException, InterruptedException {
+        List<Path> tracks = new ArrayList<>(files);
+        if (tracks.isEmpty()) {
+            if (!Files.exists(library)) {
+                throw new IOException("No library snapshot at " + library + "; run the player once or pass files");
+            }
+            for (LibrarySnapshot.Entry e : LibrarySnapshot.load(library)) {
+                tracks.add(Paths.get(e.path()));
+            }
+        }
+        FeatureStore store = FeatureStore.open(FeatureStore.defaultDirectory());
+        LibraryAnalyzer analyzer = new LibraryAnalyzer(store, threads, ioConcurrency, false);
+        analyzer.setProgressListener(p -> System.err.println(p));
+        // Ctrl+C keeps what was analysed so far
+        Thread hook = new Thread(analyzer::shutdown, "analysis-shutdown");
+        Runtime.getRuntime().addShutdownHook(hook);
+        analyzer.submit(tracks);
+        analyzer.awaitRun();
+        Runtime.getRuntime().removeShutdownHook(hook);
+        analyzer.shutdown();
+
+        for (Path file : files) {
+            TrackFeatures f = store.get(TrackId.of(file.toString()));
+            if (f == null) {
+                System.out.println(file + ": not analysed (unsupported format or unreadable)");
+                continue;
+            }
+            System.out.printf(Locale.ROOT, "%s: %s, %d kbps, %d Hz, %d ch%s%s%s%n", file,
+                    duration(f.durationMillis()), f.bitrate() / 1000, f.sampleRate(), f.channels(),
+                    f.hasTempo() ? String.format(Locale.ROOT, ", %.1f BPM", f.bpm()) : "",
+                    f.hasKey() ? ", " + f.keyName() : "",
+                    f.hasTimbre() ? String.format(Locale.ROOT, ", %.1f dBFS, centroid %.0f Hz",
+                            f.loudnessDb(), f.centroidHz()) : "");
+        }
+        return 0;
+    }
+
+    private static String duration(long millis) {
+        long seconds = millis / 1000;
+        return String.format(Locale.ROOT, "%d:%02d", seconds / 60, seconds % 60);
+    }
+
+    private static int positive(String text, String option) {
+        try {
+            int n = Integer.parseInt(text);
+            if (n > 0) return n;
+        } catch (NumberFormatException ignored) {
+        }
+        throw new IllegalArgumentException(option + " needs a positive number");
+    }
+
+    private static String value(String[] args, int index, String option) {
+        if (index >= args.length) throw new IllegalArgumentException("Missing value for " + option);
+        return args[index];
+    }
+
+    private static void usage() {
+        System.err.println("Usage: AnalysisCli [FILE...] [-j N] [--io N]");
+        System.err.println("  -j, --threads N       analysis threads (default: the number of cores)");
+        System.err.println("  --io N                files read from disk at the same time (default 2)");
+        System.err.println("  -l, --library FILE    library snapshot (default: the player's)");
+    }
+}
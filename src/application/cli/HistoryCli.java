@@ -0,0 +1,145 @@
+package application.cli;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Locale;
+
+import application.history.PlayHistory;
+import application.history.PlayStats;
+import application.library.LibraryIndex;
+import application.library.LibrarySnapshot;
+import application.library.TrackId;
+
+/**
+ * Play statistics from the command line. Reads the player's history without changing it,
+ * so it can run while the player is open.
+ *
+ * <pre>
+ * java -cp bin application.cli.HistoryCli top|recent [-n N]
+ *
+ *   top                   most played tracks
+ *   recent                most recently played tracks
+ *   -n, --limit N         tracks to list (default 20)
+ *   -d, --history DIR     history directory (default: the player's)
+ *   -l, --library FILE    library snapshot, for the paths (default: the player's)
+ * </pre>
+ *
+ * Exit status: 0 on success, 1 when the history could not be read, 2 on bad arguments.
+ */
+public final class HistoryCli {
+
+    private static final DateTimeFormatter DATE = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm")
+            .withZone(ZoneId.systemDefault());
+
+    private String command;
+    private int limit = 20;
+    private Path history = PlayHistory.defaultDirectory();
+    private Path library = LibrarySnapshot.defaultFile();
+
+    private HistoryCli() {
+    }
+
+    public static void main(String[] args) {
+        System.exit(run(args));
+    }
+
+    /**
+     * @return process exit status
+     */
+    public static int run(String[] args) {
+        HistoryCli cli = new HistoryCli();
+        try {
+            if (!cli.parse(args)) {
+                usage();
+                return 0;
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            usage();
+            return 2;
+        }
+        try {
+            return cli.list();
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            return 1;
+        }
+    }
+
+    // Returns false when help was requested
+    private boolean parse(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+                case "-h", "--help" -> {
+                    return false;
+                }
+                case "-n", "--limit" -> limit = positive(value(args, ++i, arg), arg);
+                case "-d", "--history" -> history = Paths.get(value(args, ++i, arg));
+                case "-l", "--library" -> library = Paths.get(value(args, ++i, arg));
+                default -> {
+                    if (arg.startsWith("-") && arg.length() > 1) {
+                        throw new IllegalArgumentException("Unknown option: " + arg);
+                    }
+                    if (command != null) throw new IllegalArgumentException("Unexpected argument: " + arg);
+                    command = arg.toLowerCase(Locale.ROOT);
+                }
+            }
+        }
+        if (command == null) return false;
+        if (!List.of("top", "recent").contains(command)) {
+            throw new IllegalArgumentException("Unknown command: " + command);
+        }
+        return true;
+    }
+
+    private int list() throws IOException {
+        long start = System.nanoTime();
+        PlayStats stats = PlayHistory.read(history);
+        long loaded = System.nanoTime();
+        List<PlayStats.Entry> entries = command.equals("top") ? stats.mostPlayed(limit) : stats.recentlyPlayed(limit);
+        long queried = System.nanoTime();
+
+        // Paths are only known for tracks in the last library snapshot
+        LibraryIndex<LibrarySnapshot.Entry> index = Files.exists(library)
+                ? new LibraryIndex<>(LibrarySnapshot.load(library), LibrarySnapshot.Entry::path)
+                : null;
+        System.out.println("plays  skips  skip%  last played       track");
+        for (PlayStats.Entry e : entries) {
+            LibrarySnapshot.Entry track = index != null ? index.get(e.trackId()) : null;
+            System.out.printf(Locale.ROOT, "%5d  %5d  %4.0f%%  %s  %s%n", e.plays(), e.skips(), e.skipRate() * 100,
+                    DATE.format(Instant.ofEpochMilli(e.lastPlayed())),
+                    track != null ? track.path() : "? " + TrackId.toHex(e.trackId()));
+        }
+        System.err.printf(Locale.ROOT, "%d tracks in the history, loaded in %.1f ms, queried in %.2f ms%n",
+                stats.size(), (loaded - start) / 1e6, (queried - loaded) / 1e6);
+        return 0;
+    }
+
+    private static int positive(String text, String option) {
+        try {
+            int n = Integer.parseInt(text);
+            if (n > 0) return n;
+        } catch (NumberFormatException ignored) {
+        }
+        throw new IllegalArgumentException(option + " needs a positive number");
+    }
+
+    private static String value(String[] args, int index, String option) {
+        if (index >= args.length) throw new IllegalArgumentException("Missing value for " + option);
+        return args[index];
+    }
+
+    private static void usage() {
+        System.err.println("Usage: HistoryCli top|recent [-n N]");
+        System.err.println("  -n, --limit N         tracks to list (default 20)");
+        System.err.println("  -d, --history DIR     history directory (default: the player's)");
+        System.err.println("  -l, --library FILE    library snapshot (default: the player's)");
+    }
+}
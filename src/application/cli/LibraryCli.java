@@ -0,0 +1,384 @@
+package application.cli;
+
+import java.io.BufferedWriter;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.FileSystems;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import application.MusicFinder;
+import application.tags.TagReader;
+import application.tags.TrackTags;
+
+/**
+ * Headless library scanner, run through {@code MusicFinder.main}. Results are written while
+ * the scan is still running, so huge trees can be piped into other tools without waiting.
+ *
+ * <pre>
+ * java -cp bin application.MusicFinder [options] [path...]
+ *
+ *   -f, --format plain|jsonl|csv|nul   output format (default plain: one path per line)
+ *   -t, --tags                         include title/artist/album/track/duration (jsonl, csv)
+ *   -j, --threads N                    directory listing threads (default: number of cores)
+ *   -d, --max-depth N                  maximum directory depth
+ *   -n, --max-files N                  stop each path after N matches
+ *   -x, --exclude GLOB                 skip files/directories matching GLOB (repeatable)
+ *   -e, --ext mp3,flac,...             extensions to match (default: the player's list)
+ *   -o, --output FILE                  write to FILE instead of standard output
+ *   -q, --quiet                        no summary on standard error
+ * </pre>
+ *
+ * Without paths it scans the same folders as the player, with the player's limits.
+ * Exit status: 0 on success, 1 when a path could not be scanned, 2 on bad arguments.
+ */
+public final class LibraryCli {
+
+    private static final int OUTPUT_BUFFER = 1 << 16;
+    private static final long FLUSH_MILLIS = 100; // longest a result waits in the output buffer
+
+    enum Format { PLAIN, JSONL, CSV, NUL }
+
+    private Format format = Format.PLAIN;
+    private boolean tags = false;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private Integer maxDepth = null;
+    private Integer maxFiles = null;
+    private final List<PathMatcher> excludes = new ArrayList<>();
+    private Set<String> extensions = MusicFinder.defaultExtensions();
+    private Path output = null;
+    private boolean quiet = false;
+    private final List<Path> starts = new ArrayList<>();
+
+    private LibraryCli() {
+    }
+
+    /**
+     * Run the scanner with command line arguments.
+     *
+     * @return process exit status
+     */
+    public static int run(String[] args) {
+        LibraryCli cli = new LibraryCli();
+        try {
+            if (!cli.parse(args)) {
+                usage();
+                return 0;
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            usage();
+            return 2;
+        }
+        try {
+            return cli.scan();
+        } catch (IOException e) {
+            System.err.println("Output failed: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    // Returns false when help was requested
+    private boolean parse(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+                case "-h", "--help" -> {
+                    return false;
+                }
+                case "-f", "--format" -> format = parseFormat(value(args, ++i, arg));
+                case "-t", "--tags" -> tags = true;
+                case "-j", "--threads" -> threads = positive(value(args, ++i, arg), arg);
+                case "-d", "--max-depth" -> maxDepth = positive(value(args, ++i, arg), arg);
+                case "-n", "--max-files" -> maxFiles = positive(value(args, ++i, arg), arg);
+                case "-x", "--exclude" -> excludes.add(FileSystems.getDefault().getPathMatcher("glob:" + value(args, ++i, arg)));
+                case "-e", "--ext" -> {
+                    Set<String> ext = new HashSet<>();
+                    for (String e : value(args, ++i, arg).split(",")) {
+                        String trimmed = e.trim().toLowerCase(Locale.ROOT);
+                        if (trimmed.startsWith(".")) trimmed = trimmed.substring(1);
+                        if (!trimmed.isEmpty()) ext.add(trimmed);
+                    }
+                    extensions = ext;
+                }
+                case "-o", "--output" -> output = Paths.get(value(args, ++i, arg));
+                case "-q", "--quiet" -> quiet = true;
+                default -> {
+                    if (arg.startsWith("-") && arg.length() > 1) {
+                        throw new IllegalArgumentException("Unknown option: " + arg);
+                    }
+                    starts.add(Paths.get(arg));
+                }
+            }
+        }
+        return true;
+    }
+
+    private int scan() throws IOException {
+        List<Path> roots = starts;
+        int depth = maxDepth != null ? maxDepth : Integer.MAX_VALUE;
+        int limit = maxFiles != null ? maxFiles : Integer.MAX_VALUE;
+        if (roots.isEmpty()) {
+            // Same folders and limits as the player itself
+            roots = MusicFinder.commonStartDirs();
+            if (maxDepth == null) depth = MusicFinder.COMMON_DIRS_MAX_DEPTH;
+            if (maxFiles == null) limit = MusicFinder.COMMON_DIRS_MAX_FILES;
+        }
+
+        long start = System.nanoTime();
+        long directories = 0, files = 0, matches = 0;
+        long firstResult = -1;
+        int status = 0;
+        try (RecordWriter writer = new RecordWriter(openOutput(), format, tags)) {
+            writer.header();
+            for (Path root : roots) {
+                long rootStart = System.nanoTime();
+                try {
+                    MusicFinder.ScanSummary summary = MusicFinder.scan(root, extensions, depth, limit, excludes, threads, writer);
+                    directories += summary.directories();
+                    files += summary.files();
+                    matches += summary.matches();
+                    if (firstResult < 0 && summary.timeToFirstResultNanos() >= 0) {
+                        firstResult = rootStart - start + summary.timeToFirstResultNanos();
+                    }
+                } catch (IOException e) {
+                    // A failed output ends the whole run; close() reports it
+                    if (writer.failed()) break;
+                    System.err.println("Error scanning " + root + ": " + reason(e));
+                    status = 1;
+                }
+            }
+        }
+
+        if (!quiet) {
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.err.printf(Locale.ROOT, "Scanned %d directories, %d entries in %.3f s (%.0f entries/s, %d threads)%n",
+                    directories, files, seconds, seconds > 0 ? files / seconds : 0, Math.max(1, threads));
+            System.err.printf(Locale.ROOT, "Found %d music files%s%n", matches,
+                    firstResult >= 0 ? String.format(Locale.ROOT, ", first after %.1f ms", firstResult / 1e6) : "");
+        }
+        return status;
+    }
+
+    private static String reason(IOException e) {
+        if (e instanceof NoSuchFileException) return "no such file or directory";
+        if (e instanceof AccessDeniedException) return "permission denied";
+        return e.getMessage();
+    }
+
+    private Writer openOutput() throws IOException {
+        FileChannel channel = output == null
+                ? new FileOutputStream(FileDescriptor.out).getChannel()
+                : FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        return new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8), OUTPUT_BUFFER);
+    }
+
+    private static Format parseFormat(String value) {
+        try {
+            return Format.valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown format: " + value + " (use plain, jsonl, csv or nul)");
+        }
+    }
+
+    private static String value(String[] args, int index, String option) {
+        if (index >= args.length) throw new IllegalArgumentException("Missing value for " + option);
+        return args[index];
+    }
+
+    private static int positive(String value, String option) {
+        try {
+            int n = Integer.parseInt(value);
+            if (n > 0) return n;
+        } catch (NumberFormatException ignored) {
+        }
+        throw new IllegalArgumentException(option + " needs a positive number, got: " + value);
+    }
+
+    private static void usage() {
+        System.err.println("Usage: MusicFinder [options] [path...]");
+        System.err.println("  -f, --format plain|jsonl|csv|nul   output format (default plain)");
+        System.err.println("  -t, --tags                         include tags and duration (jsonl, csv)");
+        System.err.println("  -j, --threads N                    directory listing threads (default: cores)");
+        System.err.println("  -d, --max-depth N                  maximum directory depth");
+        System.err.println("  -n, --max-files N                  stop each path after N matches");
+        System.err.println("  -x, --exclude GLOB                 skip matching files/directories (repeatable)");
+        System.err.println("  -e, --ext mp3,flac,...             extensions to match");
+        System.err.println("  -o, --output FILE                  write to FILE instead of stdout");
+        System.err.println("  -q, --quiet                        no summary on stderr");
+    }
+
+    /**
+     * Formats matches and appends them to a shared buffered writer. Called concurrently
+     * from the scanning threads: each record is built in a per-thread buffer and written
+     * under one short lock. A timer flushes what is buffered every {@link #FLUSH_MILLIS},
+     * so a reader at the other end of a pipe sees results as they are found, not in
+     * 64 KiB bursts.
+     */
+    static final class RecordWriter implements MusicFinder.Listener, AutoCloseable {
+        private final Writer out;
+        private final Format format;
+        private final boolean tags;
+        private final ThreadLocal<StringBuilder> buffers = ThreadLocal.withInitial(() -> new StringBuilder(256));
+        private final ScheduledExecutorService flusher;
+        private boolean unflushed = false;
+        private IOException failure;
+
+        RecordWriter(Writer out, Format format, boolean tags) {
+            this.out = out;
+            this.format = format;
+            this.tags = tags;
+            this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "output-flush");
+                t.setDaemon(true);
+                return t;
+            });
+            flusher.scheduleWithFixedDelay(this::flush, FLUSH_MILLIS, FLUSH_MILLIS, TimeUnit.MILLISECONDS);
+        }
+
+        void header() throws IOException {
+            if (format == Format.CSV) {
+                out.write(tags ? "path,name,size,mtime,title,artist,album,track,duration_ms\n" : "path,name,size,mtime\n");
+            }
+        }
+
+        @Override
+        public void onMusicFile(Path file, BasicFileAttributes attrs) {
+            StringBuilder sb = buffers.get();
+            sb.setLength(0);
+            String path = file.toString();
+            switch (format) {
+                case PLAIN -> sb.append(path).append('\n');
+                case NUL -> sb.append(path).append('\0');
+                case CSV -> {
+                    csv(sb, path).append(',');
+                    csv(sb, file.getFileName().toString()).append(',');
+                    sb.append(attrs.size()).append(',').append(attrs.lastModifiedTime());
+                    if (tags) {
+                        TrackTags t = readTags(file);
+                        sb.append(',');
+                        csv(sb, t.title()).append(',');
+                        csv(sb, t.artist()).append(',');
+                        csv(sb, t.album()).append(',').append(t.track()).append(',').append(t.durationMillis());
+                    }
+                    sb.append('\n');
+                }
+                case JSONL -> {
+                    sb.append("{\"path\":");
+                    json(sb, path).append(",\"name\":");
+                    json(sb, file.getFileName().toString());
+                    sb.append(",\"size\":").append(attrs.size());
+                    sb.append(",\"mtime\":\"").append(attrs.lastModifiedTime()).append('"');
+                    if (tags) {
+                        TrackTags t = readTags(file);
+                        sb.append(",\"title\":");
+                        json(sb, t.title()).append(",\"artist\":");
+                        json(sb, t.artist()).append(",\"album\":");
+                        json(sb, t.album()).append(",\"track\":").append(t.track());
+                        sb.append(",\"durationMs\":").append(t.durationMillis());
+                    }
+                    sb.append("}\n");
+                }
+            }
+            synchronized (this) {
+                try {
+                    if (failure != null) throw failure;
+                    out.append(sb);
+                    unflushed = true;
+                } catch (IOException e) {
+                    // e.g. the reading end of a pipe went away: stop the scan, report once at close
+                    failure = e;
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+
+        synchronized boolean failed() {
+            return failure != null;
+        }
+
+        private synchronized void flush() {
+            if (!unflushed || failure != null) return;
+            unflushed = false;
+            try {
+                out.flush();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            flusher.shutdownNow();
+            try {
+                out.close();
+            } catch (IOException e) {
+                if (failure == null) failure = e;
+            }
+            if (failure != null) throw failure;
+        }
+
+        private static TrackTags readTags(Path file) {
+            try {
+                return TagReader.read(file);
+            } catch (IOException | RuntimeException e) {
+                // A damaged file loses its tags, not the whole listing
+                return TrackTags.EMPTY;
+            }
+        }
+
+        static StringBuilder csv(StringBuilder sb, String value) {
+            boolean quote = value.indexOf(',') >= 0 || value.indexOf('"') >= 0
+                    || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0;
+            if (!quote) return sb.append(value);
+            sb.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"') sb.append('"');
+                sb.append(c);
+            }
+            return sb.append('"');
+        }
+
+        static StringBuilder json(StringBuilder sb, String value) {
+            sb.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '"' -> sb.append("\\\"");
+                    case '\\' -> sb.append("\\\\");
+                    case '\n' -> sb.append("\\n");
+                    case '\r' -> sb.append("\\r");
+                    case '\t' -> sb.append("\\t");
+                    default -> {
+                        if (c < 0x20) {
+                            sb.append(String.format("\\u%04x", (int) c));
+                        } else {
+                            sb.append(c);
+                        }
+                    }
+                }
+            }
+            return sb.append('"');
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package application.cli;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Locale;
+
+import application.library.LibraryIndex;
+import application.library.LibrarySnapshot;
+import application.library.TrackId;
+import application.playlist.Playlist;
+import application.playlist.PlaylistExporter;
+import application.playlist.PlaylistFile;
+import application.playlist.PlaylistImporter;
+import application.tags.TagReader;
+import application.tags.TrackTags;
+
+/**
+ * Playlist import and export from the command line, against the library the player saved
+ * in its last scan.
+ *
+ * <pre>
+ * java -cp bin application.cli.PlaylistCli import LIST.m3u|.m3u8|.pls [-o OUT.rppl]
+ * java -cp bin application.cli.PlaylistCli export LIST.rppl -o OUT.m3u8|.pls [-t]
+ * java -cp bin application.cli.PlaylistCli show LIST.rppl
+ *
+ *   -o, --output FILE    output file (import default: the player's playlist folder)
+ *   -l, --library FILE   library snapshot (default: the player's)
+ *   -t, --tags           read title and duration from the files for #EXTINF / PLS
+ * </pre>
+ *
+ * Exit status: 0 on success, 1 when a file could not be read or written, 2 on bad arguments.
+ */
+public final class PlaylistCli {
+
+    private String command;
+    private Path input;
+    private Path output;
+    private Path library = LibrarySnapshot.defaultFile();
+    private boolean tags = false;
+
+    private PlaylistCli() {
+    }
+
+    public static void main(String[] args) {
+        System.exit(run(args));
+    }
+
+    /**
+     * @return process exit status
+     */
+    public static int run(String[] args) {
+        PlaylistCli cli = new PlaylistCli();
+        try {
+            if (!cli.parse(args)) {
+                usage();
+                return 0;
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            usage();
+            return 2;
+        }
+        try {
+            return switch (cli.command) {
+                case "import" -> cli.importPlaylist();
+                case "export" -> cli.exportPlaylist();
+                default -> cli.show();
+            };
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            return 1;
+        }
+    }
+
+    // Returns false when help was requested
+    private boolean parse(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+                case "-h", "--help" -> {
+                    return false;
+                }
+                case "-o", "--output" -> output = Paths.get(value(args, ++i, arg));
+                case "-l", "--library" -> library = Paths.get(value(args, ++i, arg));
+                case "-t", "--tags" -> tags = true;
+                default -> {
+                    if (arg.startsWith("-") && arg.length() > 1) {
+                        throw new IllegalArgumentException("Unknown option: " + arg);
+                    }
+                    if (command == null) {
+                        command = arg.toLowerCase(Locale.ROOT);
+                    } else if (input == null) {
+                        input = Paths.get(arg);
+                    } else {
+                        throw new IllegalArgumentException("Unexpected argument: " + arg);
+                    }
+                }
+            }
+        }
+        if (command == null) return false;
+        if (!List.of("import", "export", "show").contains(command)) {
+            throw new IllegalArgumentException("Unknown command: " + command);
+        }
+        if (input == null) throw new IllegalArgumentException("Missing playlist file");
+        if (command.equals("import") && !PlaylistImporter.supports(input)) {
+            throw new IllegalArgumentException("Import reads .m3u, .m3u8 and .pls files");
+        }
+        if (command.equals("export") && output == null) {
+            throw new IllegalArgumentException("Export needs --output");
+        }
+        return true;
+    }
+
+    private int importPlaylist() throws IOException {
+        long start = System.nanoTime();
+        LibraryIndex<LibrarySnapshot.Entry> index = loadLibrary();
+        PlaylistImporter.Result result = PlaylistImporter.read(input, index);
+        Playlist playlist = result.playlist();
+        Path out = output != null ? output
+                : PlaylistFile.defaultDirectory().resolve(playlist.name() + PlaylistFile.EXTENSION);
+        PlaylistFile.save(out, playlist);
+        System.err.printf(Locale.ROOT, "%s: %d of %d entries in the library, written to %s in %.1f ms%n",
+                input.getFileName(), playlist.size(), result.entries(), out, (System.nanoTime() - start) / 1e6);
+        for (String entry : result.unresolvedSample()) {
+            System.err.println("  not in library: " + entry);
+        }
+        if (result.unresolved() > result.unresolvedSample().size()) {
+            System.err.println("  ... and " + (result.unresolved() - result.unresolvedSample().size()) + " more");
+        }
+        return 0;
+    }
+
+    private int exportPlaylist() throws IOException {
+        LibraryIndex<LibrarySnapshot.Entry> index = loadLibrary();
+        Playlist playlist = PlaylistFile.load(input);
+        int written = PlaylistExporter.write(playlist, id -> {
+            LibrarySnapshot.Entry e = index.get(id);
+            return e == null ? null : entry(e.path());
+        }, output, PlaylistExporter.formatFor(output));
+        System.err.println(output + ": " + written + " of " + playlist.size() + " tracks");
+        return 0;
+    }
+
+    private int show() throws IOException {
+        LibraryIndex<LibrarySnapshot.Entry> index = loadLibrary();
+        Playlist playlist = PlaylistFile.load(input);
+        System.out.println("# " + playlist.name() + " (" + playlist.size() + " tracks)");
+        for (int i = 0; i < playlist.size(); i++) {
+            long id = playlist.trackId(i);
+            LibrarySnapshot.Entry e = index.get(id);
+            System.out.println(e != null ? e.path() : "? " + TrackId.toHex(id));
+        }
+        return 0;
+    }
+
+    private LibraryIndex<LibrarySnapshot.Entry> loadLibrary() throws IOException {
+        if (!Files.exists(library)) {
+            throw new IOException("No library snapshot at " + library + "; run the player once or pass --library");
+        }
+        return new LibraryIndex<>(LibrarySnapshot.load(library), LibrarySnapshot.Entry::path);
+    }
+
+    private PlaylistExporter.Entry entry(String path) {
+        String name = Paths.get(path).getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String title = dot > 0 ? name.substring(0, dot) : name;
+        long duration = 0;
+        if (tags) {
+            try {
+                TrackTags t = TagReader.read(Paths.get(path));
+                if (!t.title().isEmpty()) {
+                    title = t.artist().isEmpty() ? t.title() : t.artist() + " - " + t.title();
+                }
+                duration = t.durationMillis();
+            } catch (IOException | RuntimeException ignored) {
+                // Damaged tags: export the file name instead
+            }
+        }
+        return new PlaylistExporter.Entry(path, title, duration);
+    }
+
+    private static String value(String[] args, int index, String option) {
+        if (index >= args.length) throw new IllegalArgumentException("Missing value for " + option);
+        return args[index];
+    }
+
+    private static void usage() {
+        System.err.println("Usage: PlaylistCli import LIST.m3u|.m3u8|.pls [-o OUT.rppl]");
+        System.err.println("       PlaylistCli export LIST.rppl -o OUT.m3u8|.pls [-t]");
+        System.err.println("       PlaylistCli show LIST.rppl");
+        System.err.println("  -o, --output FILE    output file");
+        System.err.println("  -l, --library FILE   library snapshot (default: the player's)");
+        System.err.println("  -t, --tags           read title and duration from the files");
+    }
+}
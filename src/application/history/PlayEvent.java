@@ -0,0 +1,27 @@
+package application.history;
+
+/**
+ * One play of a track.
+ *
+ * @param trackId {@link application.library.TrackId} of the track
+ * @param startMillis epoch millis when playback started
+ * @param endMillis epoch millis when it stopped (pauses included)
+ * @param skipped stopped early, see {@link #isSkip}
+ */
+public record PlayEvent(long trackId, long startMillis, long endMillis, boolean skipped) {
+
+    private static final long MAX_LISTEN_MILLIS = 4 * 60_000;
+    private static final long UNKNOWN_DURATION_LISTEN_MILLIS = 30_000;
+
+    /**
+     * Whether a play that stopped before the end counts as a skip: it did unless it got
+     * past half the track or four minutes (30 s when the duration is unknown).
+     *
+     * @param positionMillis last position reached
+     * @param durationMillis track duration, or &lt;= 0 when unknown
+     */
+    public static boolean isSkip(long positionMillis, long durationMillis) {
+        if (durationMillis <= 0) return positionMillis < UNKNOWN_DURATION_LISTEN_MILLIS;
+        return positionMillis < Math.min(durationMillis / 2, MAX_LISTEN_MILLIS);
+    }
+}
@@ -0,0 +1,280 @@
+package application.history;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import application.metrics.Counter;
+import application.metrics.Gauge;
+import application.metrics.LatencyHistogram;
+import application.metrics.Metrics;
+
+/**
+ * Records every play in an append-only log and keeps the per-track statistics in memory.
+ *
+ * {@link #record} only queues the play, so the FX thread never waits on the disk. One
+ * "play-history" thread takes plays in batches, appends them to the log and adds them to
+ * the statistics. The log is synced to disk at most every {@code fsyncMillis}: 0 syncs
+ * every batch, -1 leaves it to the OS (a crash can lose the last plays, never corrupt
+ * older ones).
+ *
+ * Compaction writes the statistics to stats.bin and deletes the log segments they cover.
+ * It runs when the current segment reaches {@code compactRecords} plays, hourly when
+ * there were plays, and at shutdown. At startup, stats.bin is loaded and the newer
+ * segments replayed.
+ */
+public final class PlayHistory {
+
+    private static final Counter PLAYS = Metrics.counter("history.plays");
+    private static final Counter DROPPED = Metrics.counter("history.dropped");
+    private static final Counter COMPACTIONS = Metrics.counter("history.compactions");
+    private static final Counter IO_ERRORS = Metrics.counter("history.io_errors");
+    private static final LatencyHistogram WRITE_TIME = Metrics.histogram("history.write_time");
+    private static final LatencyHistogram FSYNC_TIME = Metrics.histogram("history.fsync_time");
+    private static final LatencyHistogram COMPACTION_TIME = Metrics.histogram("history.compaction_time");
+    private static final Gauge TRACKS = Metrics.gauge("history.tracks");
+
+    static final String STATS_FILE = "stats.bin";
+
+    private static final int QUEUE_CAPACITY = 4096;
+    private static final int BATCH_MAX = 512;
+    private static final long POLL_MILLIS = 250;
+    private static final long COMPACT_INTERVAL_NANOS = TimeUnit.HOURS.toNanos(1);
+    private static final long SHUTDOWN_WAIT_MILLIS = 2000;
+
+    private final Path directory;
+    private final long fsyncMillis;
+    private final long compactRecords;
+    private final PlayStats stats = new PlayStats();
+    private final BlockingQueue<PlayEvent> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final CountDownLatch loaded = new CountDownLatch(1);
+    private final Thread writer;
+    private volatile boolean running = true;
+    private volatile boolean compactRequested = false;
+    private PlayLog log; // writer thread only
+
+    /**
+     * Loading the existing history starts right away on the writer thread.
+     *
+     * @param fsyncMillis longest time appended plays stay unsynced; 0 = every batch, -1 = never
+     * @param compactRecords plays per log segment before it is compacted
+     */
+    public PlayHistory(Path directory, long fsyncMillis, long compactRecords) {
+        this.directory = directory;
+        this.fsyncMillis = fsyncMillis;
+        this.compactRecords = Math.max(1, compactRecords);
+        this.writer = new Thread(this::work, "play-history");
+        // Not a daemon: the last batch and the compaction finish when the window closes
+        writer.setDaemon(false);
+        writer.start();
+    }
+
+    /**
+     * History configured from system properties (all optional):
+     * reproductor.history (directory, default ~/.reproductor/history),
+     * reproductor.history.fsyncMillis (1000), reproductor.history.compactRecords (16384).
+     */
+    public static PlayHistory createDefault() {
+        return new PlayHistory(defaultDirectory(),
+                Long.getLong("reproductor.history.fsyncMillis", 1000L),
+                Long.getLong("reproductor.history.compactRecords", 16384L));
+    }
+
+    public static Path defaultDirectory() {
+        String configured = System.getProperty("reproductor.history");
+        if (configured != null && !configured.isBlank()) {
+            return Paths.get(configured);
+        }
+        return Paths.get(System.getProperty("user.home"), ".reproductor", "history");
+    }
+
+    /**
+     * Statistics of a history directory, read without modifying it (for tools that run
+     * next to the player).
+     */
+    public static PlayStats read(Path directory) throws IOException {
+        PlayStats stats = new PlayStats();
+        load(directory, stats, false);
+        return stats;
+    }
+
+    /**
+     * Queue a play. Never blocks; when the writer is far behind the play is dropped and
+     * counted in history.dropped.
+     */
+    public void record(PlayEvent event) {
+        if (!running || !queue.offer(event)) {
+            DROPPED.increment();
+        }
+    }
+
+    /**
+     * The statistics, including every play recorded so far. Waits for the history to be
+     * loaded at startup, so don't call it on the FX thread before that.
+     */
+    public PlayStats stats() {
+        try {
+            loaded.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return stats;
+    }
+
+    /** Compact on the writer thread as soon as it is idle. */
+    public void compact() {
+        compactRequested = true;
+    }
+
+    /**
+     * Write the queued plays, compact and stop. Waits a moment for the writer.
+     */
+    public void shutdown() {
+        running = false;
+        try {
+            writer.join(SHUTDOWN_WAIT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ---- writer thread
+
+    // Never interrupted: an interrupt would close the log channel in the middle of a write
+    private void work() {
+        try {
+            Files.createDirectories(directory);
+            long last = load(directory, stats, true);
+            log = new PlayLog(directory, last);
+        } catch (IOException e) {
+            IO_ERRORS.increment();
+            System.err.println("Play history not saved: " + e.getMessage());
+        } finally {
+            TRACKS.set(stats.size());
+            loaded.countDown();
+        }
+
+        List<PlayEvent> batch = new ArrayList<>(BATCH_MAX);
+        long lastSync = System.nanoTime();
+        long lastCompaction = System.nanoTime();
+        boolean unsynced = false;
+        while (running || !queue.isEmpty()) {
+            try {
+                PlayEvent first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, BATCH_MAX - 1);
+                    write(batch);
+                    batch.clear();
+                    unsynced = log != null;
+                }
+            } catch (InterruptedException e) {
+                running = false;
+            }
+            if (unsynced && fsyncMillis >= 0
+                    && System.nanoTime() - lastSync >= TimeUnit.MILLISECONDS.toNanos(fsyncMillis)) {
+                sync();
+                unsynced = false;
+                lastSync = System.nanoTime();
+            }
+            boolean due = System.nanoTime() - lastCompaction >= COMPACT_INTERVAL_NANOS;
+            if (log != null && (compactRequested || log.records() >= compactRecords || (due && log.records() > 0))) {
+                compactRequested = false;
+                compactLog();
+                unsynced = false;
+                lastCompaction = System.nanoTime();
+            }
+        }
+        if (log != null) {
+            if (log.records() > 0) compactLog();
+            try {
+                log.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private void write(List<PlayEvent> batch) {
+        long start = System.nanoTime();
+        for (PlayEvent e : batch) stats.add(e);
+        PLAYS.add(batch.size());
+        TRACKS.set(stats.size());
+        if (log == null) return;
+        try {
+            log.append(batch);
+        } catch (IOException e) {
+            IO_ERRORS.increment();
+            System.err.println("Could not write play history: " + e.getMessage());
+        }
+        WRITE_TIME.recordSince(start);
+    }
+
+    private void sync() {
+        long start = System.nanoTime();
+        try {
+            log.force();
+        } catch (IOException e) {
+            IO_ERRORS.increment();
+        }
+        FSYNC_TIME.recordSince(start);
+    }
+
+    // New plays go to a fresh segment; the statistics then replace the older ones
+    private void compactLog() {
+        long start = System.nanoTime();
+        try {
+            long covered = log.generation();
+            log.rotate();
+            stats.save(directory.resolve(STATS_FILE), covered);
+            PlayLog.deleteThrough(directory, covered);
+            COMPACTIONS.increment();
+        } catch (IOException e) {
+            IO_ERRORS.increment();
+            System.err.println("Could not compact play history: " + e.getMessage());
+        }
+        COMPACTION_TIME.recordSince(start);
+    }
+
+    /**
+     * Load stats.bin and replay the segments it doesn't cover into {@code stats}.
+     *
+     * @param repair delete covered segments, cut torn records and set aside a damaged
+     *               stats.bin (writer only)
+     * @return generation to keep appending to
+     */
+    private static long load(Path directory, PlayStats stats, boolean repair) throws IOException {
+        Path statsFile = directory.resolve(STATS_FILE);
+        long covered = 0;
+        try {
+            covered = stats.load(statsFile);
+        } catch (NoSuchFileException e) {
+            // no compaction yet
+        } catch (IOException e) {
+            System.err.println("Play statistics not loaded: " + e.getMessage());
+            if (repair) {
+                Files.move(statsFile, statsFile.resolveSibling(STATS_FILE + ".bad"), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        long last = covered + 1;
+        for (long generation : PlayLog.segments(directory)) {
+            Path segment = PlayLog.segment(directory, generation);
+            if (generation <= covered) {
+                // Compacted; left over from an interrupted compaction
+                if (repair) Files.deleteIfExists(segment);
+                continue;
+            }
+            PlayLog.replay(segment, stats::add, repair);
+            last = Math.max(last, generation);
+        }
+        return last;
+    }
+}
@@ -0,0 +1,189 @@
+package application.history;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only play log, split in numbered segments (plays-00000001.log, ...) so a
+ * compaction can start a new segment and drop the old ones once their plays are in the
+ * aggregate file.
+ *
+ * Records are 32 bytes, little endian: track id, start, end, flags, and a CRC32 of the
+ * first 28 bytes. A crash can leave a partial or garbled last record; replay stops there
+ * and (when repairing) cuts the segment back to the last good record.
+ *
+ * Not thread-safe; {@link PlayHistory} uses it from its writer thread only.
+ */
+final class PlayLog implements Closeable {
+
+    static final int RECORD_SIZE = 32;
+
+    private static final int FLAG_SKIPPED = 1;
+    private static final int BATCH_RECORDS = 512;
+    private static final Pattern SEGMENT = Pattern.compile("plays-(\\d+)\\.log");
+
+    private final Path directory;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BATCH_RECORDS * RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private final CRC32 crc = new CRC32();
+    private long generation;
+    private FileChannel channel;
+    private long records;
+
+    /**
+     * Open a segment for appending, creating it when missing. A segment that was replayed
+     * with repair on ends with a whole record.
+     */
+    PlayLog(Path directory, long generation) throws IOException {
+        this.directory = directory;
+        this.generation = generation;
+        open();
+    }
+
+    long generation() {
+        return generation;
+    }
+
+    /** Records in the current segment. */
+    long records() {
+        return records;
+    }
+
+    void append(List<PlayEvent> events) throws IOException {
+        int i = 0;
+        while (i < events.size()) {
+            buffer.clear();
+            for (int n = 0; n < BATCH_RECORDS && i < events.size(); n++, i++) {
+                encode(events.get(i));
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+        records += events.size();
+    }
+
+    /** Push appended records to the disk. */
+    void force() throws IOException {
+        channel.force(false);
+    }
+
+    /**
+     * Close the current segment and continue in the next one.
+     */
+    void rotate() throws IOException {
+        channel.force(false);
+        channel.close();
+        generation++;
+        open();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void open() throws IOException {
+        channel = FileChannel.open(segment(directory, generation),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        long size = channel.size();
+        channel.position(size);
+        records = size / RECORD_SIZE;
+    }
+
+    private void encode(PlayEvent e) {
+        int start = buffer.position();
+        buffer.putLong(e.trackId()).putLong(e.startMillis()).putLong(e.endMillis())
+                .putInt(e.skipped() ? FLAG_SKIPPED : 0);
+        crc.reset();
+        crc.update(buffer.slice(start, RECORD_SIZE - 4));
+        buffer.putInt((int) crc.getValue());
+    }
+
+    // ---- segments on disk
+
+    static Path segment(Path directory, long generation) {
+        return directory.resolve(String.format(Locale.ROOT, "plays-%08d.log", generation));
+    }
+
+    /** Generations of the segments in a directory, oldest first. */
+    static List<Long> segments(Path directory) throws IOException {
+        List<Long> generations = new ArrayList<>();
+        if (!Files.isDirectory(directory)) return generations;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "plays-*.log")) {
+            for (Path file : files) {
+                Matcher m = SEGMENT.matcher(file.getFileName().toString());
+                if (m.matches()) generations.add(Long.parseLong(m.group(1)));
+            }
+        }
+        Collections.sort(generations);
+        return generations;
+    }
+
+    /**
+     * Read every good record of a segment.
+     *
+     * @param repair cut the segment back to its last good record (only the writer may)
+     * @return records read
+     */
+    static long replay(Path file, Consumer<PlayEvent> sink, boolean repair) throws IOException {
+        StandardOpenOption[] options = repair
+                ? new StandardOpenOption[] { StandardOpenOption.READ, StandardOpenOption.WRITE }
+                : new StandardOpenOption[] { StandardOpenOption.READ };
+        try (FileChannel ch = FileChannel.open(file, options)) {
+            ByteBuffer in = ByteBuffer.allocateDirect(BATCH_RECORDS * RECORD_SIZE * 8).order(ByteOrder.LITTLE_ENDIAN);
+            CRC32 check = new CRC32();
+            long good = 0;
+            boolean corrupt = false;
+            while (!corrupt && ch.read(in) > 0) {
+                in.flip();
+                while (in.remaining() >= RECORD_SIZE) {
+                    int start = in.position();
+                    check.reset();
+                    check.update(in.slice(start, RECORD_SIZE - 4));
+                    if (in.getInt(start + RECORD_SIZE - 4) != (int) check.getValue()) {
+                        corrupt = true;
+                        break;
+                    }
+                    long id = in.getLong();
+                    long begin = in.getLong();
+                    long end = in.getLong();
+                    int flags = in.getInt();
+                    in.getInt();
+                    sink.accept(new PlayEvent(id, begin, end, (flags & FLAG_SKIPPED) != 0));
+                    good++;
+                }
+                in.compact();
+            }
+            long goodBytes = good * RECORD_SIZE;
+            if (goodBytes < ch.size()) {
+                System.err.println(file.getFileName() + ": ignoring " + (ch.size() - goodBytes)
+                        + " bytes after the last complete play");
+                if (repair) ch.truncate(goodBytes);
+            }
+            return good;
+        }
+    }
+
+    /** Delete the segments up to a generation, once the aggregates cover them. */
+    static void deleteThrough(Path directory, long generation) throws IOException {
+        for (long g : segments(directory)) {
+            if (g <= generation) Files.deleteIfExists(segment(directory, g));
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package application.history;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-track play statistics: play count, skip count, last play and time listened.
+ *
+ * Kept in columns (one primitive array per field, a row per track), so "most played" and
+ * "recently played" are a single pass over one array with a small heap, a few
+ * milliseconds for a large library.
+ *
+ * Thread-safe: the history writer adds plays while the player and tools query.
+ */
+public final class PlayStats {
+
+    /**
+     * Statistics of one track.
+     *
+     * @param plays plays that were not skips
+     * @param lastPlayed epoch millis of the last play (skips included), 0 if never
+     * @param listenedMillis time between start and end of all plays
+     */
+    public record Entry(long trackId, int plays, int skips, long lastPlayed, long listenedMillis) {
+
+        /** Share of the plays that were skipped, 0 to 1. */
+        public double skipRate() {
+            int total = plays + skips;
+            return total == 0 ? 0 : (double) skips / total;
+        }
+    }
+
+    // File: magic, version, rows, reserved, compacted generation, then one record per row
+    private static final int MAGIC = 0x53485052; // "RPHS" little endian
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 24;
+    private static final int ROW_SIZE = 32;
+    private static final int WRITE_CHUNK_ROWS = 8192;
+
+    // Orders rows for the top queries; positive when row a ranks above row b
+    @FunctionalInterface
+    private interface Ranking {
+        int compare(int a, int b);
+    }
+
+    private final Map<Long, Integer> rowById = new HashMap<>();
+    private long[] ids = new long[1024];
+    private int[] plays = new int[1024];
+    private int[] skips = new int[1024];
+    private long[] lastPlayed = new long[1024];
+    private long[] listened = new long[1024];
+    private int size = 0;
+
+    public synchronized int size() {
+        return size;
+    }
+
+    synchronized void add(PlayEvent e) {
+        int row = row(e.trackId());
+        if (e.skipped()) {
+            skips[row]++;
+        } else {
+            plays[row]++;
+        }
+        lastPlayed[row] = Math.max(lastPlayed[row], e.endMillis());
+        listened[row] += Math.max(0, e.endMillis() - e.startMillis());
+    }
+
+    /**
+     * @return the track's statistics, or null if it was never played
+     */
+    public synchronized Entry get(long trackId) {
+        Integer row = rowById.get(trackId);
+        return row == null ? null : entry(row);
+    }
+
+    /**
+     * @return epoch millis of the track's last play, 0 if never
+     */
+    public synchronized long lastPlayed(long trackId) {
+        Integer row = rowById.get(trackId);
+        return row == null ? 0 : lastPlayed[row];
+    }
+
+    /** Tracks with the most (not skipped) plays; ties go to the most recent. */
+    public synchronized List<Entry> mostPlayed(int limit) {
+        return top(limit, (a, b) -> plays[a] != plays[b]
+                ? Integer.compare(plays[a], plays[b])
+                : Long.compare(lastPlayed[a], lastPlayed[b]));
+    }
+
+    /** Tracks by last play, most recent first. */
+    public synchronized List<Entry> recentlyPlayed(int limit) {
+        return top(limit, (a, b) -> Long.compare(lastPlayed[a], lastPlayed[b]));
+    }
+
+    /** Every track, in no particular order. */
+    public synchronized List<Entry> entries() {
+        List<Entry> result = new ArrayList<>(size);
+        for (int row = 0; row < size; row++) result.add(entry(row));
+        return result;
+    }
+
+    private Entry entry(int row) {
+        return new Entry(ids[row], plays[row], skips[row], lastPlayed[row], listened[row]);
+    }
+
+    private int row(long trackId) {
+        Integer row = rowById.get(trackId);
+        if (row != null) return row;
+        if (size == ids.length) {
+            int capacity = size * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            plays = Arrays.copyOf(plays, capacity);
+            skips = Arrays.copyOf(skips, capacity);
+            lastPlayed = Arrays.copyOf(lastPlayed, capacity);
+            listened = Arrays.copyOf(listened, capacity);
+        }
+        ids[size] = trackId;
+        rowById.put(trackId, size);
+        return size++;
+    }
+
+    // Best rows first: a min-heap of the best `limit` rows seen so far, then sorted
+    private List<Entry> top(int limit, Ranking ranking) {
+        int n = Math.min(limit, size);
+        if (n <= 0) return List.of();
+        int[] heap = new int[n];
+        int count = 0;
+        for (int row = 0; row < size; row++) {
+            if (count < n) {
+                heap[count] = row;
+                siftUp(heap, count++, ranking);
+            } else if (ranking.compare(row, heap[0]) > 0) {
+                heap[0] = row;
+                siftDown(heap, n, ranking);
+            }
+        }
+        List<Entry> result = new ArrayList<>(n);
+        for (int end = n - 1; end >= 0; end--) {
+            result.add(entry(heap[0]));
+            heap[0] = heap[end];
+            siftDown(heap, end, ranking);
+        }
+        // Popped worst first
+        return result.reversed();
+    }
+
+    private static void siftUp(int[] heap, int i, Ranking ranking) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (ranking.compare(heap[i], heap[parent]) >= 0) return;
+            swap(heap, i, parent);
+            i = parent;
+        }
+    }
+
+    private static void siftDown(int[] heap, int count, Ranking ranking) {
+        int i = 0;
+        while (true) {
+            int least = i;
+            int left = 2 * i + 1;
+            int right = left + 1;
+            if (left < count && ranking.compare(heap[left], heap[least]) < 0) least = left;
+            if (right < count && ranking.compare(heap[right], heap[least]) < 0) least = right;
+            if (least == i) return;
+            swap(heap, i, least);
+            i = least;
+        }
+    }
+
+    private static void swap(int[] heap, int i, int j) {
+        int t = heap[i];
+        heap[i] = heap[j];
+        heap[j] = t;
+    }
+
+    // ---- aggregate file
+
+    /**
+     * Write the statistics, synced to disk and renamed over the target, so the log
+     * segments they cover can be deleted afterwards.
+     *
+     * @param compactedGeneration last log segment included
+     */
+    synchronized void save(Path file, long compactedGeneration) throws IOException {
+        Path dir = file.toAbsolutePath().getParent();
+        Path tmp = Files.createTempFile(dir, "stats", ".tmp");
+        try {
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                ByteBuffer buf = ByteBuffer.allocateDirect(WRITE_CHUNK_ROWS * ROW_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                buf.putInt(MAGIC).putInt(VERSION).putInt(size).putInt(0).putLong(compactedGeneration);
+                for (int row = 0; row < size; row++) {
+                    if (buf.remaining() < ROW_SIZE) {
+                        writeFully(ch, buf);
+                    }
+                    buf.putLong(ids[row]).putLong(lastPlayed[row]).putLong(listened[row])
+                            .putInt(plays[row]).putInt(skips[row]);
+                }
+                writeFully(ch, buf);
+                ch.force(true);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static void writeFully(FileChannel ch, ByteBuffer buf) throws IOException {
+        buf.flip();
+        while (buf.hasRemaining()) {
+            ch.write(buf);
+        }
+        buf.clear();
+    }
+
+    /**
+     * Add the statistics of an aggregate file.
+     *
+     * @return last log segment the file includes
+     */
+    synchronized long load(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long length = ch.size();
+            if (length < HEADER_SIZE) throw new IOException(file + ": truncated");
+            MappedByteBuffer map = ch.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            map.order(ByteOrder.LITTLE_ENDIAN);
+            if (map.getInt() != MAGIC) throw new IOException(file + ": not a play statistics file");
+            int version = map.getInt();
+            if (version != VERSION) throw new IOException(file + ": unsupported version " + version);
+            int rows = map.getInt();
+            map.getInt();
+            long generation = map.getLong();
+            if (rows < 0 || HEADER_SIZE + (long) rows * ROW_SIZE > length) {
+                throw new IOException(file + ": truncated");
+            }
+            for (int i = 0; i < rows; i++) {
+                long id = map.getLong();
+                long last = map.getLong();
+                long time = map.getLong();
+                int p = map.getInt();
+                int s = map.getInt();
+                int row = row(id);
+                plays[row] += p;
+                skips[row] += s;
+                lastPlayed[row] = Math.max(lastPlayed[row], last);
+                listened[row] += time;
+            }
+            return generation;
+        }
+    }
+}
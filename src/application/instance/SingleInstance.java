@@ -0,0 +1,376 @@
+package application.instance;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import application.metrics.Counter;
+import application.metrics.Metrics;
+
+/**
+ * Keeps one player per user: a second launch passes its files to the running one over a
+ * Unix domain socket and exits, instead of starting another JVM, JavaFX and library scan.
+ *
+ * The first launch takes an exclusive lock on instance.lock and listens on instance.sock,
+ * both in ~/.reproductor (-Dreproductor.instance=DIR). The lock decides who owns the
+ * socket: it is released by the OS when the owner exits or crashes, so the next owner can
+ * delete a stale socket file without racing a live one. A later launch that can't take the
+ * lock connects to the socket, sends its request and waits for the answer, a few
+ * milliseconds in all. If nothing answers (the owner is hung) or the platform has no Unix
+ * domain sockets, the launch runs on its own. -Dreproductor.singleInstance=false turns the
+ * coordination off.
+ *
+ * The protocol is UTF-8 text: a "reproductor 1" line, then one "open PATH" or
+ * "enqueue PATH" line per file, then an empty line; the owner answers "ok". The socket
+ * file is readable by its owner only.
+ */
+public final class SingleInstance implements Closeable {
+
+    private static final Counter REQUESTS = Metrics.counter("instance.requests");
+    private static final Counter REJECTED = Metrics.counter("instance.requests_rejected");
+
+    private static final String LOCK_FILE = "instance.lock";
+    private static final String SOCKET_FILE = "instance.sock";
+    private static final String HELLO = "reproductor 1";
+    private static final String OK = "ok";
+    private static final int MAX_REQUEST_BYTES = 1 << 20;
+    private static final long CONNECT_MILLIS = 2000; // the owner may be between its lock and its bind
+    private static final long ANSWER_MILLIS = 2000;
+
+    /**
+     * Files from the command line: the ones to play now, then the ones to add to the queue.
+     */
+    public record Request(List<Path> open, List<Path> enqueue) {
+
+        public boolean isEmpty() {
+            return open.isEmpty() && enqueue.isEmpty();
+        }
+
+        /**
+         * {@code [FILE...] [--enqueue FILE...]}: files before --enqueue (or -e) are opened,
+         * files after it are queued. Relative paths are resolved against the current
+         * directory, since the running player may have another one. Other options are
+         * left to JavaFX.
+         */
+        public static Request parse(String[] args) {
+            List<Path> open = new ArrayList<>();
+            List<Path> enqueue = new ArrayList<>();
+            boolean queueing = false;
+            for (String arg : args) {
+                if (arg.equals("--enqueue") || arg.equals("-e")) {
+                    queueing = true;
+                } else if (!arg.startsWith("-") && !arg.isBlank()) {
+                    Path path = Paths.get(arg).toAbsolutePath().normalize();
+                    (queueing ? enqueue : open).add(path);
+                }
+            }
+            return new Request(List.copyOf(open), List.copyOf(enqueue));
+        }
+    }
+
+    private final FileChannel lockChannel;
+    private final FileLock lock;
+    private final ServerSocketChannel server;
+    private final Path socketFile;
+    private final List<Request> pending = new ArrayList<>();
+    private Consumer<Request> handler = null; // guarded by this
+
+    private SingleInstance(FileChannel lockChannel, FileLock lock, ServerSocketChannel server, Path socketFile) {
+        this.lockChannel = lockChannel;
+        this.lock = lock;
+        this.server = server;
+        this.socketFile = socketFile;
+        if (server != null) {
+            Thread.ofPlatform().name("instance-accept").daemon(true).start(this::acceptLoop);
+        }
+    }
+
+    /**
+     * Directory of the lock and socket: -Dreproductor.instance or ~/.reproductor
+     */
+    public static Path defaultDirectory() {
+        String configured = System.getProperty("reproductor.instance");
+        if (configured != null && !configured.isBlank()) {
+            return Paths.get(configured);
+        }
+        return Paths.get(System.getProperty("user.home"), ".reproductor");
+    }
+
+    /**
+     * Become the running player, or hand the request to the one already running.
+     *
+     * @return null when a running player took the request and this launch should exit;
+     *         otherwise the instance for this process, which also delivers the request
+     *         itself to its handler
+     */
+    public static SingleInstance claim(Request request) {
+        if (!Boolean.parseBoolean(System.getProperty("reproductor.singleInstance", "true"))) {
+            return standalone(request);
+        }
+        Path directory = defaultDirectory();
+        Path socketFile = directory.resolve(SOCKET_FILE);
+        try {
+            Files.createDirectories(directory);
+            FileChannel channel = FileChannel.open(directory.resolve(LOCK_FILE),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            FileLock lock;
+            try {
+                lock = channel.tryLock();
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+            if (lock != null) {
+                SingleInstance instance = new SingleInstance(channel, lock, listen(socketFile), socketFile);
+                if (!request.isEmpty()) instance.deliver(request);
+                return instance;
+            }
+            channel.close();
+
+            long start = System.nanoTime();
+            if (handOff(socketFile, request)) {
+                System.out.printf("Sent to the running player in %.1f ms%n", (System.nanoTime() - start) / 1e6);
+                return null;
+            }
+            System.err.println("The running player does not answer; starting another one");
+        } catch (IOException | UnsupportedOperationException e) {
+            System.err.println("Single-instance mode unavailable: " + e.getMessage());
+        }
+        return standalone(request);
+    }
+
+    /**
+     * Receive the requests, on a background thread. Requests that arrived before a handler
+     * was set (the window was still opening) are passed to it now.
+     */
+    public void setHandler(Consumer<Request> handler) {
+        List<Request> waiting;
+        synchronized (this) {
+            this.handler = handler;
+            waiting = new ArrayList<>(pending);
+            pending.clear();
+        }
+        for (Request r : waiting) {
+            handler.accept(r);
+        }
+    }
+
+    /** Stop answering and give up the lock; the next launch becomes the running player. */
+    @Override
+    public void close() {
+        if (server != null) {
+            try {
+                server.close();
+                Files.deleteIfExists(socketFile);
+            } catch (IOException ignored) {
+            }
+        }
+        if (lockChannel != null) {
+            try {
+                lock.release();
+                lockChannel.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private static SingleInstance standalone(Request request) {
+        SingleInstance instance = new SingleInstance(null, null, null, null);
+        if (!request.isEmpty()) instance.deliver(request);
+        return instance;
+    }
+
+    // Without a socket the lock is still held, so later launches wait and then start alone
+    private static ServerSocketChannel listen(Path socketFile) {
+        try {
+            // Left behind by an owner that crashed; the lock says nobody uses it
+            Files.deleteIfExists(socketFile);
+            ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+            server.bind(UnixDomainSocketAddress.of(socketFile));
+            try {
+                Files.setPosixFilePermissions(socketFile, PosixFilePermissions.fromString("rw-------"));
+            } catch (UnsupportedOperationException ignored) {
+                // Not a POSIX file system; the directory's permissions apply
+            }
+            return server;
+        } catch (IOException | UnsupportedOperationException e) {
+            System.err.println("Single-instance socket not opened: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static boolean handOff(Path socketFile, Request request) throws IOException {
+        StringBuilder message = new StringBuilder(HELLO).append('\n');
+        for (Path p : request.open()) line(message, "open", p);
+        for (Path p : request.enqueue()) line(message, "enqueue", p);
+        message.append('\n');
+
+        SocketChannel channel = connect(socketFile);
+        if (channel == null) return false;
+        // A hung owner must not hang this launch too; closing the channel ends the read
+        Thread watchdog = Thread.ofPlatform().name("instance-watchdog").daemon(true).start(() -> {
+            try {
+                Thread.sleep(ANSWER_MILLIS);
+                channel.close();
+            } catch (InterruptedException | IOException ignored) {
+            }
+        });
+        try (channel) {
+            ByteBuffer out = StandardCharsets.UTF_8.encode(message.toString());
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+            ByteBuffer in = ByteBuffer.allocate(64);
+            while (in.hasRemaining() && channel.read(in) >= 0) {
+                if (in.position() > 0 && in.get(in.position() - 1) == '\n') break;
+            }
+            in.flip();
+            return StandardCharsets.UTF_8.decode(in).toString().strip().equals(OK);
+        } catch (IOException e) {
+            return false;
+        } finally {
+            watchdog.interrupt();
+        }
+    }
+
+    private static void line(StringBuilder message, String command, Path path) {
+        String text = path.toString();
+        if (text.indexOf('\n') >= 0 || text.indexOf('\r') >= 0) {
+            System.err.println("Skipping a file name with a line break: " + text.strip());
+            return;
+        }
+        message.append(command).append(' ').append(text).append('\n');
+    }
+
+    // The socket appears a moment after the lock when the owner is just starting
+    private static SocketChannel connect(Path socketFile) {
+        long deadline = System.nanoTime() + CONNECT_MILLIS * 1_000_000;
+        while (true) {
+            try {
+                return SocketChannel.open(UnixDomainSocketAddress.of(socketFile));
+            } catch (IOException e) {
+                if (System.nanoTime() > deadline) return null;
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return null;
+                }
+            }
+        }
+    }
+
+    private void acceptLoop() {
+        while (server.isOpen()) {
+            SocketChannel channel;
+            try {
+                channel = server.accept();
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                System.err.println("Single-instance accept failed: " + e.getMessage());
+                sleepQuietly(100);
+                continue;
+            }
+            // One virtual thread per launch, so a client that never finishes blocks only itself
+            Thread.ofVirtual().name("instance-request").start(() -> serve(channel));
+        }
+    }
+
+    private void serve(SocketChannel channel) {
+        try (channel) {
+            Request request = read(channel);
+            if (request == null) {
+                REJECTED.increment();
+                return;
+            }
+            REQUESTS.increment();
+            ByteBuffer answer = StandardCharsets.UTF_8.encode(OK + "\n");
+            while (answer.hasRemaining()) {
+                channel.write(answer);
+            }
+            deliver(request);
+        } catch (IOException e) {
+            REJECTED.increment();
+        }
+    }
+
+    // The request up to its empty line, or null if it is malformed or too long
+    private static Request read(SocketChannel channel) throws IOException {
+        ByteBuffer in = ByteBuffer.allocate(8192);
+        while (true) {
+            int n = channel.read(in);
+            int end = in.position();
+            if (end >= 2 && in.get(end - 1) == '\n' && in.get(end - 2) == '\n') break;
+            if (n < 0) return null;
+            if (!in.hasRemaining()) {
+                if (in.capacity() >= MAX_REQUEST_BYTES) return null;
+                ByteBuffer bigger = ByteBuffer.allocate(in.capacity() * 2);
+                in.flip();
+                in = bigger.put(in);
+            }
+        }
+        in.flip();
+        String[] lines = StandardCharsets.UTF_8.decode(in).toString().split("\n");
+        if (lines.length == 0 || !lines[0].equals(HELLO)) return null;
+        List<Path> open = new ArrayList<>();
+        List<Path> enqueue = new ArrayList<>();
+        for (int i = 1; i < lines.length; i++) {
+            String line = lines[i];
+            if (line.isEmpty()) continue;
+            int space = line.indexOf(' ');
+            if (space < 0) return null;
+            String command = line.substring(0, space);
+            Path path;
+            try {
+                path = Paths.get(line.substring(space + 1));
+            } catch (RuntimeException e) {
+                return null;
+            }
+            switch (command) {
+                case "open" -> open.add(path);
+                case "enqueue" -> enqueue.add(path);
+                default -> {
+                    return null;
+                }
+            }
+        }
+        return new Request(List.copyOf(open), List.copyOf(enqueue));
+    }
+
+    private void deliver(Request request) {
+        Consumer<Request> h;
+        synchronized (this) {
+            h = handler;
+            if (h == null) {
+                pending.add(request);
+                return;
+            }
+        }
+        h.accept(request);
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
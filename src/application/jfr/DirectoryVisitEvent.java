@@ -0,0 +1,29 @@
+package application.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * One directory walked by MusicFinder. The duration covers the directory and its subtree;
+ * the counts cover only files directly inside it.
+ */
+@Name("application.DirectoryVisit")
+@Label("Directory Visit")
+@Category({"Reproductor", "Scanner"})
+@Description("Directory walked while searching for music")
+@Threshold("5 ms")
+public class DirectoryVisitEvent extends Event {
+
+    @Label("Path")
+    public String path;
+
+    @Label("Files")
+    public int files;
+
+    @Label("Matches")
+    public int matches;
+}
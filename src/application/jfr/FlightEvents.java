@@ -0,0 +1,21 @@
+package application.jfr;
+
+import jdk.jfr.FlightRecorder;
+
+/**
+ * Guard for emitting the events in this package.
+ *
+ * Initializing the first event class bootstraps the whole JFR runtime (hundreds of
+ * milliseconds) even when nothing is recording, so call sites check {@link #active()}
+ * before touching an event class. Once any recording has been started in the process,
+ * events are created normally and JFR's own enabled/threshold checks apply.
+ */
+public final class FlightEvents {
+
+    private FlightEvents() {
+    }
+
+    public static boolean active() {
+        return FlightRecorder.isInitialized();
+    }
+}
@@ -0,0 +1,31 @@
+package application.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Scan results handed to the table on the FX thread. The event duration is the
+ * FX-thread part (replacing the table contents); the scan itself is in scanDuration.
+ */
+@Name("application.LibraryPublish")
+@Label("Library Publish")
+@Category({"Reproductor", "Library"})
+@Description("Scanned tracks published to the music table")
+public class LibraryPublishEvent extends Event {
+
+    @Label("Tracks")
+    public int tracks;
+
+    @Label("Total Size")
+    @DataAmount
+    public long totalBytes;
+
+    @Label("Scan Duration")
+    @Timespan(Timespan.NANOSECONDS)
+    public long scanDuration;
+}
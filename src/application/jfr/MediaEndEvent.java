@@ -0,0 +1,27 @@
+package application.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * A track played until its end.
+ */
+@Name("application.MediaEnd")
+@Label("Media End")
+@Category({"Reproductor", "Playback"})
+@Description("Track reached end of media")
+@StackTrace(false)
+public class MediaEndEvent extends Event {
+
+    @Label("Path")
+    public String path;
+
+    @Label("Media Duration")
+    @Timespan(Timespan.MILLISECONDS)
+    public long mediaDuration;
+}
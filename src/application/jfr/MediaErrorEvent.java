@@ -0,0 +1,25 @@
+package application.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A track failed to open or play.
+ */
+@Name("application.MediaError")
+@Label("Media Error")
+@Category({"Reproductor", "Playback"})
+@Description("Track failed to open or play")
+@StackTrace(false)
+public class MediaErrorEvent extends Event {
+
+    @Label("Path")
+    public String path;
+
+    @Label("Message")
+    public String message;
+}
@@ -0,0 +1,25 @@
+package application.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Opening a track with the playback backend (JavaFX Media and MediaPlayer, or the PCM decoder).
+ */
+@Name("application.MediaOpen")
+@Label("Media Open")
+@Category({"Reproductor", "Playback"})
+@Description("Player construction for a track")
+public class MediaOpenEvent extends Event {
+
+    @Label("Path")
+    public String path;
+
+    @Label("File Size")
+    @DataAmount
+    public long size;
+}
@@ -0,0 +1,22 @@
+package application.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A track started or resumed playing.
+ */
+@Name("application.MediaPlay")
+@Label("Media Play")
+@Category({"Reproductor", "Playback"})
+@Description("Track started or resumed playing")
+@StackTrace(false)
+public class MediaPlayEvent extends Event {
+
+    @Label("Path")
+    public String path;
+}
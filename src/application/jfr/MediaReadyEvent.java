@@ -0,0 +1,25 @@
+package application.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Time from player creation until it reports ready.
+ */
+@Name("application.MediaReady")
+@Label("Media Ready")
+@Category({"Reproductor", "Playback"})
+@Description("Player creation until ready")
+public class MediaReadyEvent extends Event {
+
+    @Label("Path")
+    public String path;
+
+    @Label("Media Duration")
+    @Timespan(Timespan.MILLISECONDS)
+    public long mediaDuration;
+}
@@ -0,0 +1,33 @@
+package application.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * One MusicFinder.findMusic call, from start to the last visited file.
+ */
+@Name("application.ScanCompleted")
+@Label("Scan Completed")
+@Category({"Reproductor", "Scanner"})
+@Description("Music search under one start path")
+public class ScanCompletedEvent extends Event {
+
+    @Label("Start Path")
+    public String start;
+
+    @Label("Directories")
+    public long directories;
+
+    @Label("Files")
+    public long files;
+
+    @Label("Matches")
+    public int matches;
+
+    @Label("Truncated")
+    @Description("The scan stopped early because maxFiles was reached")
+    public boolean truncated;
+}
@@ -0,0 +1,28 @@
+package application.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * One visualizer frame. Only slow frames are kept by default; lower the threshold
+ * in a custom .jfc to record every frame.
+ */
+@Name("application.VisualizerFrame")
+@Label("Visualizer Frame")
+@Category({"Reproductor", "Rendering"})
+@Description("AudioVisualizer frame render")
+@Threshold("8 ms")
+@StackTrace(false)
+public class VisualizerFrameEvent extends Event {
+
+    @Label("Draw Calls")
+    public int drawCalls;
+
+    @Label("Playing")
+    public boolean playing;
+}
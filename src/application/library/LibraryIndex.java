@@ -0,0 +1,71 @@
+package application.library;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Hash lookup of library items by {@link TrackId} or by path, for resolving references
+ * that come from outside the table (playlists, the HTTP server, play history) without a
+ * linear scan of the items.
+ *
+ * Paths are looked up exactly first. Playlists written on another system often differ
+ * only in case or separators, so a miss falls back to a case- and separator-insensitive
+ * index, built on the first miss.
+ *
+ * @param <T> item type (MusicItem in the player, snapshot entries in the command line)
+ */
+public final class LibraryIndex<T> {
+
+    private final Function<T, String> pathOf;
+    private final Map<Long, T> byId;
+    private final Collection<T> items;
+    private Map<String, T> byFoldedPath;
+
+    public LibraryIndex(Collection<T> items, Function<T, String> pathOf) {
+        this.pathOf = pathOf;
+        this.items = items;
+        this.byId = new HashMap<>(items.size() * 2);
+        for (T item : items) {
+            byId.put(TrackId.of(pathOf.apply(item)), item);
+        }
+    }
+
+    public int size() {
+        return byId.size();
+    }
+
+    /** @return the item with this id, or null */
+    public T get(long id) {
+        return byId.get(id);
+    }
+
+    public long idOf(T item) {
+        return TrackId.of(pathOf.apply(item));
+    }
+
+    /**
+     * @return the item at this path (exactly, or up to case and separators), or null
+     */
+    public T find(String path) {
+        T item = byId.get(TrackId.of(path));
+        if (item != null && pathOf.apply(item).equals(path)) return item;
+        return folded().get(fold(path));
+    }
+
+    private synchronized Map<String, T> folded() {
+        if (byFoldedPath == null) {
+            byFoldedPath = new HashMap<>(items.size() * 2);
+            for (T item : items) {
+                byFoldedPath.putIfAbsent(fold(pathOf.apply(item)), item);
+            }
+        }
+        return byFoldedPath;
+    }
+
+    private static String fold(String path) {
+        return path.replace('\\', '/').toLowerCase(Locale.ROOT);
+    }
+}
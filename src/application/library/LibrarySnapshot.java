@@ -0,0 +1,106 @@
+package application.library;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Last scanned library, saved after every scan so the next launch can show the track
+ * list before the folders are walked again.
+ *
+ * File layout (big endian): magic "RPLB", format version, entry count, then per entry
+ * the path (modified UTF-8) and the file size. Files with another magic or version are
+ * ignored, which simply means a first launch without snapshot.
+ */
+public final class LibrarySnapshot {
+
+    private static final int MAGIC = 0x52504C42; // "RPLB"
+    private static final int VERSION = 1;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * One track of the snapshot.
+     */
+    public record Entry(String path, long size) {
+    }
+
+    private LibrarySnapshot() {
+    }
+
+    /**
+     * Snapshot location: -Dreproductor.library.snapshot or ~/.reproductor/library.bin
+     */
+    public static Path defaultFile() {
+        String configured = System.getProperty("reproductor.library.snapshot");
+        if (configured != null && !configured.isBlank()) {
+            return Paths.get(configured);
+        }
+        return Paths.get(System.getProperty("user.home"), ".reproductor", "library.bin");
+    }
+
+    /**
+     * Read a snapshot. Returns an empty list if there is none or it is unreadable.
+     */
+    public static List<Entry> load(Path file) {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return Collections.emptyList();
+            }
+            int count = in.readInt();
+            if (count < 0) return Collections.emptyList();
+            List<Entry> entries = new ArrayList<>(Math.min(count, 1 << 20));
+            for (int i = 0; i < count; i++) {
+                entries.add(new Entry(in.readUTF(), in.readLong()));
+            }
+            return entries;
+        } catch (NoSuchFileException e) {
+            return Collections.emptyList();
+        } catch (EOFException e) {
+            System.err.println("Library snapshot is truncated, ignoring it: " + file);
+            return Collections.emptyList();
+        } catch (IOException e) {
+            System.err.println("Could not read library snapshot: " + e.getMessage());
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Replace the snapshot with the given tracks. The file is written next to the old one
+     * and renamed over it, so a crash never leaves a half-written snapshot.
+     */
+    public static void save(Path file, List<Entry> entries) {
+        try {
+            Path dir = file.toAbsolutePath().getParent();
+            Files.createDirectories(dir);
+            Path tmp = Files.createTempFile(dir, "library", ".tmp");
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(tmp), BUFFER_SIZE))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(entries.size());
+                for (Entry e : entries) {
+                    out.writeUTF(e.path());
+                    out.writeLong(e.size());
+                }
+            } catch (IOException e) {
+                Files.deleteIfExists(tmp);
+                throw e;
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Could not save library snapshot: " + e.getMessage());
+        }
+    }
+}
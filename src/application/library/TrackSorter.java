@@ -0,0 +1,243 @@
+package application.library;
+
+import java.text.CollationKey;
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+import application.metrics.Counter;
+import application.metrics.LatencyHistogram;
+import application.metrics.Metrics;
+
+/**
+ * Sorts a list of tracks through precomputed primitive keys instead of comparators.
+ *
+ * Every sort key is reduced once per library to a dense int rank per item: text keys are
+ * ranked by collation order (each distinct string is collated once), numeric keys by value.
+ * A sort is then a parallel sort of packed longs (rank in the high half, current position
+ * in the low half), which gives the index permutation without boxing or comparator calls.
+ * Keys are applied from last to first, each pass keeping the order of the previous one,
+ * so multi-column sorts (artist, then album, then track) are stable, and ties always keep
+ * the library order.
+ *
+ * Ranks and the resulting permutations are cached per key and direction until the items
+ * change or a key is invalidated (for example when more tags have been read).
+ *
+ * Not thread safe; the player uses it from the FX thread.
+ *
+ * @param <T> item type
+ */
+public final class TrackSorter<T> {
+
+    private static final LatencyHistogram SORT_TIME = Metrics.histogram("table.sort_time");
+    private static final Counter CACHE_HITS = Metrics.counter("table.sort_cache_hits");
+    private static final Counter RANKS_BUILT = Metrics.counter("table.sort_ranks_built");
+
+    private static final int MAX_CACHED_ORDERS = 16;
+
+    /**
+     * A column the items can be ordered by. Create with {@link #text} or {@link #number}.
+     */
+    public static final class Key<T> {
+        private final String name;
+        private final Function<T, String> text;
+        private final ToLongFunction<T> number;
+
+        private Key(String name, Function<T, String> text, ToLongFunction<T> number) {
+            this.name = name;
+            this.text = text;
+            this.number = number;
+        }
+
+        public String name() {
+            return name;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    /**
+     * One step of a sort: a key and its direction.
+     */
+    public record Order<T>(Key<T> key, boolean descending) {
+    }
+
+    private final Collator collator;
+    private final Map<Key<T>, int[]> ranks = new HashMap<>();
+    private final Map<List<Order<T>>, int[]> permutations =
+            new LinkedHashMap<List<Order<T>>, int[]>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<List<Order<T>>, int[]> eldest) {
+                    return size() > MAX_CACHED_ORDERS;
+                }
+            };
+    private List<T> items = Collections.emptyList();
+
+    /**
+     * @param collator collation used for text keys (e.g. {@code Collator.getInstance()})
+     */
+    public TrackSorter(Collator collator) {
+        this.collator = collator;
+    }
+
+    /** Key ordered by locale-aware collation of a text value (null counts as empty). */
+    public static <T> Key<T> text(String name, Function<T, String> value) {
+        return new Key<>(name, value, null);
+    }
+
+    /** Key ordered by a numeric value. */
+    public static <T> Key<T> number(String name, ToLongFunction<T> value) {
+        return new Key<>(name, null, value);
+    }
+
+    /**
+     * Replace the items to sort. Their order is the base order restored when no key is
+     * given and used to break ties. Drops all cached ranks and permutations.
+     */
+    public void setItems(List<T> newItems) {
+        items = List.copyOf(newItems);
+        ranks.clear();
+        permutations.clear();
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    /**
+     * Forget the ranks of a key whose values changed, and every cached order using it.
+     */
+    public void invalidate(Key<T> key) {
+        if (ranks.remove(key) != null) {
+            permutations.keySet().removeIf(orders -> orders.stream().anyMatch(o -> o.key() == key));
+        }
+    }
+
+    /**
+     * Items in the requested order.
+     */
+    public List<T> sorted(List<Order<T>> orders) {
+        int[] perm = permutation(orders);
+        List<T> out = new ArrayList<>(perm.length);
+        for (int index : perm) {
+            out.add(items.get(index));
+        }
+        return out;
+    }
+
+    /**
+     * Index permutation of the items for the requested order; {@code perm[i]} is the index
+     * (in {@link #getItems()}) of the item shown at position {@code i}. The array is shared
+     * with the cache and must not be modified.
+     */
+    public int[] permutation(List<Order<T>> orders) {
+        List<Order<T>> cacheKey = List.copyOf(orders);
+        int[] perm = permutations.get(cacheKey);
+        if (perm != null) {
+            CACHE_HITS.increment();
+            return perm;
+        }
+        long start = System.nanoTime();
+        perm = identity(items.size());
+        for (int k = cacheKey.size() - 1; k >= 0; k--) {
+            Order<T> order = cacheKey.get(k);
+            perm = sortPass(perm, ranksOf(order.key()), order.descending());
+        }
+        permutations.put(cacheKey, perm);
+        SORT_TIME.recordSince(start);
+        return perm;
+    }
+
+    // One stable pass: order 'perm' by rank, keeping the current position for ties
+    private static int[] sortPass(int[] perm, int[] rank, boolean descending) {
+        int n = perm.length;
+        long[] packed = new long[n];
+        for (int pos = 0; pos < n; pos++) {
+            int r = rank[perm[pos]];
+            if (descending) r = Integer.MAX_VALUE - r;
+            packed[pos] = ((long) r << 32) | pos;
+        }
+        Arrays.parallelSort(packed);
+        int[] out = new int[n];
+        for (int i = 0; i < n; i++) {
+            out[i] = perm[(int) packed[i]];
+        }
+        return out;
+    }
+
+    private int[] ranksOf(Key<T> key) {
+        int[] rank = ranks.get(key);
+        if (rank == null) {
+            rank = key.text != null ? textRanks(key.text) : numberRanks(key.number);
+            ranks.put(key, rank);
+            RANKS_BUILT.increment();
+        }
+        return rank;
+    }
+
+    // Dense ranks by collation order; each distinct string is collated once
+    private int[] textRanks(Function<T, String> value) {
+        int n = items.size();
+        Map<String, Integer> distinct = new HashMap<>();
+        int[] ids = new int[n];
+        for (int i = 0; i < n; i++) {
+            String s = value.apply(items.get(i));
+            if (s == null) s = "";
+            Integer id = distinct.putIfAbsent(s, distinct.size());
+            ids[i] = id != null ? id : distinct.size() - 1;
+        }
+
+        CollationKey[] keys = new CollationKey[distinct.size()];
+        for (Map.Entry<String, Integer> e : distinct.entrySet()) {
+            keys[e.getValue()] = collator.getCollationKey(e.getKey());
+        }
+        Integer[] byCollation = new Integer[keys.length];
+        for (int i = 0; i < byCollation.length; i++) byCollation[i] = i;
+        Arrays.parallelSort(byCollation, (a, b) -> keys[a].compareTo(keys[b]));
+
+        // Strings the collator considers equal share a rank
+        int[] idRank = new int[keys.length];
+        int r = -1;
+        for (int i = 0; i < byCollation.length; i++) {
+            if (i == 0 || keys[byCollation[i - 1]].compareTo(keys[byCollation[i]]) != 0) r++;
+            idRank[byCollation[i]] = r;
+        }
+        int[] rank = new int[n];
+        for (int i = 0; i < n; i++) rank[i] = idRank[ids[i]];
+        return rank;
+    }
+
+    // Dense ranks by numeric value
+    private int[] numberRanks(ToLongFunction<T> value) {
+        int n = items.size();
+        long[] values = new long[n];
+        for (int i = 0; i < n; i++) values[i] = value.applyAsLong(items.get(i));
+        long[] sorted = values.clone();
+        Arrays.parallelSort(sorted);
+        int distinct = 0;
+        for (int i = 0; i < n; i++) {
+            if (i == 0 || sorted[i] != sorted[distinct - 1]) sorted[distinct++] = sorted[i];
+        }
+        int[] rank = new int[n];
+        for (int i = 0; i < n; i++) rank[i] = Arrays.binarySearch(sorted, 0, distinct, values[i]);
+        return rank;
+    }
+
+    private static int[] identity(int n) {
+        int[] perm = new int[n];
+        for (int i = 0; i < n; i++) perm[i] = i;
+        return perm;
+    }
+}
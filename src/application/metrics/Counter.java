@@ -0,0 +1,35 @@
+package application.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Monotonic event counter. Safe to increment from any thread without locking.
+ */
+public final class Counter {
+
+    private final String name;
+    private final LongAdder adder = new LongAdder();
+
+    Counter(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void increment() {
+        adder.increment();
+    }
+
+    public void add(long delta) {
+        adder.add(delta);
+    }
+
+    /**
+     * Total since the application started.
+     */
+    public long get() {
+        return adder.sum();
+    }
+}
@@ -0,0 +1,26 @@
+package application.metrics;
+
+/**
+ * Last observed value of something (e.g. files per second of the last scan).
+ */
+public final class Gauge {
+
+    private final String name;
+    private volatile long value;
+
+    Gauge(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void set(long value) {
+        this.value = value;
+    }
+
+    public long get() {
+        return value;
+    }
+}
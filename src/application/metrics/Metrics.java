@@ -0,0 +1,49 @@
+package application.metrics;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Process-wide registry of counters, gauges and latency histograms.
+ *
+ * Metrics are created on first use and live for the whole run, so callers usually keep
+ * them in a static final field:
+ * <pre>
+ *     private static final Counter FILES = Metrics.counter("scan.files");
+ * </pre>
+ * Names are dotted, lowercase, prefixed by the subsystem (scan., playback., visualizer.).
+ */
+public final class Metrics {
+
+    private static final ConcurrentMap<String, Counter> COUNTERS = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, Gauge> GAUGES = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, LatencyHistogram> HISTOGRAMS = new ConcurrentHashMap<>();
+
+    private Metrics() {
+    }
+
+    public static Counter counter(String name) {
+        return COUNTERS.computeIfAbsent(name, Counter::new);
+    }
+
+    public static Gauge gauge(String name) {
+        return GAUGES.computeIfAbsent(name, Gauge::new);
+    }
+
+    public static LatencyHistogram histogram(String name) {
+        return HISTOGRAMS.computeIfAbsent(name, LatencyHistogram::new);
+    }
+
+    static Collection<Counter> counters() {
+        return COUNTERS.values();
+    }
+
+    static Collection<Gauge> gauges() {
+        return GAUGES.values();
+    }
+
+    static Collection<LatencyHistogram> histograms() {
+        return HISTOGRAMS.values();
+    }
+}
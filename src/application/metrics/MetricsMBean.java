@@ -0,0 +1,93 @@
+package application.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+
+/**
+ * Exposes every registered metric as a read-only JMX attribute
+ * (ObjectName application:type=Metrics), so JConsole/VisualVM can watch a running player.
+ *
+ * Counters and gauges appear under their own name. Histograms appear as
+ * name.count, name.p50Millis, name.p99Millis and name.maxMillis.
+ */
+final class MetricsMBean implements DynamicMBean {
+
+    private static final String[] HISTOGRAM_SUFFIXES = {".count", ".p50Millis", ".p99Millis", ".maxMillis"};
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        for (Counter c : Metrics.counters()) {
+            if (c.getName().equals(attribute)) return c.get();
+        }
+        for (Gauge g : Metrics.gauges()) {
+            if (g.getName().equals(attribute)) return g.get();
+        }
+        for (LatencyHistogram h : Metrics.histograms()) {
+            String name = h.getName();
+            if (!attribute.startsWith(name + ".")) continue;
+            switch (attribute.substring(name.length())) {
+                case ".count": return h.getCount();
+                case ".p50Millis": return LatencyHistogram.millis(h.getPercentileNanos(50));
+                case ".p99Millis": return LatencyHistogram.millis(h.getPercentileNanos(99));
+                case ".maxMillis": return LatencyHistogram.millis(h.getMaxNanos());
+                default: break;
+            }
+        }
+        throw new AttributeNotFoundException(attribute);
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+        AttributeList list = new AttributeList();
+        for (String name : attributes) {
+            try {
+                list.add(new Attribute(name, getAttribute(name)));
+            } catch (AttributeNotFoundException ignored) {
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("Metrics are read-only: " + attribute.getName());
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) {
+        throw new UnsupportedOperationException(actionName);
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        // Rebuilt on every call: metrics are registered lazily as subsystems start
+        List<MBeanAttributeInfo> attributes = new ArrayList<>();
+        for (Counter c : Metrics.counters()) {
+            attributes.add(new MBeanAttributeInfo(c.getName(), "long", "Counter", true, false, false));
+        }
+        for (Gauge g : Metrics.gauges()) {
+            attributes.add(new MBeanAttributeInfo(g.getName(), "long", "Gauge", true, false, false));
+        }
+        for (LatencyHistogram h : Metrics.histograms()) {
+            for (String suffix : HISTOGRAM_SUFFIXES) {
+                String type = suffix.equals(".count") ? "long" : "double";
+                attributes.add(new MBeanAttributeInfo(h.getName() + suffix, type, "Latency histogram", true, false, false));
+            }
+        }
+        return new MBeanInfo(getClass().getName(), "Reproductor runtime metrics",
+                attributes.toArray(new MBeanAttributeInfo[0]), null, new MBeanOperationInfo[0], null);
+    }
+}
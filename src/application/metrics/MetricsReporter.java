@@ -0,0 +1,129 @@
+package application.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Publishes the metrics registry: registers the JMX bean and periodically rewrites a
+ * plain-text snapshot file.
+ *
+ * Configuration (system properties):
+ * - reproductor.metrics.file: snapshot path (default ~/.reproductor/metrics.txt)
+ * - reproductor.metrics.interval: seconds between snapshots (default 60, 0 disables the file)
+ */
+public final class MetricsReporter {
+
+    private static final String OBJECT_NAME = "application:type=Metrics";
+
+    private static ScheduledExecutorService scheduler;
+    private static Path snapshotFile; // null when the file is disabled
+    private static long lastSnapshotNanos;
+    private static final Map<String, Long> lastCounterValues = new HashMap<>();
+
+    private MetricsReporter() {
+    }
+
+    /**
+     * Register the JMX bean and start the snapshot writer. Calling it twice is harmless.
+     */
+    public static synchronized void start() {
+        if (scheduler != null) return;
+
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(new MetricsMBean(), name);
+            }
+        } catch (Exception e) {
+            System.err.println("Could not register metrics MBean: " + e.getMessage());
+        }
+
+        long interval = Long.getLong("reproductor.metrics.interval", 60L);
+        String defaultFile = Paths.get(System.getProperty("user.home"), ".reproductor", "metrics.txt").toString();
+        snapshotFile = interval > 0 ? Paths.get(System.getProperty("reproductor.metrics.file", defaultFile)) : null;
+        lastSnapshotNanos = System.nanoTime();
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "metrics-reporter");
+            t.setDaemon(true);
+            return t;
+        });
+        if (interval > 0) {
+            scheduler.scheduleAtFixedRate(MetricsReporter::writeSnapshotQuietly, interval, interval, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Stop the periodic writer and write one last snapshot, unless the file is disabled.
+     */
+    public static synchronized void stop() {
+        if (scheduler == null) return;
+        scheduler.shutdownNow();
+        scheduler = null;
+        writeSnapshotQuietly();
+    }
+
+    /**
+     * Render the current values as text. Counter rates are per second since the previous snapshot.
+     */
+    public static synchronized String snapshot() {
+        long now = System.nanoTime();
+        double seconds = Math.max(1e-9, (now - lastSnapshotNanos) / 1e9);
+        lastSnapshotNanos = now;
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("# Reproductor metrics ").append(Instant.now()).append('\n');
+        for (Counter c : sorted(Metrics.counters(), Counter::getName)) {
+            long value = c.get();
+            long previous = lastCounterValues.getOrDefault(c.getName(), 0L);
+            lastCounterValues.put(c.getName(), value);
+            sb.append(String.format(Locale.ROOT, "%s total=%d rate=%.1f/s%n", c.getName(), value, (value - previous) / seconds));
+        }
+        for (Gauge g : sorted(Metrics.gauges(), Gauge::getName)) {
+            sb.append(g.getName()).append(" value=").append(g.get()).append('\n');
+        }
+        for (LatencyHistogram h : sorted(Metrics.histograms(), LatencyHistogram::getName)) {
+            sb.append(h.getName()).append(' ').append(h.summary()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static void writeSnapshotQuietly() {
+        if (snapshotFile == null) return;
+        try {
+            Files.createDirectories(snapshotFile.toAbsolutePath().getParent());
+            // Write next to the target and rename, so readers never see a half-written file
+            Path tmp = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+            try (Writer w = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                w.write(snapshot());
+            }
+            Files.move(tmp, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Could not write metrics snapshot: " + e.getMessage());
+        }
+    }
+
+    private static <T> List<T> sorted(java.util.Collection<T> values, java.util.function.Function<T, String> name) {
+        return values.stream().sorted(Comparator.comparing(name)).collect(Collectors.toList());
+    }
+}
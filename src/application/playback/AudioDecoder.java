@@ -0,0 +1,46 @@
+package application.playback;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Source of PCM audio for the {@link PcmPlayer}. Every decoder produces the same layout,
+ * 16-bit signed little-endian interleaved frames, whatever the file stores, so sinks and
+ * the spectrum analysis only deal with one format.
+ *
+ * Used from a single thread (the player's reader thread).
+ */
+public interface AudioDecoder extends Closeable {
+
+    /**
+     * Opens a decoder for one file. Registered per extension in {@link AudioDecoders}.
+     */
+    @FunctionalInterface
+    interface Factory {
+        AudioDecoder open(Path file) throws IOException;
+    }
+
+    int sampleRate();
+
+    int channels();
+
+    /** Bytes per output frame (2 × channels). */
+    default int frameSize() {
+        return 2 * channels();
+    }
+
+    /** Number of frames in the file, or -1 when unknown. */
+    long frameLength();
+
+    /**
+     * Decode into {@code dst}.
+     *
+     * @param len maximum bytes; at least one frame
+     * @return bytes written, always a whole number of frames, or -1 at the end
+     */
+    int read(byte[] dst, int off, int len) throws IOException;
+
+    /** Continue decoding at the given frame (clamped to the stream). */
+    void seekFrame(long frame) throws IOException;
+}
@@ -0,0 +1,56 @@
+package application.playback;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of {@link AudioDecoder} factories by file extension. WAV and AIFF are built in;
+ * other formats can be plugged in with {@link #register}, e.g. a FLAC decoder:
+ * <pre>
+ *     AudioDecoders.register("flac", FlacDecoder::open);
+ * </pre>
+ */
+public final class AudioDecoders {
+
+    private static final Map<String, AudioDecoder.Factory> FACTORIES = new ConcurrentHashMap<>();
+
+    static {
+        register("wav", PcmFileDecoder::openWav);
+        register("wave", PcmFileDecoder::openWav);
+        register("aif", PcmFileDecoder::openAiff);
+        register("aiff", PcmFileDecoder::openAiff);
+        register("aifc", PcmFileDecoder::openAiff);
+    }
+
+    private AudioDecoders() {
+    }
+
+    /**
+     * Use {@code factory} for files ending in {@code .extension} (case-insensitive),
+     * replacing any previous registration.
+     */
+    public static void register(String extension, AudioDecoder.Factory factory) {
+        FACTORIES.put(extension.toLowerCase(Locale.ROOT), factory);
+    }
+
+    public static boolean supports(Path file) {
+        return FACTORIES.containsKey(extension(file));
+    }
+
+    public static AudioDecoder open(Path file) throws IOException {
+        AudioDecoder.Factory factory = FACTORIES.get(extension(file));
+        if (factory == null) {
+            throw new IOException("No decoder for " + file.getFileName());
+        }
+        return factory.open(file);
+    }
+
+    private static String extension(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? "" : name.substring(dot + 1).toLowerCase(Locale.ROOT);
+    }
+}
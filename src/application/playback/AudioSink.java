@@ -0,0 +1,48 @@
+package application.playback;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Destination of the PCM player's audio: 16-bit signed little-endian interleaved frames.
+ * Used from the player's audio thread only.
+ */
+public interface AudioSink {
+
+    void open(int sampleRate, int channels) throws IOException;
+
+    /** Write whole frames; may block to pace playback. */
+    void write(byte[] pcm, int off, int len) throws IOException;
+
+    /** Playback paused; buffered audio is kept. */
+    default void pause() {}
+
+    /** Playback resumes after a pause. */
+    default void resume() {}
+
+    /** Drop audio written but not yet played (after a seek or stop). */
+    default void flush() {}
+
+    /** Wait until everything written has been played (end of track). */
+    default void drain() {}
+
+    void close();
+
+    /**
+     * Sink named by the {@code reproductor.pcm.sink} property:
+     * {@code line} (default, the sound card), {@code null} (discard, paced in real time)
+     * or {@code file:<path>} (write a WAV file).
+     */
+    static AudioSink fromConfig() {
+        String spec = System.getProperty("reproductor.pcm.sink", "line");
+        if (spec.equals("null")) {
+            return new NullSink(true);
+        }
+        if (spec.startsWith("file:")) {
+            Path file = Paths.get(spec.substring("file:".length()));
+            return new WavFileSink(file);
+        }
+        return new LineSink();
+    }
+}
@@ -0,0 +1,89 @@
+package application.playback;
+
+import java.nio.file.Path;
+
+import javafx.scene.media.Media;
+import javafx.scene.media.MediaPlayer;
+import javafx.util.Duration;
+
+/**
+ * Player backed by JavaFX {@code MediaPlayer}: handles every format JavaFX Media supports
+ * (MP3, AAC/M4A, WAV, AIFF). Spectrum updates come from its AudioSpectrumListener every
+ * 50 ms.
+ */
+final class FxMediaPlayer implements Player {
+
+    private static final double SPECTRUM_INTERVAL_SECONDS = 0.05;
+
+    private final MediaPlayer mediaPlayer;
+
+    FxMediaPlayer(Path file, Listener listener) {
+        Media media = new Media(file.toUri().toString());
+        mediaPlayer = new MediaPlayer(media);
+
+        mediaPlayer.setOnReady(() -> listener.onReady(getDurationMillis()));
+        mediaPlayer.setOnPlaying(listener::onPlaying);
+        mediaPlayer.setOnPaused(listener::onPaused);
+        mediaPlayer.setOnStopped(listener::onStopped);
+        mediaPlayer.setOnEndOfMedia(listener::onEndOfMedia);
+        mediaPlayer.setOnError(() -> listener.onError(mediaPlayer.getError().getMessage()));
+        mediaPlayer.currentTimeProperty().addListener((_, oldTime, newTime) -> {
+            if (mediaPlayer.getStatus() != MediaPlayer.Status.UNKNOWN) {
+                long total = getDurationMillis();
+                if (total > 0) {
+                    listener.onTime((long) newTime.toMillis(), total);
+                }
+            }
+        });
+    }
+
+    @Override
+    public void play() {
+        mediaPlayer.play();
+    }
+
+    @Override
+    public void pause() {
+        mediaPlayer.pause();
+    }
+
+    @Override
+    public void stop() {
+        mediaPlayer.stop();
+    }
+
+    @Override
+    public void seek(long positionMillis) {
+        mediaPlayer.seek(Duration.millis(positionMillis));
+    }
+
+    @Override
+    public void setVolume(double volume) {
+        mediaPlayer.setVolume(volume);
+    }
+
+    @Override
+    public long getDurationMillis() {
+        Duration total = mediaPlayer.getTotalDuration();
+        if (total == null || total.isUnknown() || total.isIndefinite()) return -1;
+        return (long) total.toMillis();
+    }
+
+    @Override
+    public void setSpectrumListener(int bands, SpectrumListener listener) {
+        if (listener == null) {
+            mediaPlayer.setAudioSpectrumListener(null);
+            return;
+        }
+        mediaPlayer.setAudioSpectrumNumBands(bands);
+        mediaPlayer.setAudioSpectrumInterval(SPECTRUM_INTERVAL_SECONDS);
+        mediaPlayer.setAudioSpectrumListener(
+                (timestamp, duration, magnitudes, phases) -> listener.spectrumDataUpdate(magnitudes));
+    }
+
+    @Override
+    public void dispose() {
+        mediaPlayer.setAudioSpectrumListener(null);
+        mediaPlayer.dispose();
+    }
+}
@@ -0,0 +1,65 @@
+package application.playback;
+
+import java.io.IOException;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+
+/**
+ * Plays through a {@code javax.sound.sampled} SourceDataLine on the default mixer.
+ * The line buffer is kept short (about 100 ms) so pause, seek and the spectrum stay in
+ * step with what is heard; the player's ring buffer absorbs disk stalls instead.
+ */
+public final class LineSink implements AudioSink {
+
+    private static final int LINE_BUFFER_MILLIS = 100;
+
+    private SourceDataLine line;
+
+    @Override
+    public void open(int sampleRate, int channels) throws IOException {
+        AudioFormat format = new AudioFormat(sampleRate, 16, channels, true, false);
+        int bufferBytes = sampleRate * channels * 2 * LINE_BUFFER_MILLIS / 1000;
+        try {
+            line = AudioSystem.getSourceDataLine(format);
+            line.open(format, bufferBytes - bufferBytes % (channels * 2));
+            line.start();
+        } catch (LineUnavailableException | IllegalArgumentException e) {
+            throw new IOException("Audio output unavailable: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void write(byte[] pcm, int off, int len) {
+        line.write(pcm, off, len);
+    }
+
+    @Override
+    public void pause() {
+        line.stop();
+    }
+
+    @Override
+    public void resume() {
+        line.start();
+    }
+
+    @Override
+    public void flush() {
+        line.flush();
+    }
+
+    @Override
+    public void drain() {
+        line.drain();
+    }
+
+    @Override
+    public void close() {
+        if (line != null) {
+            line.close();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package application.playback;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Discards audio, for headless runs and machines without a sound card. When paced, writes
+ * block as long as the audio would take to play, so positions, end-of-track and spectrum
+ * timing behave as with a real line; unpaced it consumes as fast as the decoder produces.
+ */
+public final class NullSink implements AudioSink {
+
+    private final boolean paced;
+    private long bytesPerSecond;
+    private long startNanos;
+    private long bytesWritten;
+
+    public NullSink(boolean paced) {
+        this.paced = paced;
+    }
+
+    @Override
+    public void open(int sampleRate, int channels) {
+        bytesPerSecond = (long) sampleRate * channels * 2;
+        restartClock();
+    }
+
+    @Override
+    public void write(byte[] pcm, int off, int len) {
+        bytesWritten += len;
+        if (!paced) return;
+        long due = startNanos + bytesWritten * 1_000_000_000L / bytesPerSecond;
+        long wait = due - System.nanoTime();
+        if (wait > 0) {
+            LockSupport.parkNanos(wait);
+        }
+    }
+
+    @Override
+    public void resume() {
+        restartClock();
+    }
+
+    @Override
+    public void flush() {
+        restartClock();
+    }
+
+    @Override
+    public void close() {
+    }
+
+    public long bytesWritten() {
+        return bytesWritten;
+    }
+
+    private void restartClock() {
+        startNanos = System.nanoTime();
+        bytesWritten = 0;
+    }
+}
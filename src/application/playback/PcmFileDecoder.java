@@ -0,0 +1,248 @@
+package application.playback;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import application.tags.TagReader;
+
+/**
+ * Decoder for uncompressed WAV (RIFF/WAVE) and AIFF/AIFC files: integer PCM of 8, 16, 24
+ * or 32 bits and 32-bit float, any channel count. The header is parsed with positioned
+ * reads; sample data is then read sequentially through one reused direct buffer and
+ * converted to 16-bit little-endian frames.
+ */
+final class PcmFileDecoder implements AudioDecoder {
+
+    private static final int READ_BUFFER_FRAMES = 4096;
+
+    private final FileChannel ch;
+    private final long dataOffset;
+    private final long dataLength;
+    private final int channels;
+    private final int sampleRate;
+    private final int bytesPerSample;
+    private final boolean floatSamples;
+    private final boolean unsigned8; // WAV stores 8-bit samples unsigned
+    private final int inFrameSize;
+    private final ByteBuffer src;
+    private long position = 0; // bytes consumed from the data chunk
+
+    private PcmFileDecoder(FileChannel ch, long dataOffset, long dataLength, int channels, int sampleRate,
+                           int bits, boolean floatSamples, boolean bigEndian, boolean unsigned8) throws IOException {
+        if (channels <= 0 || sampleRate <= 0) {
+            throw new IOException("Invalid format: " + channels + " channels, " + sampleRate + " Hz");
+        }
+        if (floatSamples ? bits != 32 : (bits < 8 || bits > 32 || bits % 8 != 0)) {
+            throw new IOException("Unsupported sample size: " + bits + " bits" + (floatSamples ? " float" : ""));
+        }
+        this.ch = ch;
+        this.channels = channels;
+        this.sampleRate = sampleRate;
+        this.bytesPerSample = bits / 8;
+        this.floatSamples = floatSamples;
+        this.unsigned8 = unsigned8;
+        this.inFrameSize = bytesPerSample * channels;
+        this.dataOffset = dataOffset;
+        long available = Math.max(0, ch.size() - dataOffset);
+        long length = dataLength < 0 ? available : Math.min(dataLength, available);
+        this.dataLength = length - length % inFrameSize;
+        this.src = ByteBuffer.allocateDirect(READ_BUFFER_FRAMES * inFrameSize)
+                .order(bigEndian ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Open a RIFF/WAVE file (PCM, IEEE float or WAVE_FORMAT_EXTENSIBLE with one of those).
+     */
+    static PcmFileDecoder openWav(Path file) throws IOException {
+        FileChannel ch = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            ByteBuffer riff = TagReader.readAt(ch, 0, 12).order(ByteOrder.LITTLE_ENDIAN);
+            if (riff.remaining() < 12 || !fourCc(riff, 0, "RIFF") || !fourCc(riff, 8, "WAVE")) {
+                throw new IOException("Not a WAV file: " + file);
+            }
+            int format = -1, channels = 0, rate = 0, bits = 0;
+            long pos = 12;
+            long size = ch.size();
+            while (pos + 8 <= size) {
+                ByteBuffer header = TagReader.readAt(ch, pos, 8).order(ByteOrder.LITTLE_ENDIAN);
+                if (header.remaining() < 8) break;
+                long chunkSize = header.getInt(4) & 0xFFFFFFFFL;
+                if (fourCc(header, 0, "fmt ")) {
+                    ByteBuffer fmt = TagReader.readAt(ch, pos + 8, (int) Math.min(chunkSize, 40)).order(ByteOrder.LITTLE_ENDIAN);
+                    if (fmt.remaining() < 16) throw new IOException("Truncated fmt chunk: " + file);
+                    format = fmt.getShort(0) & 0xFFFF;
+                    channels = fmt.getShort(2) & 0xFFFF;
+                    rate = fmt.getInt(4);
+                    bits = fmt.getShort(14) & 0xFFFF;
+                    if (format == 0xFFFE && fmt.remaining() >= 26) {
+                        format = fmt.getShort(24) & 0xFFFF; // first two bytes of the sub-format GUID
+                    }
+                } else if (fourCc(header, 0, "data")) {
+                    if (format != 1 && format != 3) {
+                        throw new IOException("Unsupported WAV encoding " + format + ": " + file);
+                    }
+                    // 0xFFFFFFFF (or an oversized value) is written by streaming encoders
+                    long length = chunkSize == 0xFFFFFFFFL ? -1 : chunkSize;
+                    return new PcmFileDecoder(ch, pos + 8, length, channels, rate, bits, format == 3, false, bits == 8);
+                }
+                pos += 8 + chunkSize + (chunkSize & 1);
+            }
+            throw new IOException("No audio data in WAV file: " + file);
+        } catch (IOException | RuntimeException e) {
+            ch.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Open an AIFF file, or an AIFC file that is uncompressed ("NONE", "sowt", "fl32").
+     */
+    static PcmFileDecoder openAiff(Path file) throws IOException {
+        FileChannel ch = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            ByteBuffer form = TagReader.readAt(ch, 0, 12);
+            boolean aifc = form.remaining() >= 12 && fourCc(form, 8, "AIFC");
+            if (form.remaining() < 12 || !fourCc(form, 0, "FORM") || !(aifc || fourCc(form, 8, "AIFF"))) {
+                throw new IOException("Not an AIFF file: " + file);
+            }
+            int channels = 0, rate = 0, bits = 0;
+            boolean floatSamples = false, bigEndian = true, haveComm = false;
+            long pos = 12;
+            long size = ch.size();
+            while (pos + 8 <= size) {
+                ByteBuffer header = TagReader.readAt(ch, pos, 8);
+                if (header.remaining() < 8) break;
+                long chunkSize = header.getInt(4) & 0xFFFFFFFFL;
+                if (fourCc(header, 0, "COMM")) {
+                    ByteBuffer comm = TagReader.readAt(ch, pos + 8, (int) Math.min(chunkSize, 22));
+                    if (comm.remaining() < 18) throw new IOException("Truncated COMM chunk: " + file);
+                    channels = comm.getShort(0) & 0xFFFF;
+                    bits = comm.getShort(6) & 0xFFFF;
+                    rate = (int) Math.round(extended80(comm, 8));
+                    if (aifc && comm.remaining() >= 22) {
+                        if (fourCc(comm, 18, "sowt")) {
+                            bigEndian = false;
+                        } else if (fourCc(comm, 18, "fl32") || fourCc(comm, 18, "FL32")) {
+                            floatSamples = true;
+                        } else if (!fourCc(comm, 18, "NONE") && !fourCc(comm, 18, "twos")) {
+                            throw new IOException("Compressed AIFC is not supported: " + file);
+                        }
+                    }
+                    haveComm = true;
+                } else if (fourCc(header, 0, "SSND")) {
+                    if (!haveComm) throw new IOException("SSND before COMM chunk: " + file);
+                    ByteBuffer ssnd = TagReader.readAt(ch, pos + 8, 8);
+                    long offset = ssnd.getInt(0) & 0xFFFFFFFFL;
+                    return new PcmFileDecoder(ch, pos + 16 + offset, chunkSize - 8 - offset,
+                            channels, rate, bits, floatSamples, bigEndian, false);
+                }
+                pos += 8 + chunkSize + (chunkSize & 1);
+            }
+            throw new IOException("No audio data in AIFF file: " + file);
+        } catch (IOException | RuntimeException e) {
+            ch.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public int sampleRate() {
+        return sampleRate;
+    }
+
+    @Override
+    public int channels() {
+        return channels;
+    }
+
+    @Override
+    public long frameLength() {
+        return dataLength / inFrameSize;
+    }
+
+    @Override
+    public int read(byte[] dst, int off, int len) throws IOException {
+        long remainingFrames = (dataLength - position) / inFrameSize;
+        if (remainingFrames <= 0) return -1;
+        int frames = (int) Math.min(Math.min(len / frameSize(), READ_BUFFER_FRAMES), remainingFrames);
+        if (frames <= 0) return 0;
+
+        src.clear().limit(frames * inFrameSize);
+        while (src.hasRemaining()) {
+            int n = ch.read(src, dataOffset + position + src.position());
+            if (n < 0) break;
+        }
+        src.flip();
+        frames = src.remaining() / inFrameSize;
+        if (frames == 0) {
+            position = dataLength; // file shorter than its header said
+            return -1;
+        }
+        position += (long) frames * inFrameSize;
+
+        int out = off;
+        int samples = frames * channels;
+        for (int i = 0; i < samples; i++) {
+            int s = nextSample();
+            dst[out++] = (byte) s;
+            dst[out++] = (byte) (s >> 8);
+        }
+        return out - off;
+    }
+
+    // Next sample of 'src' as a signed 16-bit value
+    private int nextSample() {
+        if (floatSamples) {
+            float f = src.getFloat();
+            if (f > 1f) f = 1f;
+            else if (f < -1f) f = -1f;
+            return (int) (f * 32767f);
+        }
+        switch (bytesPerSample) {
+            case 1: {
+                int b = src.get();
+                return (unsigned8 ? (b & 0xFF) - 128 : b) << 8;
+            }
+            case 2:
+                return src.getShort();
+            case 3: {
+                // Keep the two most significant bytes
+                byte b0 = src.get(), b1 = src.get(), b2 = src.get();
+                return src.order() == ByteOrder.BIG_ENDIAN ? (b0 << 8) | (b1 & 0xFF) : (b2 << 8) | (b1 & 0xFF);
+            }
+            default:
+                return src.getInt() >> 16;
+        }
+    }
+
+    @Override
+    public void seekFrame(long frame) throws IOException {
+        long clamped = Math.max(0, Math.min(frame, frameLength()));
+        position = clamped * inFrameSize;
+    }
+
+    @Override
+    public void close() throws IOException {
+        ch.close();
+    }
+
+    private static boolean fourCc(ByteBuffer buf, int offset, String id) {
+        for (int i = 0; i < 4; i++) {
+            if (buf.get(offset + i) != id.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    // 80-bit IEEE 754 extended precision (big endian), used for the AIFF sample rate
+    private static double extended80(ByteBuffer buf, int offset) {
+        int exponent = ((buf.get(offset) & 0x7F) << 8) | (buf.get(offset + 1) & 0xFF);
+        long mantissa = buf.getLong(offset + 2);
+        if (exponent == 0 && mantissa == 0) return 0;
+        double value = Math.scalb((double) (mantissa >>> 11), exponent - 16383 - 52);
+        return (buf.get(offset) & 0x80) != 0 ? -value : value;
+    }
+}
@@ -0,0 +1,348 @@
+package application.playback;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import application.metrics.Counter;
+import application.metrics.LatencyHistogram;
+import application.metrics.Metrics;
+
+/**
+ * Pure-Java player for formats with an {@link AudioDecoder} (WAV and AIFF built in).
+ *
+ * Two threads per track: the reader decodes from the file into a {@link PcmRingBuffer}
+ * holding about half a second of audio, and the audio thread moves it from the ring to
+ * the {@link AudioSink}, applying the volume and feeding the {@link SpectrumAnalyzer} on
+ * the way. Opening only parses the header, so the player is ready right away; the threads
+ * and the sink start on the first {@link #play()}.
+ *
+ * Control methods are called on the FX thread; listener callbacks are posted to the given
+ * executor (Platform::runLater in the player), except spectrum updates which are made on
+ * the audio thread.
+ */
+final class PcmPlayer implements Player {
+
+    private static final Counter UNDERRUNS = Metrics.counter("playback.pcm_underruns");
+    private static final LatencyHistogram SPECTRUM_TIME = Metrics.histogram("playback.spectrum_time");
+
+    private static final int RING_MILLIS = 500;
+    private static final int CHUNK_FRAMES = 1024;
+    private static final int FFT_SIZE = 1024;
+    private static final long READ_TIMEOUT_MILLIS = 50;
+    private static final long TIME_UPDATE_NANOS = 100_000_000L;
+    // Header values accepted: the ring and the sink are sized from them
+    private static final int MIN_SAMPLE_RATE = 1000;
+    private static final int MAX_SAMPLE_RATE = 768_000;
+    private static final int MAX_CHANNELS = 32;
+
+    private static final int STOPPED = 0;
+    private static final int PLAYING = 1;
+    private static final int PAUSED = 2;
+    private static final int DISPOSED = 3;
+
+    private record SpectrumRequest(int bands, SpectrumListener listener) {
+    }
+
+    private final Path file;
+    private final AudioDecoder decoder;
+    private final AudioSink sink;
+    private final Listener listener;
+    private final Executor callbacks;
+    private final PcmRingBuffer ring;
+    private final int frameSize;
+    private final int sampleRate;
+
+    private final Object stateLock = new Object();
+    private volatile int state = STOPPED;
+    private boolean ended = false; // FX thread: reached the end, next play() starts over
+    private volatile boolean readFailed = false; // the reader stopped on an error, reported already
+    private final AtomicLong pendingSeek = new AtomicLong(-1); // frame the reader must move to
+    private volatile long seekBase = 0;      // frame of the last seek, written by the reader
+    private volatile int seekGeneration = 0; // bumped by the reader after each seek
+    private volatile long framesPlayed = 0;  // written by the audio thread
+    private volatile float volume = 1f;
+    private volatile SpectrumRequest spectrum = null;
+    private final AtomicBoolean timeUpdatePending = new AtomicBoolean(false);
+    private long lastTimeUpdateNanos = 0; // audio thread
+    private Thread readerThread;
+    private Thread audioThread;
+
+    PcmPlayer(Path file, AudioSink sink, Listener listener, Executor callbacks) throws IOException {
+        this.file = file;
+        this.decoder = AudioDecoders.open(file);
+        this.sink = sink;
+        this.listener = listener;
+        this.callbacks = callbacks;
+        this.frameSize = decoder.frameSize();
+        this.sampleRate = decoder.sampleRate();
+        int channels = decoder.channels();
+        if (sampleRate < MIN_SAMPLE_RATE || sampleRate > MAX_SAMPLE_RATE || channels < 1 || channels > MAX_CHANNELS) {
+            closeDecoder();
+            throw new IOException("Unsupported format: " + channels + " channels, " + sampleRate + " Hz");
+        }
+        this.ring = new PcmRingBuffer((int) ((long) sampleRate * RING_MILLIS / 1000), frameSize);
+        long duration = getDurationMillis();
+        callbacks.execute(() -> listener.onReady(duration));
+    }
+
+    @Override
+    public void play() {
+        if (state == DISPOSED) return;
+        if (ended) {
+            ended = false;
+            requestSeek(0);
+        }
+        if (readerThread == null) {
+            startThreads();
+        }
+        setState(PLAYING);
+        post(listener::onPlaying);
+    }
+
+    @Override
+    public void pause() {
+        if (state != PLAYING) return;
+        setState(PAUSED);
+        post(listener::onPaused);
+    }
+
+    @Override
+    public void stop() {
+        if (state == DISPOSED) return;
+        ended = false;
+        setState(STOPPED);
+        requestSeek(0);
+        post(listener::onStopped);
+    }
+
+    @Override
+    public void seek(long positionMillis) {
+        if (state == DISPOSED) return;
+        ended = false;
+        requestSeek(Math.max(0, positionMillis) * sampleRate / 1000);
+    }
+
+    @Override
+    public void setVolume(double volume) {
+        this.volume = (float) Math.max(0, Math.min(1, volume));
+    }
+
+    @Override
+    public long getDurationMillis() {
+        long frames = decoder.frameLength();
+        return frames < 0 ? -1 : frames * 1000 / sampleRate;
+    }
+
+    @Override
+    public void setSpectrumListener(int bands, SpectrumListener listener) {
+        spectrum = listener == null ? null : new SpectrumRequest(bands, listener);
+    }
+
+    @Override
+    public void dispose() {
+        setState(DISPOSED);
+        ring.close();
+        if (readerThread == null) {
+            closeDecoder();
+        }
+    }
+
+    private void startThreads() {
+        String name = file.getFileName().toString();
+        readerThread = new Thread(this::readLoop, "pcm-reader " + name);
+        readerThread.setDaemon(true);
+        audioThread = new Thread(this::audioLoop, "pcm-audio " + name);
+        audioThread.setDaemon(true);
+        audioThread.setPriority(Thread.MAX_PRIORITY);
+        readerThread.start();
+        audioThread.start();
+    }
+
+    private void setState(int newState) {
+        synchronized (stateLock) {
+            state = newState;
+            stateLock.notifyAll();
+        }
+    }
+
+    private void requestSeek(long frame) {
+        synchronized (stateLock) {
+            pendingSeek.set(frame);
+            stateLock.notifyAll();
+        }
+        // Unblock a reader waiting for room; it re-clears after seeking
+        ring.clear();
+    }
+
+    // Reader thread: file -> ring
+    private void readLoop() {
+        byte[] chunk = new byte[CHUNK_FRAMES * frameSize];
+        try {
+            while (state != DISPOSED) {
+                long seekTo = pendingSeek.getAndSet(-1);
+                if (seekTo >= 0) {
+                    decoder.seekFrame(seekTo);
+                    ring.clear();
+                    seekBase = seekTo;
+                    seekGeneration++;
+                }
+                int n = decoder.read(chunk, 0, chunk.length);
+                if (n < 0) {
+                    ring.finish();
+                    // Nothing more to read until a seek (or stop) moves us back
+                    synchronized (stateLock) {
+                        while (pendingSeek.get() < 0 && state != DISPOSED) {
+                            stateLock.wait();
+                        }
+                    }
+                } else if (n > 0) {
+                    ring.write(chunk, 0, n);
+                }
+            }
+        } catch (IOException e) {
+            readFailed = true; // set before finish(), so the audio thread doesn't report an end
+            post(() -> listener.onError("Error reading " + file.getFileName() + ": " + e.getMessage()));
+            ring.finish();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            closeDecoder();
+        }
+    }
+
+    // Audio thread: ring -> spectrum -> volume -> sink
+    private void audioLoop() {
+        try {
+            sink.open(sampleRate, frameSize / 2);
+        } catch (IOException e) {
+            post(() -> listener.onError(e.getMessage()));
+            return;
+        }
+        byte[] chunk = new byte[CHUNK_FRAMES * frameSize];
+        int generation = seekGeneration;
+        SpectrumRequest analyzed = null;
+        SpectrumAnalyzer analyzer = null;
+        try {
+            while (true) {
+                if (state != PLAYING) {
+                    int stoppedIn;
+                    synchronized (stateLock) {
+                        stoppedIn = state;
+                    }
+                    if (stoppedIn == DISPOSED) break;
+                    sink.pause();
+                    if (stoppedIn == STOPPED) sink.flush();
+                    synchronized (stateLock) {
+                        while (state == STOPPED || state == PAUSED) {
+                            stateLock.wait();
+                        }
+                    }
+                    if (state == DISPOSED) break;
+                    sink.resume();
+                }
+
+                int n = ring.read(chunk, 0, chunk.length, READ_TIMEOUT_MILLIS);
+                if (seekGeneration != generation) {
+                    // Drop what was read before the seek took effect
+                    generation = seekGeneration;
+                    sink.flush();
+                    framesPlayed = seekBase;
+                    if (analyzer != null) analyzer.reset();
+                    continue;
+                }
+                if (n == 0) {
+                    if (state == PLAYING && pendingSeek.get() < 0) UNDERRUNS.increment();
+                    continue;
+                }
+                if (n < 0) {
+                    if (state == DISPOSED) break;
+                    sink.drain();
+                    endOfMedia(generation);
+                    continue;
+                }
+
+                SpectrumRequest request = spectrum;
+                if (request != analyzed) {
+                    analyzed = request;
+                    analyzer = request == null ? null : new SpectrumAnalyzer(FFT_SIZE, request.bands(), frameSize / 2);
+                }
+                if (analyzer != null) {
+                    long start = System.nanoTime();
+                    if (analyzer.add(chunk, 0, n)) {
+                        request.listener().spectrumDataUpdate(analyzer.magnitudes());
+                    }
+                    SPECTRUM_TIME.recordSince(start);
+                }
+
+                applyVolume(chunk, n);
+                sink.write(chunk, 0, n);
+                framesPlayed += n / frameSize;
+                postTimeUpdate();
+            }
+        } catch (IOException e) {
+            post(() -> listener.onError("Audio output failed: " + e.getMessage()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            sink.close();
+        }
+    }
+
+    private void endOfMedia(int generation) {
+        synchronized (stateLock) {
+            // A seek or stop issued meanwhile wins over the end of the track
+            if (state != PLAYING || seekGeneration != generation || pendingSeek.get() >= 0) return;
+            state = STOPPED;
+        }
+        // The track didn't end: reading it failed, and onError said so
+        if (readFailed) return;
+        post(() -> {
+            ended = true;
+            listener.onTime(getDurationMillis(), getDurationMillis());
+            listener.onEndOfMedia();
+        });
+    }
+
+    private void applyVolume(byte[] pcm, int len) {
+        float v = volume;
+        if (v >= 1f) return;
+        int gain = (int) (v * 65536);
+        for (int i = 0; i + 1 < len; i += 2) {
+            int s = (short) ((pcm[i] & 0xFF) | (pcm[i + 1] << 8));
+            s = (s * gain) >> 16;
+            pcm[i] = (byte) s;
+            pcm[i + 1] = (byte) (s >> 8);
+        }
+    }
+
+    // At most one pending position update, and not more often than every 100 ms
+    private void postTimeUpdate() {
+        long now = System.nanoTime();
+        if (now - lastTimeUpdateNanos < TIME_UPDATE_NANOS) return;
+        lastTimeUpdateNanos = now;
+        if (timeUpdatePending.compareAndSet(false, true)) {
+            callbacks.execute(() -> {
+                timeUpdatePending.set(false);
+                if (state != DISPOSED) {
+                    listener.onTime(framesPlayed * 1000 / sampleRate, getDurationMillis());
+                }
+            });
+        }
+    }
+
+    private void post(Runnable callback) {
+        callbacks.execute(() -> {
+            if (state != DISPOSED) callback.run();
+        });
+    }
+
+    private void closeDecoder() {
+        try {
+            decoder.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package application.playback;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fixed-size byte ring between the reader thread (file to ring) and the audio thread
+ * (ring to sink). One producer, one consumer; both block while the ring is full or empty.
+ * Reads always return whole frames. Nothing is allocated after construction.
+ */
+final class PcmRingBuffer {
+
+    private final byte[] buffer;
+    private final int frameSize;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private int readPos = 0;
+    private int count = 0;
+    private boolean finished = false; // producer reached the end of the stream
+    private boolean closed = false;
+    private int clears = 0; // lets a blocked write notice a clear()
+
+    /**
+     * @param capacityFrames capacity in frames
+     * @param frameSize bytes per frame
+     */
+    PcmRingBuffer(int capacityFrames, int frameSize) {
+        this.buffer = new byte[capacityFrames * frameSize];
+        this.frameSize = frameSize;
+    }
+
+    /**
+     * Append bytes, waiting for room. Returns early (dropping the rest) when the ring is
+     * cleared or closed meanwhile.
+     */
+    void write(byte[] src, int off, int len) throws InterruptedException {
+        lock.lock();
+        try {
+            int clearsSeen = clears;
+            while (len > 0) {
+                while (count == buffer.length && !closed && clears == clearsSeen) {
+                    notFull.await();
+                }
+                if (closed || clears != clearsSeen) return;
+                int writePos = (readPos + count) % buffer.length;
+                int n = Math.min(len, Math.min(buffer.length - count, buffer.length - writePos));
+                System.arraycopy(src, off, buffer, writePos, n);
+                count += n;
+                off += n;
+                len -= n;
+                notEmpty.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Take up to {@code len} bytes (rounded down to whole frames), waiting up to
+     * {@code timeoutMillis} for data.
+     *
+     * @return bytes read, 0 on timeout, or -1 when the stream is finished and drained
+     *         or the ring is closed
+     */
+    int read(byte[] dst, int off, int len, long timeoutMillis) throws InterruptedException {
+        lock.lock();
+        try {
+            long nanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+            while (count == 0) {
+                if (closed || finished) return -1;
+                if (nanos <= 0) return 0;
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            int total = Math.min(len, count);
+            total -= total % frameSize;
+            int remaining = total;
+            while (remaining > 0) {
+                int n = Math.min(remaining, buffer.length - readPos);
+                System.arraycopy(buffer, readPos, dst, off, n);
+                readPos = (readPos + n) % buffer.length;
+                count -= n;
+                off += n;
+                remaining -= n;
+            }
+            notFull.signal();
+            return total;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** The producer reached the end; readers get -1 once the ring is drained. */
+    void finish() {
+        lock.lock();
+        try {
+            finished = true;
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Drop buffered audio (after a seek); a producer blocked in write gives up its chunk. */
+    void clear() {
+        lock.lock();
+        try {
+            readPos = 0;
+            count = 0;
+            finished = false;
+            clears++;
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Wake up and release both sides for good. */
+    void close() {
+        lock.lock();
+        try {
+            closed = true;
+            notEmpty.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
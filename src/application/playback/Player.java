@@ -0,0 +1,56 @@
+package application.playback;
+
+/**
+ * One opened track, whatever plays it. Created by {@link Players#open}; all methods are
+ * called from the FX thread, and {@link Listener} callbacks arrive on it.
+ */
+public interface Player {
+
+    /**
+     * Playback lifecycle callbacks, delivered on the FX thread.
+     */
+    interface Listener {
+        default void onReady(long durationMillis) {}
+        default void onPlaying() {}
+        default void onPaused() {}
+        default void onStopped() {}
+        /** Position changed; at most a few times per second. */
+        default void onTime(long positionMillis, long durationMillis) {}
+        default void onEndOfMedia() {}
+        default void onError(String message) {}
+    }
+
+    /**
+     * Receives spectrum magnitudes in dB (-60 to 0), one value per band. Called on the
+     * backend's own thread with an array that is reused for the next update, so
+     * implementations must copy what they keep and return quickly.
+     */
+    interface SpectrumListener {
+        void spectrumDataUpdate(float[] magnitudes);
+    }
+
+    void play();
+
+    void pause();
+
+    /** Stop and rewind to the start. */
+    void stop();
+
+    void seek(long positionMillis);
+
+    /** @param volume 0.0 (silent) to 1.0 (full) */
+    void setVolume(double volume);
+
+    /** Duration of the track, or -1 while unknown. */
+    long getDurationMillis();
+
+    /**
+     * Start (or with a null listener, stop) spectrum updates.
+     *
+     * @param bands number of frequency bands
+     */
+    void setSpectrumListener(int bands, SpectrumListener listener);
+
+    /** Release the file and audio resources; the player cannot be used afterwards. */
+    void dispose();
+}
@@ -0,0 +1,47 @@
+package application.playback;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.concurrent.Executor;
+
+/**
+ * Chooses the playback backend for a track.
+ *
+ * {@code -Dreproductor.player=fx} (default) plays everything through JavaFX MediaPlayer.
+ * {@code -Dreproductor.player=pcm} uses the pure-Java {@link PcmPlayer} for files with a
+ * registered {@link AudioDecoder} and falls back to JavaFX for the rest. The PCM output
+ * is chosen with {@code -Dreproductor.pcm.sink} (see {@link AudioSink#fromConfig()}).
+ */
+public final class Players {
+
+    public enum Backend { FX, PCM }
+
+    private Players() {
+    }
+
+    public static Backend configuredBackend() {
+        String name = System.getProperty("reproductor.player", "fx");
+        return name.toLowerCase(Locale.ROOT).equals("pcm") ? Backend.PCM : Backend.FX;
+    }
+
+    /**
+     * Open a track with the configured backend.
+     *
+     * @param callbacks executor for listener callbacks (Platform::runLater)
+     */
+    public static Player open(Path file, Player.Listener listener, Executor callbacks) throws IOException {
+        if (configuredBackend() == Backend.PCM && AudioDecoders.supports(file)) {
+            return openPcm(file, AudioSink.fromConfig(), listener, callbacks);
+        }
+        return new FxMediaPlayer(file, listener);
+    }
+
+    /**
+     * Open a track with the pure-Java backend and a given sink; works without JavaFX.
+     */
+    public static Player openPcm(Path file, AudioSink sink, Player.Listener listener, Executor callbacks)
+            throws IOException {
+        return new PcmPlayer(file, sink, listener, callbacks);
+    }
+}
@@ -0,0 +1,99 @@
+package application.playback;
+
+import java.util.Arrays;
+
+/**
+ * Turns the PCM stream into spectrum bands on the audio thread, in the same shape the
+ * JavaFX AudioSpectrumListener reports: {@code bands} linear bands from 0 Hz to Nyquist,
+ * in dB relative to full scale, clamped at {@link #THRESHOLD_DB}.
+ *
+ * Samples are mixed to mono and collected into a Hann-windowed frame; every full frame is
+ * transformed in place. All buffers are allocated up front.
+ */
+public final class SpectrumAnalyzer {
+
+    public static final float THRESHOLD_DB = -60f;
+
+    private final Fft fft;
+    private final float[] window;
+    private final float[] re;
+    private final float[] im;
+    private final float[] magnitudes;
+    private final int channels;
+    private final float scaleDb; // a full-scale sine through a Hann window peaks at n/4
+    private int filled = 0;
+
+    /**
+     * @param fftSize samples per analysis frame (power of two)
+     * @param bands output bands
+     * @param channels interleaved channels of the input
+     */
+    public SpectrumAnalyzer(int fftSize, int bands, int channels) {
+        this.fft = new Fft(fftSize);
+        this.window = new float[fftSize];
+        for (int i = 0; i < fftSize; i++) {
+            window[i] = (float) (0.5 - 0.5 * Math.cos(2 * Math.PI * i / (fftSize - 1)));
+        }
+        this.re = new float[fftSize];
+        this.im = new float[fftSize];
+        this.magnitudes = new float[bands];
+        this.channels = channels;
+        this.scaleDb = (float) (20 * Math.log10(4.0 / fftSize));
+        Arrays.fill(magnitudes, THRESHOLD_DB);
+    }
+
+    /**
+     * Add 16-bit little-endian interleaved frames.
+     *
+     * @return true if at least one analysis frame completed; read {@link #magnitudes()}
+     */
+    public boolean add(byte[] pcm, int off, int len) {
+        boolean updated = false;
+        int frameBytes = 2 * channels;
+        int end = off + len - len % frameBytes;
+        for (int p = off; p < end; p += frameBytes) {
+            int sum = 0;
+            for (int c = 0; c < channels; c++) {
+                sum += (short) ((pcm[p + 2 * c] & 0xFF) | (pcm[p + 2 * c + 1] << 8));
+            }
+            re[filled] = sum / (32768f * channels) * window[filled];
+            if (++filled == re.length) {
+                analyze();
+                filled = 0;
+                updated = true;
+            }
+        }
+        return updated;
+    }
+
+    /** Latest band magnitudes in dB; the array is reused. */
+    public float[] magnitudes() {
+        return magnitudes;
+    }
+
+    /** Forget partial frames and return the bands to the threshold (after seek or stop). */
+    public void reset() {
+        filled = 0;
+        Arrays.fill(magnitudes, THRESHOLD_DB);
+    }
+
+    private void analyze() {
+        int n = re.length;
+        Arrays.fill(im, 0f);
+        fft.transform(re, im);
+
+        int bins = n / 2;
+        int bands = magnitudes.length;
+        for (int b = 0; b < bands; b++) {
+            int from = b * bins / bands;
+            int to = Math.max(from + 1, (b + 1) * bins / bands);
+            float peak = 0f;
+            for (int k = from; k < to; k++) {
+                float power = re[k] * re[k] + im[k] * im[k];
+                if (power > peak) peak = power;
+            }
+            float db = peak > 0f ? (float) (10 * Math.log10(peak)) + scaleDb : THRESHOLD_DB;
+            magnitudes[b] = Math.max(THRESHOLD_DB, Math.min(0f, db));
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package application.playback;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes the played audio to a 16-bit WAV file, unpaced. Useful to check decoding and
+ * volume headless. The RIFF sizes are filled in on close.
+ */
+public final class WavFileSink implements AudioSink {
+
+    private static final int HEADER_SIZE = 44;
+
+    private final Path file;
+    private FileChannel ch;
+    private long dataBytes;
+
+    public WavFileSink(Path file) {
+        this.file = file;
+    }
+
+    @Override
+    public void open(int sampleRate, int channels) throws IOException {
+        ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.put(new byte[] {'R', 'I', 'F', 'F'}).putInt(0).put(new byte[] {'W', 'A', 'V', 'E'});
+        header.put(new byte[] {'f', 'm', 't', ' '}).putInt(16)
+                .putShort((short) 1)
+                .putShort((short) channels)
+                .putInt(sampleRate)
+                .putInt(sampleRate * channels * 2)
+                .putShort((short) (channels * 2))
+                .putShort((short) 16);
+        header.put(new byte[] {'d', 'a', 't', 'a'}).putInt(0);
+        header.flip();
+        while (header.hasRemaining()) ch.write(header);
+    }
+
+    @Override
+    public void write(byte[] pcm, int off, int len) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(pcm, off, len);
+        while (buf.hasRemaining()) ch.write(buf);
+        dataBytes += len;
+    }
+
+    @Override
+    public void close() {
+        if (ch == null) return;
+        try {
+            ByteBuffer size = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+            size.putInt(0, (int) Math.min(0xFFFFFFFFL, dataBytes + HEADER_SIZE - 8));
+            ch.write(size, 4);
+            size.putInt(0, (int) Math.min(0xFFFFFFFFL, dataBytes));
+            size.rewind();
+            ch.write(size, 40);
+            ch.close();
+        } catch (IOException e) {
+            System.err.println("Could not finish " + file + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package application.playlist;
+
+import java.nio.LongBuffer;
+
+/**
+ * An ordered list of {@link application.library.TrackId track ids}.
+ *
+ * The ids live in a {@link LongBuffer}: a heap array for playlists built in memory, or a
+ * read-only view of the memory-mapped file for playlists opened with
+ * {@link PlaylistFile#load}, so opening a large playlist doesn't read it.
+ */
+public final class Playlist {
+
+    private final String name;
+    private final LongBuffer ids;
+
+    public Playlist(String name, long[] trackIds) {
+        this(name, LongBuffer.wrap(trackIds));
+    }
+
+    Playlist(String name, LongBuffer ids) {
+        this.name = name;
+        this.ids = ids;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public int size() {
+        return ids.limit();
+    }
+
+    public long trackId(int index) {
+        return ids.get(index);
+    }
+
+    /** A copy of the ids, e.g. to edit the playlist. */
+    public long[] toArray() {
+        long[] copy = new long[ids.limit()];
+        ids.get(0, copy);
+        return copy;
+    }
+
+    LongBuffer ids() {
+        return ids.duplicate();
+    }
+}
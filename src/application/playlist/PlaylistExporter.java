@@ -0,0 +1,66 @@
+package application.playlist;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.function.LongFunction;
+
+/**
+ * Writes a {@link Playlist} as M3U8 (extended M3U, UTF-8) or PLS, streaming one entry at
+ * a time. Tracks the lookup doesn't know are skipped.
+ */
+public final class PlaylistExporter {
+
+    public enum Format { M3U8, PLS }
+
+    /**
+     * What a playlist line says about a track.
+     *
+     * @param durationMillis 0 or less when unknown
+     */
+    public record Entry(String path, String title, long durationMillis) {
+    }
+
+    private PlaylistExporter() {
+    }
+
+    /** M3U8 unless the file name ends in .pls */
+    public static Format formatFor(Path file) {
+        return file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".pls") ? Format.PLS : Format.M3U8;
+    }
+
+    /**
+     * @param lookup track id to entry, null for tracks that are no longer in the library
+     * @return entries written
+     */
+    public static int write(Playlist playlist, LongFunction<Entry> lookup, Path file, Format format)
+            throws IOException {
+        int written = 0;
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write(format == Format.PLS ? "[playlist]\n" : "#EXTM3U\n");
+            for (int i = 0; i < playlist.size(); i++) {
+                Entry e = lookup.apply(playlist.trackId(i));
+                if (e == null) continue;
+                long seconds = e.durationMillis() > 0 ? (e.durationMillis() + 500) / 1000 : -1;
+                String title = e.title().replace('\n', ' ').replace('\r', ' ');
+                written++;
+                if (format == Format.PLS) {
+                    out.write("File" + written + "=" + e.path() + "\n");
+                    out.write("Title" + written + "=" + title + "\n");
+                    out.write("Length" + written + "=" + seconds + "\n");
+                } else {
+                    out.write("#EXTINF:" + seconds + "," + title + "\n");
+                    out.write(e.path());
+                    out.write('\n');
+                }
+            }
+            if (format == Format.PLS) {
+                out.write("NumberOfEntries=" + written + "\nVersion=2\n");
+            }
+        }
+        return written;
+    }
+}
@@ -0,0 +1,130 @@
+package application.playlist;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Binary playlist file (.rppl).
+ *
+ * Layout, little endian so the id array can be viewed in place on x86 and ARM:
+ * <pre>
+ *   int    magic "RPPL"
+ *   int    format version (1)
+ *   int    track count
+ *   int    name length in bytes
+ *   byte[] name (UTF-8), zero-padded to a multiple of 8
+ *   long[] track ids
+ * </pre>
+ * A 100k-track playlist is 800 KB. {@link #load} maps the file and returns a playlist
+ * backed by the mapping, so it opens in constant time and pages are read on access.
+ * Files with another magic or a newer version are rejected.
+ *
+ * A mapping lives until the playlist is garbage collected; on Windows the file can't be
+ * replaced meanwhile, so save edits under a new file or after dropping the old playlist.
+ */
+public final class PlaylistFile {
+
+    public static final String EXTENSION = ".rppl";
+
+    private static final int MAGIC = 0x4C505052; // "RPPL" read as a little-endian int
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int WRITE_CHUNK_IDS = 8192;
+
+    private PlaylistFile() {
+    }
+
+    /**
+     * Where the player keeps its playlists: -Dreproductor.playlists or ~/.reproductor/playlists
+     */
+    public static Path defaultDirectory() {
+        String configured = System.getProperty("reproductor.playlists");
+        if (configured != null && !configured.isBlank()) {
+            return Paths.get(configured);
+        }
+        return Paths.get(System.getProperty("user.home"), ".reproductor", "playlists");
+    }
+
+    public static Playlist load(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long fileSize = ch.size();
+            if (fileSize < HEADER_SIZE) {
+                throw new IOException("Not a playlist file: " + file);
+            }
+            MappedByteBuffer map = ch.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+            map.order(ByteOrder.LITTLE_ENDIAN);
+            if (map.getInt(0) != MAGIC) {
+                throw new IOException("Not a playlist file: " + file);
+            }
+            int version = map.getInt(4);
+            if (version != VERSION) {
+                throw new IOException("Unsupported playlist version " + version + ": " + file);
+            }
+            int count = map.getInt(8);
+            int nameLength = map.getInt(12);
+            long idsOffset = HEADER_SIZE + pad(nameLength);
+            if (count < 0 || nameLength < 0 || idsOffset + 8L * count != fileSize) {
+                throw new IOException("Corrupt playlist file: " + file);
+            }
+            byte[] name = new byte[nameLength];
+            map.get(HEADER_SIZE, name);
+            LongBuffer ids = map.slice((int) idsOffset, count * 8)
+                    .order(ByteOrder.LITTLE_ENDIAN)
+                    .asLongBuffer();
+            return new Playlist(new String(name, StandardCharsets.UTF_8), ids);
+        }
+    }
+
+    /**
+     * Write a playlist. The file is written next to the target and renamed over it, so a
+     * crash never leaves a half-written playlist.
+     */
+    public static void save(Path file, Playlist playlist) throws IOException {
+        Path dir = file.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, "playlist", ".tmp");
+        try {
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                byte[] name = playlist.name().getBytes(StandardCharsets.UTF_8);
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE + pad(name.length)).order(ByteOrder.LITTLE_ENDIAN);
+                header.putInt(MAGIC).putInt(VERSION).putInt(playlist.size()).putInt(name.length).put(name);
+                header.clear();
+                writeFully(ch, header);
+
+                ByteBuffer chunk = ByteBuffer.allocateDirect(WRITE_CHUNK_IDS * 8).order(ByteOrder.LITTLE_ENDIAN);
+                LongBuffer ids = playlist.ids();
+                while (ids.hasRemaining()) {
+                    chunk.clear();
+                    LongBuffer view = chunk.asLongBuffer();
+                    int n = Math.min(ids.remaining(), WRITE_CHUNK_IDS);
+                    LongBuffer part = ids.slice(ids.position(), n);
+                    view.put(part);
+                    ids.position(ids.position() + n);
+                    chunk.limit(n * 8);
+                    writeFully(ch, chunk);
+                }
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static void writeFully(FileChannel ch, ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) ch.write(buf);
+    }
+
+    private static int pad(int length) {
+        return (length + 7) & ~7;
+    }
+}
@@ -0,0 +1,184 @@
+package application.playlist;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import application.library.LibraryIndex;
+
+/**
+ * Reads M3U, M3U8 and PLS playlists into a {@link Playlist}.
+ *
+ * The file is streamed line by line and each entry is resolved against the library with
+ * one {@link LibraryIndex} hash lookup, so importing is linear in the playlist and doesn't
+ * depend on the library size. Relative entries are resolved against the playlist's
+ * folder, {@code file:} URIs are accepted, other URLs and tracks that aren't in the
+ * library are counted as unresolved.
+ *
+ * .m3u8 is UTF-8. .m3u and .pls are read as UTF-8 too and, if that fails, again as
+ * Windows-1252, the usual encoding of playlists written by Windows players.
+ */
+public final class PlaylistImporter {
+
+    private static final Charset WINDOWS_1252 = Charset.forName("windows-1252");
+    private static final int UNRESOLVED_SAMPLE = 20;
+
+    /**
+     * @param entries entries found in the file
+     * @param unresolved entries that are not in the library (dropped from the playlist)
+     * @param unresolvedSample the first few of them, for reporting
+     */
+    public record Result(Playlist playlist, int entries, int unresolved, List<String> unresolvedSample) {
+    }
+
+    private PlaylistImporter() {
+    }
+
+    public static boolean supports(Path file) {
+        String ext = extension(file);
+        return ext.equals("m3u") || ext.equals("m3u8") || ext.equals("pls");
+    }
+
+    public static <T> Result read(Path file, LibraryIndex<T> library) throws IOException {
+        String ext = extension(file);
+        if (ext.equals("m3u8")) {
+            return read(file, library, StandardCharsets.UTF_8);
+        }
+        try {
+            return read(file, library, StandardCharsets.UTF_8);
+        } catch (CharacterCodingException e) {
+            return read(file, library, WINDOWS_1252);
+        }
+    }
+
+    private static <T> Result read(Path file, LibraryIndex<T> library, Charset charset) throws IOException {
+        boolean pls = extension(file).equals("pls");
+        Path base = file.toAbsolutePath().getParent();
+        Collector<T> out = new Collector<>(library, base);
+        try (BufferedReader reader = Files.newBufferedReader(file, charset)) {
+            String line = reader.readLine();
+            if (line != null && line.startsWith("\uFEFF")) line = line.substring(1);
+            for (; line != null; line = reader.readLine()) {
+                line = line.trim();
+                if (line.isEmpty()) continue;
+                if (pls) {
+                    // FileN=path; Title, Length and the [playlist] header are not needed
+                    if (!line.regionMatches(true, 0, "File", 0, 4)) continue;
+                    int eq = line.indexOf('=');
+                    if (eq < 0) continue;
+                    int number;
+                    try {
+                        number = Integer.parseInt(line.substring(4, eq).trim());
+                    } catch (NumberFormatException e) {
+                        continue;
+                    }
+                    out.add(line.substring(eq + 1).trim(), number);
+                } else if (line.charAt(0) != '#') {
+                    out.add(line, out.entries);
+                }
+            }
+        }
+        return out.finish(playlistName(file), pls);
+    }
+
+    // Growing id array plus the PLS entry numbers, which may be out of order
+    private static final class Collector<T> {
+        final LibraryIndex<T> library;
+        final Path base;
+        long[] ids = new long[256];
+        int[] order = new int[256];
+        int resolved = 0;
+        int entries = 0;
+        final List<String> unresolved = new ArrayList<>();
+        int unresolvedCount = 0;
+
+        Collector(LibraryIndex<T> library, Path base) {
+            this.library = library;
+            this.base = base;
+        }
+
+        void add(String entry, int number) {
+            entries++;
+            T item = resolve(entry);
+            if (item == null) {
+                if (unresolved.size() < UNRESOLVED_SAMPLE) unresolved.add(entry);
+                unresolvedCount++;
+                return;
+            }
+            if (resolved == ids.length) {
+                ids = Arrays.copyOf(ids, resolved * 2);
+                order = Arrays.copyOf(order, resolved * 2);
+            }
+            ids[resolved] = library.idOf(item);
+            order[resolved] = number;
+            resolved++;
+        }
+
+        T resolve(String entry) {
+            Path path;
+            try {
+                if (entry.regionMatches(true, 0, "file:", 0, 5)) {
+                    path = Path.of(URI.create(entry));
+                } else if (entry.contains("://")) {
+                    return null; // stream URL
+                } else {
+                    if (File.separatorChar == '/') {
+                        entry = entry.replace('\\', '/');
+                    }
+                    path = Path.of(entry);
+                    if (!path.isAbsolute() && base != null) {
+                        path = base.resolve(path);
+                    }
+                }
+            } catch (IllegalArgumentException e) { // bad URI or InvalidPathException
+                return null;
+            }
+            return library.find(path.normalize().toString());
+        }
+
+        Result finish(String name, boolean sortByNumber) {
+            long[] result = Arrays.copyOf(ids, resolved);
+            if (sortByNumber && !isSorted()) {
+                // Stable sort of (number, position) pairs packed into longs
+                long[] keys = new long[resolved];
+                for (int i = 0; i < resolved; i++) {
+                    keys[i] = ((long) order[i] << 32) | i;
+                }
+                Arrays.sort(keys);
+                for (int i = 0; i < resolved; i++) {
+                    result[i] = ids[(int) keys[i]];
+                }
+            }
+            return new Result(new Playlist(name, result), entries, unresolvedCount, List.copyOf(unresolved));
+        }
+
+        private boolean isSorted() {
+            for (int i = 1; i < resolved; i++) {
+                if (order[i] < order[i - 1]) return false;
+            }
+            return true;
+        }
+    }
+
+    private static String playlistName(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+
+    private static String extension(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? "" : name.substring(dot + 1).toLowerCase(Locale.ROOT);
+    }
+}
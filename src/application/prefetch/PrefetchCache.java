@@ -0,0 +1,148 @@
+package application.prefetch;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.BooleanSupplier;
+
+import application.metrics.Counter;
+import application.metrics.Metrics;
+
+/**
+ * Local copies of upcoming tracks, in a directory trimmed to a byte budget.
+ *
+ * A copy is named after the track path, size and modification time (plus the original
+ * extension so JavaFX Media still recognises the format), so an edited track simply
+ * misses and its old copy ages out. Like the thumbnail store, the file modification time
+ * of a copy marks its last use and the least recently used copies are deleted first.
+ */
+final class PrefetchCache {
+
+    private static final Counter EVICTIONS = Metrics.counter("prefetch.evictions");
+
+    private final Path directory;
+    private final long maxBytes;
+
+    PrefetchCache(Path directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @return the local copy of the track, or null when there is none for this version
+     */
+    Path lookup(Path track, BasicFileAttributes attrs) {
+        Path copy = fileFor(track, attrs);
+        try {
+            if (Files.size(copy) != attrs.size()) return null;
+            Files.setLastModifiedTime(copy, FileTime.fromMillis(System.currentTimeMillis()));
+            return copy;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Copy a track with large sequential reads. The copy is written to a temporary file and
+     * renamed when complete, so {@link #lookup} never returns a partial copy.
+     *
+     * @param buffer transfer buffer, reused between calls
+     * @param cancelled checked between reads; a cancelled copy is discarded
+     * @return bytes copied, or -1 when cancelled
+     */
+    long fill(Path track, BasicFileAttributes attrs, TrackSource source, ByteBuffer buffer,
+              BooleanSupplier cancelled) throws IOException {
+        Files.createDirectories(directory);
+        Path tmp = Files.createTempFile(directory, "prefetch", ".tmp");
+        long copied = 0;
+        try {
+            try (ReadableByteChannel in = source.open(track);
+                 FileChannel out = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                while (true) {
+                    if (cancelled.getAsBoolean()) {
+                        return -1;
+                    }
+                    buffer.clear();
+                    int n = in.read(buffer);
+                    if (n < 0) break;
+                    buffer.flip();
+                    while (buffer.hasRemaining()) out.write(buffer);
+                    copied += n;
+                }
+            }
+            if (copied != attrs.size()) {
+                throw new IOException("Track changed while copying: " + track);
+            }
+            Files.move(tmp, fileFor(track, attrs), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return copied;
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Delete the least recently used copies until the directory fits its byte budget,
+     * keeping at least the given copies (the tracks about to play).
+     */
+    void trim(List<Path> keep) {
+        if (!Files.isDirectory(directory)) return;
+        record Entry(Path path, long size, long lastUsed) {
+        }
+        List<Entry> entries = new ArrayList<>();
+        long total = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path p : files) {
+                BasicFileAttributes attrs = Files.readAttributes(p, BasicFileAttributes.class);
+                if (!attrs.isRegularFile()) continue;
+                entries.add(new Entry(p, attrs.size(), attrs.lastModifiedTime().toMillis()));
+                total += attrs.size();
+            }
+        } catch (IOException e) {
+            return;
+        }
+        if (total <= maxBytes) return;
+        entries.sort((a, b) -> Long.compare(a.lastUsed(), b.lastUsed()));
+        for (Entry e : entries) {
+            if (total <= maxBytes) break;
+            if (keep.contains(e.path())) continue;
+            try {
+                // Fails on Windows for a copy that is playing; it goes on a later trim
+                Files.deleteIfExists(e.path());
+                total -= e.size();
+                EVICTIONS.increment();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    Path fileFor(Path track, BasicFileAttributes attrs) {
+        String key = track.toAbsolutePath() + "|" + attrs.size() + "|" + attrs.lastModifiedTime().toMillis();
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes(StandardCharsets.UTF_8));
+            return directory.resolve(HexFormat.of().formatHex(digest) + extension(track));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String extension(Path track) {
+        String name = track.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? "" : name.substring(dot).toLowerCase(Locale.ROOT);
+    }
+}
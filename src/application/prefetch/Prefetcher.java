@@ -0,0 +1,239 @@
+package application.prefetch;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+
+import application.metrics.Counter;
+import application.metrics.LatencyHistogram;
+import application.metrics.Metrics;
+
+/**
+ * Reads the next tracks in play order ahead of time, so slow disks and network mounts
+ * have data ready when playback switches.
+ *
+ * Modes ({@code reproductor.prefetch.mode}):
+ * - warm (default): read the first {@code readAheadMb} of each upcoming track with large
+ *   sequential reads. The disk is spun up and the OS / SMB caches hold the start of the
+ *   file when the player opens it.
+ * - copy: copy whole upcoming tracks (up to {@code maxTrackMb}) into a local cache
+ *   directory trimmed to {@code cacheMb}; {@link #resolve} then hands the player the
+ *   local copy.
+ * - off
+ *
+ * One background thread works through the upcoming list; a new schedule replaces the old
+ * one and aborts a transfer for a track that is no longer coming up. Tracks warmed in the
+ * last few minutes are left out of a new schedule: each track change reschedules the
+ * same upcoming tracks, and reading their start again would only repeat the work.
+ */
+public final class Prefetcher {
+
+    private static final Counter BYTES = Metrics.counter("prefetch.bytes");
+    private static final Counter TRACKS = Metrics.counter("prefetch.tracks");
+    private static final Counter CANCELLED = Metrics.counter("prefetch.cancelled");
+    private static final Counter SKIPPED = Metrics.counter("prefetch.already_warm");
+    private static final Counter HITS = Metrics.counter("prefetch.cache_hits");
+    private static final Counter MISSES = Metrics.counter("prefetch.cache_misses");
+    private static final LatencyHistogram TRACK_TIME = Metrics.histogram("prefetch.track_time");
+
+    private static final int BUFFER_SIZE = 1024 * 1024;
+    private static final long MB = 1024 * 1024;
+    private static final int WARMED_TRACKS = 256; // remembered; far more than ever come up at once
+    private static final long WARM_FRESH_NANOS = TimeUnit.MINUTES.toNanos(10); // then the OS may have dropped it
+
+    public enum Mode { OFF, WARM, COPY }
+
+    private final Mode mode;
+    private final TrackSource source;
+    private final PrefetchCache cache;
+    private final int tracksAhead;
+    private final long readAheadBytes;
+    private final long maxTrackBytes;
+    private final LinkedBlockingDeque<Path> queue = new LinkedBlockingDeque<>();
+    private volatile List<Path> upcoming = List.of();
+    // Warm finish time by track, least recently warmed first
+    private final Map<Path, Long> warmed = Collections.synchronizedMap(new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Path, Long> eldest) {
+            return size() > WARMED_TRACKS;
+        }
+    });
+    private volatile boolean running = true;
+    private final Thread worker;
+
+    /**
+     * @param cacheDirectory local copies (copy mode)
+     * @param cacheBytes byte budget of the cache directory
+     * @param tracksAhead how many upcoming tracks to prefetch
+     * @param readAheadBytes bytes read per track in warm mode
+     * @param maxTrackBytes larger tracks are only warmed, never copied
+     */
+    public Prefetcher(Mode mode, TrackSource source, Path cacheDirectory, long cacheBytes,
+                      int tracksAhead, long readAheadBytes, long maxTrackBytes) {
+        this.mode = mode;
+        this.source = source;
+        this.cache = new PrefetchCache(cacheDirectory, cacheBytes);
+        this.tracksAhead = tracksAhead;
+        this.readAheadBytes = readAheadBytes;
+        this.maxTrackBytes = Math.min(maxTrackBytes, cacheBytes);
+        this.worker = new Thread(this::work, "prefetch");
+        worker.setDaemon(true);
+        worker.setPriority(Thread.MIN_PRIORITY);
+        if (mode != Mode.OFF) {
+            worker.start();
+        }
+    }
+
+    /**
+     * Prefetcher configured from system properties (all optional):
+     * reproductor.prefetch.mode (off|warm|copy, default warm), .tracks (2),
+     * .readAheadMb (16), .cacheMb (1024), .maxTrackMb (200),
+     * .throttleKbps (0; simulate a slow source for testing). The cache lives in
+     * ~/.reproductor/prefetch.
+     */
+    public static Prefetcher createDefault() {
+        Mode mode;
+        try {
+            mode = Mode.valueOf(System.getProperty("reproductor.prefetch.mode", "warm").toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            System.err.println("Unknown reproductor.prefetch.mode, using warm");
+            mode = Mode.WARM;
+        }
+        TrackSource source = TrackSource.FILES;
+        long throttleKbps = Long.getLong("reproductor.prefetch.throttleKbps", 0L);
+        if (throttleKbps > 0) {
+            source = new ThrottledSource(source, throttleKbps * 1024, 0);
+        }
+        Path dir = Paths.get(System.getProperty("user.home"), ".reproductor", "prefetch");
+        return new Prefetcher(mode, source, dir,
+                Long.getLong("reproductor.prefetch.cacheMb", 1024L) * MB,
+                Integer.getInteger("reproductor.prefetch.tracks", 2),
+                Long.getLong("reproductor.prefetch.readAheadMb", 16L) * MB,
+                Long.getLong("reproductor.prefetch.maxTrackMb", 200L) * MB);
+    }
+
+    public Mode mode() {
+        return mode;
+    }
+
+    /**
+     * Tracks that will play next, in order; only the first few are prefetched. Replaces the
+     * previous schedule.
+     */
+    public void schedule(List<Path> next) {
+        if (mode == Mode.OFF) return;
+        List<Path> tracks = List.copyOf(next.subList(0, Math.min(tracksAhead, next.size())));
+        upcoming = tracks;
+        queue.clear();
+        long now = System.nanoTime();
+        for (Path track : tracks) {
+            Long at = warmed.get(track);
+            if (at != null && now - at < WARM_FRESH_NANOS) {
+                SKIPPED.increment();
+            } else {
+                queue.add(track);
+            }
+        }
+    }
+
+    /**
+     * The file to play for a track: its local copy when one is cached, else the track.
+     */
+    public Path resolve(Path track) {
+        if (mode != Mode.COPY) return track;
+        try {
+            Path copy = cache.lookup(track, source.attributes(track));
+            if (copy != null) {
+                HITS.increment();
+                return copy;
+            }
+        } catch (IOException ignored) {
+        }
+        MISSES.increment();
+        return track;
+    }
+
+    public void shutdown() {
+        running = false;
+        worker.interrupt();
+    }
+
+    private void work() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        while (running) {
+            Path track;
+            try {
+                track = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            long start = System.nanoTime();
+            try {
+                long bytes = mode == Mode.COPY ? copy(track, buffer) : warm(track, buffer);
+                if (bytes < 0) {
+                    CANCELLED.increment();
+                } else if (bytes > 0) {
+                    TRACKS.increment();
+                    TRACK_TIME.recordSince(start);
+                }
+            } catch (IOException e) {
+                if (!running) return; // interrupted by shutdown
+                System.err.println("Prefetch failed for " + track + ": " + e.getMessage());
+            }
+        }
+    }
+
+    // Read the start of the track and drop the data; the caches below us keep it
+    private long warm(Path track, ByteBuffer buffer) throws IOException {
+        long total = 0;
+        try (ReadableByteChannel ch = source.open(track)) {
+            while (total < readAheadBytes) {
+                if (isStale(track)) return -1;
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), readAheadBytes - total));
+                int n = ch.read(buffer);
+                if (n < 0) break;
+                total += n;
+                BYTES.add(n);
+            }
+        }
+        warmed.put(track, System.nanoTime());
+        return total;
+    }
+
+    private long copy(Path track, ByteBuffer buffer) throws IOException {
+        BasicFileAttributes attrs = source.attributes(track);
+        if (cache.lookup(track, attrs) != null) return 0;
+        if (attrs.size() > maxTrackBytes) {
+            return warm(track, buffer);
+        }
+        long copied = cache.fill(track, attrs, source, buffer, () -> isStale(track));
+        if (copied > 0) {
+            BYTES.add(copied);
+            List<Path> keep = new ArrayList<>();
+            for (Path p : upcoming) {
+                try {
+                    keep.add(cache.fileFor(p, source.attributes(p)));
+                } catch (IOException ignored) {
+                }
+            }
+            cache.trim(keep);
+        }
+        return copied;
+    }
+
+    private boolean isStale(Path track) {
+        return !running || !upcoming.contains(track);
+    }
+}
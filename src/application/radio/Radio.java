@@ -0,0 +1,220 @@
+package application.radio;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.IntConsumer;
+import java.util.function.LongFunction;
+
+import application.analysis.TrackFeatures;
+import application.library.TrackId;
+import application.metrics.Counter;
+import application.metrics.Gauge;
+import application.metrics.LatencyHistogram;
+import application.metrics.Metrics;
+
+/**
+ * Radio mode: after each track, play one that is similar to it rather than the next row.
+ *
+ * Every track of the library is a vector of its audio features and folders (see
+ * {@link TrackVectors}) in a {@link VectorStore}, indexed by an {@link LshIndex}. A pick
+ * ranks the index candidates around the current track by exact distance and takes one of
+ * the closest few at random, skipping the tracks played recently, so the radio drifts
+ * through the library instead of bouncing between two neighbours. When the index offers
+ * too few candidates (a small library, an isolated track) every track is ranked instead.
+ *
+ * Library changes ({@link #sync}) and analysis results ({@link #update}) are applied on a
+ * "radio" thread, in short batches, so a pick never waits behind a whole rescan. Tracks
+ * are indexed before they are analysed, placed by their folders alone, and move to their
+ * place as their results come in.
+ *
+ * Thread-safe.
+ */
+public final class Radio {
+
+    private static final LatencyHistogram PICK_TIME = Metrics.histogram("radio.pick_time");
+    private static final LatencyHistogram SYNC_TIME = Metrics.histogram("radio.sync_time");
+    private static final Counter PICKS = Metrics.counter("radio.picks");
+    private static final Counter CANDIDATES = Metrics.counter("radio.candidates");
+    private static final Counter SCANS = Metrics.counter("radio.scans");
+    private static final Gauge TRACKS = Metrics.gauge("radio.tracks");
+
+    private static final int DIM = VectorStore.DIM;
+    private static final int PICK_FROM = 5;     // the closest tracks a pick chooses from
+    private static final int RECENT = 100;      // tracks not picked again, at most half the library
+    private static final int SYNC_BATCH = 4096; // tracks applied per hold of the lock
+
+    private final LongFunction<TrackFeatures> features;
+    private final VectorStore store = new VectorStore();
+    private final LshIndex index = new LshIndex(store, 0x7261646fL);
+    private final ExecutorService executor;
+    private final ArrayDeque<Long> recent = new ArrayDeque<>();
+    private final Set<Long> recentIds = new HashSet<>();
+    private final SplittableRandom random = new SplittableRandom();
+
+    // Scratch state of the pick in progress, guarded by this
+    private final float[] query = new float[DIM];
+    private final int[] bestRows = new int[PICK_FROM];
+    private final float[] bestDistances = new float[PICK_FROM];
+    private int found = 0;
+    private final IntConsumer consider = this::consider;
+
+    /**
+     * @param features analysis results by track id, null for tracks not analysed
+     */
+    public Radio(LongFunction<TrackFeatures> features) {
+        this.features = features;
+        this.executor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "radio");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+    }
+
+    /** The whole library after a scan; tracks not listed are removed. */
+    public void sync(List<String> paths) {
+        run(() -> {
+            long start = System.nanoTime();
+            BitSet seen = new BitSet();
+            float[] vectors = new float[SYNC_BATCH * DIM];
+            long[] ids = new long[SYNC_BATCH];
+            for (int from = 0; from < paths.size(); from += SYNC_BATCH) {
+                int n = Math.min(SYNC_BATCH, paths.size() - from);
+                // Encode outside the lock; only the store and index writes hold it
+                for (int i = 0; i < n; i++) {
+                    String path = paths.get(from + i);
+                    ids[i] = TrackId.of(path);
+                    TrackVectors.encode(path, features.apply(ids[i]), vectors, i * DIM);
+                }
+                synchronized (this) {
+                    for (int i = 0; i < n; i++) {
+                        seen.set(put(ids[i], paths.get(from + i), vectors, i * DIM));
+                    }
+                }
+            }
+            synchronized (this) {
+                BitSet gone = (BitSet) store.liveRows().clone();
+                gone.andNot(seen);
+                for (int row = gone.nextSetBit(0); row >= 0; row = gone.nextSetBit(row + 1)) {
+                    index.remove(row);
+                    store.free(row);
+                }
+                TRACKS.set(store.size());
+            }
+            SYNC_TIME.recordSince(start);
+        });
+    }
+
+    /** A track was analysed; it moves to its place among similar tracks. */
+    public void update(String path, TrackFeatures trackFeatures) {
+        run(() -> {
+            float[] vector = new float[DIM];
+            TrackVectors.encode(path, trackFeatures, vector, 0);
+            synchronized (this) {
+                put(TrackId.of(path), path, vector, 0);
+                TRACKS.set(store.size());
+            }
+        });
+    }
+
+    /**
+     * Choose the track to play after the current one. Each call picks again, at random
+     * among the closest, and remembers both tracks as recently played.
+     *
+     * @return the path of the chosen track, or null when the library is empty
+     */
+    public synchronized String next(String currentPath) {
+        if (store.size() == 0) return null;
+        long start = System.nanoTime();
+        long currentId = TrackId.of(currentPath);
+        remember(currentId);
+        int row = store.row(currentId);
+        if (row >= 0) {
+            System.arraycopy(store.vectors, row * DIM, query, 0, DIM);
+        } else {
+            TrackVectors.encode(currentPath, features.apply(currentId), query, 0);
+        }
+
+        found = 0;
+        CANDIDATES.add(index.candidates(query, consider));
+        if (found < PICK_FROM) {
+            SCANS.increment();
+            found = 0;
+            BitSet live = store.liveRows();
+            for (int r = live.nextSetBit(0); r >= 0; r = live.nextSetBit(r + 1)) {
+                consider(r);
+            }
+        }
+        if (found == 0) return null;
+
+        int pick = bestRows[random.nextInt(found)];
+        remember(store.ids[pick]);
+        PICKS.increment();
+        PICK_TIME.recordSince(start);
+        return store.paths[pick];
+    }
+
+    public synchronized int size() {
+        return store.size();
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void run(Runnable task) {
+        executor.execute(() -> {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                System.err.println("Radio update failed: " + e);
+            }
+        });
+    }
+
+    // Write a track's vector, re-indexing it only when it moved
+    private int put(long id, String path, float[] vectors, int offset) {
+        int row = store.row(id);
+        if (row < 0) {
+            row = store.allocate(id, path);
+        } else if (Arrays.equals(store.vectors, row * DIM, (row + 1) * DIM, vectors, offset, offset + DIM)) {
+            return row;
+        } else {
+            index.remove(row);
+        }
+        System.arraycopy(vectors, offset, store.vectors, row * DIM, DIM);
+        index.add(row);
+        return row;
+    }
+
+    // Keep the closest rows not played recently, sorted by distance
+    private void consider(int row) {
+        if (recentIds.contains(store.ids[row])) return;
+        float d = store.distance(row, query);
+        if (found == PICK_FROM && d >= bestDistances[found - 1]) return;
+        int i = found < PICK_FROM ? found++ : found - 1;
+        while (i > 0 && bestDistances[i - 1] > d) {
+            bestRows[i] = bestRows[i - 1];
+            bestDistances[i] = bestDistances[i - 1];
+            i--;
+        }
+        bestRows[i] = row;
+        bestDistances[i] = d;
+    }
+
+    private void remember(long id) {
+        if (!recentIds.add(id)) return;
+        recent.addLast(id);
+        int limit = Math.max(1, Math.min(RECENT, store.size() / 2));
+        while (recent.size() > limit) {
+            recentIds.remove(recent.removeFirst());
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package application.radio;
+
+import java.util.SplittableRandom;
+
+import application.analysis.TrackFeatures;
+import application.library.TrackId;
+
+/**
+ * Turns a track into a point in a small space where nearby means "sounds alike and
+ * belongs together", so the radio can use plain Euclidean distance:
+ * - tempo as an angle on a log2 circle, so 60, 120 and 240 BPM coincide (the usual
+ *   half/double tempo ambiguity) and 118 is next to 122
+ * - key as an angle on the circle of fifths, minor keys on their relative major, so
+ *   harmonically compatible keys are neighbours
+ * - loudness, brightness (log spectral centroid), log duration and log bitrate, each
+ *   centred on a typical value and clamped
+ * - the album folder and the artist folder (its parent) as random unit vectors seeded by
+ *   the folder path: tracks of the same folder share them, different folders are far apart
+ *
+ * Unknown features are left at 0, the centre of their range, so a track not analysed
+ * yet is neither close to nor far from anything on them.
+ */
+final class TrackVectors {
+
+    static final int DIM = 16;
+
+    // Weights decide how much each feature moves a track; folders weigh the most
+    private static final float TEMPO = 1.0f;
+    private static final float KEY = 0.6f;
+    private static final float LOUDNESS = 0.5f;
+    private static final float BRIGHTNESS = 0.6f;
+    private static final float DURATION = 0.3f;
+    private static final float BITRATE = 0.2f;
+    private static final float ALBUM = 0.9f;
+    private static final float ARTIST = 0.7f;
+    private static final int FOLDER_DIMS = 4;
+
+    private TrackVectors() {
+    }
+
+    /**
+     * @param features null when the track has not been analysed
+     * @param out      receives {@link #DIM} values from offset
+     */
+    static void encode(String path, TrackFeatures features, float[] out, int offset) {
+        for (int i = 0; i < DIM; i++) out[offset + i] = 0;
+        if (features != null) {
+            if (features.hasTempo()) {
+                double angle = 2 * Math.PI * log2(features.bpm() / 120.0);
+                out[offset] = (float) (TEMPO * Math.cos(angle));
+                out[offset + 1] = (float) (TEMPO * Math.sin(angle));
+            }
+            if (features.hasKey()) {
+                int tonic = features.key() < 12 ? features.key() : (features.key() - 12 + 3) % 12;
+                double angle = 2 * Math.PI * (tonic * 7 % 12) / 12;
+                out[offset + 2] = (float) (KEY * Math.cos(angle));
+                out[offset + 3] = (float) (KEY * Math.sin(angle));
+            }
+            if (features.hasTimbre()) {
+                out[offset + 4] = LOUDNESS * clamp((features.loudnessDb() + 16) / 6);
+                out[offset + 5] = BRIGHTNESS * clamp(log2(features.centroidHz() / 2000.0));
+            }
+            if (features.durationMillis() > 0) {
+                out[offset + 6] = DURATION * clamp(log2(features.durationMillis() / 220_000.0));
+            }
+            if (features.bitrate() > 0) {
+                out[offset + 7] = BITRATE * clamp(log2(features.bitrate() / 256_000.0));
+            }
+        }
+        String album = parent(path);
+        if (album != null) {
+            folder(album, ALBUM, out, offset + 8);
+            String artist = parent(album);
+            if (artist != null) folder(artist, ARTIST, out, offset + 8 + FOLDER_DIMS);
+        }
+    }
+
+    // A random direction per folder, the same on every run
+    private static void folder(String folder, float weight, float[] out, int offset) {
+        SplittableRandom random = new SplittableRandom(TrackId.of(folder));
+        double norm = 0;
+        double[] v = new double[FOLDER_DIMS];
+        for (int i = 0; i < FOLDER_DIMS; i++) {
+            v[i] = random.nextDouble(-1, 1);
+            norm += v[i] * v[i];
+        }
+        norm = Math.sqrt(norm);
+        for (int i = 0; i < FOLDER_DIMS; i++) {
+            out[offset + i] = (float) (norm > 0 ? weight * v[i] / norm : 0);
+        }
+    }
+
+    private static String parent(String path) {
+        int slash = Math.max(path.lastIndexOf('/'), path.lastIndexOf('\\'));
+        return slash > 0 ? path.substring(0, slash) : null;
+    }
+
+    private static double log2(double x) {
+        return Math.log(x) / Math.log(2);
+    }
+
+    private static float clamp(double x) {
+        return (float) Math.max(-2, Math.min(2, x));
+    }
+}
@@ -0,0 +1,90 @@
+package application.radio;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The feature vectors of the library in one flat float array, {@link TrackVectors#DIM}
+ * values per row, next to the id and path of each row's track. Rows of removed tracks
+ * are recycled by later additions, so row numbers stay dense and the index can keep
+ * plain int arrays per row.
+ *
+ * Not thread-safe; {@link Radio} guards it.
+ */
+final class VectorStore {
+
+    static final int DIM = TrackVectors.DIM;
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final Map<Long, Integer> rowById = new HashMap<>();
+    private final BitSet live = new BitSet();
+    private int[] freeRows = new int[16];
+    private int freeCount = 0;
+    private int rows = 0; // high-water mark
+
+    long[] ids = new long[INITIAL_CAPACITY];
+    String[] paths = new String[INITIAL_CAPACITY];
+    float[] vectors = new float[INITIAL_CAPACITY * DIM];
+
+    int capacity() {
+        return ids.length;
+    }
+
+    int size() {
+        return rowById.size();
+    }
+
+    BitSet liveRows() {
+        return live;
+    }
+
+    /** @return the row of a track, or -1 */
+    int row(long id) {
+        Integer row = rowById.get(id);
+        return row != null ? row : -1;
+    }
+
+    /** A new row for a track; its vector is left for the caller to write. */
+    int allocate(long id, String path) {
+        int row;
+        if (freeCount > 0) {
+            row = freeRows[--freeCount];
+        } else {
+            if (rows == ids.length) grow(rows * 2);
+            row = rows++;
+        }
+        ids[row] = id;
+        paths[row] = path;
+        rowById.put(id, row);
+        live.set(row);
+        return row;
+    }
+
+    void free(int row) {
+        rowById.remove(ids[row]);
+        live.clear(row);
+        paths[row] = null;
+        if (freeCount == freeRows.length) freeRows = Arrays.copyOf(freeRows, freeCount * 2);
+        freeRows[freeCount++] = row;
+    }
+
+    /** Squared Euclidean distance between a row and a query vector. */
+    float distance(int row, float[] query) {
+        int base = row * DIM;
+        float sum = 0;
+        for (int i = 0; i < DIM; i++) {
+            float d = vectors[base + i] - query[i];
+            sum += d * d;
+        }
+        return sum;
+    }
+
+    private void grow(int capacity) {
+        ids = Arrays.copyOf(ids, capacity);
+        paths = Arrays.copyOf(paths, capacity);
+        vectors = Arrays.copyOf(vectors, capacity * DIM);
+    }
+}
@@ -0,0 +1,55 @@
+package application.server;
+
+/**
+ * A single byte range of a {@code Range: bytes=...} request header (RFC 9110 section 14).
+ *
+ * Only single ranges are honoured. A header that is not a valid single byte range is
+ * ignored and the whole file is sent, which the RFC allows; audio players only ever ask
+ * for one range.
+ */
+record ByteRange(long start, long length) {
+
+    /** The range lies entirely past the end of the file: answer 416. */
+    static final ByteRange UNSATISFIABLE = new ByteRange(-1, 0);
+
+    long end() {
+        return start + length - 1;
+    }
+
+    /**
+     * @param header the Range header value, or null
+     * @param size file size in bytes
+     * @return the requested range clipped to the file, {@link #UNSATISFIABLE}, or null to
+     *         send the whole file
+     */
+    static ByteRange parse(String header, long size) {
+        if (header == null) return null;
+        String h = header.trim();
+        if (!h.regionMatches(true, 0, "bytes=", 0, 6)) return null;
+        String spec = h.substring(6).trim();
+        if (spec.indexOf(',') >= 0) return null;
+        int dash = spec.indexOf('-');
+        if (dash < 0) return null;
+        String first = spec.substring(0, dash).trim();
+        String last = spec.substring(dash + 1).trim();
+        try {
+            if (first.isEmpty()) {
+                // Suffix range: the last N bytes
+                if (last.isEmpty()) return null;
+                long suffix = Long.parseLong(last);
+                if (suffix < 0) return null;
+                if (suffix == 0 || size == 0) return UNSATISFIABLE;
+                long n = Math.min(suffix, size);
+                return new ByteRange(size - n, n);
+            }
+            long start = Long.parseLong(first);
+            long end = last.isEmpty() ? Long.MAX_VALUE : Long.parseLong(last);
+            if (start < 0 || end < start) return null;
+            if (start >= size) return UNSATISFIABLE;
+            end = Math.min(end, size - 1);
+            return new ByteRange(start, end - start + 1);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package application.server;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+import application.library.TrackId;
+import application.server.LibraryServer.Track;
+
+/**
+ * One published version of the library: tracks by id, and the JSON track list rendered
+ * on first request and then served from the same byte array to every client.
+ */
+final class Catalog {
+
+    static final Catalog EMPTY = new Catalog(List.of(), 0);
+
+    // Versions restart at every launch; the nonce keeps an ETag from an earlier run from matching
+    private static final String INSTANCE = Long.toHexString(ThreadLocalRandom.current().nextLong());
+
+    private final List<Track> tracks;
+    private final Map<Long, Track> byId;
+    private final String etag;
+    private byte[] json;
+
+    Catalog(List<Track> tracks, long version) {
+        this.tracks = tracks;
+        this.byId = new HashMap<>(tracks.size() * 2);
+        for (Track t : tracks) {
+            byId.put(t.id(), t);
+        }
+        this.etag = "\"" + INSTANCE + "-" + version + "\"";
+    }
+
+    Track get(long id) {
+        return byId.get(id);
+    }
+
+    int size() {
+        return tracks.size();
+    }
+
+    String etag() {
+        return etag;
+    }
+
+    synchronized byte[] json() {
+        if (json == null) {
+            json = render().getBytes(StandardCharsets.UTF_8);
+        }
+        return json;
+    }
+
+    private String render() {
+        StringBuilder sb = new StringBuilder(64 + tracks.size() * 200);
+        sb.append("{\"tracks\":[");
+        for (int i = 0; i < tracks.size(); i++) {
+            Track t = tracks.get(i);
+            String id = TrackId.toHex(t.id());
+            if (i > 0) sb.append(',');
+            sb.append("\n{\"id\":\"").append(id).append('"');
+            field(sb, "name", t.name());
+            field(sb, "title", t.title());
+            field(sb, "artist", t.artist());
+            field(sb, "album", t.album());
+            sb.append(",\"durationMillis\":").append(t.durationMillis());
+            sb.append(",\"size\":").append(t.size());
+            field(sb, "format", extension(t.name()));
+            sb.append(",\"url\":\"/tracks/").append(id).append("\"}");
+        }
+        sb.append("\n]}\n");
+        return sb.toString();
+    }
+
+    private static void field(StringBuilder sb, String name, String value) {
+        sb.append(",\"").append(name).append("\":\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+                }
+            }
+        }
+        sb.append('"');
+    }
+
+    static String extension(String name) {
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? "" : name.substring(dot + 1).toLowerCase(Locale.ROOT);
+    }
+}
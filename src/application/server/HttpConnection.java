@@ -0,0 +1,369 @@
+package application.server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import application.library.TrackId;
+import application.metrics.Counter;
+import application.metrics.LatencyHistogram;
+import application.metrics.Metrics;
+import application.server.LibraryServer.Track;
+
+/**
+ * One client connection, served on its own virtual thread.
+ *
+ * A minimal HTTP/1.1 implementation: GET and HEAD, persistent connections, request
+ * bodies are not read (a request with a body is answered and the connection closed).
+ * Routes:
+ * - {@code /api/tracks}: the track list as JSON, with an ETag per published library
+ * - {@code /tracks/<id>}: the audio file, with single-range {@code Range} support; the
+ *   body is sent with {@link FileChannel#transferTo} straight from the page cache to the
+ *   socket
+ *
+ * Reads time out through SO_TIMEOUT, which blocking writes ignore: writes go out in
+ * pieces of at most {@link #MAX_WRITE} bytes, and the server's watchdog closes a
+ * connection whose current piece has not gone out within {@link #WRITE_TIMEOUT_NANOS}
+ * (see {@link #closeIfStalled}), so a client that stops reading can't hold its slot.
+ */
+final class HttpConnection implements Runnable {
+
+    private static final Counter REQUESTS = Metrics.counter("server.requests");
+    private static final Counter BYTES_SENT = Metrics.counter("server.bytes_sent");
+    private static final Counter CLIENT_ERRORS = Metrics.counter("server.client_errors");
+    private static final Counter IO_ERRORS = Metrics.counter("server.io_errors");
+    private static final Counter WRITE_TIMEOUTS = Metrics.counter("server.write_timeouts");
+    private static final LatencyHistogram FIRST_BYTE = Metrics.histogram("server.first_byte_time");
+
+    private static final int MAX_HEAD_BYTES = 16 * 1024;
+    private static final int IDLE_TIMEOUT_MILLIS = 30_000;
+    // A client must take this much within the timeout, about 35 KB/s, or be dropped
+    private static final int MAX_WRITE = 1024 * 1024;
+    private static final long WRITE_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(30);
+    private static final int SPILL_BYTES = 64 * 1024;
+
+    private record Request(String method, String path, boolean http11, Map<String, String> headers) {
+        String header(String name) {
+            return headers.get(name);
+        }
+    }
+
+    private final LibraryServer server;
+    private final SocketChannel channel;
+    private final InetAddress remoteAddress;
+    private final RateLimiter limiter; // null when unlimited
+    private final byte[] head = new byte[MAX_HEAD_BYTES];
+    private int filled = 0;
+    private boolean headOnly = false; // current request is HEAD: headers without body
+    private volatile long writeStarted = 0; // nanoTime the write in progress began, 0 when none
+    private ByteBuffer spill; // see send(); allocated for clients that fill their socket buffer
+
+    HttpConnection(LibraryServer server, SocketChannel channel, InetAddress remoteAddress, RateLimiter limiter) {
+        this.server = server;
+        this.channel = channel;
+        this.remoteAddress = remoteAddress;
+        this.limiter = limiter;
+    }
+
+    @Override
+    public void run() {
+        try (channel) {
+            channel.socket().setTcpNoDelay(true);
+            // Socket adaptor streams honour SO_TIMEOUT; channel reads would block forever
+            channel.socket().setSoTimeout(IDLE_TIMEOUT_MILLIS);
+            InputStream in = channel.socket().getInputStream();
+            boolean keepAlive = true;
+            while (keepAlive) {
+                Request request = readRequest(in);
+                if (request == null) break;
+                REQUESTS.increment();
+                keepAlive = serve(request);
+            }
+        } catch (SocketTimeoutException ignored) {
+            // idle client
+        } catch (IOException e) {
+            // Clients hang up mid-stream all the time (seek, skip, close)
+            IO_ERRORS.increment();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            server.connectionClosed(this);
+        }
+    }
+
+    InetAddress remoteAddress() {
+        return remoteAddress;
+    }
+
+    void close() {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * Called by the server's watchdog; the blocked write then fails with an IOException
+     * and the connection ends as if the client had hung up.
+     */
+    void closeIfStalled(long nowNanos) {
+        long started = writeStarted;
+        if (started != 0 && nowNanos - started > WRITE_TIMEOUT_NANOS) {
+            WRITE_TIMEOUTS.increment();
+            close();
+        }
+    }
+
+    /**
+     * @return the next request, or null when the client closed the connection or sent
+     *         something we don't parse (answered with 400 / 431 first)
+     */
+    private Request readRequest(InputStream in) throws IOException {
+        headOnly = false;
+        int end;
+        while ((end = headEnd()) < 0) {
+            if (filled == head.length) {
+                sendError(431, "Request Header Fields Too Large", false);
+                return null;
+            }
+            int n = in.read(head, filled, head.length - filled);
+            if (n < 0) return null;
+            filled += n;
+        }
+        String text = new String(head, 0, end, StandardCharsets.ISO_8859_1);
+        // Keep pipelined bytes for the next request
+        int consumed = end + 4;
+        System.arraycopy(head, consumed, head, 0, filled - consumed);
+        filled -= consumed;
+
+        String[] lines = text.split("\r\n");
+        String[] parts = lines[0].split(" ");
+        if (parts.length != 3 || !parts[2].startsWith("HTTP/1.")) {
+            sendError(400, "Bad Request", false);
+            return null;
+        }
+        Map<String, String> headers = new HashMap<>();
+        for (int i = 1; i < lines.length; i++) {
+            int colon = lines[i].indexOf(':');
+            if (colon <= 0) continue;
+            headers.put(lines[i].substring(0, colon).trim().toLowerCase(Locale.ROOT),
+                    lines[i].substring(colon + 1).trim());
+        }
+        String path = parts[1];
+        int query = path.indexOf('?');
+        if (query >= 0) path = path.substring(0, query);
+        return new Request(parts[0], path, parts[2].equals("HTTP/1.1"), headers);
+    }
+
+    private int headEnd() {
+        for (int i = 0; i + 3 < filled; i++) {
+            if (head[i] == '\r' && head[i + 1] == '\n' && head[i + 2] == '\r' && head[i + 3] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return whether the connection stays open for another request
+     */
+    private boolean serve(Request request) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        String connection = request.header("connection");
+        boolean keepAlive = request.http11()
+                ? !"close".equalsIgnoreCase(connection)
+                : "keep-alive".equalsIgnoreCase(connection);
+        // We never read request bodies, so the stream can't be reused after one
+        if (request.header("content-length") != null || request.header("transfer-encoding") != null) {
+            keepAlive = false;
+        }
+
+        boolean head = request.method().equals("HEAD");
+        headOnly = head;
+        if (!head && !request.method().equals("GET")) {
+            sendHead(405, "Method Not Allowed", keepAlive, "text/plain", 0, "Allow: GET, HEAD\r\n");
+            CLIENT_ERRORS.increment();
+            return keepAlive;
+        }
+
+        String path = request.path();
+        if (path.equals("/api/tracks")) {
+            return serveCatalog(request, head, keepAlive, start);
+        }
+        if (path.startsWith("/tracks/")) {
+            long id;
+            try {
+                id = TrackId.parseHex(path.substring("/tracks/".length()));
+            } catch (NumberFormatException e) {
+                return sendError(404, "Not Found", keepAlive);
+            }
+            Track track = server.catalog().get(id);
+            if (track == null) {
+                return sendError(404, "Not Found", keepAlive);
+            }
+            return serveTrack(request, track, head, keepAlive, start);
+        }
+        return sendError(404, "Not Found", keepAlive);
+    }
+
+    private boolean serveCatalog(Request request, boolean head, boolean keepAlive, long start)
+            throws IOException {
+        Catalog catalog = server.catalog();
+        String extra = "ETag: " + catalog.etag() + "\r\nCache-Control: no-cache\r\n"
+                + "Access-Control-Allow-Origin: *\r\n";
+        if (catalog.etag().equals(request.header("if-none-match"))) {
+            sendHead(304, "Not Modified", keepAlive, null, -1, extra);
+            FIRST_BYTE.recordSince(start);
+            return keepAlive;
+        }
+        byte[] body = catalog.json();
+        sendHead(200, "OK", keepAlive, "application/json; charset=utf-8", body.length, extra);
+        FIRST_BYTE.recordSince(start);
+        if (!head) {
+            BYTES_SENT.add(write(ByteBuffer.wrap(body)));
+        }
+        return keepAlive;
+    }
+
+    private boolean serveTrack(Request request, Track track, boolean head, boolean keepAlive, long start)
+            throws IOException, InterruptedException {
+        FileChannel file;
+        try {
+            file = FileChannel.open(track.path(), StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            return sendError(404, "Not Found", keepAlive);
+        }
+        try (file) {
+            long size = file.size();
+            String type = contentType(Catalog.extension(track.name()));
+            ByteRange range = ByteRange.parse(request.header("range"), size);
+            if (range == ByteRange.UNSATISFIABLE) {
+                CLIENT_ERRORS.increment();
+                sendHead(416, "Range Not Satisfiable", keepAlive, null, 0,
+                        "Content-Range: bytes */" + size + "\r\n");
+                return keepAlive;
+            }
+            long from = 0;
+            long length = size;
+            if (range == null) {
+                sendHead(200, "OK", keepAlive, type, size, "Accept-Ranges: bytes\r\n");
+            } else {
+                from = range.start();
+                length = range.length();
+                sendHead(206, "Partial Content", keepAlive, type, length, "Accept-Ranges: bytes\r\n"
+                        + "Content-Range: bytes " + range.start() + "-" + range.end() + "/" + size + "\r\n");
+            }
+            FIRST_BYTE.recordSince(start);
+            if (!head) {
+                transfer(file, from, length);
+            }
+        }
+        return keepAlive;
+    }
+
+    // Zero-copy send (sendfile on Linux), in chunks paced by the client's rate limit
+    private void transfer(FileChannel file, long from, long length) throws IOException, InterruptedException {
+        long pos = from;
+        long end = from + length;
+        long chunk = limiter == null ? MAX_WRITE : Math.min(MAX_WRITE, limiter.chunkBytes());
+        while (pos < end) {
+            long chunkEnd = Math.min(pos + chunk, end);
+            if (limiter != null) limiter.acquire(chunkEnd - pos);
+            while (pos < chunkEnd) {
+                long sent = send(file, pos, chunkEnd - pos);
+                if (sent <= 0 && pos >= file.size()) {
+                    throw new IOException("File shrank while sending: " + pos + " of " + end);
+                }
+                pos += sent;
+                BYTES_SENT.add(sent);
+            }
+        }
+    }
+
+    /*
+     * On a virtual thread transferTo doesn't wait for room in a full socket buffer, it
+     * returns 0 at once; calling it again would spin until the client reads. A plain write
+     * of the next piece parks instead, under the watchdog like any other write.
+     */
+    private long send(FileChannel file, long pos, long n) throws IOException {
+        long sent;
+        writeStarted = System.nanoTime();
+        try {
+            sent = file.transferTo(pos, n, channel);
+        } finally {
+            writeStarted = 0;
+        }
+        if (sent > 0) return sent;
+        if (spill == null) spill = ByteBuffer.allocate(SPILL_BYTES);
+        spill.clear().limit((int) Math.min(SPILL_BYTES, n));
+        if (file.read(spill, pos) <= 0) return 0;
+        return write(spill.flip());
+    }
+
+    private boolean sendError(int status, String reason, boolean keepAlive) throws IOException {
+        CLIENT_ERRORS.increment();
+        byte[] body = (status + " " + reason + "\n").getBytes(StandardCharsets.US_ASCII);
+        sendHead(status, reason, keepAlive, "text/plain", body.length, "");
+        if (headOnly) return keepAlive;
+        write(ByteBuffer.wrap(body));
+        return keepAlive;
+    }
+
+    /**
+     * @param contentType omitted when null
+     * @param contentLength omitted when negative
+     * @param extra further header lines, each ending in CRLF
+     */
+    private void sendHead(int status, String reason, boolean keepAlive, String contentType,
+                          long contentLength, String extra) throws IOException {
+        StringBuilder sb = new StringBuilder(256);
+        sb.append("HTTP/1.1 ").append(status).append(' ').append(reason).append("\r\n");
+        sb.append("Server: Reproductor\r\n");
+        if (contentType != null) sb.append("Content-Type: ").append(contentType).append("\r\n");
+        if (contentLength >= 0) sb.append("Content-Length: ").append(contentLength).append("\r\n");
+        sb.append(extra);
+        sb.append("Connection: ").append(keepAlive ? "keep-alive" : "close").append("\r\n\r\n");
+        write(ByteBuffer.wrap(sb.toString().getBytes(StandardCharsets.ISO_8859_1)));
+    }
+
+    // All of buf, a piece at a time, each piece watched by closeIfStalled
+    private long write(ByteBuffer buf) throws IOException {
+        int end = buf.limit();
+        long written = 0;
+        while (buf.position() < end) {
+            buf.limit(Math.min(end, buf.position() + MAX_WRITE));
+            writeStarted = System.nanoTime();
+            try {
+                written += channel.write(buf);
+            } finally {
+                writeStarted = 0;
+            }
+        }
+        return written;
+    }
+
+    static String contentType(String extension) {
+        return switch (extension) {
+            case "mp3" -> "audio/mpeg";
+            case "wav" -> "audio/wav";
+            case "flac" -> "audio/flac";
+            case "m4a", "alac" -> "audio/mp4";
+            case "aac" -> "audio/aac";
+            case "ogg" -> "audio/ogg";
+            case "wma" -> "audio/x-ms-wma";
+            case "aif", "aiff" -> "audio/aiff";
+            default -> "application/octet-stream";
+        };
+    }
+}
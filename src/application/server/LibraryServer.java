@@ -0,0 +1,213 @@
+package application.server;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import application.metrics.Counter;
+import application.metrics.Gauge;
+import application.metrics.Metrics;
+
+/**
+ * Embedded HTTP server that lets other devices on the LAN browse and stream the library.
+ *
+ * Each connection runs on its own virtual thread with plain blocking I/O, so thousands
+ * of concurrent streams cost a few KB of heap each rather than a platform thread. Audio
+ * bodies go from the file to the socket with {@code FileChannel.transferTo}, without
+ * passing through the Java heap. See {@link HttpConnection} for the routes. A watchdog
+ * thread closes connections whose client stopped reading in the middle of a response.
+ *
+ * Disabled unless a port is configured:
+ * {@code -Dreproductor.server.port=8080} (0 picks a free port),
+ * {@code -Dreproductor.server.bind=0.0.0.0},
+ * {@code -Dreproductor.server.clientKbps=0} (per client IP, 0 = unlimited),
+ * {@code -Dreproductor.server.maxConnections=4096}.
+ */
+public final class LibraryServer {
+
+    private static final Gauge CONNECTIONS = Metrics.gauge("server.connections");
+    private static final Gauge TRACKS = Metrics.gauge("server.tracks");
+    private static final Counter ACCEPTED = Metrics.counter("server.connections_accepted");
+    private static final Counter REJECTED = Metrics.counter("server.connections_rejected");
+
+    /**
+     * A track as served to clients; an immutable copy made when the library is published.
+     */
+    public record Track(long id, Path path, String name, String title, String artist, String album,
+                        long durationMillis, long size) {
+    }
+
+    // Connections of one client IP, sharing its bandwidth budget
+    private static final class Client {
+        final RateLimiter limiter;
+        int connections;
+
+        Client(RateLimiter limiter) {
+            this.limiter = limiter;
+        }
+    }
+
+    private final ServerSocketChannel serverChannel;
+    private final long clientBytesPerSecond;
+    private final int maxConnections;
+    private final Set<HttpConnection> open = ConcurrentHashMap.newKeySet();
+    private final Map<InetAddress, Client> clients = new ConcurrentHashMap<>();
+    private final AtomicInteger connectionCount = new AtomicInteger();
+    private volatile Catalog catalog = Catalog.EMPTY;
+    private long catalogVersion = 0;
+
+    /**
+     * Bind and start accepting.
+     *
+     * @param clientBytesPerSecond bandwidth per client IP, 0 for unlimited
+     */
+    public LibraryServer(InetSocketAddress address, long clientBytesPerSecond, int maxConnections)
+            throws IOException {
+        this.clientBytesPerSecond = clientBytesPerSecond;
+        this.maxConnections = maxConnections;
+        this.serverChannel = ServerSocketChannel.open();
+        serverChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        serverChannel.bind(address, 4096);
+        Thread.ofPlatform().name("http-accept").daemon(true).start(this::acceptLoop);
+        Thread.ofPlatform().name("http-watchdog").daemon(true).start(this::watchdogLoop);
+    }
+
+    /**
+     * Server configured from system properties, or null when no port is configured.
+     */
+    public static LibraryServer startFromConfig() throws IOException {
+        Integer port = Integer.getInteger("reproductor.server.port");
+        if (port == null) return null;
+        String bind = System.getProperty("reproductor.server.bind", "0.0.0.0");
+        long clientKbps = Long.getLong("reproductor.server.clientKbps", 0L);
+        int maxConnections = Integer.getInteger("reproductor.server.maxConnections", 4096);
+        LibraryServer server = new LibraryServer(new InetSocketAddress(bind, port), clientKbps * 1024, maxConnections);
+        System.out.println("Library server on http://" + bind + ":" + server.port() + "/api/tracks");
+        return server;
+    }
+
+    public int port() {
+        try {
+            return ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Replace the served library. Requests already streaming keep going; tracks no longer
+     * listed answer 404 from now on.
+     */
+    public synchronized void publish(List<Track> tracks) {
+        catalog = new Catalog(List.copyOf(tracks), ++catalogVersion);
+        TRACKS.set(tracks.size());
+    }
+
+    Catalog catalog() {
+        return catalog;
+    }
+
+    public void shutdown() {
+        try {
+            serverChannel.close();
+        } catch (IOException ignored) {
+        }
+        for (HttpConnection c : open) {
+            c.close();
+        }
+    }
+
+    private void acceptLoop() {
+        while (serverChannel.isOpen()) {
+            SocketChannel channel;
+            try {
+                channel = serverChannel.accept();
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                // e.g. out of file descriptors; back off instead of spinning
+                System.err.println("Library server accept failed: " + e.getMessage());
+                sleepQuietly(100);
+                continue;
+            }
+            if (connectionCount.incrementAndGet() > maxConnections) {
+                connectionCount.decrementAndGet();
+                REJECTED.increment();
+                closeQuietly(channel);
+                continue;
+            }
+            ACCEPTED.increment();
+            CONNECTIONS.set(connectionCount.get());
+            InetAddress address = remoteAddress(channel);
+            HttpConnection connection = new HttpConnection(this, channel, address, acquireLimiter(address));
+            open.add(connection);
+            Thread.ofVirtual().name("http-" + address.getHostAddress()).start(connection);
+        }
+    }
+
+    // Once a second is plenty against a timeout of tens of seconds
+    private void watchdogLoop() {
+        while (serverChannel.isOpen()) {
+            sleepQuietly(1000);
+            long now = System.nanoTime();
+            for (HttpConnection c : open) {
+                c.closeIfStalled(now);
+            }
+        }
+    }
+
+    void connectionClosed(HttpConnection connection) {
+        if (open.remove(connection)) {
+            CONNECTIONS.set(connectionCount.decrementAndGet());
+            releaseLimiter(connection.remoteAddress());
+        }
+    }
+
+    private RateLimiter acquireLimiter(InetAddress address) {
+        if (clientBytesPerSecond <= 0) return null;
+        Client client = clients.compute(address, (_, c) -> {
+            if (c == null) c = new Client(new RateLimiter(clientBytesPerSecond));
+            c.connections++;
+            return c;
+        });
+        return client.limiter;
+    }
+
+    private void releaseLimiter(InetAddress address) {
+        if (clientBytesPerSecond <= 0) return;
+        clients.computeIfPresent(address, (_, c) -> --c.connections == 0 ? null : c);
+    }
+
+    private static InetAddress remoteAddress(SocketChannel channel) {
+        try {
+            return ((InetSocketAddress) channel.getRemoteAddress()).getAddress();
+        } catch (IOException e) {
+            return InetAddress.getLoopbackAddress();
+        }
+    }
+
+    private static void closeQuietly(SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
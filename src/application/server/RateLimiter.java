@@ -0,0 +1,57 @@
+package application.server;
+
+import application.metrics.Counter;
+import application.metrics.Metrics;
+
+/**
+ * Token bucket limiting the bytes per second sent to one client, shared by all of that
+ * client's connections.
+ *
+ * Callers take the bytes they are about to send; the bucket may go into debt, and the
+ * caller then sleeps until the debt is paid back. Sleeping is cheap because connections
+ * run on virtual threads.
+ */
+final class RateLimiter {
+
+    private static final Counter THROTTLED_MILLIS = Metrics.counter("server.throttled_millis");
+
+    private final long bytesPerSecond;
+    private final long burstBytes;
+    private long available;
+    private long refilledNanos;
+
+    RateLimiter(long bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+        this.burstBytes = Math.max(64 * 1024, bytesPerSecond / 4);
+        this.available = burstBytes;
+        this.refilledNanos = System.nanoTime();
+    }
+
+    /**
+     * Bytes to send between two calls to {@link #acquire}: about 50 ms worth, so the stream
+     * stays smooth.
+     */
+    int chunkBytes() {
+        return (int) Math.max(16 * 1024, Math.min(1024 * 1024, bytesPerSecond / 20));
+    }
+
+    void acquire(long bytes) throws InterruptedException {
+        long waitNanos;
+        synchronized (this) {
+            long now = System.nanoTime();
+            // A second refills more than the burst; clamping keeps a long idle from overflowing
+            long elapsed = Math.min(now - refilledNanos, 1_000_000_000L);
+            long refill = elapsed * bytesPerSecond / 1_000_000_000L;
+            if (refill > 0) {
+                available = Math.min(burstBytes, available + refill);
+                refilledNanos = now;
+            }
+            available -= bytes;
+            waitNanos = available >= 0 ? 0 : -available * 1_000_000_000L / bytesPerSecond;
+        }
+        if (waitNanos > 0) {
+            THROTTLED_MILLIS.add(waitNanos / 1_000_000);
+            Thread.sleep(waitNanos / 1_000_000, (int) (waitNanos % 1_000_000));
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package application.smart;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Dictionary encoding of a text column: each distinct string gets a dense int code.
+ * Codes are never reused, so a compiled text match (one boolean per code) stays valid for
+ * every row that existed when it was compiled.
+ */
+final class Dictionary {
+
+    private final Map<String, Integer> codes = new HashMap<>();
+    private String[] values = new String[64];
+    private int size = 0;
+
+    int encode(String value) {
+        Integer code = codes.get(value);
+        if (code != null) return code;
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size] = value;
+        codes.put(value, size);
+        return size++;
+    }
+
+    String value(int code) {
+        return values[code];
+    }
+
+    int size() {
+        return size;
+    }
+}
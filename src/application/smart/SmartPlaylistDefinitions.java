@@ -0,0 +1,64 @@
+package application.smart;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Saved smart playlists, one per line in a UTF-8 text file meant to be edited by hand:
+ * <pre>
+ *   # comment
+ *   Rock grande = size &gt; 10MB and path under ~/Music/Rock and not played in 30 days
+ *   Cortas = duration &lt; 2min
+ * </pre>
+ * The name is everything before the first '='.
+ */
+public final class SmartPlaylistDefinitions {
+
+    private SmartPlaylistDefinitions() {
+    }
+
+    /**
+     * Definitions location: -Dreproductor.smartPlaylists or ~/.reproductor/smart-playlists.txt
+     */
+    public static Path defaultFile() {
+        String configured = System.getProperty("reproductor.smartPlaylists");
+        if (configured != null && !configured.isBlank()) {
+            return Paths.get(configured);
+        }
+        return Paths.get(System.getProperty("user.home"), ".reproductor", "smart-playlists.txt");
+    }
+
+    /**
+     * @return name to query, in file order; empty if there is no file
+     */
+    public static Map<String, String> load(Path file) {
+        Map<String, String> definitions = new LinkedHashMap<>();
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            int number = 0;
+            while ((line = in.readLine()) != null) {
+                number++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                int eq = line.indexOf('=');
+                if (eq <= 0 || eq == line.length() - 1) {
+                    System.err.println(file.getFileName() + ":" + number + ": expected 'name = query'");
+                    continue;
+                }
+                definitions.put(line.substring(0, eq).trim(), line.substring(eq + 1).trim());
+            }
+        } catch (NoSuchFileException e) {
+            // no smart playlists
+        } catch (IOException e) {
+            System.err.println("Could not read smart playlists: " + e.getMessage());
+        }
+        return definitions;
+    }
+}
@@ -0,0 +1,278 @@
+package application.smart;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongUnaryOperator;
+import java.util.stream.IntStream;
+
+import application.library.TrackId;
+import application.metrics.Counter;
+import application.metrics.Gauge;
+import application.metrics.LatencyHistogram;
+import application.metrics.Metrics;
+
+/**
+ * Keeps saved smart playlists current as the library changes.
+ *
+ * The engine owns a {@link TrackStore} and one membership bitmap per playlist, all
+ * confined to a single "smart-playlists" thread, so callers only post changes:
+ * - {@link #define}: the playlist is built from scratch, in parallel over row chunks
+ * - {@link #sync} (rescan) and {@link #update} (tags read, files changed): only the
+ *   rows the store reports as changed or removed are checked again; a change touching a
+ *   large part of the library falls back to a parallel rebuild
+ * Each playlist keeps what its text conditions decided about dictionary values, so
+ * recompiling it for a change only looks at the values that change added.
+ * - {@link #played}: updates the play time column and re-checks that one row
+ * - {@link #durationKnown}: a duration from analysis, for files whose tags lack one
+ * Conditions on play time ("played in 30 days") are also rebuilt every few minutes, as
+ * tracks age out of the window without any change.
+ *
+ * Tracks come without tags until the library has read them, so a playlist with
+ * conditions on tags ({@link #needsTags}) fills up as they are reported through
+ * {@link #update}.
+ *
+ * The listener is called on the engine thread when a playlist's members change, at most
+ * once a second per playlist: updates arriving in a burst are published together.
+ */
+public final class SmartPlaylists {
+
+    private static final LatencyHistogram REBUILD_TIME = Metrics.histogram("smart.rebuild_time");
+    private static final LatencyHistogram UPDATE_TIME = Metrics.histogram("smart.update_time");
+    private static final Counter ROWS_CHECKED = Metrics.counter("smart.rows_checked");
+    private static final Counter VALUES_DECIDED = Metrics.counter("smart.values_decided");
+    private static final Counter PUBLISHES = Metrics.counter("smart.publishes");
+    private static final Gauge PLAYLISTS = Metrics.gauge("smart.playlists");
+    private static final Gauge TRACKS = Metrics.gauge("smart.tracks");
+
+    // Row chunk per rebuild task; a multiple of 64 so tasks never share a bitmap word
+    private static final int CHUNK_ROWS = 64 * 1024;
+    private static final long REFRESH_MINUTES = 10;
+    private static final long PUBLISH_INTERVAL_MILLIS = 1000;
+
+    /**
+     * Receives the members of a playlist as track ids, in the order the tracks were first
+     * seen (roughly scan order).
+     */
+    public interface Listener {
+        void playlistChanged(String name, SmartQuery query, long[] trackIds);
+    }
+
+    private static final class Entry {
+        final String name;
+        final SmartQuery query;
+        final SmartQuery.Decisions decisions = new SmartQuery.Decisions();
+        BitSet members = new BitSet();
+        long lastPublished = 0;
+        boolean publishPending = false;
+
+        Entry(String name, SmartQuery query) {
+            this.name = name;
+            this.query = query;
+        }
+    }
+
+    private final TrackStore store;
+    private final Map<String, Entry> playlists = new LinkedHashMap<>();
+    private final Listener listener;
+    private final ScheduledExecutorService executor;
+    private volatile boolean needsTags = false;
+
+    public SmartPlaylists(Listener listener) {
+        this(listener, id -> 0);
+    }
+
+    /**
+     * @param lastPlayed last play time of a track by id, 0 if never (e.g. from the play
+     *                   history); asked on the engine thread when a track is first seen
+     */
+    public SmartPlaylists(Listener listener, LongUnaryOperator lastPlayed) {
+        this.listener = listener;
+        this.store = new TrackStore(lastPlayed);
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "smart-playlists");
+            t.setDaemon(true);
+            return t;
+        });
+        executor.scheduleWithFixedDelay(() -> run(this::refreshTimeDependent),
+                REFRESH_MINUTES, REFRESH_MINUTES, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Whether some playlist has conditions on tags, so the caller should have the tags of
+     * the whole library read and reported through {@link #update}.
+     */
+    public boolean needsTags() {
+        return needsTags;
+    }
+
+    /**
+     * Add or replace a playlist. The query is parsed on the calling thread.
+     *
+     * @throws IllegalArgumentException if the query doesn't parse
+     */
+    public void define(String name, String query) {
+        SmartQuery parsed = SmartQuery.parse(query);
+        if (parsed.readsTags()) needsTags = true;
+        run(() -> {
+            Entry e = new Entry(name, parsed);
+            playlists.put(name, e);
+            PLAYLISTS.set(playlists.size());
+            rebuild(e, true);
+        });
+    }
+
+    public void remove(String name) {
+        run(() -> {
+            playlists.remove(name);
+            PLAYLISTS.set(playlists.size());
+            needsTags = playlists.values().stream().anyMatch(e -> e.query.readsTags());
+        });
+    }
+
+    /** The whole library after a scan; tracks not listed are removed. */
+    public void sync(List<TrackStore.Track> library) {
+        run(() -> apply(store.sync(library)));
+    }
+
+    /** Some tracks changed or were added; the rest are kept. */
+    public void update(Collection<TrackStore.Track> tracks) {
+        run(() -> apply(store.update(tracks)));
+    }
+
+    /** A track was played (or its last play time is known from history). */
+    public void played(long trackId, long epochMillis) {
+        run(() -> {
+            int row = store.setLastPlayed(trackId, epochMillis);
+            if (row >= 0) apply(new TrackStore.Changes(new int[] { row }, new int[0]));
+        });
+    }
+
+    /** A track's duration is known from elsewhere than its tags (e.g. analysis). */
+    public void durationKnown(String path, long millis) {
+        run(() -> {
+            int row = store.setDuration(TrackId.of(path), millis);
+            if (row >= 0) apply(new TrackStore.Changes(new int[] { row }, new int[0]));
+        });
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void run(Runnable task) {
+        executor.execute(() -> {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                System.err.println("Smart playlist update failed: " + e);
+            }
+        });
+    }
+
+    private void apply(TrackStore.Changes changes) {
+        TRACKS.set(store.size());
+        if (changes.isEmpty() || playlists.isEmpty()) return;
+        // Past about an eighth of the rows, a parallel pass over everything is cheaper
+        if (changes.changed().length > store.rowCount() / 8) {
+            for (Entry e : playlists.values()) rebuild(e, false);
+            return;
+        }
+        long start = System.nanoTime();
+        long now = System.currentTimeMillis();
+        for (Entry e : playlists.values()) {
+            SmartQuery.RowTest test = compile(e, now);
+            boolean dirty = false;
+            for (int row : changes.removed()) {
+                if (e.members.get(row)) {
+                    e.members.clear(row);
+                    dirty = true;
+                }
+            }
+            for (int row : changes.changed()) {
+                boolean in = test.test(row);
+                if (in != e.members.get(row)) {
+                    e.members.set(row, in);
+                    dirty = true;
+                }
+            }
+            ROWS_CHECKED.add(changes.changed().length);
+            if (dirty) publish(e);
+        }
+        UPDATE_TIME.recordSince(start);
+    }
+
+    private void refreshTimeDependent() {
+        for (Entry e : playlists.values()) {
+            if (e.query.timeDependent()) rebuild(e, false);
+        }
+    }
+
+    // Full evaluation; each task fills the bitmap words of its own row chunk
+    private void rebuild(Entry e, boolean publish) {
+        long start = System.nanoTime();
+        SmartQuery.RowTest test = compile(e, System.currentTimeMillis());
+        int rows = store.rowCount();
+        long[] live = store.liveRows().toLongArray();
+        long[] words = new long[(rows + 63) >>> 6];
+        int chunks = (rows + CHUNK_ROWS - 1) / CHUNK_ROWS;
+        IntStream.range(0, chunks).parallel().forEach(c -> {
+            int from = c * CHUNK_ROWS;
+            int to = Math.min(rows, from + CHUNK_ROWS);
+            for (int w = from >>> 6; w < (to + 63) >>> 6 && w < live.length; w++) {
+                long candidates = live[w];
+                long bits = 0;
+                while (candidates != 0) {
+                    int bit = Long.numberOfTrailingZeros(candidates);
+                    candidates &= candidates - 1;
+                    if (test.test((w << 6) + bit)) bits |= 1L << bit;
+                }
+                words[w] = bits;
+            }
+        });
+        ROWS_CHECKED.add(store.size());
+        BitSet members = BitSet.valueOf(words);
+        boolean changed = !members.equals(e.members);
+        e.members = members;
+        REBUILD_TIME.recordSince(start);
+        if (changed || publish) publish(e);
+    }
+
+    // Cheap after the first time: only text values added since the last call are decided
+    private SmartQuery.RowTest compile(Entry e, long now) {
+        SmartQuery.RowTest test = e.query.compile(store, now, e.decisions);
+        VALUES_DECIDED.add(e.decisions.lastDecided());
+        return test;
+    }
+
+    // Coalesces bursts of changes (e.g. tags arriving in batches): the first change is
+    // published at once, later ones within the interval together when it ends
+    private void publish(Entry e) {
+        if (e.publishPending) return;
+        long wait = e.lastPublished + PUBLISH_INTERVAL_MILLIS - System.currentTimeMillis();
+        if (wait <= 0) {
+            publishNow(e);
+            return;
+        }
+        e.publishPending = true;
+        executor.schedule(() -> {
+            e.publishPending = false;
+            if (playlists.get(e.name) == e) publishNow(e);
+        }, wait, TimeUnit.MILLISECONDS);
+    }
+
+    private void publishNow(Entry e) {
+        e.lastPublished = System.currentTimeMillis();
+        PUBLISHES.increment();
+        try {
+            listener.playlistChanged(e.name, e.query, store.idsOf(e.members));
+        } catch (RuntimeException ex) {
+            System.err.println("Smart playlist listener failed for " + e.name + ": " + ex);
+        }
+    }
+}
@@ -0,0 +1,596 @@
+package application.smart;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+
+import application.smart.TrackStore.Text;
+
+/**
+ * Smart playlist conditions, parsed once and compiled into row predicates over the
+ * {@link TrackStore} columns.
+ *
+ * <pre>
+ *   query   := or
+ *   or      := and ("or" and)*
+ *   and     := unary ("and" unary)*
+ *   unary   := "not" unary | "(" or ")" | term
+ *   term    := "played" ["in" ["last"] N unit]     unit: hours, days, weeks
+ *            | "never" "played"
+ *            | "path" "under" PATH                  ~ is the home folder
+ *            | "size" OP N [B|KB|MB|GB]
+ *            | "duration" OP N [ms|s|min|h]         seconds without unit
+ *            | "track" OP N
+ *            | TEXT ("is" | "=" | "!=" | "contains") VALUE
+ *   TEXT    := title | artist | album | name | format | path
+ *   OP      := &gt; | &gt;= | &lt; | &lt;= | = | !=
+ * </pre>
+ * Keywords and text comparisons ignore case; values with spaces go in double quotes.
+ * {@code path} compares the whole path, folder and file name, with either separator.
+ * Example: {@code size > 10MB and path under ~/Music/Rock and not played in 30 days}.
+ *
+ * A compiled text condition is a boolean per dictionary code, decided once per distinct
+ * value, so checking a row never touches a string. The decisions are kept in
+ * {@link Decisions} between compilations, so compiling again after a change only decides
+ * the values added since.
+ */
+public final class SmartQuery {
+
+    /** A compiled condition, valid until the store is next mutated. */
+    @FunctionalInterface
+    interface RowTest {
+        boolean test(int row);
+    }
+
+    /**
+     * What one query has decided about dictionary values, per text condition. Codes are
+     * never reused (see {@link Dictionary}), so the decisions stay valid as the store
+     * changes and only grow. Belongs to one query and one store; not thread-safe.
+     */
+    static final class Decisions {
+        private final Map<Node, Object> byNode = new IdentityHashMap<>();
+        private int decided = 0; // values decided by the last compilation, for metrics
+
+        int lastDecided() {
+            return decided;
+        }
+    }
+
+    private interface Node {
+        RowTest compile(TrackStore store, long nowMillis, Decisions decisions);
+
+        default boolean timeDependent() {
+            return false;
+        }
+
+        default boolean readsTags() {
+            return false;
+        }
+    }
+
+    private final String text;
+    private final Node root;
+
+    private SmartQuery(String text, Node root) {
+        this.text = text;
+        this.root = root;
+    }
+
+    /**
+     * @throws IllegalArgumentException with a message pointing at the problem
+     */
+    public static SmartQuery parse(String text) {
+        Parser p = new Parser(tokenize(text));
+        Node root = p.or();
+        if (!p.atEnd()) {
+            throw new IllegalArgumentException("Unexpected '" + p.peek() + "' in: " + text);
+        }
+        return new SmartQuery(text, root);
+    }
+
+    public String text() {
+        return text;
+    }
+
+    /** Conditions on play time change as time passes and need periodic re-evaluation. */
+    boolean timeDependent() {
+        return root.timeDependent();
+    }
+
+    /** Conditions on title, artist, album, track or duration need the tags of every track. */
+    boolean readsTags() {
+        return root.readsTags();
+    }
+
+    RowTest compile(TrackStore store, long nowMillis, Decisions decisions) {
+        decisions.decided = 0;
+        return root.compile(store, nowMillis, decisions);
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+
+    // ---- nodes
+
+    private record And(Node a, Node b) implements Node {
+        public RowTest compile(TrackStore s, long now, Decisions d) {
+            RowTest x = a.compile(s, now, d), y = b.compile(s, now, d);
+            return row -> x.test(row) && y.test(row);
+        }
+
+        public boolean timeDependent() {
+            return a.timeDependent() || b.timeDependent();
+        }
+
+        public boolean readsTags() {
+            return a.readsTags() || b.readsTags();
+        }
+    }
+
+    private record Or(Node a, Node b) implements Node {
+        public RowTest compile(TrackStore s, long now, Decisions d) {
+            RowTest x = a.compile(s, now, d), y = b.compile(s, now, d);
+            return row -> x.test(row) || y.test(row);
+        }
+
+        public boolean timeDependent() {
+            return a.timeDependent() || b.timeDependent();
+        }
+
+        public boolean readsTags() {
+            return a.readsTags() || b.readsTags();
+        }
+    }
+
+    private record Not(Node a) implements Node {
+        public RowTest compile(TrackStore s, long now, Decisions d) {
+            RowTest x = a.compile(s, now, d);
+            return row -> !x.test(row);
+        }
+
+        public boolean timeDependent() {
+            return a.timeDependent();
+        }
+
+        public boolean readsTags() {
+            return a.readsTags();
+        }
+    }
+
+    private enum Field { SIZE, DURATION, TRACK }
+
+    private enum Op { GT, GE, LT, LE, EQ, NE }
+
+    private record Compare(Field field, Op op, long value) implements Node {
+        public RowTest compile(TrackStore s, long now, Decisions d) {
+            long v = value;
+            // Capture the column array; the store doesn't change while the test is used
+            if (field == Field.TRACK) {
+                int[] c = s.trackNumbers;
+                return switch (op) {
+                    case GT -> row -> c[row] > v;
+                    case GE -> row -> c[row] >= v;
+                    case LT -> row -> c[row] < v;
+                    case LE -> row -> c[row] <= v;
+                    case EQ -> row -> c[row] == v;
+                    case NE -> row -> c[row] != v;
+                };
+            }
+            long[] c = field == Field.SIZE ? s.sizes : s.durations;
+            return switch (op) {
+                case GT -> row -> c[row] > v;
+                case GE -> row -> c[row] >= v;
+                case LT -> row -> c[row] < v;
+                case LE -> row -> c[row] <= v;
+                case EQ -> row -> c[row] == v;
+                case NE -> row -> c[row] != v;
+            };
+        }
+
+        public boolean readsTags() {
+            return field != Field.SIZE;
+        }
+    }
+
+    // Played within the last windowMillis; windowMillis < 0 means played at all
+    private record Played(long windowMillis) implements Node {
+        public RowTest compile(TrackStore s, long now, Decisions d) {
+            long[] c = s.lastPlayed;
+            if (windowMillis < 0) return row -> c[row] != 0;
+            long since = now - windowMillis;
+            return row -> c[row] != 0 && c[row] >= since;
+        }
+
+        public boolean timeDependent() {
+            return windowMillis >= 0;
+        }
+    }
+
+    // Matches the distinct values of a text column
+    private record TextMatch(Text column, Predicate<String> matcher) implements Node {
+        public RowTest compile(TrackStore s, long now, Decisions d) {
+            Dictionary dict = s.dictionary(column);
+            boolean[] match = (boolean[]) d.byNode.get(this);
+            int from = match == null ? 0 : match.length;
+            if (from < dict.size()) {
+                // A new array: rows being checked with the previous one keep it unchanged
+                match = match == null ? new boolean[dict.size()] : Arrays.copyOf(match, dict.size());
+                for (int code = from; code < match.length; code++) {
+                    match[code] = matcher.test(dict.value(code));
+                }
+                d.byNode.put(this, match);
+                d.decided += match.length - from;
+            }
+            boolean[] decided = match;
+            int[] codes = s.text[column.ordinal()];
+            return row -> decided[codes[row]];
+        }
+
+        public boolean readsTags() {
+            return column == Text.TITLE || column == Text.ARTIST || column == Text.ALBUM;
+        }
+    }
+
+    /*
+     * The whole path contains the needle (folded, '/' separators). The store keeps the
+     * folder and the file name in separate columns, so besides a match inside either one,
+     * the needle can span the separator: its first k characters end "folder/" and the
+     * rest start the file name. Bit k-1 of a folder's mask says the first holds, bit k-1
+     * of a name's mask the second, and a row matches when the two masks share a bit.
+     */
+    private record PathContains(String needle) implements Node {
+        private static final class Decided {
+            boolean[] dirHas = new boolean[0];
+            long[][] dirEnds = new long[0][];
+            boolean[] nameHas = new boolean[0];
+            long[][] nameStarts = new long[0][];
+        }
+
+        public RowTest compile(TrackStore s, long now, Decisions d) {
+            int words = (needle.length() + 62) >>> 6; // one bit per split point, 1..length-1
+            Decided p = (Decided) d.byNode.computeIfAbsent(this, _ -> new Decided());
+            Dictionary dirs = s.dictionary(Text.DIRECTORY);
+            int from = p.dirHas.length;
+            if (from < dirs.size()) {
+                p.dirHas = Arrays.copyOf(p.dirHas, dirs.size());
+                p.dirEnds = Arrays.copyOf(p.dirEnds, dirs.size());
+                for (int code = from; code < p.dirHas.length; code++) {
+                    String dir = foldText(dirs.value(code)) + "/";
+                    p.dirHas[code] = dir.contains(needle);
+                    p.dirEnds[code] = splits(words, k -> dir.regionMatches(dir.length() - k, needle, 0, k));
+                }
+                d.decided += p.dirHas.length - from;
+            }
+            Dictionary names = s.dictionary(Text.NAME);
+            from = p.nameHas.length;
+            if (from < names.size()) {
+                p.nameHas = Arrays.copyOf(p.nameHas, names.size());
+                p.nameStarts = Arrays.copyOf(p.nameStarts, names.size());
+                for (int code = from; code < p.nameHas.length; code++) {
+                    String n = foldText(names.value(code));
+                    p.nameHas[code] = n.contains(needle);
+                    p.nameStarts[code] = splits(words, k -> n.regionMatches(0, needle, k, needle.length() - k));
+                }
+                d.decided += p.nameHas.length - from;
+            }
+            boolean[] dirHas = p.dirHas, nameHas = p.nameHas;
+            long[][] dirEnds = p.dirEnds, nameStarts = p.nameStarts;
+            int[] dirCodes = s.text[Text.DIRECTORY.ordinal()];
+            int[] nameCodes = s.text[Text.NAME.ordinal()];
+            return row -> {
+                int dir = dirCodes[row], name = nameCodes[row];
+                if (dirHas[dir] || nameHas[name]) return true;
+                long[] a = dirEnds[dir], b = nameStarts[name];
+                if (a == null || b == null) return false;
+                for (int w = 0; w < a.length; w++) {
+                    if ((a[w] & b[w]) != 0) return true;
+                }
+                return false;
+            };
+        }
+
+        // The split points k that hold, or null when none does (most values)
+        private long[] splits(int words, IntPredicate holds) {
+            long[] mask = null;
+            for (int k = 1; k < needle.length(); k++) {
+                if (!holds.test(k)) continue;
+                if (mask == null) mask = new long[words];
+                mask[(k - 1) >>> 6] |= 1L << (k - 1);
+            }
+            return mask;
+        }
+    }
+
+    // ---- parsing
+
+    private static final class Parser {
+        private final List<String> tokens;
+        private int pos = 0;
+
+        Parser(List<String> tokens) {
+            this.tokens = tokens;
+        }
+
+        boolean atEnd() {
+            return pos >= tokens.size();
+        }
+
+        String peek() {
+            return atEnd() ? "" : tokens.get(pos);
+        }
+
+        String next(String expected) {
+            if (atEnd()) throw new IllegalArgumentException("Expected " + expected + " at the end");
+            return tokens.get(pos++);
+        }
+
+        boolean accept(String keyword) {
+            if (!atEnd() && tokens.get(pos).equalsIgnoreCase(keyword)) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        void expect(String keyword) {
+            String t = next("'" + keyword + "'");
+            if (!t.equalsIgnoreCase(keyword)) {
+                throw new IllegalArgumentException("Expected '" + keyword + "' but found '" + t + "'");
+            }
+        }
+
+        Node or() {
+            Node n = and();
+            while (accept("or")) n = new Or(n, and());
+            return n;
+        }
+
+        Node and() {
+            Node n = unary();
+            while (accept("and")) n = new And(n, unary());
+            return n;
+        }
+
+        Node unary() {
+            if (accept("not")) return new Not(unary());
+            if (accept("(")) {
+                Node n = or();
+                expect(")");
+                return n;
+            }
+            return term();
+        }
+
+        Node term() {
+            String word = next("a condition").toLowerCase(Locale.ROOT);
+            switch (word) {
+                case "played" -> {
+                    if (!accept("in")) return new Played(-1);
+                    accept("last");
+                    long n = number(next("a number"));
+                    String unit = next("hours, days or weeks").toLowerCase(Locale.ROOT);
+                    long millis = switch (unit) {
+                        case "hour", "hours" -> 3_600_000L;
+                        case "day", "days" -> 86_400_000L;
+                        case "week", "weeks" -> 7 * 86_400_000L;
+                        default -> throw new IllegalArgumentException("Unknown time unit: " + unit);
+                    };
+                    return new Played(n * millis);
+                }
+                case "never" -> {
+                    expect("played");
+                    return new Not(new Played(-1));
+                }
+                case "path" -> {
+                    if (accept("under")) return pathUnder(next("a folder"));
+                    return path();
+                }
+                case "size" -> {
+                    return new Compare(Field.SIZE, op(), sized(next("a size")));
+                }
+                case "duration" -> {
+                    return new Compare(Field.DURATION, op(), timed(next("a duration")));
+                }
+                case "track" -> {
+                    return new Compare(Field.TRACK, op(), number(next("a number")));
+                }
+                case "title" -> {
+                    return text(Text.TITLE);
+                }
+                case "artist" -> {
+                    return text(Text.ARTIST);
+                }
+                case "album" -> {
+                    return text(Text.ALBUM);
+                }
+                case "name" -> {
+                    return text(Text.NAME);
+                }
+                case "format", "ext" -> {
+                    return text(Text.FORMAT);
+                }
+                default -> throw new IllegalArgumentException("Unknown condition: " + word);
+            }
+        }
+
+        Node text(Text column) {
+            String op = next("is, =, != or contains").toLowerCase(Locale.ROOT);
+            String value = next("a value");
+            String folded = value.toLowerCase(Locale.ROOT);
+            return switch (op) {
+                case "is", "=" -> new TextMatch(column, v -> v.equalsIgnoreCase(value));
+                case "!=" -> new Not(new TextMatch(column, v -> v.equalsIgnoreCase(value)));
+                case "contains" -> new TextMatch(column, v -> v.toLowerCase(Locale.ROOT).contains(folded));
+                default -> throw new IllegalArgumentException("Expected is, =, != or contains but found '" + op + "'");
+            };
+        }
+
+        // Text operators on the whole path
+        Node path() {
+            String op = next("is, =, != or contains").toLowerCase(Locale.ROOT);
+            String value = next("a value");
+            return switch (op) {
+                case "is", "=" -> pathIs(value);
+                case "!=" -> new Not(pathIs(value));
+                case "contains" -> new PathContains(foldText(value));
+                default -> throw new IllegalArgumentException("Expected is, =, != or contains but found '" + op + "'");
+            };
+        }
+
+        // Split the way TrackStore splits, then both parts must match
+        Node pathIs(String value) {
+            String v = value.replace('\\', '/');
+            int sep = v.lastIndexOf('/');
+            String dir = sep < 0 ? "" : v.substring(0, sep);
+            String name = v.substring(sep + 1);
+            return new And(new TextMatch(Text.NAME, n -> n.equalsIgnoreCase(name)),
+                    new TextMatch(Text.DIRECTORY, d -> d.replace('\\', '/').equalsIgnoreCase(dir)));
+        }
+
+        Node pathUnder(String folder) {
+            String home = System.getProperty("user.home");
+            if (folder.equals("~") || folder.startsWith("~/") || folder.startsWith("~\\")) {
+                folder = home + folder.substring(1);
+            }
+            String folded = foldPath(folder);
+            while (folded.length() > 1 && folded.endsWith("/")) {
+                folded = folded.substring(0, folded.length() - 1);
+            }
+            String prefix = folded;
+            String under = prefix + "/";
+            return new TextMatch(Text.DIRECTORY, dir -> {
+                String d = foldPath(dir);
+                return d.equals(prefix) || d.startsWith(under);
+            });
+        }
+
+        Op op() {
+            String t = next("a comparison");
+            return switch (t) {
+                case ">" -> Op.GT;
+                case ">=" -> Op.GE;
+                case "<" -> Op.LT;
+                case "<=" -> Op.LE;
+                case "=", "==" -> Op.EQ;
+                case "!=" -> Op.NE;
+                default -> throw new IllegalArgumentException("Expected a comparison but found '" + t + "'");
+            };
+        }
+
+        // "10MB", "10 MB", "1.5GB", "500000"
+        long sized(String value) {
+            String unit = unitSuffix(value);
+            double n = decimal(value.substring(0, value.length() - unit.length()));
+            if (unit.isEmpty() && !atEnd() && isUnit(peek(), "b", "kb", "mb", "gb")) unit = next("");
+            long scale = switch (unit.toLowerCase(Locale.ROOT)) {
+                case "", "b" -> 1L;
+                case "kb" -> 1024L;
+                case "mb" -> 1024L * 1024;
+                case "gb" -> 1024L * 1024 * 1024;
+                default -> throw new IllegalArgumentException("Unknown size unit: " + unit);
+            };
+            return Math.round(n * scale);
+        }
+
+        // "3min", "90s", "90" (seconds), "2 h"
+        long timed(String value) {
+            String unit = unitSuffix(value);
+            double n = decimal(value.substring(0, value.length() - unit.length()));
+            if (unit.isEmpty() && !atEnd() && isUnit(peek(), "ms", "s", "sec", "min", "h")) unit = next("");
+            long scale = switch (unit.toLowerCase(Locale.ROOT)) {
+                case "ms" -> 1L;
+                case "", "s", "sec" -> 1000L;
+                case "min" -> 60_000L;
+                case "h" -> 3_600_000L;
+                default -> throw new IllegalArgumentException("Unknown duration unit: " + unit);
+            };
+            return Math.round(n * scale);
+        }
+
+        private static boolean isUnit(String token, String... units) {
+            for (String u : units) {
+                if (token.equalsIgnoreCase(u)) return true;
+            }
+            return false;
+        }
+
+        private static String unitSuffix(String value) {
+            int i = value.length();
+            while (i > 0 && Character.isLetter(value.charAt(i - 1))) i--;
+            return value.substring(i);
+        }
+
+        private static double decimal(String s) {
+            try {
+                double d = Double.parseDouble(s);
+                if (d < 0 || Double.isNaN(d) || Double.isInfinite(d)) throw new NumberFormatException();
+                return d;
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Not a number: " + s);
+            }
+        }
+
+        private static long number(String s) {
+            try {
+                return Long.parseLong(s);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Not a number: " + s);
+            }
+        }
+    }
+
+    private static String foldPath(String path) {
+        String p = path.replace('\\', '/');
+        // File names are case-insensitive on Windows
+        return File.separatorChar == '\\' ? p.toLowerCase(Locale.ROOT) : p;
+    }
+
+    private static String foldText(String text) {
+        return text.replace('\\', '/').toLowerCase(Locale.ROOT);
+    }
+
+    // Words, "quoted strings", parentheses and comparison operators
+    private static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        int i = 0;
+        int n = text.length();
+        while (i < n) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '"') {
+                int end = text.indexOf('"', i + 1);
+                if (end < 0) throw new IllegalArgumentException("Unclosed quote in: " + text);
+                tokens.add(text.substring(i + 1, end));
+                i = end + 1;
+            } else if (c == '(' || c == ')') {
+                tokens.add(String.valueOf(c));
+                i++;
+            } else if (c == '<' || c == '>' || c == '=' || c == '!') {
+                int end = i + 1;
+                if (end < n && text.charAt(end) == '=') end++;
+                tokens.add(text.substring(i, end));
+                i = end;
+            } else {
+                int end = i;
+                while (end < n) {
+                    char d = text.charAt(end);
+                    if (Character.isWhitespace(d) || d == '"' || d == '(' || d == ')'
+                            || d == '<' || d == '>' || d == '=' || d == '!') break;
+                    end++;
+                }
+                tokens.add(text.substring(i, end));
+                i = end;
+            }
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,276 @@
+package application.smart;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.LongUnaryOperator;
+
+import application.library.TrackId;
+import application.tags.TrackTags;
+
+/**
+ * Columnar copy of the library for query evaluation: one primitive array per field,
+ * indexed by a dense row number, instead of one object per track.
+ *
+ * Text fields are dictionary encoded (see {@link Dictionary}), so a text condition is
+ * decided once per distinct value and a row check is an array load. Rows of removed
+ * tracks are recycled by later additions.
+ *
+ * Not thread-safe: {@link SmartPlaylists} mutates and reads it on its own thread, and
+ * only reads it from its parallel rebuild workers.
+ */
+public final class TrackStore {
+
+    /**
+     * A track as reported by the library.
+     *
+     * @param tags null when the tags have not been read; the stored ones are kept
+     */
+    public record Track(String path, long size, TrackTags tags) {
+    }
+
+    /**
+     * Rows touched by one mutation.
+     *
+     * @param changed rows added or updated, to be checked again
+     * @param removed rows whose track left the library
+     */
+    record Changes(int[] changed, int[] removed) {
+        boolean isEmpty() {
+            return changed.length == 0 && removed.length == 0;
+        }
+    }
+
+    enum Text { DIRECTORY, NAME, TITLE, ARTIST, ALBUM, FORMAT }
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final LongUnaryOperator knownLastPlayed;
+    private final Map<Long, Integer> rowById = new HashMap<>();
+    private final Dictionary[] dictionaries = new Dictionary[Text.values().length];
+    private final BitSet live = new BitSet();
+    private final BitSet seen = new BitSet(); // sync() mark bits
+    private int[] freeRows = new int[16];
+    private int freeCount = 0;
+    private int rows = 0; // high-water mark
+
+    long[] ids = new long[INITIAL_CAPACITY];
+    long[] sizes = new long[INITIAL_CAPACITY];
+    long[] durations = new long[INITIAL_CAPACITY];
+    long[] lastPlayed = new long[INITIAL_CAPACITY]; // epoch millis, 0 = never
+    int[] trackNumbers = new int[INITIAL_CAPACITY];
+    final int[][] text = new int[Text.values().length][INITIAL_CAPACITY];
+
+    /**
+     * @param knownLastPlayed last play time of a track entering the store, 0 if never
+     */
+    TrackStore(LongUnaryOperator knownLastPlayed) {
+        this.knownLastPlayed = knownLastPlayed;
+        for (int i = 0; i < dictionaries.length; i++) {
+            dictionaries[i] = new Dictionary();
+        }
+    }
+
+    /** Rows in use or free; row numbers are below this. */
+    int rowCount() {
+        return rows;
+    }
+
+    boolean isLive(int row) {
+        return live.get(row);
+    }
+
+    BitSet liveRows() {
+        return live;
+    }
+
+    int size() {
+        return rowById.size();
+    }
+
+    Dictionary dictionary(Text column) {
+        return dictionaries[column.ordinal()];
+    }
+
+    /**
+     * Replace the whole library: add new tracks, update changed ones, remove the ones
+     * that are gone.
+     */
+    Changes sync(Collection<Track> tracks) {
+        IntList changed = new IntList();
+        seen.clear();
+        for (Track t : tracks) {
+            long id = TrackId.of(t.path());
+            Integer row = rowById.get(id);
+            if (row != null) {
+                seen.set(row);
+                if (write(row, t, false)) changed.add(row);
+            } else {
+                int r = allocate(id);
+                seen.set(r);
+                write(r, t, true);
+                changed.add(r);
+            }
+        }
+        // Tracks that were not reported are gone
+        BitSet gone = (BitSet) live.clone();
+        gone.andNot(seen);
+        IntList removed = new IntList();
+        for (int row = gone.nextSetBit(0); row >= 0; row = gone.nextSetBit(row + 1)) {
+            free(row);
+            removed.add(row);
+        }
+        return new Changes(changed.toArray(), removed.toArray());
+    }
+
+    /**
+     * Add or update some tracks (e.g. tags that were just read); other tracks are kept.
+     */
+    Changes update(Collection<Track> tracks) {
+        IntList changed = new IntList();
+        for (Track t : tracks) {
+            long id = TrackId.of(t.path());
+            Integer row = rowById.get(id);
+            if (row == null) {
+                int r = allocate(id);
+                write(r, t, true);
+                changed.add(r);
+            } else if (write(row, t, false)) {
+                changed.add(row);
+            }
+        }
+        return new Changes(changed.toArray(), new int[0]);
+    }
+
+    /**
+     * A duration found some other way than the tags (e.g. analysis); kept while tags
+     * read later don't state one.
+     *
+     * @return the row of the track when its duration changed, else -1
+     */
+    int setDuration(long id, long millis) {
+        Integer row = rowById.get(id);
+        if (row == null || millis <= 0 || durations[row] == millis) return -1;
+        durations[row] = millis;
+        return row;
+    }
+
+    /**
+     * @return the row of the track, or -1 when it is not in the store
+     */
+    int setLastPlayed(long id, long epochMillis) {
+        Integer row = rowById.get(id);
+        if (row == null) return -1;
+        lastPlayed[row] = epochMillis;
+        return row;
+    }
+
+    private int allocate(long id) {
+        int row;
+        if (freeCount > 0) {
+            row = freeRows[--freeCount];
+        } else {
+            row = rows++;
+            ensureCapacity(rows);
+        }
+        ids[row] = id;
+        lastPlayed[row] = knownLastPlayed.applyAsLong(id);
+        rowById.put(id, row);
+        live.set(row);
+        return row;
+    }
+
+    private void free(int row) {
+        rowById.remove(ids[row]);
+        live.clear(row);
+        if (freeCount == freeRows.length) {
+            freeRows = Arrays.copyOf(freeRows, freeCount * 2);
+        }
+        freeRows[freeCount++] = row;
+    }
+
+    // Returns whether any column changed
+    private boolean write(int row, Track t, boolean fresh) {
+        String path = t.path();
+        int sep = Math.max(path.lastIndexOf('/'), path.lastIndexOf('\\'));
+        String directory = sep < 0 ? "" : path.substring(0, sep);
+        String name = path.substring(sep + 1);
+        int dot = name.lastIndexOf('.');
+        String format = dot < 0 ? "" : name.substring(dot + 1).toLowerCase(Locale.ROOT);
+
+        boolean changed = fresh;
+        changed |= set(sizes, row, t.size());
+        changed |= setText(Text.DIRECTORY, row, directory);
+        changed |= setText(Text.NAME, row, name);
+        changed |= setText(Text.FORMAT, row, format);
+        TrackTags tags = t.tags();
+        if (tags == null) {
+            if (!fresh) return changed;
+            tags = TrackTags.EMPTY;
+        }
+        boolean keepDuration = !fresh && tags.durationMillis() == 0; // see setDuration
+        if (!keepDuration) changed |= set(durations, row, tags.durationMillis());
+        if (trackNumbers[row] != tags.track()) {
+            trackNumbers[row] = tags.track();
+            changed = true;
+        }
+        changed |= setText(Text.TITLE, row, tags.title());
+        changed |= setText(Text.ARTIST, row, tags.artist());
+        changed |= setText(Text.ALBUM, row, tags.album());
+        return changed;
+    }
+
+    private static boolean set(long[] column, int row, long value) {
+        if (column[row] == value) return false;
+        column[row] = value;
+        return true;
+    }
+
+    private boolean setText(Text column, int row, String value) {
+        int code = dictionaries[column.ordinal()].encode(value);
+        int[] codes = text[column.ordinal()];
+        if (codes[row] == code) return false;
+        codes[row] = code;
+        return true;
+    }
+
+    private void ensureCapacity(int needed) {
+        if (needed <= ids.length) return;
+        int capacity = Math.max(needed, ids.length * 2);
+        ids = Arrays.copyOf(ids, capacity);
+        sizes = Arrays.copyOf(sizes, capacity);
+        durations = Arrays.copyOf(durations, capacity);
+        lastPlayed = Arrays.copyOf(lastPlayed, capacity);
+        trackNumbers = Arrays.copyOf(trackNumbers, capacity);
+        for (int i = 0; i < text.length; i++) {
+            text[i] = Arrays.copyOf(text[i], capacity);
+        }
+    }
+
+    /** Track ids of the given rows, in row order. */
+    long[] idsOf(BitSet rows) {
+        long[] result = new long[rows.cardinality()];
+        int i = 0;
+        for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+            result[i++] = ids[row];
+        }
+        return result;
+    }
+
+    private static final class IntList {
+        private int[] values = new int[16];
+        private int size = 0;
+
+        void add(int v) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = v;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
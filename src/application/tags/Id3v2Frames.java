@@ -0,0 +1,107 @@
+package application.tags;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Walks the frames of the ID3v2 tag at the start of a file, reading only their headers.
+ *
+ * Every size is checked against the tag: an extended header or a frame that doesn't fit
+ * inside it ends the walk, as does padding. Callers read the bodies they want with
+ * {@link TagReader#readAt}.
+ */
+public final class Id3v2Frames {
+
+    private final FileChannel ch;
+    private final int version;
+    private final int headerSize;
+    private final long end;
+    private long pos;
+    private String id;
+    private long body;
+    private long size;
+
+    private Id3v2Frames(FileChannel ch, int version, long end, long pos) {
+        this.ch = ch;
+        this.version = version;
+        this.headerSize = version == 2 ? 6 : 10;
+        this.end = end;
+        this.pos = pos;
+    }
+
+    /**
+     * @return the frames of the tag, or null when the file doesn't start with a readable
+     *         ID3v2 header
+     */
+    public static Id3v2Frames open(FileChannel ch) throws IOException {
+        ByteBuffer header = TagReader.readAt(ch, 0, 10);
+        if (header.remaining() < 10 || header.get(0) != 'I' || header.get(1) != 'D' || header.get(2) != '3') {
+            return null;
+        }
+        int version = header.get(3);
+        int flags = header.get(5);
+        long end = 10 + TagReader.syncSafe(header, 6);
+        long pos = 10;
+
+        // Skip the extended header if present
+        if ((flags & 0x40) != 0 && version >= 3) {
+            ByteBuffer ext = TagReader.readAt(ch, pos, 4);
+            if (ext.remaining() < 4) return null;
+            long extSize = version == 4 ? TagReader.syncSafe(ext, 0) : 4 + (ext.getInt(0) & 0xFFFFFFFFL);
+            if (pos + extSize > end) return null;
+            pos += extSize;
+        }
+        return new Id3v2Frames(ch, version, end, pos);
+    }
+
+    /** Major version of the tag: 2, 3 or 4. Frame ids have 3 characters in version 2. */
+    public int version() {
+        return version;
+    }
+
+    /**
+     * Move to the next frame.
+     *
+     * @return false at the end of the tag, at padding, or at a frame that doesn't fit
+     */
+    public boolean next() throws IOException {
+        if (pos + headerSize > end) return false;
+        ByteBuffer fh = TagReader.readAt(ch, pos, headerSize);
+        if (fh.remaining() < headerSize || fh.get(0) == 0) return stop(); // padding
+        long frameSize;
+        if (version == 2) {
+            id = TagReader.ascii(fh, 0, 3);
+            frameSize = ((fh.get(3) & 0xFF) << 16) | ((fh.get(4) & 0xFF) << 8) | (fh.get(5) & 0xFF);
+        } else {
+            id = TagReader.ascii(fh, 0, 4);
+            frameSize = version == 4 ? TagReader.syncSafe(fh, 4) : fh.getInt(4) & 0xFFFFFFFFL;
+        }
+        long frameBody = pos + headerSize;
+        if (frameSize <= 0 || frameBody + frameSize > end) return stop();
+        body = frameBody;
+        size = frameSize;
+        pos = frameBody + frameSize;
+        return true;
+    }
+
+    /** Id of the current frame, e.g. "TIT2" or "PIC". */
+    public String id() {
+        return id;
+    }
+
+    /** File position of the current frame's body. */
+    public long body() {
+        return body;
+    }
+
+    /** Size of the current frame's body in bytes; always inside the tag. */
+    public long size() {
+        return size;
+    }
+
+    private boolean stop() {
+        pos = end;
+        return false;
+    }
+}
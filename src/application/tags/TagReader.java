@@ -0,0 +1,215 @@
+package application.tags;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads basic tags (title, artist, album, track number, stated duration) without decoding audio.
+ *
+ * Supported: ID3v2.2/2.3/2.4 and ID3v1 (MP3 and friends) and FLAC Vorbis comments and STREAMINFO.
+ * Only the few bytes holding the wanted fields are read, using positioned reads on a FileChannel,
+ * so large embedded pictures are skipped over rather than loaded.
+ */
+public final class TagReader {
+
+    // Frames bigger than this are never text we care about (pictures, lyrics, ...)
+    private static final int MAX_TEXT_FRAME = 4096;
+
+    private TagReader() {
+    }
+
+    /**
+     * Read the tags of a file.
+     *
+     * @return tags found, or {@link TrackTags#EMPTY} when the file has none we understand
+     * @throws IOException when the file cannot be read
+     */
+    public static TrackTags read(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer magic = readAt(ch, 0, 4);
+            if (magic.remaining() >= 4 && magic.get(0) == 'f' && magic.get(1) == 'L' && magic.get(2) == 'a' && magic.get(3) == 'C') {
+                return readFlac(ch);
+            }
+            TrackTags tags = TrackTags.EMPTY;
+            if (magic.remaining() >= 3 && magic.get(0) == 'I' && magic.get(1) == 'D' && magic.get(2) == '3') {
+                tags = readId3v2(ch);
+            }
+            if (tags.title().isEmpty() || tags.artist().isEmpty()) {
+                tags = tags.orElse(readId3v1(ch));
+            }
+            return tags;
+        }
+    }
+
+    /**
+     * Size in bytes of the ID3v2 tag at the start of the file (header included), or 0 when there is none.
+     */
+    public static long id3v2Size(FileChannel ch) throws IOException {
+        ByteBuffer header = readAt(ch, 0, 10);
+        if (header.remaining() < 10 || header.get(0) != 'I' || header.get(1) != 'D' || header.get(2) != '3') {
+            return 0;
+        }
+        boolean footer = (header.get(5) & 0x10) != 0;
+        return 10 + syncSafe(header, 6) + (footer ? 10 : 0);
+    }
+
+    private static TrackTags readId3v2(FileChannel ch) throws IOException {
+        Id3v2Frames frames = Id3v2Frames.open(ch);
+        if (frames == null) return TrackTags.EMPTY;
+
+        String title = "", artist = "", album = "";
+        int track = 0;
+        long duration = 0;
+        while (frames.next()) {
+            long size = frames.size();
+            if (size > MAX_TEXT_FRAME) continue;
+            long body = frames.body();
+            switch (frames.id()) {
+                case "TIT2", "TT2" -> title = text(readAt(ch, body, (int) size));
+                case "TPE1", "TP1" -> artist = text(readAt(ch, body, (int) size));
+                case "TALB", "TAL" -> album = text(readAt(ch, body, (int) size));
+                case "TRCK", "TRK" -> track = leadingInt(text(readAt(ch, body, (int) size)));
+                case "TLEN", "TLE" -> duration = leadingInt(text(readAt(ch, body, (int) size)));
+                default -> { }
+            }
+        }
+        return new TrackTags(title, artist, album, track, duration);
+    }
+
+    private static TrackTags readId3v1(FileChannel ch) throws IOException {
+        long size = ch.size();
+        if (size < 128) return TrackTags.EMPTY;
+        ByteBuffer tag = readAt(ch, size - 128, 128);
+        if (tag.remaining() < 128 || tag.get(0) != 'T' || tag.get(1) != 'A' || tag.get(2) != 'G') {
+            return TrackTags.EMPTY;
+        }
+        String title = latin1(tag, 3, 30);
+        String artist = latin1(tag, 33, 30);
+        String album = latin1(tag, 63, 30);
+        // ID3v1.1 stores the track number in the last comment byte
+        int track = tag.get(125) == 0 ? tag.get(126) & 0xFF : 0;
+        return new TrackTags(title, artist, album, track, 0);
+    }
+
+    private static TrackTags readFlac(FileChannel ch) throws IOException {
+        String title = "", artist = "", album = "";
+        int track = 0;
+        long duration = 0;
+        long pos = 4;
+        boolean last = false;
+        while (!last) {
+            ByteBuffer bh = readAt(ch, pos, 4);
+            if (bh.remaining() < 4) break;
+            last = (bh.get(0) & 0x80) != 0;
+            int type = bh.get(0) & 0x7F;
+            int length = ((bh.get(1) & 0xFF) << 16) | ((bh.get(2) & 0xFF) << 8) | (bh.get(3) & 0xFF);
+            long body = pos + 4;
+            if (type == 0 && length >= 18) {
+                ByteBuffer info = readAt(ch, body, 18);
+                if (info.limit() < 18) return TrackTags.EMPTY; // truncated file
+                // 20 bits sample rate, 3 bits channels, 5 bits bps, 36 bits total samples
+                long bits = info.getLong(10);
+                int sampleRate = (int) (bits >>> 44);
+                long totalSamples = bits & 0xFFFFFFFFFL;
+                if (sampleRate > 0) duration = totalSamples * 1000 / sampleRate;
+            } else if (type == 4) {
+                ByteBuffer vc = readAt(ch, body, length).order(ByteOrder.LITTLE_ENDIAN);
+                // Lengths come from the file: check each against what was actually read
+                if (vc.limit() < 4) return TrackTags.EMPTY;
+                int vendor = vc.getInt(0);
+                if (vendor < 0 || vendor > vc.limit() - 8) return TrackTags.EMPTY;
+                int p = 4 + vendor;
+                int count = vc.getInt(p);
+                p += 4;
+                for (int i = 0; i < count && p + 4 <= vc.limit(); i++) {
+                    int len = vc.getInt(p);
+                    p += 4;
+                    if (len < 0 || p + len > vc.limit()) break;
+                    String comment = decode(vc, p, len, StandardCharsets.UTF_8);
+                    p += len;
+                    int eq = comment.indexOf('=');
+                    if (eq <= 0) continue;
+                    String value = comment.substring(eq + 1).trim();
+                    switch (comment.substring(0, eq).toUpperCase()) {
+                        case "TITLE" -> title = value;
+                        case "ARTIST" -> artist = value;
+                        case "ALBUM" -> album = value;
+                        case "TRACKNUMBER" -> track = leadingInt(value);
+                        default -> { }
+                    }
+                }
+            }
+            pos = body + length;
+        }
+        return new TrackTags(title, artist, album, track, duration);
+    }
+
+    /**
+     * Read up to {@code length} bytes at {@code position}; the result may be shorter at end of file.
+     */
+    public static ByteBuffer readAt(FileChannel ch, long position, int length) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(length);
+        while (buf.hasRemaining()) {
+            int n = ch.read(buf, position + buf.position());
+            if (n < 0) break;
+        }
+        buf.flip();
+        return buf;
+    }
+
+    /**
+     * 28-bit big-endian "syncsafe" integer used by ID3v2 (7 bits per byte).
+     */
+    public static int syncSafe(ByteBuffer buf, int offset) {
+        return ((buf.get(offset) & 0x7F) << 21) | ((buf.get(offset + 1) & 0x7F) << 14)
+                | ((buf.get(offset + 2) & 0x7F) << 7) | (buf.get(offset + 3) & 0x7F);
+    }
+
+    /**
+     * Decode an ID3v2 text frame body (encoding byte followed by the text).
+     */
+    static String text(ByteBuffer body) {
+        if (body.remaining() < 1) return "";
+        Charset cs = switch (body.get(0)) {
+            case 1 -> StandardCharsets.UTF_16;
+            case 2 -> StandardCharsets.UTF_16BE;
+            case 3 -> StandardCharsets.UTF_8;
+            default -> StandardCharsets.ISO_8859_1;
+        };
+        return decode(body, 1, body.remaining() - 1, cs);
+    }
+
+    private static String decode(ByteBuffer buf, int offset, int length, Charset cs) {
+        byte[] bytes = new byte[length];
+        buf.get(offset, bytes);
+        String s = new String(bytes, cs);
+        int nul = s.indexOf('\0');
+        return (nul >= 0 ? s.substring(0, nul) : s).trim();
+    }
+
+    private static String latin1(ByteBuffer buf, int offset, int length) {
+        return decode(buf, offset, length, StandardCharsets.ISO_8859_1);
+    }
+
+    static String ascii(ByteBuffer buf, int offset, int length) {
+        return decode(buf, offset, length, StandardCharsets.US_ASCII);
+    }
+
+    // "3/12" -> 3, "245000" -> 245000, garbage -> 0
+    private static int leadingInt(String s) {
+        int value = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') break;
+            if (value > (Integer.MAX_VALUE - 9) / 10) break;
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+}
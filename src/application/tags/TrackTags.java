@@ -0,0 +1,32 @@
+package application.tags;
+
+/**
+ * Descriptive tags of one audio file. Missing text fields are empty strings,
+ * missing numbers are 0.
+ *
+ * @param title track title
+ * @param artist track artist
+ * @param album album title
+ * @param track track number within the album
+ * @param durationMillis duration when the container states it (FLAC STREAMINFO, ID3 TLEN), else 0
+ */
+public record TrackTags(String title, String artist, String album, int track, long durationMillis) {
+
+    public static final TrackTags EMPTY = new TrackTags("", "", "", 0, 0);
+
+    public boolean isEmpty() {
+        return title.isEmpty() && artist.isEmpty() && album.isEmpty() && track == 0 && durationMillis == 0;
+    }
+
+    /**
+     * Fill fields missing here from another (lower priority) set of tags.
+     */
+    public TrackTags orElse(TrackTags other) {
+        return new TrackTags(
+                title.isEmpty() ? other.title : title,
+                artist.isEmpty() ? other.artist : artist,
+                album.isEmpty() ? other.album : album,
+                track == 0 ? other.track : track,
+                durationMillis == 0 ? other.durationMillis : durationMillis);
+    }
+}